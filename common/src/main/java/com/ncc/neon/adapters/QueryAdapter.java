@@ -1,14 +1,20 @@
 package com.ncc.neon.adapters;
 
+import com.ncc.neon.models.queries.BinClause;
+import com.ncc.neon.models.queries.FieldClause;
 import com.ncc.neon.models.queries.ImportQuery;
 import com.ncc.neon.models.queries.MutateQuery;
 import com.ncc.neon.models.queries.Query;
 import com.ncc.neon.models.results.ActionResult;
+import com.ncc.neon.models.results.FieldRange;
 import com.ncc.neon.models.results.FieldTypePair;
 import com.ncc.neon.models.results.TableWithFields;
 import com.ncc.neon.models.results.TabularQueryResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -77,6 +83,72 @@ public abstract class QueryAdapter {
      */
     public abstract Mono<TabularQueryResult> execute(Query query);
 
+    /**
+     * Executes a query against a generic data source and emits each row of the results as it becomes available instead
+     * of collecting all the rows into one result.  Adapters that cannot stream their results emit the rows returned by
+     * {@link #execute(Query)}.
+     *
+     * @param query An object that represents the query we wish to execute
+     * @return The rows of the results of the query
+     */
+    public Flux<Map<String, Object>> executeStreaming(Query query) {
+        return execute(query).flatMapIterable(TabularQueryResult::getData);
+    }
+
+    /**
+     * Returns whether {@link #executeStreamingJson(Query, DataBufferFactory, ObjectMapper)} can write the JSON of the
+     * rows of the given query.  If not, the caller serializes the rows emitted by {@link #executeStreaming(Query)}
+     * instead.
+     *
+     * @param query An object that represents the query we wish to execute
+     * @return Whether the adapter can write the JSON of the rows of the results of the query
+     */
+    public boolean canStreamJson(Query query) {
+        return false;
+    }
+
+    /**
+     * Executes a query against a generic data source like {@link #executeStreaming(Query)}, but writes the JSON of
+     * each row of the results (followed by a newline) straight into buffers from the given factory without building
+     * the maps of the rows.  Fails with an UnsupportedOperationException unless {@link #canStreamJson(Query)}.
+     *
+     * @param query An object that represents the query we wish to execute
+     * @param bufferFactory The factory of the buffers
+     * @param mapper The mapper the caller would serialize the rows with, for the values the adapter cannot write
+     * @return The newline-delimited JSON of the rows of the results of the query
+     */
+    public Flux<DataBuffer> executeStreamingJson(Query query, DataBufferFactory bufferFactory, ObjectMapper mapper) {
+        return Flux.error(new UnsupportedOperationException(this.prettyName + " cannot stream the JSON of query " +
+            query));
+    }
+
+    /**
+     * Finds the smallest and largest values and the number of distinct values of the given field in the rows of the
+     * given query, so its groups can be clustered by {@link #executeBinned(Query, List)}.  Adapters that cannot bin
+     * queries in their datastore complete empty.
+     *
+     * @param query An object that represents the query we wish to execute
+     * @param fieldClause The field
+     * @return The range of the field
+     */
+    public Mono<FieldRange> getFieldRange(Query query, FieldClause fieldClause) {
+        return Mono.empty();
+    }
+
+    /**
+     * Executes a query with its rows aggregated into the given bins instead of grouped by the binned fields, so only
+     * one row per bin is returned by the datastore.  Each row has the index of its bin for each field under the
+     * field's name, its row count under {@link BinClause#COUNT_KEY}, and the query's aggregations under their labels.
+     * Bins without any rows may be left out.  Adapters that cannot bin the query in their datastore complete empty.
+     *
+     * @param query An object that represents the query we wish to execute
+     * @param binClauses The bins of each field, replacing any group of the field in the query
+     * @return An object containing a row for each bin
+     */
+    public Mono<TabularQueryResult> executeBinned(Query query, List<BinClause> binClauses) {
+        return Mono.empty();
+    }
+
     /**
      * @return Returns all the databases
      */
@@ -121,4 +193,45 @@ public abstract class QueryAdapter {
     public abstract Mono<ActionResult> insertData(MutateQuery mutate);
 
     public abstract Mono<ActionResult> deleteData(MutateQuery mutate);
+
+    /**
+     * Mutates the data of each of the given mutations by ID together.  Adapters that cannot batch mutations run each
+     * mutation by itself, in order.
+     *
+     * @param mutates The mutations
+     * @return The result of each mutation, in the order of the mutations
+     */
+    public Mono<List<ActionResult>> mutateDataBatch(List<MutateQuery> mutates) {
+        return Flux.fromIterable(mutates).concatMap(this::mutateData).collectList();
+    }
+
+    /**
+     * Inserts the data of each of the given mutations together.  Adapters that cannot batch insertions run each
+     * insertion by itself, in order.
+     *
+     * @param mutates The insertions
+     * @return The result of each insertion, in the order of the insertions
+     */
+    public Mono<List<ActionResult>> insertDataBatch(List<MutateQuery> mutates) {
+        return Flux.fromIterable(mutates).concatMap(this::insertData).collectList();
+    }
+
+    /**
+     * Deletes the data of each of the given mutations by ID together.  Adapters that cannot batch deletions run each
+     * deletion by itself, in order.
+     *
+     * @param mutates The deletions
+     * @return The result of each deletion, in the order of the deletions
+     */
+    public Mono<List<ActionResult>> deleteDataBatch(List<MutateQuery> mutates) {
+        return Flux.fromIterable(mutates).concatMap(this::deleteData).collectList();
+    }
+
+    /**
+     * Releases the clients, connection pools, and threads held by this adapter.  The adapter must not be used after
+     * it is closed.
+     */
+    public void close() {
+        // Do nothing.
+    }
 }
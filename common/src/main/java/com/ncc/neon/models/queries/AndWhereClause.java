@@ -8,7 +8,7 @@ import lombok.EqualsAndHashCode;
 
 @AllArgsConstructor
 @Data
-@EqualsAndHashCode(callSuper=false)
+@EqualsAndHashCode(callSuper=true)
 public class AndWhereClause extends CompoundWhereClause {
     public AndWhereClause(List<WhereClause> whereClauses) {
         super(whereClauses);
@@ -0,0 +1,24 @@
+package com.ncc.neon.models.queries;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The bins of one field of a clustered query.  Each range is the smallest and largest values of its bin, and a row is
+ * in the first bin whose range contains the row's value of the field.
+ */
+@AllArgsConstructor
+@Data
+public class BinClause {
+    // The row count of each bin in the results of a binned query.
+    public static final String COUNT_KEY = "_binCount";
+
+    FieldClause fieldClause;
+    List<double[]> ranges;
+
+    public String getField() {
+        return this.fieldClause.getField();
+    }
+}
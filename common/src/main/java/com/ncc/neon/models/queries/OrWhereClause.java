@@ -8,7 +8,7 @@ import lombok.EqualsAndHashCode;
 
 @AllArgsConstructor
 @Data
-@EqualsAndHashCode(callSuper=false)
+@EqualsAndHashCode(callSuper=true)
 public class OrWhereClause extends CompoundWhereClause {
     public OrWhereClause(List<WhereClause> whereClauses) {
         super(whereClauses);
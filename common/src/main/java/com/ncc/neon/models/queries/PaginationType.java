@@ -0,0 +1,34 @@
+package com.ncc.neon.models.queries;
+
+import java.util.Arrays;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * How a datastore pages through results past its maximum page size.  Datastores with only one way ignore it.
+ */
+@AllArgsConstructor
+public enum PaginationType {
+
+    // Keeps a scroll context open on the datastore for the life of the request.
+    SCROLL("scroll"),
+
+    // Requests each page after the sort values of the last result of the previous page, keeping no state on the
+    // datastore between pages.
+    SEARCH_AFTER("searchAfter");
+
+    @JsonValue
+    @Getter
+    private final String name;
+
+    @JsonCreator
+    public static PaginationType fromName(String name) {
+        return Arrays.stream(PaginationType.values()).filter(type -> type.name.equalsIgnoreCase(name) ||
+            type.name().equalsIgnoreCase(name)).findAny().orElseThrow(() ->
+            new IllegalArgumentException("Unknown pagination type '" + name + "'"));
+    }
+}
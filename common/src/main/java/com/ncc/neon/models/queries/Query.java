@@ -31,4 +31,15 @@ public class Query {
 
     @JsonProperty(value = "isDistinct")
     boolean isDistinct = false;
+
+    // Optional; the datastore's default is used if null.
+    PaginationType paginationType;
+
+    public Query(SelectClause selectClause, WhereClause whereClause, ClusterClause clusterClause,
+            List<AggregateClause> aggregateClauses, List<GroupByClause> groupByClauses,
+            List<OrderByClause> orderByClauses, LimitClause limitClause, OffsetClause offsetClause,
+            List<JoinClause> joinClauses, boolean isDistinct) {
+        this(selectClause, whereClause, clusterClause, aggregateClauses, groupByClauses, orderByClauses, limitClause,
+            offsetClause, joinClauses, isDistinct, null);
+    }
 }
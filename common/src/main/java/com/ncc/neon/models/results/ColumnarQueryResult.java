@@ -0,0 +1,233 @@
+package com.ncc.neon.models.results;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * A tabular query result stored as one column per field rather than one map per row.  The rows returned by getData
+ * are read-only views over the columns, so existing consumers keep working without the result building a map for
+ * every row.  Serializes to the same JSON as a TabularQueryResult.
+ */
+@JsonSerialize(using = ColumnarQueryResultSerializer.class)
+public class ColumnarQueryResult extends TabularQueryResult {
+    private final ResultSchema schema;
+    private final ResultColumn[] columns;
+    private final int rowCount;
+
+    private ColumnarQueryResult(ResultSchema schema, ResultColumn[] columns, int rowCount) {
+        super(new RowList(schema, columns, rowCount));
+        this.schema = schema;
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns a columnar copy of the given rows.
+     */
+    public static ColumnarQueryResult of(List<Map<String, Object>> rows) {
+        Builder builder = builder();
+        rows.forEach(builder::addRow);
+        return builder.build();
+    }
+
+    public ResultSchema getSchema() {
+        return this.schema;
+    }
+
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    public ResultColumn getColumn(int index) {
+        return this.columns[index];
+    }
+
+    /**
+     * Returns the column for the given field, or null if no row has the field.
+     */
+    public ResultColumn getColumn(String fieldName) {
+        int index = this.schema.indexOf(fieldName);
+        return index < 0 ? null : this.columns[index];
+    }
+
+    /**
+     * Builds a columnar result one row at a time.  Each column is specialized for the type of its first non-null
+     * value and falls back to storing objects if a later value has a different type.
+     */
+    public static class Builder {
+        private final List<String> fieldNames = new ArrayList<>();
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<ResultColumn> columns = new ArrayList<>();
+        private boolean caseInsensitive = false;
+        private int rowCount = 0;
+
+        /**
+         * Makes the built result also find fields ignoring their case, like the rows from a SQL database.
+         */
+        public Builder caseInsensitive() {
+            this.caseInsensitive = true;
+            return this;
+        }
+
+        /**
+         * Starts a new row with no fields.
+         */
+        public Builder addRow() {
+            this.rowCount++;
+            return this;
+        }
+
+        public Builder addRow(Map<String, Object> row) {
+            addRow();
+            row.forEach(this::set);
+            return this;
+        }
+
+        /**
+         * Sets the value of the given field in the current row.
+         */
+        public Builder set(String fieldName, Object value) {
+            if (this.rowCount == 0) {
+                throw new IllegalStateException("Cannot set " + fieldName + " before adding a row");
+            }
+            Integer index = this.indexes.get(fieldName);
+            if (index == null) {
+                index = this.columns.size();
+                this.indexes.put(fieldName, index);
+                this.fieldNames.add(fieldName);
+                this.columns.add(ResultColumn.create(value));
+            }
+            ResultColumn column = this.columns.get(index);
+            if (value != null && !column.accepts(value)) {
+                ResultColumn replacement = column instanceof ResultColumn.NullColumn ? ResultColumn.create(value) :
+                    new ResultColumn.ObjectColumn();
+                column.copyInto(replacement);
+                this.columns.set(index, replacement);
+                column = replacement;
+            }
+            column.set(this.rowCount - 1, value);
+            return this;
+        }
+
+        public int getRowCount() {
+            return this.rowCount;
+        }
+
+        public ColumnarQueryResult build() {
+            List<FieldType> fieldTypes = new ArrayList<>(this.columns.size());
+            for (ResultColumn column : this.columns) {
+                column.trim(this.rowCount);
+                fieldTypes.add(column.getType());
+            }
+            ResultSchema schema = new ResultSchema(new ArrayList<>(this.fieldNames), fieldTypes, this.caseInsensitive);
+            return new ColumnarQueryResult(schema, this.columns.toArray(new ResultColumn[0]), this.rowCount);
+        }
+    }
+
+    private static class RowList extends AbstractList<Map<String, Object>> implements RandomAccess {
+        private final ResultSchema schema;
+        private final ResultColumn[] columns;
+        private final int rowCount;
+
+        RowList(ResultSchema schema, ResultColumn[] columns, int rowCount) {
+            this.schema = schema;
+            this.columns = columns;
+            this.rowCount = rowCount;
+        }
+
+        @Override
+        public Map<String, Object> get(int row) {
+            if (row < 0 || row >= this.rowCount) {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + this.rowCount);
+            }
+            return new RowView(row);
+        }
+
+        @Override
+        public int size() {
+            return this.rowCount;
+        }
+
+        /**
+         * A read-only view of the fields of one row.
+         */
+        private class RowView extends AbstractMap<String, Object> {
+            private final int row;
+
+            RowView(int row) {
+                this.row = row;
+            }
+
+            @Override
+            public Object get(Object key) {
+                int index = schema.indexOf(key);
+                return index < 0 ? null : columns[index].get(this.row);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                int index = schema.indexOf(key);
+                return index >= 0 && columns[index].isPresent(this.row);
+            }
+
+            @Override
+            public Set<Entry<String, Object>> entrySet() {
+                return new AbstractSet<Entry<String, Object>>() {
+                    @Override
+                    public Iterator<Entry<String, Object>> iterator() {
+                        return new Iterator<Entry<String, Object>>() {
+                            private int next = findPresent(0);
+
+                            @Override
+                            public boolean hasNext() {
+                                return this.next < columns.length;
+                            }
+
+                            @Override
+                            public Entry<String, Object> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                int index = this.next;
+                                this.next = findPresent(index + 1);
+                                return new SimpleImmutableEntry<>(schema.getFieldNames().get(index),
+                                    columns[index].get(row));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        int size = 0;
+                        for (ResultColumn column : columns) {
+                            size += column.isPresent(row) ? 1 : 0;
+                        }
+                        return size;
+                    }
+                };
+            }
+
+            private int findPresent(int index) {
+                while (index < columns.length && !columns[index].isPresent(this.row)) {
+                    index++;
+                }
+                return index;
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.ncc.neon.models.results;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Writes a columnar result as {"data":[{...},...]} straight from its columns, like a TabularQueryResult.
+ */
+public class ColumnarQueryResultSerializer extends StdSerializer<ColumnarQueryResult> {
+    private static final long serialVersionUID = 2466915633413584329L;
+
+    public ColumnarQueryResultSerializer() {
+        this(null);
+    }
+
+    public ColumnarQueryResultSerializer(Class<ColumnarQueryResult> t) {
+        super(t);
+    }
+
+    @Override
+    public void serialize(ColumnarQueryResult result, JsonGenerator gen, SerializerProvider serializers)
+    throws IOException, JsonProcessingException {
+        ResultSchema schema = result.getSchema();
+        gen.writeStartObject();
+        gen.writeArrayFieldStart("data");
+        for (int row = 0; row < result.getRowCount(); row++) {
+            gen.writeStartObject();
+            for (int index = 0; index < schema.size(); index++) {
+                ResultColumn column = result.getColumn(index);
+                if (column.isPresent(row)) {
+                    gen.writeFieldName(schema.getFieldNames().get(index));
+                    column.write(gen, row, serializers);
+                }
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,14 @@
+package com.ncc.neon.models.results;
+
+import lombok.Value;
+
+/**
+ * The smallest and largest values (null if the field has no values) and the number of distinct values of a field in
+ * the rows of a query.
+ */
+@Value
+public class FieldRange {
+    Object min;
+    Object max;
+    long distinctCount;
+}
@@ -0,0 +1,19 @@
+package com.ncc.neon.models.results;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The result of importing one batch of the records of a streamed import.  The first record is the index of the
+ * batch's first record in the stream (starting at zero).
+ */
+@AllArgsConstructor
+@Data
+@NoArgsConstructor
+public class ImportBatchResult {
+    long batch;
+    long firstRecord;
+    int recordCount;
+    ActionResult result;
+}
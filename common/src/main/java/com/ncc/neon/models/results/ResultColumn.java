@@ -0,0 +1,472 @@
+package com.ncc.neon.models.results;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * The values of one field across every row of a columnar result.  A row may have a value, an explicit null, or no
+ * value at all (if the field was missing from that row).  Numbers, booleans, and dates are stored in primitive arrays
+ * and strings are dictionary-encoded; any other value is stored as an object.
+ */
+public abstract class ResultColumn {
+    private final BitSet present = new BitSet();
+    private final BitSet nulls = new BitSet();
+
+    public abstract FieldType getType();
+
+    /**
+     * Returns whether the given row has the field, even if its value is null.
+     */
+    public boolean isPresent(int row) {
+        return this.present.get(row);
+    }
+
+    public boolean isNull(int row) {
+        return !this.present.get(row) || this.nulls.get(row);
+    }
+
+    /**
+     * Returns the boxed value of the given row, or null if the row has no value.
+     */
+    public Object get(int row) {
+        return isNull(row) ? null : getValue(row);
+    }
+
+    /**
+     * Returns the value of the given row as a double without boxing it if possible.  The row must have a value.
+     */
+    public double getDouble(int row) {
+        Object value = get(row);
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(String.valueOf(value));
+    }
+
+    /**
+     * Returns the value of the given row as a long without boxing it if possible.  The row must have a value.
+     */
+    public long getLong(int row) {
+        Object value = get(row);
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(String.valueOf(value));
+    }
+
+    void write(JsonGenerator gen, int row, SerializerProvider provider) throws IOException {
+        if (this.nulls.get(row)) {
+            gen.writeNull();
+        } else {
+            writeValue(gen, row, provider);
+        }
+    }
+
+    void writeValue(JsonGenerator gen, int row, SerializerProvider provider) throws IOException {
+        provider.defaultSerializeValue(getValue(row), gen);
+    }
+
+    final void set(int row, Object value) {
+        this.present.set(row);
+        if (value == null) {
+            this.nulls.set(row);
+        } else {
+            setValue(row, value);
+        }
+    }
+
+    /**
+     * Sets the value of every row that has the field in this column on the given column.
+     */
+    final void copyInto(ResultColumn column) {
+        for (int row = this.present.nextSetBit(0); row >= 0; row = this.present.nextSetBit(row + 1)) {
+            column.set(row, get(row));
+        }
+    }
+
+    abstract Object getValue(int row);
+
+    /**
+     * Returns whether the given non-null value can be stored in this column.
+     */
+    abstract boolean accepts(Object value);
+
+    abstract void setValue(int row, Object value);
+
+    /**
+     * Releases any spare capacity once every row has been set.
+     */
+    abstract void trim(int rowCount);
+
+    /**
+     * Returns a new column specialized for the type of the given value.
+     */
+    static ResultColumn create(Object value) {
+        if (value == null) {
+            return new NullColumn();
+        }
+        if (value instanceof String) {
+            return new StringColumn();
+        }
+        if (value instanceof Integer) {
+            return new IntColumn();
+        }
+        if (value instanceof Long) {
+            return new LongColumn();
+        }
+        if (value instanceof Double) {
+            return new DoubleColumn();
+        }
+        if (value instanceof Boolean) {
+            return new BooleanColumn();
+        }
+        if (value instanceof LocalDateTime) {
+            return new DateTimeColumn();
+        }
+        return new ObjectColumn();
+    }
+
+    private static int grow(int length, int row) {
+        return Math.max(row + 1, Math.max(16, length * 2));
+    }
+
+    /**
+     * A column whose rows are all null so far.
+     */
+    static final class NullColumn extends ResultColumn {
+        @Override
+        public FieldType getType() {
+            return FieldType.OBJECT;
+        }
+
+        @Override
+        Object getValue(int row) {
+            return null;
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return false;
+        }
+
+        @Override
+        void setValue(int row, Object value) {
+            throw new IllegalArgumentException("Cannot store " + value + " in a null column");
+        }
+
+        @Override
+        void trim(int rowCount) {
+        }
+    }
+
+    static final class IntColumn extends ResultColumn {
+        private int[] values = new int[0];
+
+        @Override
+        public FieldType getType() {
+            return FieldType.INTEGER;
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        public long getLong(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        Object getValue(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        void writeValue(JsonGenerator gen, int row, SerializerProvider provider) throws IOException {
+            gen.writeNumber(this.values[row]);
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Integer;
+        }
+
+        @Override
+        void setValue(int row, Object value) {
+            if (row >= this.values.length) {
+                this.values = Arrays.copyOf(this.values, grow(this.values.length, row));
+            }
+            this.values[row] = (Integer) value;
+        }
+
+        @Override
+        void trim(int rowCount) {
+            this.values = Arrays.copyOf(this.values, rowCount);
+        }
+    }
+
+    static final class LongColumn extends ResultColumn {
+        private long[] values = new long[0];
+
+        @Override
+        public FieldType getType() {
+            return FieldType.INTEGER;
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        public long getLong(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        Object getValue(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        void writeValue(JsonGenerator gen, int row, SerializerProvider provider) throws IOException {
+            gen.writeNumber(this.values[row]);
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Long;
+        }
+
+        @Override
+        void setValue(int row, Object value) {
+            if (row >= this.values.length) {
+                this.values = Arrays.copyOf(this.values, grow(this.values.length, row));
+            }
+            this.values[row] = (Long) value;
+        }
+
+        @Override
+        void trim(int rowCount) {
+            this.values = Arrays.copyOf(this.values, rowCount);
+        }
+    }
+
+    static final class DoubleColumn extends ResultColumn {
+        private double[] values = new double[0];
+
+        @Override
+        public FieldType getType() {
+            return FieldType.DECIMAL;
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        public long getLong(int row) {
+            return (long) this.values[row];
+        }
+
+        @Override
+        Object getValue(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        void writeValue(JsonGenerator gen, int row, SerializerProvider provider) throws IOException {
+            gen.writeNumber(this.values[row]);
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Double;
+        }
+
+        @Override
+        void setValue(int row, Object value) {
+            if (row >= this.values.length) {
+                this.values = Arrays.copyOf(this.values, grow(this.values.length, row));
+            }
+            this.values[row] = (Double) value;
+        }
+
+        @Override
+        void trim(int rowCount) {
+            this.values = Arrays.copyOf(this.values, rowCount);
+        }
+    }
+
+    static final class BooleanColumn extends ResultColumn {
+        private final BitSet values = new BitSet();
+
+        @Override
+        public FieldType getType() {
+            return FieldType.BOOLEAN;
+        }
+
+        @Override
+        Object getValue(int row) {
+            return this.values.get(row);
+        }
+
+        @Override
+        void writeValue(JsonGenerator gen, int row, SerializerProvider provider) throws IOException {
+            gen.writeBoolean(this.values.get(row));
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Boolean;
+        }
+
+        @Override
+        void setValue(int row, Object value) {
+            this.values.set(row, (Boolean) value);
+        }
+
+        @Override
+        void trim(int rowCount) {
+        }
+    }
+
+    /**
+     * Stores each date as its seconds and nanoseconds since the epoch (in UTC) so no precision is lost.
+     */
+    static final class DateTimeColumn extends ResultColumn {
+        private long[] seconds = new long[0];
+        private int[] nanos = new int[0];
+
+        @Override
+        public FieldType getType() {
+            return FieldType.DATETIME;
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return getLong(row);
+        }
+
+        @Override
+        public long getLong(int row) {
+            return this.seconds[row] * 1000 + this.nanos[row] / 1000000;
+        }
+
+        @Override
+        Object getValue(int row) {
+            return LocalDateTime.ofEpochSecond(this.seconds[row], this.nanos[row], ZoneOffset.UTC);
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof LocalDateTime;
+        }
+
+        @Override
+        void setValue(int row, Object value) {
+            LocalDateTime date = (LocalDateTime) value;
+            if (row >= this.seconds.length) {
+                this.seconds = Arrays.copyOf(this.seconds, grow(this.seconds.length, row));
+                this.nanos = Arrays.copyOf(this.nanos, this.seconds.length);
+            }
+            this.seconds[row] = date.toEpochSecond(ZoneOffset.UTC);
+            this.nanos[row] = date.getNano();
+        }
+
+        @Override
+        void trim(int rowCount) {
+            this.seconds = Arrays.copyOf(this.seconds, rowCount);
+            this.nanos = Arrays.copyOf(this.nanos, rowCount);
+        }
+    }
+
+    /**
+     * Stores each distinct string once and each row as the index of its string.
+     */
+    static final class StringColumn extends ResultColumn {
+        private int[] codes = new int[0];
+        private final List<String> dictionary = new ArrayList<>();
+        // Only needed while the column is being built.
+        private Map<String, Integer> dictionaryCodes = new HashMap<>();
+
+        @Override
+        public FieldType getType() {
+            return FieldType.KEYWORD;
+        }
+
+        @Override
+        Object getValue(int row) {
+            return this.dictionary.get(this.codes[row]);
+        }
+
+        @Override
+        void writeValue(JsonGenerator gen, int row, SerializerProvider provider) throws IOException {
+            gen.writeString(this.dictionary.get(this.codes[row]));
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof String && this.dictionaryCodes != null;
+        }
+
+        @Override
+        void setValue(int row, Object value) {
+            if (row >= this.codes.length) {
+                this.codes = Arrays.copyOf(this.codes, grow(this.codes.length, row));
+            }
+            this.codes[row] = this.dictionaryCodes.computeIfAbsent((String) value, string -> {
+                this.dictionary.add(string);
+                return this.dictionary.size() - 1;
+            });
+        }
+
+        @Override
+        void trim(int rowCount) {
+            this.codes = Arrays.copyOf(this.codes, rowCount);
+            this.dictionaryCodes = null;
+        }
+
+        int getDictionarySize() {
+            return this.dictionary.size();
+        }
+    }
+
+    static final class ObjectColumn extends ResultColumn {
+        private Object[] values = new Object[0];
+
+        @Override
+        public FieldType getType() {
+            return FieldType.OBJECT;
+        }
+
+        @Override
+        Object getValue(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return true;
+        }
+
+        @Override
+        void setValue(int row, Object value) {
+            if (row >= this.values.length) {
+                this.values = Arrays.copyOf(this.values, grow(this.values.length, row));
+            }
+            this.values[row] = value;
+        }
+
+        @Override
+        void trim(int rowCount) {
+            this.values = Arrays.copyOf(this.values, rowCount);
+        }
+    }
+}
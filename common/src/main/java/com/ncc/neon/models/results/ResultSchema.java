@@ -0,0 +1,57 @@
+package com.ncc.neon.models.results;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The field names and field types shared by every row of a columnar result.
+ */
+public class ResultSchema {
+    private final List<String> fieldNames;
+    private final List<FieldType> fieldTypes;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    // Only set if field names should also be found ignoring their case, like the rows from a SQL database.
+    private final Map<String, Integer> caseInsensitiveIndexes;
+
+    public ResultSchema(List<String> fieldNames, List<FieldType> fieldTypes, boolean caseInsensitive) {
+        if (fieldNames.size() != fieldTypes.size()) {
+            throw new IllegalArgumentException("Schema has " + fieldNames.size() + " field names but " +
+                fieldTypes.size() + " field types");
+        }
+        this.fieldNames = Collections.unmodifiableList(fieldNames);
+        this.fieldTypes = Collections.unmodifiableList(fieldTypes);
+        this.caseInsensitiveIndexes = caseInsensitive ? new HashMap<>() : null;
+        for (int i = 0; i < fieldNames.size(); i++) {
+            this.indexes.put(fieldNames.get(i), i);
+            if (caseInsensitive) {
+                this.caseInsensitiveIndexes.putIfAbsent(fieldNames.get(i).toLowerCase(Locale.ROOT), i);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the given field, or -1 if the schema does not have the field.
+     */
+    public int indexOf(Object fieldName) {
+        Integer index = this.indexes.get(fieldName);
+        if (index == null && this.caseInsensitiveIndexes != null && fieldName instanceof String) {
+            index = this.caseInsensitiveIndexes.get(((String) fieldName).toLowerCase(Locale.ROOT));
+        }
+        return index == null ? -1 : index;
+    }
+
+    public List<String> getFieldNames() {
+        return this.fieldNames;
+    }
+
+    public List<FieldType> getFieldTypes() {
+        return this.fieldTypes;
+    }
+
+    public int size() {
+        return this.fieldNames.size();
+    }
+}
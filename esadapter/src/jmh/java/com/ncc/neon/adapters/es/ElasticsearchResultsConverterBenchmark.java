@@ -0,0 +1,159 @@
+package com.ncc.neon.adapters.es;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.ncc.neon.models.queries.AggregateByFieldClause;
+import com.ncc.neon.models.queries.AggregateByGroupCountClause;
+import com.ncc.neon.models.queries.AggregateByTotalCountClause;
+import com.ncc.neon.models.queries.AggregateClause;
+import com.ncc.neon.models.queries.FieldClause;
+import com.ncc.neon.models.queries.GroupByClause;
+import com.ncc.neon.models.queries.GroupByFieldClause;
+import com.ncc.neon.models.queries.GroupByOperationClause;
+import com.ncc.neon.models.queries.Query;
+import com.ncc.neon.models.queries.SelectClause;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.StringTerms;
+import org.elasticsearch.search.aggregations.metrics.stats.InternalStats;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of converting the responses to aggregation queries, shaped like the responses recorded in
+ * ElasticsearchResultsConverterTest:  the metrics of all documents, the groups of a field, and the groups of two date
+ * operations (years and the months of each year).
+ *
+ * Run with: ./gradlew :esadapter:jmh
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ElasticsearchResultsConverterBenchmark {
+
+    @Param({ "1200", "12000" })
+    private int buckets;
+
+    private Query metricsQuery;
+    private SearchResponse metricsResponse;
+
+    private Query fieldGroupQuery;
+    private SearchResponse fieldGroupResponse;
+
+    private Query dateGroupQuery;
+    private SearchResponse dateGroupResponse;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        FieldClause aggField = new FieldClause("testDatabase", "testTable", "testAggField");
+        FieldClause groupField = new FieldClause("testDatabase", "testTable", "testGroupField");
+        FieldClause dateField = new FieldClause("testDatabase", "testTable", "testDateField");
+
+        this.metricsQuery = buildQuery(Arrays.asList(new AggregateByFieldClause(aggField, "testAvg", "avg"),
+            new AggregateByFieldClause(aggField, "testMax", "max"), new AggregateByFieldClause(aggField, "testMin",
+            "min"), new AggregateByFieldClause(aggField, "testSum", "sum"),
+            new AggregateByTotalCountClause("testTotal")), Collections.emptyList());
+        this.metricsResponse = buildResponse(buildAggregations(buildStats(random)));
+
+        this.fieldGroupQuery = buildQuery(Arrays.asList(new AggregateByGroupCountClause("testGroupField",
+            "testCount"), new AggregateByFieldClause(aggField, "testSum", "sum")),
+            Arrays.asList(new GroupByFieldClause(groupField)));
+        List<StringTerms.Bucket> groups = new ArrayList<>(this.buckets);
+        for (int i = 0; i < this.buckets; i++) {
+            groups.add(buildBucket("testGroup" + i, 1 + random.nextInt(1000), buildAggregations(buildStats(random))));
+        }
+        this.fieldGroupResponse = buildResponse(buildAggregations(buildTerms("_terms", groups)));
+
+        this.dateGroupQuery = buildQuery(Arrays.asList(new AggregateByGroupCountClause("testMonth", "testCount"),
+            new AggregateByFieldClause(aggField, "testSum", "sum")), Arrays.asList(
+            new GroupByOperationClause(dateField, "testYear", "year"),
+            new GroupByOperationClause(dateField, "testMonth", "month")));
+        List<StringTerms.Bucket> years = new ArrayList<>(this.buckets / 12);
+        for (int year = 0; year < this.buckets / 12; year++) {
+            List<StringTerms.Bucket> months = new ArrayList<>(12);
+            for (int month = 1; month <= 12; month++) {
+                months.add(buildBucket(String.valueOf(month), 1 + random.nextInt(1000),
+                    buildAggregations(buildStats(random))));
+            }
+            years.add(buildBucket(String.valueOf(1000 + year), 12000,
+                buildAggregations(buildTerms("testMonth", months))));
+        }
+        this.dateGroupResponse = buildResponse(buildAggregations(buildTerms("testYear", years)));
+    }
+
+    private static Query buildQuery(List<AggregateClause> aggregateClauses, List<GroupByClause> groupClauses) {
+        Query query = new Query();
+        query.setSelectClause(new SelectClause("testDatabase", "testTable"));
+        query.setAggregateClauses(aggregateClauses);
+        query.setGroupByClauses(groupClauses);
+        return query;
+    }
+
+    private static InternalStats buildStats(Random random) {
+        return new InternalStats(ElasticsearchQueryConverter.STATS_AGG_PREFIX + "testAggField", 10,
+            random.nextInt(10000), random.nextInt(100), 100 + random.nextInt(100), DocValueFormat.RAW,
+            Collections.emptyList(), Collections.emptyMap());
+    }
+
+    private static InternalAggregations buildAggregations(InternalAggregation aggregation) {
+        return new InternalAggregations(Collections.singletonList(aggregation));
+    }
+
+    private static StringTerms.Bucket buildBucket(String key, long docCount, InternalAggregations aggregations) {
+        return new StringTerms.Bucket(new BytesRef(key), docCount, aggregations, false, 0, DocValueFormat.RAW);
+    }
+
+    private static StringTerms buildTerms(String name, List<StringTerms.Bucket> buckets) {
+        return new StringTerms(name, BucketOrder.count(false), buckets.size(), 1, Collections.emptyList(),
+            Collections.emptyMap(), DocValueFormat.RAW, buckets.size(), false, 0, buckets, 0);
+    }
+
+    private static SearchResponse buildResponse(InternalAggregations aggregations) {
+        SearchHits hits = new SearchHits(new SearchHit[0], 100000, 0);
+        return new SearchResponse(new InternalSearchResponse(hits, aggregations, null, null, false, null, 1), null,
+            1, 1, 0, 1, ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> convertMetrics() {
+        return ElasticsearchResultsConverter.convertResults(this.metricsQuery, this.metricsResponse);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> convertFieldGroups() {
+        return ElasticsearchResultsConverter.convertResults(this.fieldGroupQuery, this.fieldGroupResponse);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> convertDateGroups() {
+        return ElasticsearchResultsConverter.convertResults(this.dateGroupQuery, this.dateGroupResponse);
+    }
+}
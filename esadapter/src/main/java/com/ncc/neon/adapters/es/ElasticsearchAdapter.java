@@ -1,10 +1,15 @@
 package com.ncc.neon.adapters.es;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ncc.neon.adapters.QueryAdapter;
+import com.ncc.neon.models.queries.BinClause;
+import com.ncc.neon.models.queries.FieldClause;
 import com.ncc.neon.models.queries.ImportQuery;
 import com.ncc.neon.models.queries.MutateQuery;
+import com.ncc.neon.models.queries.PaginationType;
 import com.ncc.neon.models.queries.Query;
 import com.ncc.neon.models.results.*;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
@@ -13,6 +18,7 @@ import org.apache.http.client.CredentialsProvider;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.admin.indices.get.GetIndexRequest;
 import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
@@ -25,8 +31,10 @@ import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.ClearScrollRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
@@ -41,9 +49,18 @@ import org.elasticsearch.index.reindex.BulkByScrollResponse;
 import org.elasticsearch.index.reindex.DeleteByQueryRequest;
 import org.elasticsearch.index.reindex.UpdateByQueryRequest;
 import org.elasticsearch.search.Scroll;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregation;
 import org.elasticsearch.search.aggregations.bucket.terms.IncludeExclude;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.PooledDataBuffer;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
 import reactor.core.publisher.Mono;
@@ -51,17 +68,38 @@ import reactor.core.publisher.MonoSink;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class ElasticsearchAdapter extends QueryAdapter {
     static final int DEFAULT_PORT = 9200;
+    static final int DEFAULT_PARTITION_PARALLELISM = 4;
+    static final PaginationType DEFAULT_PAGINATION_TYPE = PaginationType.SCROLL;
+    static final String DEFAULT_SEARCH_AFTER_TIEBREAKER = "_id";
 
     private RestHighLevelClient client;
+    // The most terms partitions of one large aggregation query to search at once.
+    private int partitionParallelism;
+    // How to page through large-limit queries that do not set their own pagination type.
+    private PaginationType defaultPaginationType;
+    // A field with a unique value per document, added to the sort of search-after requests so no two hits tie.
+    // Sorting on _id loads its fielddata on every shard, so an indexed copy of the ID with doc values is cheaper.
+    private String searchAfterTiebreaker;
 
     public ElasticsearchAdapter(String host, String usernameFromConfig, String passwordFromConfig) {
+        this(host, usernameFromConfig, passwordFromConfig, DEFAULT_PARTITION_PARALLELISM, DEFAULT_PAGINATION_TYPE,
+            DEFAULT_SEARCH_AFTER_TIEBREAKER);
+    }
+
+    public ElasticsearchAdapter(String host, String usernameFromConfig, String passwordFromConfig,
+            int partitionParallelism, PaginationType defaultPaginationType, String searchAfterTiebreaker) {
         super("Elasticsearch", host, usernameFromConfig, passwordFromConfig);
+        this.partitionParallelism = Math.max(1, partitionParallelism);
+        this.defaultPaginationType = defaultPaginationType;
+        this.searchAfterTiebreaker = searchAfterTiebreaker;
 
         // Expect host to be "host", "username@host", or "username:password@host" (ending with optional ":port")
         String[] hostAndAuthData = host.split("@");
@@ -96,61 +134,281 @@ public class ElasticsearchAdapter extends QueryAdapter {
 
         SearchRequest request = ElasticsearchQueryConverter.convertQuery(query);
         boolean bigLimit = (query.getLimitClause() != null && query.getLimitClause().getLimit() > ElasticsearchQueryConverter.MAX_QUERY_LIMIT);
+        Mono<TabularQueryResult> collectedResults;
+
+        if (ElasticsearchQueryConverter.isCompositeQuery(query)) {
+            collectedResults = searchComposite(query).map(TabularQueryResult::new);
+        } else if (bigLimit && query.getAggregateClauses() != null && !query.getAggregateClauses().isEmpty()) {
+            collectedResults = (findTermsAggregation(request) != null ? searchPartitions(query) :
+                search(request).map(response -> ElasticsearchResultsConverter.convertResults(query, response)))
+                .map(TabularQueryResult::new);
+        } else if (bigLimit) {
+            // Read every page of hits straight into one columnar result.
+            collectedResults = pageResponses(query, request).reduceWith(ColumnarQueryResult::builder,
+                ElasticsearchResultsConverter::appendHits).map(ColumnarQueryResult.Builder::build);
+        } else {
+            log.debug("ES Search Request: " + request.toString());
+            collectedResults = search(request).map(response -> ElasticsearchResultsConverter.convertResultsToTable(
+                query, response));
+        }
+
+        return collectedResults.map(result -> {
+            log.debug("Returning " + result.getData().size() + " results!");
+            return result;
+        });
+    }
+
+    @Override
+    public Flux<Map<String, Object>> executeStreaming(Query query) {
+        boolean bigLimit = (query.getLimitClause() != null && query.getLimitClause().getLimit() > ElasticsearchQueryConverter.MAX_QUERY_LIMIT);
+        boolean hasAggregations = query.getAggregateClauses() != null && !query.getAggregateClauses().isEmpty();
+
+        // Only paging through the search hits gives more than one page of results to stream.
+        if (!bigLimit || hasAggregations || query.isDistinct()) {
+            return super.executeStreaming(query);
+        }
+
+        verifyQueryTablesExist(query);
+        log.debug("Neon query: " + query.toString());
+        return pageHits(query, ElasticsearchQueryConverter.convertQuery(query));
+    }
+
+    @Override
+    public boolean canStreamJson(Query query) {
+        // Only the sources of search hits are written as they are returned by Elasticsearch.
+        return ElasticsearchResultsConverter.isHitsQuery(query);
+    }
+
+    @Override
+    public Flux<DataBuffer> executeStreamingJson(Query query, DataBufferFactory bufferFactory, ObjectMapper mapper) {
+        if (!canStreamJson(query)) {
+            return super.executeStreamingJson(query, bufferFactory, mapper);
+        }
+
+        verifyQueryTablesExist(query);
+        log.debug("Neon query: " + query.toString());
+        boolean bigLimit = (query.getLimitClause() != null && query.getLimitClause().getLimit() > ElasticsearchQueryConverter.MAX_QUERY_LIMIT);
+        SearchRequest request = ElasticsearchQueryConverter.convertQuery(query);
+        Flux<SearchResponse> responses = bigLimit ? pageResponses(query, request) : search(request).flux();
+        // Each page of hits is written into one buffer, released if it is discarded before it is written.
+        return responses.map(response -> ElasticsearchResultsConverter.writeHits(response, bufferFactory))
+            .doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release);
+    }
+
+    @Override
+    public Mono<FieldRange> getFieldRange(Query query, FieldClause fieldClause) {
+        verifyQueryTablesExist(query);
+        SearchRequest request = ElasticsearchQueryConverter.convertFieldRangeQuery(query, fieldClause);
+        logQuery(query, request);
+        return search(request).map(ElasticsearchResultsConverter::convertFieldRangeResults);
+    }
+
+    @Override
+    public Mono<TabularQueryResult> executeBinned(Query query, List<BinClause> binClauses) {
+        // Only aggregations are binned: search hits carry their _id, whose values are not kept for each bin.  Range
+        // aggregations bin one field, so a grid of two fields is clustered by the server.
+        boolean hasAggregations = query.getAggregateClauses() != null && !query.getAggregateClauses().isEmpty();
+        if (binClauses.size() != 1 || !hasAggregations || query.isDistinct()) {
+            return Mono.empty();
+        }
+
+        verifyQueryTablesExist(query);
+        SearchRequest request = ElasticsearchQueryConverter.convertBinnedQuery(query, binClauses.get(0));
+        logQuery(query, request);
+        return search(request).map(response -> ElasticsearchResultsConverter.convertBinnedResults(query,
+            binClauses.get(0), response));
+    }
+
+    /**
+     * Pages through the search hits for the given over-limit query using the query's pagination type (or the
+     * default), emitting each hit as its page arrives.
+     */
+    private Flux<Map<String, Object>> pageHits(Query query, SearchRequest request) {
+        // Prefetch a single page so the next page is not requested until the current page has been consumed.
+        return pageResponses(query, request).concatMapIterable(ElasticsearchResultsConverter::extractHitsFromResults,
+            1);
+    }
+
+    /**
+     * Pages through the search responses for the given over-limit query using the query's pagination type (or the
+     * default).
+     */
+    private Flux<SearchResponse> pageResponses(Query query, SearchRequest request) {
+        PaginationType paginationType = query.getPaginationType() != null ? query.getPaginationType() :
+            this.defaultPaginationType;
+        return paginationType == PaginationType.SEARCH_AFTER ? searchAfterPages(query, request) :
+            scrollPages(query, request);
+    }
+
+    /**
+     * Pages through the search hits for the given over-limit query with search_after, so no scroll context is held on
+     * the cluster between pages.  Each page is requested only after the previous page has been received.
+     */
+    private Flux<SearchResponse> searchAfterPages(Query query, SearchRequest request) {
+        int limit = query.getLimitClause().getLimit();
+        SearchSourceBuilder source = request.source();
+        boolean hasTiebreaker = source.sorts() != null && source.sorts().stream().anyMatch(sort ->
+            sort instanceof FieldSortBuilder && this.searchAfterTiebreaker.equals(
+            ((FieldSortBuilder) sort).getFieldName()));
+        if (!hasTiebreaker) {
+            source.sort(this.searchAfterTiebreaker, SortOrder.ASC);
+        }
+        source.size(Math.min(limit, ElasticsearchQueryConverter.MAX_QUERY_LIMIT));
+        log.debug("ES Search Request: " + request.toString());
+
+        // The request is serialized when it is sent and each page waits for the previous page, so the request can be
+        // updated for the next page.
+        AtomicInteger remaining = new AtomicInteger(limit);
+        return search(request).expand(response -> {
+            SearchHit[] hits = response.getHits().getHits();
+            int left = remaining.addAndGet(-hits.length);
+            if (hits.length == 0 || hits.length < source.size() || left <= 0) {
+                return Mono.empty();
+            }
+            // The offset only applies to the first page.
+            source.from(0).size(Math.min(left, ElasticsearchQueryConverter.MAX_QUERY_LIMIT))
+                .searchAfter(hits[hits.length - 1].getSortValues());
+            return search(request);
+        });
+    }
+
+    /**
+     * Scrolls through the search hits for the given over-limit query, emitting each page as it arrives.
+     */
+    private Flux<SearchResponse> scrollPages(Query query, SearchRequest request) {
+        // over limit regular query requires terminateAfter
+        request.source().terminateAfter(query.getLimitClause().getLimit());
         Scroll scroll = null;
-        if (request.searchType() == SearchType.DFS_QUERY_THEN_FETCH && bigLimit) {
+        if (request.searchType() == SearchType.DFS_QUERY_THEN_FETCH) {
             scroll = new Scroll(TimeValue.timeValueMinutes(1L));
             request.scroll(scroll);
         }
-        SearchResponse response = null;
-        TabularQueryResult results = null;
-        List<Map<String, Object>> collectedResults = null;
+        log.debug("ES Search Request: " + request.toString());
+        return scroll(request, scroll);
+    }
 
-        try {
-            if (bigLimit && query.getAggregateClauses() != null && !query.getAggregateClauses().isEmpty()) {
-                int numPartitions = query.getLimitClause().getLimit() / ElasticsearchQueryConverter.PARTITIONED_AGGREGATION_LIMIT;
-
-                TermsAggregationBuilder termsAB = null;
-                Collection<AggregationBuilder> aggregationBuilders = request.source().aggregations()
-                        .getAggregatorFactories();
-                for (AggregationBuilder aggregation : aggregationBuilders) {
-                    if (aggregation instanceof TermsAggregationBuilder) {
-                        termsAB = (TermsAggregationBuilder) aggregation;
-                    }
-                }
-                if (termsAB != null) {
-                    collectedResults = new ArrayList<>();
-                    for (int i = 0; i < numPartitions; i++) {
-                        termsAB.includeExclude(new IncludeExclude(i, numPartitions));
-                        log.debug("ES Scroll Request: " + request.toString());
-                        SearchResponse partitionResponse = this.client.search(request, RequestOptions.DEFAULT);
-                        collectedResults.addAll(ElasticsearchResultsConverter.convertResults(query, partitionResponse));
-                    }
-                    collectedResults = ElasticsearchResultsConverter.sortBuckets(query.getOrderByClauses(), collectedResults);
-                }
+    /**
+     * Runs the given aggregation query once per terms partition, with up to partitionParallelism partitions in flight
+     * at once, and merges the sorted buckets from every partition.
+     */
+    private Mono<List<Map<String, Object>>> searchPartitions(Query query) {
+        ElasticsearchResultsPlan plan = new ElasticsearchResultsPlan(query);
+        int numPartitions = query.getLimitClause().getLimit() / ElasticsearchQueryConverter.PARTITIONED_AGGREGATION_LIMIT;
+
+        // Each partition needs its own request because the partition is set on the request's terms aggregation.
+        return Flux.range(0, numPartitions).flatMapSequential(partition -> Mono.defer(() -> {
+            SearchRequest request = ElasticsearchQueryConverter.convertQuery(query);
+            findTermsAggregation(request).includeExclude(new IncludeExclude(partition, numPartitions));
+            log.debug("ES Partition Request: " + request.toString());
+            return search(request);
+        }).map(response -> ElasticsearchResultsConverter.convertResults(plan, response)), this.partitionParallelism)
+            .collectList()
+            .map(partitions -> ElasticsearchResultsConverter.mergeSortedBuckets(query.getOrderByClauses(), partitions));
+    }
+
+    /**
+     * Pages through the groups (or distinct values) of the given composite query in order with the after_key of each
+     * page of its composite aggregation, so ES returns flat pages of sorted groups.  The groups before the query's
+     * offset are skipped with pages of their keys alone, and the pages stop at the query's limit.
+     */
+    private Mono<List<Map<String, Object>>> searchComposite(Query query) {
+        int offset = query.getOffsetClause() != null ? query.getOffsetClause().getOffset() : 0;
+        int limit = query.getLimitClause() != null && query.getLimitClause().getLimit() > 0 ?
+            query.getLimitClause().getLimit() : ElasticsearchQueryConverter.MAX_QUERY_LIMIT;
+        AtomicInteger skipped = new AtomicInteger(offset);
+        AtomicInteger remaining = new AtomicInteger(limit);
+        ElasticsearchResultsPlan plan = new ElasticsearchResultsPlan(query);
+        return searchCompositePage(plan, null, skipped, remaining)
+            .expand(page -> page.getAfterKey() == null ? Mono.empty() :
+                searchCompositePage(plan, page.getAfterKey(), skipped, remaining))
+            .concatMapIterable(CompositePage::getRows)
+            .collectList();
+    }
+
+    private Mono<CompositePage> searchCompositePage(ElasticsearchResultsPlan plan, Map<String, Object> afterKey,
+            AtomicInteger skipped, AtomicInteger remaining) {
+        Query query = plan.getQuery();
+        boolean skip = skipped.get() > 0;
+        int size = Math.min(skip ? skipped.get() : remaining.get(), ElasticsearchQueryConverter.COMPOSITE_PAGE_SIZE);
+        SearchRequest request = ElasticsearchQueryConverter.convertCompositeQuery(query, size, afterKey, skip);
+        log.debug("ES Composite Request: " + request.toString());
+        return search(request).map(response -> {
+            CompositeAggregation composite = response.getAggregations().get(
+                ElasticsearchQueryConverter.COMPOSITE_AGG_NAME);
+            int count = composite.getBuckets().size();
+            List<Map<String, Object>> rows = Collections.emptyList();
+            if (skip) {
+                skipped.addAndGet(-count);
             } else {
-                // over limit regular query requires terminateAfter
-                if (bigLimit) {
-                    request.source().terminateAfter(query.getLimitClause().getLimit());
-                }
-                log.debug("ES Search Request: " + request.toString());
-                response = this.client.search(request, RequestOptions.DEFAULT);
+                remaining.addAndGet(-count);
+                rows = ElasticsearchResultsConverter.convertCompositeResults(plan, response);
             }
+            boolean last = count < size || remaining.get() <= 0;
+            return new CompositePage(rows, last ? null : composite.afterKey());
+        });
+    }
+
+    /**
+     * The rows of one page of a composite query and the key of its last group, or null if it is the last page.
+     */
+    @Value
+    private static class CompositePage {
+        List<Map<String, Object>> rows;
+        Map<String, Object> afterKey;
+    }
 
-            if (bigLimit && response != null) {
-                collectedResults = ElasticsearchResultsConverter.getScrolledResults(scroll, response, this.client);
+    private static TermsAggregationBuilder findTermsAggregation(SearchRequest request) {
+        TermsAggregationBuilder termsAB = null;
+        Collection<AggregationBuilder> aggregationBuilders = request.source().aggregations().getAggregatorFactories();
+        for (AggregationBuilder aggregation : aggregationBuilders) {
+            if (aggregation instanceof TermsAggregationBuilder) {
+                termsAB = (TermsAggregationBuilder) aggregation;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+        return termsAB;
+    }
 
-        if (collectedResults != null) {
-            results = new TabularQueryResult(collectedResults);
-        } else if (response != null) {
-            results = new TabularQueryResult(ElasticsearchResultsConverter.convertResults(query, response));
+    @Override
+    public void close() {
+        try {
+            client.close();
+        } catch (IOException e) {
+            logError("Close", e);
         }
+    }
 
-        log.debug("Returning " + results.getData().size() + " results!");
-        return Mono.just(results);
+    private Mono<SearchResponse> search(SearchRequest request) {
+        return Mono.create(sink -> client.searchAsync(request, RequestOptions.DEFAULT,
+            ActionListener.wrap(sink::success, sink::error)));
+    }
+
+    /**
+     * Runs the given scroll request and emits each page of the scroll until an empty page is returned, then clears the
+     * scroll context.  Each page is requested only after the previous page has been received.
+     */
+    private Flux<SearchResponse> scroll(SearchRequest request, Scroll scroll) {
+        AtomicReference<String> scrollId = new AtomicReference<>();
+        return search(request).expand(response -> {
+            scrollId.set(response.getScrollId());
+            if (scroll == null || response.getHits().getHits() == null || response.getHits().getHits().length == 0) {
+                return Mono.empty();
+            }
+            SearchScrollRequest scrollRequest = new SearchScrollRequest(response.getScrollId());
+            scrollRequest.scroll(scroll);
+            return Mono.<SearchResponse>create(sink -> client.scrollAsync(scrollRequest, RequestOptions.DEFAULT,
+                ActionListener.wrap(sink::success, sink::error)));
+        }).doFinally(signal -> clearScroll(scrollId.get()));
+    }
+
+    private void clearScroll(String scrollId) {
+        if (scrollId == null) {
+            return;
+        }
+        ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+        clearScrollRequest.addScrollId(scrollId);
+        client.clearScrollAsync(clearScrollRequest, RequestOptions.DEFAULT, ActionListener.wrap(
+            response -> log.debug("ES Scroll Cleared: " + scrollId),
+            e -> logError("Clear Scroll", e)));
     }
 
     // TODO: generalize getting flux further?
@@ -478,31 +736,47 @@ public class ElasticsearchAdapter extends QueryAdapter {
     }
 
     private void processResponse(MonoSink<ActionResult> sink, DocWriteResponse response) {
-        String statusText = "";
-        boolean responseFailed = false;
-        switch (response.getResult()) {
-            case CREATED:
-                statusText = "created successfully";
-                break;
-            case UPDATED:
-                statusText = "updated successfully";
-                break;
-            case DELETED:
-                statusText = "deleted successfully";
-                break;
-            case NOOP:
-                statusText = "no operation needed";
-                break;
-            case NOT_FOUND:
-                statusText = "not found";
-                responseFailed = true;
-                break;
-        }
-        String responseText = "Index " + response.getIndex() + " ID " + response.getId() +
-                " " + statusText + ".";
-        List<String> documentErrors = responseFailed ? new ArrayList<String>() {{
-            add(responseText);
-        }} : new ArrayList<String>();
-        sink.success(new ActionResult(responseText, documentErrors));
+        sink.success(ElasticsearchResultsConverter.convertWriteResponse(response));
+    }
+
+    @Override
+    public Mono<List<ActionResult>> mutateDataBatch(List<MutateQuery> mutateQueries) {
+        return executeBulk(mutateQueries.stream().map(ElasticsearchQueryConverter::convertMutationByIdQuery)
+            .collect(Collectors.toList()));
+    }
+
+    @Override
+    public Mono<List<ActionResult>> insertDataBatch(List<MutateQuery> mutateQueries) {
+        return executeBulk(mutateQueries.stream().map(ElasticsearchQueryConverter::convertMutationInsertQuery)
+            .collect(Collectors.toList()));
+    }
+
+    @Override
+    public Mono<List<ActionResult>> deleteDataBatch(List<MutateQuery> mutateQueries) {
+        return executeBulk(mutateQueries.stream().map(ElasticsearchQueryConverter::convertMutationDeleteByIdQuery)
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Sends the given requests in one bulk request and returns the result of each request, in order.
+     */
+    private Mono<List<ActionResult>> executeBulk(List<? extends DocWriteRequest<?>> requests) {
+        BulkRequest bulkRequest = new BulkRequest();
+        requests.forEach(bulkRequest::add);
+        logQuery(null, bulkRequest);
+
+        return Mono.create(sink -> {
+            client.bulkAsync(bulkRequest, RequestOptions.DEFAULT, new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse bulkResponse) {
+                    sink.success(ElasticsearchResultsConverter.convertBulkResults(bulkResponse));
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    sink.error(e);
+                }
+            });
+        });
     }
 }
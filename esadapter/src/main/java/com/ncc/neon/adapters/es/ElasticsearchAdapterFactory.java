@@ -5,6 +5,7 @@ import java.util.Map;
 import com.ncc.neon.adapters.QueryAdapter;
 import com.ncc.neon.adapters.QueryAdapterFactory;
 import com.ncc.neon.models.ConnectionInfo;
+import com.ncc.neon.models.queries.PaginationType;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.PropertySource;
@@ -14,13 +15,26 @@ import org.springframework.stereotype.Component;
 @PropertySource(value="classpath:server.properties",ignoreResourceNotFound=true)
 public class ElasticsearchAdapterFactory extends QueryAdapterFactory {
 
-    public ElasticsearchAdapterFactory(final @Value("#{${elasticsearch.auth:{}}}") Map<String, String> authCollection) {
+    private int partitionParallelism;
+    private PaginationType paginationType;
+    private String searchAfterTiebreaker;
+
+    public ElasticsearchAdapterFactory(final @Value("#{${elasticsearch.auth:{}}}") Map<String, String> authCollection,
+            final @Value("${elasticsearch.partition-parallelism:" + ElasticsearchAdapter.DEFAULT_PARTITION_PARALLELISM +
+            "}") int partitionParallelism,
+            final @Value("${elasticsearch.pagination:scroll}") String paginationType,
+            final @Value("${elasticsearch.search-after-tiebreaker:" +
+            ElasticsearchAdapter.DEFAULT_SEARCH_AFTER_TIEBREAKER + "}") String searchAfterTiebreaker) {
         super("Elasticsearch", authCollection);
+        this.partitionParallelism = partitionParallelism;
+        this.paginationType = PaginationType.fromName(paginationType);
+        this.searchAfterTiebreaker = searchAfterTiebreaker;
     }
 
     @Override
     public QueryAdapter buildAdapter(String host, String username, String password) {
-        return new ElasticsearchAdapter(host, username, password);
+        return new ElasticsearchAdapter(host, username, password, this.partitionParallelism, this.paginationType,
+            this.searchAfterTiebreaker);
     }
 
     @Override
@@ -17,10 +17,15 @@ import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeValuesSourceBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.TermsValuesSourceBuilder;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 import org.elasticsearch.search.aggregations.metrics.stats.StatsAggregationBuilder;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregatorBuilders;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.elasticsearch.search.sort.SortBuilder;
@@ -30,7 +35,10 @@ import org.elasticsearch.search.sort.SortOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
@@ -42,6 +50,16 @@ public class ElasticsearchQueryConverter {
     static final int PARTITIONED_AGGREGATION_LIMIT = 1000;
     static final String STATS_AGG_PREFIX = "_statsFor_";
     static final String TERM_PREFIX = "_term";
+    static final String BINS_AGG_NAME = "_bins";
+    static final String MIN_AGG_NAME = "_min";
+    static final String MAX_AGG_NAME = "_max";
+    static final String DISTINCT_COUNT_AGG_NAME = "_distinctCount";
+    static final String COMPOSITE_AGG_NAME = "_groups";
+    static final String BUCKET_SORT_AGG_NAME = "_page";
+    // The most groups in each page of a composite aggregation.
+    static final int COMPOSITE_PAGE_SIZE = 1000;
+    // Cardinality aggregations count up to this many distinct values almost exactly (the most allowed by ES).
+    static final int CARDINALITY_PRECISION_THRESHOLD = 40000;
 
     public ElasticsearchQueryConverter() {
     }
@@ -64,6 +82,99 @@ public class ElasticsearchQueryConverter {
         return request;
     }
 
+    /**
+     * Returns whether the groups (or distinct values) of the given query can be paged in order with a composite
+     * aggregation:  the query is distinct, or it groups only by fields, orders only by its groups, and counts only the
+     * documents of its last group (since every group of a composite bucket has the bucket's count).
+     */
+    public static boolean isCompositeQuery(Query query) {
+        if (query.isDistinct()) {
+            return query.getAggregateClauses().isEmpty() && query.getGroupByClauses().isEmpty() &&
+                collectFields(query).size() == 1;
+        }
+        List<GroupByClause> groupByClauses = query.getGroupByClauses();
+        if (query.getAggregateClauses().isEmpty() || groupByClauses.isEmpty() ||
+                !groupByClauses.stream().allMatch(groupClause -> groupClause instanceof GroupByFieldClause)) {
+            return false;
+        }
+        List<String> groups = groupByClauses.stream().map(GroupByClause::getField).collect(Collectors.toList());
+        String lastGroup = groups.get(groups.size() - 1);
+        boolean ordersByGroups = query.getOrderByClauses().stream().allMatch(orderClause ->
+            orderClause instanceof OrderByFieldClause && groups.contains(orderClause.getFieldOrOperation()));
+        boolean countsLastGroup = query.getAggregateClauses().stream().filter(aggClause ->
+            !(aggClause instanceof AggregateByTotalCountClause) && aggClause.getOperation().equals("count"))
+            .map(aggClause -> aggClause instanceof AggregateByGroupCountClause ?
+                ((AggregateByGroupCountClause) aggClause).getGroup() : ((AggregateByFieldClause) aggClause).getField())
+            .allMatch(group -> group.equals(lastGroup) || !groups.contains(group));
+        return ordersByGroups && countsLastGroup;
+    }
+
+    /**
+     * Returns the request for a page of the groups (or distinct values) of the given composite query (see
+     * isCompositeQuery) that starts after the given key of the previous page, or at the first group if the key is
+     * null.  The groups are sorted by the query's order clauses, then by its other groups.  A page of groups that are
+     * skipped to reach the query's offset needs no metric aggregations.
+     */
+    public static SearchRequest convertCompositeQuery(Query query, int size, Map<String, Object> afterKey,
+            boolean skip) {
+        SearchSourceBuilder source = createSourceBuilderWithState(query).from(0).size(0);
+
+        List<String> groups = query.isDistinct() ? collectFields(query) : query.getGroupByClauses().stream()
+            .map(GroupByClause::getField).collect(Collectors.toList());
+        Map<String, SortOrder> orders = new LinkedHashMap<>();
+        query.getOrderByClauses().stream().filter(orderClause -> groups.contains(orderClause.getFieldOrOperation()))
+            .forEach(orderClause -> orders.putIfAbsent(orderClause.getFieldOrOperation(),
+                orderClause.getOrder() == Order.ASCENDING ? SortOrder.ASC : SortOrder.DESC));
+        groups.forEach(group -> orders.putIfAbsent(group, SortOrder.ASC));
+
+        List<CompositeValuesSourceBuilder<?>> sources = orders.entrySet().stream().map(entry ->
+            new TermsValuesSourceBuilder(entry.getKey()).field(entry.getKey()).order(entry.getValue()))
+            .collect(Collectors.toList());
+        CompositeAggregationBuilder composite = AggregationBuilders.composite(COMPOSITE_AGG_NAME, sources).size(size);
+        if (afterKey != null) {
+            composite.aggregateAfter(afterKey);
+        }
+        if (!skip) {
+            getMetricAggregations(query).forEach(composite::subAggregation);
+        }
+        source.aggregation(composite);
+
+        return createSearchRequest(source, query);
+    }
+
+    /**
+     * Returns the request for the smallest value, largest value, and number of distinct values of the given field in
+     * the documents of the given query.
+     */
+    public static SearchRequest convertFieldRangeQuery(Query query, FieldClause fieldClause) {
+        SearchSourceBuilder source = createSourceBuilderWithState(query).from(0).size(0);
+        // The first term ordered by key is exact across shards, like the groups of the query.
+        source.aggregation(AggregationBuilders.terms(MIN_AGG_NAME).field(fieldClause.getField()).size(1)
+            .order(BucketOrder.key(true)));
+        source.aggregation(AggregationBuilders.terms(MAX_AGG_NAME).field(fieldClause.getField()).size(1)
+            .order(BucketOrder.key(false)));
+        source.aggregation(AggregationBuilders.cardinality(DISTINCT_COUNT_AGG_NAME).field(fieldClause.getField())
+            .precisionThreshold(CARDINALITY_PRECISION_THRESHOLD));
+        return createSearchRequest(source, query);
+    }
+
+    /**
+     * Returns the request for the documents of the given query aggregated into the given bins, each keyed by its index,
+     * instead of grouped by the bins' field.
+     */
+    public static SearchRequest convertBinnedQuery(Query query, BinClause binClause) {
+        SearchSourceBuilder source = createSourceBuilderWithState(query).from(0).size(0);
+        RangeAggregationBuilder bins = AggregationBuilders.range(BINS_AGG_NAME).field(binClause.getField());
+        for (int index = 0; index < binClause.getRanges().size(); index++) {
+            double[] range = binClause.getRanges().get(index);
+            // An ES range excludes its end, but a bin includes it.
+            bins.addRange(String.valueOf(index), range[0], Math.nextUp(range[1]));
+        }
+        getMetricAggregations(query).forEach(bins::subAggregation);
+        source.aggregation(bins);
+        return createSearchRequest(source, query);
+    }
+
     public static List<String> collectFields(Query query) {
         return query.getSelectClause().getFieldClauses().stream()
             .filter(fieldClause -> fieldClause.getDatabase().equals(query.getSelectClause().getDatabase()) &&
@@ -272,6 +383,21 @@ public class ElasticsearchQueryConverter {
                 lastBucketAgg.subAggregation(metricAggregation);
             });
 
+            // ES sorts the buckets by the query's aggregations and slices them, so only the query's buckets are returned.
+            // Each shard returns as many buckets as an unsliced query, so the top buckets are not missed (or their
+            // aggregations undercounted) when they are not in the top buckets of every shard.
+            BucketOrder bucketOrder = convertBucketOrder(query);
+            if (bucketOrder != null) {
+                int offset = query.getOffsetClause() != null ? query.getOffsetClause().getOffset() : 0;
+                int limit = getBucketLimit(query);
+                ((TermsAggregationBuilder) lastBucketAgg).order(bucketOrder).size(offset + limit)
+                    .shardSize(MAX_QUERY_LIMIT);
+                if (offset > 0) {
+                    lastBucketAgg.subAggregation(PipelineAggregatorBuilders.bucketSort(BUCKET_SORT_AGG_NAME,
+                        Collections.emptyList()).from(offset).size(limit));
+                }
+            }
+
             // on each aggregation, except the last - nest the next aggregation
             for (int index = 0; index < bucketAggs.size() - 1; index++) {
                 AggregationBuilder bucketAgg = bucketAggs.get(index);
@@ -295,6 +421,71 @@ public class ElasticsearchQueryConverter {
         }
     }
 
+    /**
+     * Returns whether the buckets of the given query are sorted and sliced by ES (see convertBucketOrder), so they are
+     * returned in order without the buckets outside its offset and limit.
+     */
+    public static boolean isBucketOrderQuery(Query query) {
+        return convertBucketOrder(query) != null;
+    }
+
+    /**
+     * Returns the order of the buckets of the given query if they can be sorted by ES, or null otherwise:  the query
+     * groups by one field and orders by its aggregations (the bucket counts and the stats aggregations) and its group,
+     * and its offset and limit are within the most buckets of one terms aggregation.
+     */
+    private static BucketOrder convertBucketOrder(Query query) {
+        List<GroupByClause> groupByClauses = query.getGroupByClauses();
+        if (query.isDistinct() || query.getAggregateClauses().isEmpty() || groupByClauses.size() != 1 ||
+                !(groupByClauses.get(0) instanceof GroupByFieldClause)) {
+            return null;
+        }
+        int offset = query.getOffsetClause() != null ? query.getOffsetClause().getOffset() : 0;
+        if (offset + getBucketLimit(query) > MAX_QUERY_LIMIT) {
+            return null;
+        }
+
+        String group = groupByClauses.get(0).getField();
+        List<BucketOrder> orders = new ArrayList<>();
+        boolean ordersByAggregation = false;
+        for (OrderByClause orderClause : query.getOrderByClauses()) {
+            boolean ascending = orderClause.getOrder() == Order.ASCENDING;
+            if (orderClause instanceof OrderByFieldClause && group.equals(orderClause.getFieldOrOperation())) {
+                orders.add(BucketOrder.key(ascending));
+                continue;
+            }
+            AggregateClause aggClause = query.getAggregateClauses().stream().filter(clause ->
+                clause.getLabel().equals(orderClause.getFieldOrOperation())).findFirst().orElse(null);
+            if (aggClause == null) {
+                return null;
+            }
+            ordersByAggregation = true;
+            if (aggClause.getOperation().equals("count")) {
+                String countedGroup = aggClause instanceof AggregateByGroupCountClause ?
+                    ((AggregateByGroupCountClause) aggClause).getGroup() : aggClause instanceof AggregateByFieldClause ?
+                    ((AggregateByFieldClause) aggClause).getField() : null;
+                // Any other count is the total count, which is the same in every bucket.
+                if (group.equals(countedGroup)) {
+                    orders.add(BucketOrder.count(ascending));
+                }
+            } else if (Arrays.asList("avg", "max", "min", "sum").contains(aggClause.getOperation())) {
+                orders.add(BucketOrder.aggregation(STATS_AGG_PREFIX + ((AggregateByFieldClause) aggClause).getField(),
+                    aggClause.getOperation(), ascending));
+            } else {
+                return null;
+            }
+        }
+        if (!ordersByAggregation || orders.isEmpty()) {
+            return null;
+        }
+        return orders.size() == 1 ? orders.get(0) : BucketOrder.compound(orders);
+    }
+
+    private static int getBucketLimit(Query query) {
+        return query.getLimitClause() != null && query.getLimitClause().getLimit() > 0 ?
+            query.getLimitClause().getLimit() : MAX_QUERY_LIMIT;
+    }
+
     private static List<StatsAggregationBuilder> getMetricAggregations(Query query) {
         if (query.getAggregateClauses() != null) {
             return query.getAggregateClauses().stream().filter(aggClause ->
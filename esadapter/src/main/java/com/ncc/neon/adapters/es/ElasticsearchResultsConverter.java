@@ -1,66 +1,91 @@
 package com.ncc.neon.adapters.es;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.stream.Collectors;
 
-import com.ncc.neon.models.queries.AggregateByFieldClause;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.ncc.neon.models.queries.AggregateClause;
-import com.ncc.neon.models.queries.AggregateByGroupCountClause;
-import com.ncc.neon.models.queries.AggregateByTotalCountClause;
+import com.ncc.neon.models.queries.BinClause;
 import com.ncc.neon.models.queries.GroupByClause;
-import com.ncc.neon.models.queries.GroupByFieldClause;
-import com.ncc.neon.models.queries.GroupByOperationClause;
 import com.ncc.neon.models.queries.Query;
 import com.ncc.neon.models.queries.OrderByClause;
 import com.ncc.neon.models.queries.OrderByFieldClause;
-
-import org.elasticsearch.action.search.ClearScrollRequest;
+import com.ncc.neon.models.results.ActionResult;
+import com.ncc.neon.models.results.ColumnarQueryResult;
+import com.ncc.neon.models.results.FieldRange;
+import com.ncc.neon.models.results.TabularQueryResult;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.action.search.SearchScrollRequest;
-import org.elasticsearch.client.RequestOptions;
-import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.search.DocValueFormat;
-import org.elasticsearch.search.Scroll;
+import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.aggregations.Aggregation;
 import org.elasticsearch.search.aggregations.Aggregations;
 import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
 import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation.Bucket;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregation;
+import org.elasticsearch.search.aggregations.bucket.range.Range;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
 import org.elasticsearch.search.aggregations.metrics.stats.InternalStats;
 import org.elasticsearch.search.aggregations.metrics.stats.Stats;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class ElasticsearchResultsConverter {
 
+    private static final byte[] EMPTY_SOURCE = "{}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HIT_ID_FIELD = "\"_id\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HIT_END = "\"}\n".getBytes(StandardCharsets.UTF_8);
+    // The bytes written for each hit beyond its source, enough for the _id field of most hits.
+    private static final int HIT_ID_CAPACITY = 32;
+
     /*
      * A small class to hold the important information about an aggregation bucket
      * between when the buckets are taken out of ElasticSearch's hierarchical
      * arrangement and when everything can be extracted into the format that the
      * Neon API uses.
      */
+    @AllArgsConstructor
     @Data
     private static class TransformedAggregationBucket {
-        private Map<String, Aggregation> aggregatedValues = new LinkedHashMap<>();
-        private Map<String, TransformedAggregationData> groupByKeys = new LinkedHashMap<>();
+        private GroupKeys groupByKeys;
+        private Map<String, Aggregation> aggregatedValues;
         // TODO Deprecated
         private long docCount;
     }
 
-    @AllArgsConstructor
-    @Data
-    private static class TransformedAggregationData {
-        private long count;
-        private Object value;
+    /*
+     * The value and document count of each group of a bucket, in the order of the
+     * keys of the query's extraction plan.  Buckets with equal group keys are combined.
+     */
+    @Value
+    private static class GroupKeys {
+        Object[] values;
+        long[] counts;
     }
 
     public ElasticsearchResultsConverter() {
@@ -71,6 +96,15 @@ public class ElasticsearchResultsConverter {
     }
 
     public static List<Map<String, Object>> convertResults(Query query, SearchResponse response) {
+        return convertResults(new ElasticsearchResultsPlan(query), response);
+    }
+
+    /**
+     * Returns the converted results of the query of the given plan, which may be reused for every response of the
+     * query.
+     */
+    static List<Map<String, Object>> convertResults(ElasticsearchResultsPlan plan, SearchResponse response) {
+        Query query = plan.getQuery();
         List<AggregateClause> aggregateClauses = query.getAggregateClauses();
         List<GroupByClause> groupByClauses = query.getGroupByClauses();
 
@@ -79,16 +113,20 @@ public class ElasticsearchResultsConverter {
         List<Map<String, Object>> results;
 
         if (aggregateClauses.size() > 0 && groupByClauses.size() == 0) {
-            Map<String, Object> metrics = extractMetrics(aggregateClauses, aggregationResults != null ? aggregationResults.asMap() : null,
+            Map<String, Object> metrics = new HashMap<>();
+            plan.putMetrics(metrics, aggregationResults != null ? aggregationResults.asMap() : null, null,
                 response.getHits().getTotalHits());
             results = Arrays.asList(metrics);
         } else if (aggregateClauses.size() > 0 && groupByClauses.size() > 0) {
-            List<TransformedAggregationBucket> buckets = extractBuckets(groupByClauses,
+            List<TransformedAggregationBucket> buckets = extractBuckets(plan,
                 (MultiBucketsAggregation) aggregationResults.asList().get(0));
             buckets = combineDuplicateBuckets(buckets);
-            List<Map<String, Object>> extractedMetrics = extractMetricsFromBuckets(aggregateClauses, buckets, response.getHits().getTotalHits());
-            extractedMetrics = sortBuckets(query.getOrderByClauses(), extractedMetrics);
-            extractedMetrics = limitBuckets(extractedMetrics, query);
+            List<Map<String, Object>> extractedMetrics = extractMetricsFromBuckets(plan, buckets, response.getHits().getTotalHits());
+            // Buckets ordered by their aggregations were already sorted and sliced by ES.
+            if (!plan.isBucketOrder()) {
+                extractedMetrics = sortBuckets(query.getOrderByClauses(), extractedMetrics);
+                extractedMetrics = limitBuckets(extractedMetrics, query);
+            }
             results = extractedMetrics;
         } else if (query.isDistinct()) {
             results = extractDistinct(query, (MultiBucketsAggregation) aggregationResults.asList().get(0));
@@ -99,39 +137,168 @@ public class ElasticsearchResultsConverter {
         return results;
     }
 
-    public static List<Map<String, Object>> getScrolledResults(Scroll scroll, SearchResponse response,
-                                                               RestHighLevelClient client) throws IOException {
-        List<Map<String, Object>> allHits = new ArrayList<>();
-        if (response == null) {
-            return allHits;
+    /**
+     * Returns the converted results of the given query as a table, which is columnar if the results are search hits.
+     */
+    public static TabularQueryResult convertResultsToTable(Query query, SearchResponse response) {
+        return isHitsQuery(query) ? extractHits(response) : new TabularQueryResult(convertResults(query, response));
+    }
+
+    static boolean isHitsQuery(Query query) {
+        return query.getAggregateClauses().size() == 0 && !query.isDistinct();
+    }
+
+    public static List<Map<String, Object>> extractHitsFromResults(SearchResponse response) {
+        return extractHits(response).getData();
+    }
+
+    public static ColumnarQueryResult extractHits(SearchResponse response) {
+        return appendHits(ColumnarQueryResult.builder(), response).build();
+    }
+
+    /**
+     * Adds a row for each search hit in the given response to the given builder.  The hit's source is read directly
+     * into the columns without copying it into another map.
+     */
+    public static ColumnarQueryResult.Builder appendHits(ColumnarQueryResult.Builder builder, SearchResponse response) {
+        for (SearchHit searchHit : response.getHits().getHits()) {
+            builder.addRow();
+            searchHit.getSourceAsMap().forEach(builder::set);
+            builder.set("_id", searchHit.getId());
         }
-        String scrollId = response.getScrollId();
-        allHits.addAll(ElasticsearchResultsConverter.extractHitsFromResults(response));
-
-        while (response.getHits().getHits() != null && response.getHits().getHits().length > 0) {
-            SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId);
-            scrollRequest.scroll(scroll);
-            response = client.scroll(scrollRequest, RequestOptions.DEFAULT);
-            allHits.addAll(ElasticsearchResultsConverter.extractHitsFromResults(response));
-            scrollId = response.getScrollId();
+        return builder;
+    }
+
+    /**
+     * Writes a line of JSON for each search hit in the given response into one buffer from the given factory, with
+     * the same fields as the rows of extractHits.  The hit's source is copied as the raw JSON returned by Elasticsearch
+     * with its _id spliced in as the last field, so the source is never parsed into a map or serialized again.
+     */
+    public static DataBuffer writeHits(SearchResponse response, DataBufferFactory bufferFactory) {
+        SearchHit[] searchHits = response.getHits().getHits();
+        int capacity = 0;
+        for (SearchHit searchHit : searchHits) {
+            capacity += (searchHit.getSourceRef() != null ? searchHit.getSourceRef().length() : 0) + HIT_ID_CAPACITY;
+        }
+        DataBuffer buffer = bufferFactory.allocateBuffer(Math.max(capacity, 1));
+        try {
+            for (SearchHit searchHit : searchHits) {
+                writeHit(buffer, searchHit);
+            }
+            return buffer;
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
         }
+    }
 
-        ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
-        clearScrollRequest.addScrollId(scrollId);
-        client.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
-        return allHits;
+    private static void writeHit(DataBuffer buffer, SearchHit searchHit) {
+        BytesReference source = searchHit.getSourceRef();
+        BytesRef bytes = source != null ? source.toBytesRef() : new BytesRef(EMPTY_SOURCE);
+        int start = bytes.offset;
+        int end = bytes.offset + bytes.length;
+        while (start < end && isWhitespace(bytes.bytes[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(bytes.bytes[end - 1])) {
+            end--;
+        }
+
+        // The REST client always receives JSON, but a source of any other content is written from its map.
+        if (end - start < 2 || bytes.bytes[start] != '{' || bytes.bytes[end - 1] != '}') {
+            writeHitMap(buffer, searchHit);
+            return;
+        }
+
+        int inner = start + 1;
+        while (inner < end - 1 && isWhitespace(bytes.bytes[inner])) {
+            inner++;
+        }
+        buffer.write(bytes.bytes, start, end - 1 - start);
+        if (inner < end - 1) {
+            buffer.write((byte) ',');
+        }
+        buffer.write(HIT_ID_FIELD);
+        buffer.write(JsonStringEncoder.getInstance().quoteAsUTF8(searchHit.getId()));
+        buffer.write(HIT_END);
     }
 
-    public static List<Map<String, Object>> extractHitsFromResults(SearchResponse response) {
-        return Arrays.stream(response.getHits().getHits()).map(searchHit -> {
-            // Copy the map since it may be immutable.
-            // Do not use Collectors.toMap because it does not work with null values.
-            Map<String, Object> map = new LinkedHashMap<String, Object>();
-            map.putAll(searchHit.getSourceAsMap());
-            map.put("_id", searchHit.getId());
-            return map;
-        }).collect(Collectors.toList());
+    private static void writeHitMap(DataBuffer buffer, SearchHit searchHit) {
+        Map<String, Object> row = new LinkedHashMap<>(searchHit.getSourceAsMap());
+        row.put("_id", searchHit.getId());
+        try {
+            BytesRef bytes = BytesReference.bytes(XContentFactory.jsonBuilder().map(row)).toBytesRef();
+            buffer.write(bytes.bytes, bytes.offset, bytes.length);
+            buffer.write((byte) '\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isWhitespace(byte character) {
+        return character == ' ' || character == '\n' || character == '\r' || character == '\t';
+    }
 
+    /**
+     * Returns the range of a field from the response to a field range query.
+     */
+    public static FieldRange convertFieldRangeResults(SearchResponse response) {
+        Terms min = response.getAggregations().get(ElasticsearchQueryConverter.MIN_AGG_NAME);
+        Terms max = response.getAggregations().get(ElasticsearchQueryConverter.MAX_AGG_NAME);
+        Cardinality distinctCount = response.getAggregations().get(
+            ElasticsearchQueryConverter.DISTINCT_COUNT_AGG_NAME);
+        return new FieldRange(min.getBuckets().isEmpty() ? null : min.getBuckets().get(0).getKey(),
+            max.getBuckets().isEmpty() ? null : max.getBuckets().get(0).getKey(), distinctCount.getValue());
+    }
+
+    /**
+     * Returns a row for each non-empty bin in the response to a binned query, with the index of the bin, its document
+     * count, and the query's aggregations of its documents.
+     */
+    public static TabularQueryResult convertBinnedResults(Query query, BinClause binClause, SearchResponse response) {
+        Range bins = response.getAggregations().get(ElasticsearchQueryConverter.BINS_AGG_NAME);
+        ElasticsearchResultsPlan plan = new ElasticsearchResultsPlan(query);
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Range.Bucket bin : bins.getBuckets()) {
+            if (bin.getDocCount() > 0) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put(binClause.getField(), Integer.valueOf(bin.getKeyAsString()));
+                row.put(BinClause.COUNT_KEY, bin.getDocCount());
+                plan.putMetrics(row, bin.getAggregations().asMap(), null, bin.getDocCount());
+                results.add(row);
+            }
+        }
+        return new TabularQueryResult(results);
+    }
+
+    /**
+     * Returns a row for each bucket of the composite aggregation in the response to a page of a composite query (see
+     * ElasticsearchQueryConverter.convertCompositeQuery), in the order of the buckets:  the value of each group (or the
+     * distinct value) and the query's aggregations of the bucket's documents.
+     */
+    public static List<Map<String, Object>> convertCompositeResults(Query query, SearchResponse response) {
+        return convertCompositeResults(new ElasticsearchResultsPlan(query), response);
+    }
+
+    /**
+     * Returns the rows of a page of the composite query of the given plan, which may be reused for every page.
+     */
+    static List<Map<String, Object>> convertCompositeResults(ElasticsearchResultsPlan plan, SearchResponse response) {
+        CompositeAggregation composite = response.getAggregations().get(
+            ElasticsearchQueryConverter.COMPOSITE_AGG_NAME);
+        long totalCount = response.getHits().getTotalHits();
+        // Every group of a composite bucket has the bucket's document count.
+        long[] groupCounts = new long[plan.getGroupKeyCount()];
+        List<Map<String, Object>> results = new ArrayList<>(composite.getBuckets().size());
+        for (CompositeAggregation.Bucket bucket : composite.getBuckets()) {
+            Map<String, Object> row = new LinkedHashMap<>(bucket.getKey());
+            if (!plan.getQuery().isDistinct()) {
+                Arrays.fill(groupCounts, bucket.getDocCount());
+                plan.putMetrics(row, bucket.getAggregations().asMap(), groupCounts, totalCount);
+            }
+            results.add(row);
+        }
+        return results;
     }
 
     private static List<Map<String, Object>> extractDistinct(Query query, MultiBucketsAggregation aggResult) {
@@ -189,52 +356,6 @@ public class ElasticsearchResultsConverter {
         return values;
     }
 
-    private static Map<String, Object> extractMetrics(List<AggregateClause> clauses, Map<String, Aggregation> results,
-            long totalCount) {
-        return extractMetrics(clauses, results, new LinkedHashMap<>(), totalCount);
-    }
-
-    private static Map<String, Object> extractMetrics(List<AggregateClause> clauses, Map<String, Aggregation> results,
-            Map<String, TransformedAggregationData> groupResults, long totalCount) {
-
-        Map<String, Object> metrics = clauses.stream().filter(aggClause -> !aggClause.getOperation().equals("count") &&
-            aggClause instanceof AggregateByFieldClause).map(aggClause -> (AggregateByFieldClause) aggClause)
-            .collect(Collectors.toMap(aggClause -> aggClause.getLabel(), aggClause -> {
-                Stats result = (Stats) results.get(ElasticsearchQueryConverter.STATS_AGG_PREFIX +
-                    aggClause.getField());
-                Double metric = 0.0;
-                switch (aggClause.getOperation()) {
-                    case "avg":
-                        metric = result.getAvg();
-                        break;
-                    case "max":
-                        metric = result.getMax();
-                        break;
-                    case "min":
-                        metric = result.getMin();
-                        break;
-                    case "sum":
-                        metric = result.getSum();
-                        break;
-                }
-                return metric;
-            }));
-
-        metrics.putAll(clauses.stream().filter(aggClause -> aggClause instanceof AggregateByTotalCountClause)
-            .collect(Collectors.toMap(aggClause -> aggClause.getLabel(), aggClause -> totalCount)));
-
-        metrics.putAll(clauses.stream().filter(aggClause -> !(aggClause instanceof AggregateByTotalCountClause) &&
-            aggClause.getOperation().equals("count")).collect(Collectors.toMap(aggClause -> aggClause.getLabel(),
-            aggClause -> {
-                TransformedAggregationData data = groupResults.get(aggClause instanceof AggregateByGroupCountClause ?
-                    ((AggregateByGroupCountClause) aggClause).getGroup() :
-                    ((AggregateByFieldClause) aggClause).getField());
-                return data != null ? data.getCount() : totalCount;
-            })));
-
-        return metrics;
-    }
-
     /**
      * The aggregation results from ES will be a tree of aggregation -> buckets ->
      * aggregation -> buckets -> etc we want to flatten it into a list of buckets
@@ -252,70 +373,120 @@ public class ElasticsearchResultsConverter {
      * reached the bottom of the tree we add any metric aggregations to the bucket
      * and push it onto the result list.
      */
-    private static List<TransformedAggregationBucket> extractBuckets(List<GroupByClause> groupByClauses,
+    private static List<TransformedAggregationBucket> extractBuckets(ElasticsearchResultsPlan plan,
             MultiBucketsAggregation aggregation) {
-        return extractBuckets(groupByClauses, aggregation, new LinkedHashMap<>(), new ArrayList<>());
-
+        int groupCount = plan.getGroupClauseCount();
+        List<TransformedAggregationBucket> results = new ArrayList<>();
+        extractBuckets(plan, aggregation, 0, new Object[groupCount], new long[groupCount], results);
+        return results;
     }
 
-    private static List<TransformedAggregationBucket> extractBuckets(List<GroupByClause> groupByClauses,
-            MultiBucketsAggregation aggregation, Map<String, TransformedAggregationData> accumulator,
-            List<TransformedAggregationBucket> results) {
+    /*
+     * The accumulator is the value and document count of each group clause along the
+     * current path, indexed by clause, so a branch only overwrites the groups below it
+     * and nothing is copied until a leaf is reached.
+     */
+    private static void extractBuckets(ElasticsearchResultsPlan plan, MultiBucketsAggregation aggregation,
+            int depth, Object[] values, long[] counts, List<TransformedAggregationBucket> results) {
+        for (Bucket bucket : aggregation.getBuckets()) {
+            extractBucket(plan, bucket, depth, values, counts, results);
+        }
+    }
 
-        aggregation.getBuckets().forEach(bucket -> {
-            Map<String, TransformedAggregationData> newAccumulator = new LinkedHashMap<>();
-            newAccumulator.putAll(accumulator);
-            extractBucket(groupByClauses, bucket, newAccumulator, results);
-        });
+    /**
+     * Returns the result of the given index, update, or delete of one document.  A document that was not found is
+     * reported in the record errors.
+     */
+    public static ActionResult convertWriteResponse(DocWriteResponse response) {
+        String statusText = "";
+        boolean responseFailed = false;
+        switch (response.getResult()) {
+            case CREATED:
+                statusText = "created successfully";
+                break;
+            case UPDATED:
+                statusText = "updated successfully";
+                break;
+            case DELETED:
+                statusText = "deleted successfully";
+                break;
+            case NOOP:
+                statusText = "no operation needed";
+                break;
+            case NOT_FOUND:
+                statusText = "not found";
+                responseFailed = true;
+                break;
+        }
+        String responseText = "Index " + response.getIndex() + " ID " + response.getId() +
+                " " + statusText + ".";
+        List<String> documentErrors = new ArrayList<>();
+        if (responseFailed) {
+            documentErrors.add(responseText);
+        }
+        return new ActionResult(responseText, documentErrors);
+    }
 
-        return results;
+    /**
+     * Returns the result of each request of the given bulk response, in order.  A failed request has an error.
+     */
+    public static List<ActionResult> convertBulkResults(BulkResponse response) {
+        return Arrays.stream(response.getItems()).map(item -> item.isFailed() ?
+            new ActionResult("Index " + item.getIndex() + " ID " + item.getId() + " failed: " +
+                item.getFailureMessage()) :
+            convertWriteResponse(item.getResponse())).collect(Collectors.toList());
     }
 
+    /**
+     * Returns whether the given string is an integer or a decimal number with an optional sign, like the regular
+     * expression [-+]?\d+(\.\d+)? but without matching a pattern for every string.
+     */
     public static boolean isNumeric(String inputData) {
-        return inputData.matches("[-+]?\\d+(\\.\\d+)?");
+        int length = inputData.length();
+        int index = length > 0 && (inputData.charAt(0) == '-' || inputData.charAt(0) == '+') ? 1 : 0;
+        int integerStart = index;
+        while (index < length && isDigit(inputData.charAt(index))) {
+            index++;
+        }
+        if (index == integerStart) {
+            return false;
+        }
+        if (index == length) {
+            return true;
+        }
+        if (inputData.charAt(index) != '.') {
+            return false;
+        }
+        int fractionStart = ++index;
+        while (index < length && isDigit(inputData.charAt(index))) {
+            index++;
+        }
+        return index > fractionStart && index == length;
     }
 
-    private static void extractBucket(List<GroupByClause> groupByClauses, Bucket bucket,
-            Map<String, TransformedAggregationData> accumulator, List<TransformedAggregationBucket> results) {
-
-        GroupByClause currentClause = groupByClauses.get(0);
-
-        if (currentClause instanceof GroupByFieldClause) {
-            accumulator.put(currentClause.getField(), new TransformedAggregationData(bucket.getDocCount(),
-                bucket.getKey()));
-        } else if (currentClause instanceof GroupByOperationClause) {
-            // Date groups will return numbers (year=2018, month=12, day=30, etc.)
-            String key = bucket.getKeyAsString();
+    private static boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
+    }
 
-            boolean isDateClause = Arrays.asList(ElasticsearchQueryConverter.DATE_OPERATIONS)
-                    .indexOf(((GroupByOperationClause) currentClause).getOperation()) >= 0 && isNumeric(key);
+    private static void extractBucket(ElasticsearchResultsPlan plan, Bucket bucket, int depth, Object[] values,
+            long[] counts, List<TransformedAggregationBucket> results) {
 
-            accumulator.put(((GroupByOperationClause) currentClause).getLabel(), new TransformedAggregationData(
-                    bucket.getDocCount(), isDateClause ? Float.parseFloat(key) : key));
-        } else {
-            throw new RuntimeException("Bad implementation - ${currentClause.getClass()} is not a valid groupByClause");
-        }
+        values[depth] = plan.extractGroup(depth, bucket);
+        counts[depth] = bucket.getDocCount();
 
-        List<GroupByClause> tail = groupByClauses.subList(1, groupByClauses.size());
-        if (tail != null && tail.size() > 0) {
-            extractBuckets(tail, (MultiBucketsAggregation) bucket.getAggregations().asList().get(0), accumulator, results);
+        if (depth + 1 < values.length) {
+            extractBuckets(plan, (MultiBucketsAggregation) bucket.getAggregations().asList().get(0), depth + 1, values,
+                counts, results);
         } else {
-            TransformedAggregationBucket transformedAggregationBucket = new TransformedAggregationBucket();
-            transformedAggregationBucket.setGroupByKeys(accumulator);
-
-            // TODO Deprecated
-            transformedAggregationBucket.setDocCount(bucket.getDocCount());
-
             Aggregations terminalAggs = bucket.getAggregations();
-            if (terminalAggs != null) {
-                transformedAggregationBucket.getAggregatedValues().putAll(terminalAggs.asMap());
-            }
-            results.add(transformedAggregationBucket);
+            results.add(new TransformedAggregationBucket(new GroupKeys(plan.selectGroupValues(values),
+                plan.selectGroupCounts(counts)), terminalAggs != null ? terminalAggs.asMap() :
+                Collections.emptyMap(), bucket.getDocCount()));
         }
     }
 
     private static List<TransformedAggregationBucket> combineDuplicateBuckets(List<TransformedAggregationBucket> buckets) {
-        Map<Map<String, TransformedAggregationData>, TransformedAggregationBucket> mappedBuckets = new LinkedHashMap<>();
+        Map<GroupKeys, TransformedAggregationBucket> mappedBuckets = new LinkedHashMap<>();
         // Iterate over all of the buckets, looking for any that have the same
         // groupByKeys
 
@@ -328,6 +499,8 @@ public class ElasticsearchResultsConverter {
                 if (existingBucket != null) {
 
                     // If we've already found a bucket with these groupByKeys, then combine them
+                    // into a copy of its aggregations, which may be the response's own map
+                    existingBucket.setAggregatedValues(new LinkedHashMap<>(existingBucket.getAggregatedValues()));
                     bucket.getAggregatedValues().forEach((key, value) -> {
                         Aggregation existingAgg = existingBucket.getAggregatedValues().get(key);
                         Stats statsValue = (Stats) value;
@@ -362,47 +535,89 @@ public class ElasticsearchResultsConverter {
                 new LinkedHashMap<String, Object>());
     }
 
-    private static List<Map<String, Object>> extractMetricsFromBuckets(List<AggregateClause> clauses,
+    private static List<Map<String, Object>> extractMetricsFromBuckets(ElasticsearchResultsPlan plan,
             List<TransformedAggregationBucket> buckets, long totalCount) {
-
-        return buckets.stream().map(bucket -> {
-            Map<String, TransformedAggregationData> groupResults = bucket.getGroupByKeys();
-            Map<String, Object> result = groupResults.keySet().stream().collect(Collectors.toMap(key -> key,
-                key -> groupResults.get(key).getValue()));
-            result.putAll(extractMetrics(clauses, bucket.getAggregatedValues(), groupResults, totalCount));
-            return result;
-        }).collect(Collectors.toList());
+        List<Map<String, Object>> results = new ArrayList<>(buckets.size());
+        for (TransformedAggregationBucket bucket : buckets) {
+            Map<String, Object> result = new HashMap<>();
+            plan.putGroups(result, bucket.getGroupByKeys().getValues());
+            plan.putMetrics(result, bucket.getAggregatedValues(), bucket.getGroupByKeys().getCounts(), totalCount);
+            results.add(result);
+        }
+        return results;
     }
 
     public static List<Map<String, Object>> sortBuckets(List<OrderByClause> orderClauses,
             List<Map<String, Object>> buckets) {
         if (orderClauses != null && orderClauses.size() > 0) {
-            buckets.sort((a, b) -> {
-                for (OrderByClause orderClause : orderClauses) {
-                    Object aField = a.get(orderClause.getFieldOrOperation());
-                    Object bField = b.get(orderClause.getFieldOrOperation());
-                    int order = 0;
-
-                    if (isFieldDouble(aField.toString()) && isFieldDouble(bField.toString())) {
-                        Double aFieldAsDouble = Double.parseDouble(aField.toString());
-                        Double bFieldAsDouble = Double.parseDouble(bField.toString());
-
-                        order = orderClause.getOrder().getDirection() * (aFieldAsDouble.compareTo(bFieldAsDouble));
-                    } else {
-                        order = orderClause.getOrder().getDirection() * (aField.toString().compareTo(bField.toString()));
-                    }
-
-                    if (order != 0) {
-                        return order;
-                    }
-                }
-                return 0;
-            });
+            buckets.sort(createBucketComparator(orderClauses));
         }
 
         return buckets;
     }
 
+    /**
+     * Merges the given lists of buckets, each already sorted by sortBuckets, into one sorted list.  Equal buckets keep
+     * the order of their lists, like sorting the concatenated lists would.
+     */
+    public static List<Map<String, Object>> mergeSortedBuckets(List<OrderByClause> orderClauses,
+            List<List<Map<String, Object>>> sortedBucketLists) {
+        int size = sortedBucketLists.stream().mapToInt(List::size).sum();
+        List<Map<String, Object>> merged = new ArrayList<>(size);
+
+        if (orderClauses == null || orderClauses.size() == 0) {
+            sortedBucketLists.forEach(merged::addAll);
+            return merged;
+        }
+
+        Comparator<Map<String, Object>> bucketComparator = createBucketComparator(orderClauses);
+        // Each entry is the index of a list and the position of its next bucket.
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, sortedBucketLists.size()), (a, b) -> {
+            int order = bucketComparator.compare(sortedBucketLists.get(a[0]).get(a[1]),
+                sortedBucketLists.get(b[0]).get(b[1]));
+            return order != 0 ? order : Integer.compare(a[0], b[0]);
+        });
+        for (int i = 0; i < sortedBucketLists.size(); ++i) {
+            if (!sortedBucketLists.get(i).isEmpty()) {
+                heads.add(new int[] { i, 0 });
+            }
+        }
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Map<String, Object>> buckets = sortedBucketLists.get(head[0]);
+            merged.add(buckets.get(head[1]));
+            if (++head[1] < buckets.size()) {
+                heads.add(head);
+            }
+        }
+
+        return merged;
+    }
+
+    private static Comparator<Map<String, Object>> createBucketComparator(List<OrderByClause> orderClauses) {
+        return (a, b) -> {
+            for (OrderByClause orderClause : orderClauses) {
+                Object aField = a.get(orderClause.getFieldOrOperation());
+                Object bField = b.get(orderClause.getFieldOrOperation());
+                int order = 0;
+
+                if (isFieldDouble(aField.toString()) && isFieldDouble(bField.toString())) {
+                    Double aFieldAsDouble = Double.parseDouble(aField.toString());
+                    Double bFieldAsDouble = Double.parseDouble(bField.toString());
+
+                    order = orderClause.getOrder().getDirection() * (aFieldAsDouble.compareTo(bFieldAsDouble));
+                } else {
+                    order = orderClause.getOrder().getDirection() * (aField.toString().compareTo(bField.toString()));
+                }
+
+                if (order != 0) {
+                    return order;
+                }
+            }
+            return 0;
+        };
+    }
+
     private static boolean isFieldDouble(String input) {
         try {
             Double.parseDouble(input);
@@ -0,0 +1,218 @@
+package com.ncc.neon.adapters.es;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ncc.neon.models.queries.AggregateByFieldClause;
+import com.ncc.neon.models.queries.AggregateByGroupCountClause;
+import com.ncc.neon.models.queries.AggregateByTotalCountClause;
+import com.ncc.neon.models.queries.AggregateClause;
+import com.ncc.neon.models.queries.GroupByClause;
+import com.ncc.neon.models.queries.GroupByFieldClause;
+import com.ncc.neon.models.queries.GroupByOperationClause;
+import com.ncc.neon.models.queries.Query;
+
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation.Bucket;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * How the results of one query are extracted from its responses, compiled once from the query's clauses:  the label
+ * and resolved aggregation name of each metric, the group each count reads, and whether each group is a date
+ * operation.  The converter reuses one plan for every response (or page of responses) of the query, so the clauses
+ * are not searched again for each bucket.
+ */
+class ElasticsearchResultsPlan {
+    private static final Set<String> DATE_OPERATIONS = new HashSet<>(Arrays.asList(
+        ElasticsearchQueryConverter.DATE_OPERATIONS));
+
+    private enum Metric { AVG, MAX, MIN, SUM, ZERO, TOTAL_COUNT, GROUP_COUNT }
+
+    /**
+     * Reads the value of one aggregate clause from the aggregations of a bucket.
+     */
+    @AllArgsConstructor
+    private static class MetricExtractor {
+        private final String label;
+        private final Metric metric;
+        // The name of the stats aggregation of an avg, max, min, or sum.
+        private final String aggregationName;
+        // The index of the key of the group with the count of a group count, or -1 to use the total count.
+        private final int groupIndex;
+
+        Object extract(Map<String, Aggregation> aggregations, long[] groupCounts, long totalCount) {
+            switch (this.metric) {
+                case AVG:
+                    return ((Stats) aggregations.get(this.aggregationName)).getAvg();
+                case MAX:
+                    return ((Stats) aggregations.get(this.aggregationName)).getMax();
+                case MIN:
+                    return ((Stats) aggregations.get(this.aggregationName)).getMin();
+                case SUM:
+                    return ((Stats) aggregations.get(this.aggregationName)).getSum();
+                case ZERO:
+                    return 0.0;
+                case GROUP_COUNT:
+                    return this.groupIndex >= 0 && groupCounts != null ? groupCounts[this.groupIndex] : totalCount;
+                default:
+                    return totalCount;
+            }
+        }
+    }
+
+    @Getter
+    private final Query query;
+    @Getter
+    private final boolean bucketOrder;
+    private final MetricExtractor[] metrics;
+    private final boolean[] operations;
+    private final boolean[] dateOperations;
+    // The key of each distinct group in the rows, and the index of the last group clause with that key.
+    private final String[] keys;
+    private final int[] keyIndexes;
+
+    ElasticsearchResultsPlan(Query query) {
+        this.query = query;
+        this.bucketOrder = ElasticsearchQueryConverter.isBucketOrderQuery(query);
+
+        List<GroupByClause> groupClauses = query.getGroupByClauses();
+        this.operations = new boolean[groupClauses.size()];
+        this.dateOperations = new boolean[groupClauses.size()];
+        // Like the map of group results, a group replaces an earlier group with the same key.
+        Map<String, Integer> groupIndexes = new LinkedHashMap<>();
+        for (int index = 0; index < groupClauses.size(); index++) {
+            GroupByClause groupClause = groupClauses.get(index);
+            if (groupClause instanceof GroupByFieldClause) {
+                groupIndexes.put(groupClause.getField(), index);
+            } else if (groupClause instanceof GroupByOperationClause) {
+                GroupByOperationClause operationClause = (GroupByOperationClause) groupClause;
+                this.operations[index] = true;
+                this.dateOperations[index] = DATE_OPERATIONS.contains(operationClause.getOperation());
+                groupIndexes.put(operationClause.getLabel(), index);
+            } else {
+                throw new RuntimeException("Bad implementation - " + groupClause.getClass() +
+                    " is not a valid groupByClause");
+            }
+        }
+        this.keys = groupIndexes.keySet().toArray(new String[0]);
+        this.keyIndexes = groupIndexes.values().stream().mapToInt(Integer::intValue).toArray();
+
+        // The metrics are put into each row in the order the converter always used, so a later label still wins.
+        List<MetricExtractor> metrics = new ArrayList<>();
+        for (AggregateClause aggClause : query.getAggregateClauses()) {
+            if (!aggClause.getOperation().equals("count") && aggClause instanceof AggregateByFieldClause) {
+                metrics.add(new MetricExtractor(aggClause.getLabel(), findMetric(aggClause.getOperation()),
+                    ElasticsearchQueryConverter.STATS_AGG_PREFIX + ((AggregateByFieldClause) aggClause).getField(),
+                    -1));
+            }
+        }
+        for (AggregateClause aggClause : query.getAggregateClauses()) {
+            if (aggClause instanceof AggregateByTotalCountClause) {
+                metrics.add(new MetricExtractor(aggClause.getLabel(), Metric.TOTAL_COUNT, null, -1));
+            }
+        }
+        for (AggregateClause aggClause : query.getAggregateClauses()) {
+            if (!(aggClause instanceof AggregateByTotalCountClause) && aggClause.getOperation().equals("count")) {
+                metrics.add(new MetricExtractor(aggClause.getLabel(), Metric.GROUP_COUNT, null,
+                    Arrays.asList(this.keys).indexOf(aggClause instanceof AggregateByGroupCountClause ?
+                    ((AggregateByGroupCountClause) aggClause).getGroup() :
+                    ((AggregateByFieldClause) aggClause).getField())));
+            }
+        }
+        this.metrics = metrics.toArray(new MetricExtractor[0]);
+    }
+
+    private static Metric findMetric(String operation) {
+        switch (operation) {
+            case "avg":
+                return Metric.AVG;
+            case "max":
+                return Metric.MAX;
+            case "min":
+                return Metric.MIN;
+            case "sum":
+                return Metric.SUM;
+            default:
+                return Metric.ZERO;
+        }
+    }
+
+    int getGroupClauseCount() {
+        return this.operations.length;
+    }
+
+    int getGroupKeyCount() {
+        return this.keys.length;
+    }
+
+    /**
+     * Returns the value of the group clause at the given index from the given bucket.  Date groups return numbers
+     * (year=2018, month=12, day=30, etc.) as floats.
+     */
+    Object extractGroup(int index, Bucket bucket) {
+        if (!this.operations[index]) {
+            return bucket.getKey();
+        }
+        String key = bucket.getKeyAsString();
+        if (this.dateOperations[index] && ElasticsearchResultsConverter.isNumeric(key)) {
+            return Float.parseFloat(key);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the values of the groups in the rows from the given values of each group clause, in the order of their
+     * keys.  A group that is replaced by a later group with the same key is dropped.
+     */
+    Object[] selectGroupValues(Object[] values) {
+        Object[] selected = new Object[this.keyIndexes.length];
+        for (int index = 0; index < this.keyIndexes.length; index++) {
+            selected[index] = values[this.keyIndexes[index]];
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the document counts of the groups in the rows from the given counts of each group clause, like
+     * selectGroupValues.
+     */
+    long[] selectGroupCounts(long[] counts) {
+        long[] selected = new long[this.keyIndexes.length];
+        for (int index = 0; index < this.keyIndexes.length; index++) {
+            selected[index] = counts[this.keyIndexes[index]];
+        }
+        return selected;
+    }
+
+    /**
+     * Puts the selected values of the groups (see selectGroupValues) into the given row under their keys.
+     */
+    void putGroups(Map<String, Object> row, Object[] selectedValues) {
+        for (int index = 0; index < this.keys.length; index++) {
+            row.put(this.keys[index], selectedValues[index]);
+        }
+    }
+
+    /**
+     * Puts the value of each aggregate clause into the given row under its label.
+     *
+     * @param aggregations The aggregations of the bucket, with the stats of its avg, max, min, and sum clauses
+     * @param selectedCounts The selected document counts of the bucket's groups (see selectGroupCounts), or null if
+     *                       the query has no groups
+     * @param totalCount The count of a total count clause, or of a count of a field that is not a group
+     */
+    void putMetrics(Map<String, Object> row, Map<String, Aggregation> aggregations, long[] selectedCounts,
+            long totalCount) {
+        for (MetricExtractor metric : this.metrics) {
+            row.put(metric.label, metric.extract(aggregations, selectedCounts, totalCount));
+        }
+    }
+}
@@ -16,10 +16,14 @@ import org.elasticsearch.script.Script;
 import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.TermsValuesSourceBuilder;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 import org.elasticsearch.search.aggregations.metrics.stats.StatsAggregationBuilder;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregatorBuilders;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
@@ -29,7 +33,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -663,6 +669,7 @@ public class ElasticsearchQueryConverterTest extends QueryBuilder {
         SearchRequest actual = ElasticsearchQueryConverter.convertQuery(query);
         StatsAggregationBuilder aggBuilder2 = AggregationBuilders.stats("_statsFor_testField").field("testField");
         TermsAggregationBuilder aggBuilder1 = AggregationBuilders.terms("testField").field("testField").size(10000)
+            .order(BucketOrder.aggregation("_statsFor_testField", "sum", true)).shardSize(10000)
             .subAggregation(aggBuilder2);
         SearchSourceBuilder source = createSourceBuilder(0, 1).aggregation(aggBuilder1);
         SearchRequest expected = createRequest("testDatabase", "testTable", source);
@@ -676,12 +683,53 @@ public class ElasticsearchQueryConverterTest extends QueryBuilder {
         SearchRequest actual = ElasticsearchQueryConverter.convertQuery(query);
         StatsAggregationBuilder aggBuilder2 = AggregationBuilders.stats("_statsFor_testField").field("testField");
         TermsAggregationBuilder aggBuilder1 = AggregationBuilders.terms("testField").field("testField").size(10000)
+            .order(BucketOrder.aggregation("_statsFor_testField", "sum", false)).shardSize(10000)
             .subAggregation(aggBuilder2);
         SearchSourceBuilder source = createSourceBuilder(0, 1).aggregation(aggBuilder1);
         SearchRequest expected = createRequest("testDatabase", "testTable", source);
         assertThat(actual).isEqualTo(expected);
     }
 
+    @Test
+    public void convertQuerySortOnAggregationWithLimitAndOffsetTest() {
+        Query query = buildQuerySortOnAggregationDescending();
+        query.setAggregateClauses(Arrays.asList(
+            new AggregateByFieldClause(new FieldClause("testDatabase", "testTable", "testField"), "testAggLabel", "sum"),
+            new AggregateByFieldClause(new FieldClause("testDatabase", "testTable", "testField"), "testCount", "count")));
+        query.setOrderByClauses(Arrays.asList(new OrderByOperationClause("testCount", Order.DESCENDING),
+            new OrderByOperationClause("testAggLabel", Order.ASCENDING)));
+        query.setLimitClause(new LimitClause(10));
+        query.setOffsetClause(new OffsetClause(20));
+
+        SearchRequest actual = ElasticsearchQueryConverter.convertQuery(query);
+        StatsAggregationBuilder aggBuilder2 = AggregationBuilders.stats("_statsFor_testField").field("testField");
+        TermsAggregationBuilder aggBuilder1 = AggregationBuilders.terms("testField").field("testField").size(30)
+            .order(BucketOrder.compound(BucketOrder.count(false),
+                BucketOrder.aggregation("_statsFor_testField", "sum", true))).shardSize(10000)
+            .subAggregation(aggBuilder2)
+            .subAggregation(PipelineAggregatorBuilders.bucketSort("_page", Collections.emptyList()).from(20).size(10));
+        SearchSourceBuilder source = createSourceBuilder(20, 1)
+            .query(QueryBuilders.boolQuery().must(QueryBuilders.existsQuery("testField"))).aggregation(aggBuilder1);
+        SearchRequest expected = createRequest("testDatabase", "testTable", source);
+        assertThat(actual).isEqualTo(expected);
+        assertThat(ElasticsearchQueryConverter.isBucketOrderQuery(query)).isTrue();
+        // Each shard returns the buckets of an unsliced query, not only the 30 buckets of the page.
+        assertThat(((TermsAggregationBuilder) actual.source().aggregations().getAggregatorFactories().iterator()
+            .next()).shardSize()).isEqualTo(10000);
+    }
+
+    @Test
+    public void isBucketOrderQueryTest() {
+        assertThat(ElasticsearchQueryConverter.isBucketOrderQuery(buildQuerySortOnAggregationAscending())).isTrue();
+        assertThat(ElasticsearchQueryConverter.isBucketOrderQuery(buildQueryAggregateAndGroup())).isFalse();
+        assertThat(ElasticsearchQueryConverter.isBucketOrderQuery(buildQueryAggregateAndGroupAndSort())).isFalse();
+        assertThat(ElasticsearchQueryConverter.isBucketOrderQuery(buildQuerySortOnGroupOperationAscending())).isFalse();
+
+        Query query = buildQuerySortOnAggregationAscending();
+        query.setLimitClause(new LimitClause(20000));
+        assertThat(ElasticsearchQueryConverter.isBucketOrderQuery(query)).isFalse();
+    }
+
     @Test
     public void convertQuerySortOnGroupOperationAscendingTest() {
         Query query = buildQuerySortOnGroupOperationAscending();
@@ -1127,4 +1175,101 @@ public class ElasticsearchQueryConverterTest extends QueryBuilder {
         // This test fails without the toString (I don't know why)
         assertThat(actual.toString()).isEqualTo(expected.toString());
     }
+
+    @Test
+    public void convertFieldRangeQueryTest() {
+        Query query = buildQueryAggregateCountFieldAndFilter();
+
+        SearchRequest actual = ElasticsearchQueryConverter.convertFieldRangeQuery(query, new FieldClause("testDatabase",
+            "testTable", "testAggField"));
+        BoolQueryBuilder queryBuilder = QueryBuilders.boolQuery().must(QueryBuilders.termQuery("testFilterField", "testFilterValue"))
+            .must(QueryBuilders.existsQuery("testAggField"));
+        SearchSourceBuilder source = createSourceBuilder(0, 0).query(queryBuilder)
+            .aggregation(AggregationBuilders.terms("_min").field("testAggField").size(1).order(BucketOrder.key(true)))
+            .aggregation(AggregationBuilders.terms("_max").field("testAggField").size(1).order(BucketOrder.key(false)))
+            .aggregation(AggregationBuilders.cardinality("_distinctCount").field("testAggField").precisionThreshold(40000));
+        SearchRequest expected = createRequest("testDatabase", "testTable", source);
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void isCompositeQueryTest() {
+        assertThat(ElasticsearchQueryConverter.isCompositeQuery(buildQueryDistinct())).isTrue();
+        assertThat(ElasticsearchQueryConverter.isCompositeQuery(buildQueryAggregateAndGroup())).isTrue();
+        assertThat(ElasticsearchQueryConverter.isCompositeQuery(buildQueryAggregateAndGroupAndSort())).isTrue();
+        assertThat(ElasticsearchQueryConverter.isCompositeQuery(buildQueryBase())).isFalse();
+        assertThat(ElasticsearchQueryConverter.isCompositeQuery(buildQueryAggregateAvg())).isFalse();
+        assertThat(ElasticsearchQueryConverter.isCompositeQuery(buildQueryAggregateCountGroup())).isFalse();
+        assertThat(ElasticsearchQueryConverter.isCompositeQuery(buildQueryAggregateAndGroupByDate())).isFalse();
+        assertThat(ElasticsearchQueryConverter.isCompositeQuery(buildQuerySortOnAggregationAscending())).isFalse();
+    }
+
+    @Test
+    public void isCompositeQueryWithGroupCountsTest() {
+        Query query = buildQueryAggregateAndGroupAndSort();
+        query.setAggregateClauses(Arrays.asList(new AggregateByGroupCountClause("testField2", "testAggLabel")));
+        assertThat(ElasticsearchQueryConverter.isCompositeQuery(query)).isTrue();
+        query.setAggregateClauses(Arrays.asList(new AggregateByGroupCountClause("testField1", "testAggLabel")));
+        assertThat(ElasticsearchQueryConverter.isCompositeQuery(query)).isFalse();
+    }
+
+    @Test
+    public void convertCompositeQueryTest() {
+        Query query = buildQueryAggregateAndGroupAndSort();
+        query.setOrderByClauses(Arrays.asList(
+            new OrderByFieldClause(new FieldClause("testDatabase", "testTable", "testField2"), Order.DESCENDING)));
+
+        SearchRequest actual = ElasticsearchQueryConverter.convertCompositeQuery(query, 10, null, false);
+        CompositeAggregationBuilder aggBuilder = AggregationBuilders.composite("_groups", Arrays.asList(
+            new TermsValuesSourceBuilder("testField2").field("testField2").order(SortOrder.DESC),
+            new TermsValuesSourceBuilder("testField1").field("testField1").order(SortOrder.ASC))).size(10)
+            .subAggregation(AggregationBuilders.stats("_statsFor_testField1").field("testField1"))
+            .subAggregation(AggregationBuilders.stats("_statsFor_testField2").field("testField2"));
+        SearchSourceBuilder source = createSourceBuilder(0, 0).aggregation(aggBuilder);
+        SearchRequest expected = createRequest("testDatabase", "testTable", source);
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void convertCompositeQuerySkipTest() {
+        Query query = buildQueryAggregateAndGroup();
+        Map<String, Object> afterKey = Map.of("testGroupField", "testValue");
+
+        SearchRequest actual = ElasticsearchQueryConverter.convertCompositeQuery(query, 5, afterKey, true);
+        CompositeAggregationBuilder aggBuilder = AggregationBuilders.composite("_groups", Arrays.asList(
+            new TermsValuesSourceBuilder("testGroupField").field("testGroupField").order(SortOrder.ASC))).size(5)
+            .aggregateAfter(afterKey);
+        SearchSourceBuilder source = createSourceBuilder(0, 0).aggregation(aggBuilder);
+        SearchRequest expected = createRequest("testDatabase", "testTable", source);
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void convertCompositeQueryDistinctTest() {
+        Query query = buildQueryDistinct();
+        query.setOrderByClauses(Arrays.asList(
+            new OrderByFieldClause(new FieldClause("testDatabase", "testTable", "testField1"), Order.DESCENDING)));
+
+        SearchRequest actual = ElasticsearchQueryConverter.convertCompositeQuery(query, 1000, null, false);
+        CompositeAggregationBuilder aggBuilder = AggregationBuilders.composite("_groups", Arrays.asList(
+            new TermsValuesSourceBuilder("testField1").field("testField1").order(SortOrder.DESC))).size(1000);
+        SearchSourceBuilder source = createSourceBuilder(0, 0).aggregation(aggBuilder);
+        SearchRequest expected = createRequest("testDatabase", "testTable", source);
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void convertBinnedQueryTest() {
+        Query query = buildQueryAggregateAndGroup();
+        BinClause binClause = new BinClause(new FieldClause("testDatabase", "testTable", "testGroupField"),
+            Arrays.asList(new double[] { 5.0001, 10 }, new double[] { 0, 5 }));
+
+        SearchRequest actual = ElasticsearchQueryConverter.convertBinnedQuery(query, binClause);
+        RangeAggregationBuilder aggBuilder = AggregationBuilders.range("_bins").field("testGroupField")
+            .addRange("0", 5.0001, Math.nextUp(10.0)).addRange("1", 0, Math.nextUp(5.0))
+            .subAggregation(AggregationBuilders.stats("_statsFor_testAggField").field("testAggField"));
+        SearchSourceBuilder source = createSourceBuilder(0, 0).aggregation(aggBuilder);
+        SearchRequest expected = createRequest("testDatabase", "testTable", source);
+        assertThat(actual).isEqualTo(expected);
+    }
 }
@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -11,6 +12,7 @@ import java.util.Map;
 import com.ncc.neon.models.queries.AggregateByFieldClause;
 import com.ncc.neon.models.queries.AggregateByGroupCountClause;
 import com.ncc.neon.models.queries.AggregateByTotalCountClause;
+import com.ncc.neon.models.queries.BinClause;
 import com.ncc.neon.models.queries.FieldClause;
 import com.ncc.neon.models.queries.GroupByFieldClause;
 import com.ncc.neon.models.queries.GroupByOperationClause;
@@ -19,20 +21,36 @@ import com.ncc.neon.models.queries.OffsetClause;
 import com.ncc.neon.models.queries.Query;
 import com.ncc.neon.models.queries.SelectClause;
 import com.ncc.neon.models.queries.SingularWhereClause;
+import com.ncc.neon.models.queries.OrderByClause;
 import com.ncc.neon.models.queries.OrderByFieldClause;
 import com.ncc.neon.models.queries.OrderByOperationClause;
 import com.ncc.neon.models.queries.Order;
+import com.ncc.neon.models.results.ActionResult;
+import com.ncc.neon.models.results.FieldRange;
 import com.ncc.neon.models.results.TabularQueryResult;
 
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregation;
+import org.elasticsearch.search.aggregations.bucket.range.Range;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
 import org.elasticsearch.search.aggregations.metrics.stats.Stats;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.test.context.junit4.SpringRunner;
 
 @RunWith(SpringRunner.class)
@@ -118,6 +136,31 @@ public class ElasticsearchResultsConverterTest {
         ));
     }
 
+    @Test
+    public void writeHitsTest() {
+        SearchHit hit1 = mock(SearchHit.class);
+        when(hit1.getId()).thenReturn("testId1");
+        when(hit1.getSourceRef()).thenReturn(new BytesArray(
+            " {\"testFieldA\":\"testValue1\",\"testFieldB\":{\"testFieldC\":[1,2]}}\n"));
+        SearchHit hit2 = mock(SearchHit.class);
+        when(hit2.getId()).thenReturn("testId\"2");
+        when(hit2.getSourceRef()).thenReturn(new BytesArray("{ }"));
+        SearchHit hit3 = mock(SearchHit.class);
+        when(hit3.getId()).thenReturn("testId3");
+        when(hit3.getSourceRef()).thenReturn(null);
+        SearchHit[] hitArray = { hit1, hit2, hit3 };
+        SearchHits hits = mock(SearchHits.class);
+        when(hits.getHits()).thenReturn(hitArray);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getHits()).thenReturn(hits);
+
+        DataBuffer buffer = ElasticsearchResultsConverter.writeHits(response, new DefaultDataBufferFactory());
+        assertThat(buffer.toString(StandardCharsets.UTF_8)).isEqualTo(
+            "{\"testFieldA\":\"testValue1\",\"testFieldB\":{\"testFieldC\":[1,2]},\"_id\":\"testId1\"}\n" +
+            "{ \"_id\":\"testId\\\"2\"}\n" +
+            "{\"_id\":\"testId3\"}\n");
+    }
+
     @Test
     public void convertResultsTotalCountAggregationTest() {
         Query query = new Query();
@@ -706,7 +749,8 @@ public class ElasticsearchResultsConverterTest {
         when(bucket4.getAggregations()).thenReturn(bucketAggregations4);
         when(bucket4.getDocCount()).thenReturn((long) 87);
         when(bucket4.getKey()).thenReturn("b");
-        List termsAggregationList = Arrays.asList(bucket4, bucket3, bucket2, bucket1);
+        // Elasticsearch sorts the buckets by the aggregation and returns only the buckets in the query's page.
+        List termsAggregationList = Arrays.asList(bucket1, bucket2);
         Terms termsAggregation = mock(Terms.class);
         when(termsAggregation.getBuckets()).thenReturn(termsAggregationList);
         Aggregations aggregations = mock(Aggregations.class);
@@ -831,7 +875,8 @@ public class ElasticsearchResultsConverterTest {
         when(bucket4.getAggregations()).thenReturn(bucketAggregations4);
         when(bucket4.getDocCount()).thenReturn((long) 87);
         when(bucket4.getKey()).thenReturn("b");
-        List termsAggregationList = Arrays.asList(bucket4, bucket3, bucket2, bucket1);
+        // Elasticsearch sorts the buckets by the aggregation and returns only the buckets in the query's page.
+        List termsAggregationList = Arrays.asList(bucket2, bucket3);
         Terms termsAggregation = mock(Terms.class);
         when(termsAggregation.getBuckets()).thenReturn(termsAggregationList);
         Aggregations aggregations = mock(Aggregations.class);
@@ -1152,7 +1197,8 @@ public class ElasticsearchResultsConverterTest {
         when(bucket4.getAggregations()).thenReturn(bucketAggregations4);
         when(bucket4.getDocCount()).thenReturn((long) 87);
         when(bucket4.getKey()).thenReturn("b");
-        List termsAggregationList = Arrays.asList(bucket4, bucket2, bucket3, bucket1);
+        // Elasticsearch sorts the buckets by the aggregation and returns only the buckets in the query's page.
+        List termsAggregationList = Arrays.asList(bucket1, bucket2, bucket3, bucket4);
         Terms termsAggregation = mock(Terms.class);
         when(termsAggregation.getBuckets()).thenReturn(termsAggregationList);
         Aggregations aggregations = mock(Aggregations.class);
@@ -1406,7 +1452,8 @@ public class ElasticsearchResultsConverterTest {
         when(bucket4.getAggregations()).thenReturn(bucketAggregations4);
         when(bucket4.getDocCount()).thenReturn((long) 87);
         when(bucket4.getKey()).thenReturn("b");
-        List termsAggregationList = Arrays.asList(bucket4, bucket3, bucket2, bucket1);
+        // Elasticsearch sorts the buckets by the aggregation and returns only the buckets in the query's page.
+        List termsAggregationList = Arrays.asList(bucket2, bucket3);
         Terms termsAggregation = mock(Terms.class);
         when(termsAggregation.getBuckets()).thenReturn(termsAggregationList);
         Aggregations aggregations = mock(Aggregations.class);
@@ -2614,4 +2661,211 @@ public class ElasticsearchResultsConverterTest {
             )
         ));
     }
+
+    @Test
+    public void mergeSortedBucketsTest() {
+        List<OrderByClause> orderClauses = List.of(new OrderByOperationClause("_aggregation", Order.DESCENDING),
+            new OrderByFieldClause(new FieldClause("testDatabase", "testTable", "testGroupField"), Order.ASCENDING));
+        List<Map<String, Object>> first = List.of(
+            Map.of("_aggregation", 30, "testGroupField", "b"),
+            Map.of("_aggregation", 20, "testGroupField", "a"),
+            Map.of("_aggregation", 5, "testGroupField", "c")
+        );
+        List<Map<String, Object>> second = List.of(
+            Map.of("_aggregation", 30, "testGroupField", "a"),
+            Map.of("_aggregation", 7, "testGroupField", "d")
+        );
+        List<Map<String, Object>> third = List.of();
+
+        assertThat(ElasticsearchResultsConverter.mergeSortedBuckets(orderClauses, List.of(first, second, third)))
+            .isEqualTo(List.of(second.get(0), first.get(0), first.get(1), second.get(1), first.get(2)));
+        assertThat(ElasticsearchResultsConverter.mergeSortedBuckets(List.of(), List.of(first, second, third)))
+            .isEqualTo(List.of(first.get(0), first.get(1), first.get(2), second.get(0), second.get(1)));
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void convertFieldRangeResultsTest() {
+        Terms.Bucket minBucket = mock(Terms.Bucket.class);
+        when(minBucket.getKey()).thenReturn(2L);
+        Terms min = mock(Terms.class);
+        when(min.getBuckets()).thenReturn((List) Arrays.asList(minBucket));
+        Terms.Bucket maxBucket = mock(Terms.Bucket.class);
+        when(maxBucket.getKey()).thenReturn(40L);
+        Terms max = mock(Terms.class);
+        when(max.getBuckets()).thenReturn((List) Arrays.asList(maxBucket));
+        Cardinality distinctCount = mock(Cardinality.class);
+        when(distinctCount.getValue()).thenReturn(12L);
+        Aggregations aggregations = mock(Aggregations.class);
+        when(aggregations.get("_min")).thenReturn(min);
+        when(aggregations.get("_max")).thenReturn(max);
+        when(aggregations.get("_distinctCount")).thenReturn(distinctCount);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getAggregations()).thenReturn(aggregations);
+
+        assertThat(ElasticsearchResultsConverter.convertFieldRangeResults(response)).isEqualTo(
+            new FieldRange(2L, 40L, 12));
+
+        Terms empty = mock(Terms.class);
+        when(empty.getBuckets()).thenReturn((List) Arrays.asList());
+        when(aggregations.get("_min")).thenReturn(empty);
+        when(aggregations.get("_max")).thenReturn(empty);
+        when(distinctCount.getValue()).thenReturn(0L);
+        assertThat(ElasticsearchResultsConverter.convertFieldRangeResults(response)).isEqualTo(
+            new FieldRange(null, null, 0));
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void convertBinnedResultsTest() {
+        Query query = new Query();
+        query.setSelectClause(new SelectClause("testDatabase", "testTable"));
+        query.setAggregateClauses(Arrays.asList(
+            new AggregateByFieldClause(new FieldClause("testDatabase", "testTable", "testGroupField"), "testCount", "count"),
+            new AggregateByFieldClause(new FieldClause("testDatabase", "testTable", "testSumField"), "testSum", "sum")));
+        BinClause binClause = new BinClause(new FieldClause("testDatabase", "testTable", "testGroupField"),
+            Arrays.asList(new double[] { 0, 5 }, new double[] { 5.0001, 10 }, new double[] { 10.0001, 15 }));
+
+        Stats stats1 = mock(Stats.class);
+        when(stats1.getSum()).thenReturn(7.5);
+        Aggregations bucketAggregations1 = mock(Aggregations.class);
+        when(bucketAggregations1.asMap()).thenReturn(Map.of("_statsFor_testSumField", stats1));
+        Range.Bucket bucket1 = mock(Range.Bucket.class);
+        when(bucket1.getKeyAsString()).thenReturn("0");
+        when(bucket1.getDocCount()).thenReturn(3L);
+        when(bucket1.getAggregations()).thenReturn(bucketAggregations1);
+        Range.Bucket bucket2 = mock(Range.Bucket.class);
+        when(bucket2.getKeyAsString()).thenReturn("1");
+        when(bucket2.getDocCount()).thenReturn(0L);
+        Stats stats3 = mock(Stats.class);
+        when(stats3.getSum()).thenReturn(2.0);
+        Aggregations bucketAggregations3 = mock(Aggregations.class);
+        when(bucketAggregations3.asMap()).thenReturn(Map.of("_statsFor_testSumField", stats3));
+        Range.Bucket bucket3 = mock(Range.Bucket.class);
+        when(bucket3.getKeyAsString()).thenReturn("2");
+        when(bucket3.getDocCount()).thenReturn(1L);
+        when(bucket3.getAggregations()).thenReturn(bucketAggregations3);
+        Range bins = mock(Range.class);
+        when(bins.getBuckets()).thenReturn((List) Arrays.asList(bucket1, bucket2, bucket3));
+        Aggregations aggregations = mock(Aggregations.class);
+        when(aggregations.get("_bins")).thenReturn(bins);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getAggregations()).thenReturn(aggregations);
+
+        TabularQueryResult results = ElasticsearchResultsConverter.convertBinnedResults(query, binClause, response);
+        assertThat(results.getData()).isEqualTo(Arrays.asList(
+            Map.of("testGroupField", 0, "_binCount", 3L, "testCount", 3L, "testSum", 7.5),
+            Map.of("testGroupField", 2, "_binCount", 1L, "testCount", 1L, "testSum", 2.0)
+        ));
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void convertCompositeResultsTest() {
+        Query query = new Query();
+        query.setSelectClause(new SelectClause("testDatabase", "testTable"));
+        query.setAggregateClauses(Arrays.asList(
+            new AggregateByFieldClause(new FieldClause("testDatabase", "testTable", "testGroupField2"), "testCount", "count"),
+            new AggregateByFieldClause(new FieldClause("testDatabase", "testTable", "testSumField"), "testSum", "sum"),
+            new AggregateByTotalCountClause("testTotal")));
+        query.setGroupByClauses(Arrays.asList(
+            new GroupByFieldClause(new FieldClause("testDatabase", "testTable", "testGroupField1")),
+            new GroupByFieldClause(new FieldClause("testDatabase", "testTable", "testGroupField2"))));
+
+        Stats stats1 = mock(Stats.class);
+        when(stats1.getSum()).thenReturn(7.5);
+        Aggregations bucketAggregations1 = mock(Aggregations.class);
+        when(bucketAggregations1.asMap()).thenReturn(Map.of("_statsFor_testSumField", stats1));
+        CompositeAggregation.Bucket bucket1 = mock(CompositeAggregation.Bucket.class);
+        when(bucket1.getKey()).thenReturn(Map.of("testGroupField1", "testGroup1", "testGroupField2", 1L));
+        when(bucket1.getDocCount()).thenReturn(3L);
+        when(bucket1.getAggregations()).thenReturn(bucketAggregations1);
+        Stats stats2 = mock(Stats.class);
+        when(stats2.getSum()).thenReturn(2.0);
+        Aggregations bucketAggregations2 = mock(Aggregations.class);
+        when(bucketAggregations2.asMap()).thenReturn(Map.of("_statsFor_testSumField", stats2));
+        CompositeAggregation.Bucket bucket2 = mock(CompositeAggregation.Bucket.class);
+        when(bucket2.getKey()).thenReturn(Map.of("testGroupField1", "testGroup1", "testGroupField2", 2L));
+        when(bucket2.getDocCount()).thenReturn(1L);
+        when(bucket2.getAggregations()).thenReturn(bucketAggregations2);
+        CompositeAggregation composite = mock(CompositeAggregation.class);
+        when(composite.getBuckets()).thenReturn((List) Arrays.asList(bucket1, bucket2));
+        Aggregations aggregations = mock(Aggregations.class);
+        when(aggregations.get("_groups")).thenReturn(composite);
+        SearchHits hits = mock(SearchHits.class);
+        when(hits.getTotalHits()).thenReturn(90L);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getAggregations()).thenReturn(aggregations);
+        when(response.getHits()).thenReturn(hits);
+
+        assertThat(ElasticsearchResultsConverter.convertCompositeResults(query, response)).isEqualTo(Arrays.asList(
+            Map.of("testGroupField1", "testGroup1", "testGroupField2", 1L, "testCount", 3L, "testSum", 7.5,
+                "testTotal", 90L),
+            Map.of("testGroupField1", "testGroup1", "testGroupField2", 2L, "testCount", 1L, "testSum", 2.0,
+                "testTotal", 90L)
+        ));
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void convertCompositeResultsDistinctTest() {
+        Query query = new Query();
+        query.setDistinct(true);
+        query.setSelectClause(new SelectClause("testDatabase", "testTable", Arrays.asList(
+            new FieldClause("testDatabase", "testTable", "testField"))));
+
+        CompositeAggregation.Bucket bucket1 = mock(CompositeAggregation.Bucket.class);
+        when(bucket1.getKey()).thenReturn(Map.of("testField", "testValue2"));
+        CompositeAggregation.Bucket bucket2 = mock(CompositeAggregation.Bucket.class);
+        when(bucket2.getKey()).thenReturn(Map.of("testField", "testValue1"));
+        CompositeAggregation composite = mock(CompositeAggregation.class);
+        when(composite.getBuckets()).thenReturn((List) Arrays.asList(bucket1, bucket2));
+        Aggregations aggregations = mock(Aggregations.class);
+        when(aggregations.get("_groups")).thenReturn(composite);
+        SearchHits hits = mock(SearchHits.class);
+        when(hits.getTotalHits()).thenReturn(90L);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getAggregations()).thenReturn(aggregations);
+        when(response.getHits()).thenReturn(hits);
+
+        assertThat(ElasticsearchResultsConverter.convertCompositeResults(query, response)).isEqualTo(Arrays.asList(
+            Map.of("testField", "testValue2"),
+            Map.of("testField", "testValue1")
+        ));
+    }
+
+    @Test
+    public void convertBulkResultsTest() {
+        ShardId shardId = new ShardId("testDatabase", "uuid", 0);
+        BulkItemResponse updated = new BulkItemResponse(0, DocWriteRequest.OpType.UPDATE,
+            new UpdateResponse(shardId, "testTable", "id1", 1, DocWriteResponse.Result.UPDATED));
+        BulkItemResponse notFound = new BulkItemResponse(1, DocWriteRequest.OpType.DELETE,
+            new DeleteResponse(shardId, "testTable", "id2", 1, 1, 1, false));
+        BulkItemResponse failed = new BulkItemResponse(2, DocWriteRequest.OpType.UPDATE,
+            new BulkItemResponse.Failure("testDatabase", "testTable", "id3", new RuntimeException("missing")));
+        BulkResponse response = new BulkResponse(new BulkItemResponse[] { updated, notFound, failed }, 1);
+
+        List<ActionResult> results = ElasticsearchResultsConverter.convertBulkResults(response);
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).getSuccess()).isEqualTo("Index testDatabase ID id1 updated successfully.");
+        assertThat(results.get(0).getRecordErrors()).isEmpty();
+        assertThat(results.get(1).getSuccess()).isEqualTo("Index testDatabase ID id2 not found.");
+        assertThat(results.get(1).getRecordErrors()).containsExactly("Index testDatabase ID id2 not found.");
+        assertThat(results.get(2).getError()).startsWith("Index testDatabase ID id3 failed: ");
+        assertThat(results.get(2).getError()).contains("missing");
+    }
+
+    @Test
+    public void isNumericTest() {
+        assertThat(ElasticsearchResultsConverter.isNumeric("2018")).isTrue();
+        assertThat(ElasticsearchResultsConverter.isNumeric("-12.5")).isTrue();
+        assertThat(ElasticsearchResultsConverter.isNumeric("+0")).isTrue();
+        assertThat(ElasticsearchResultsConverter.isNumeric("")).isFalse();
+        assertThat(ElasticsearchResultsConverter.isNumeric("-")).isFalse();
+        assertThat(ElasticsearchResultsConverter.isNumeric("12.")).isFalse();
+        assertThat(ElasticsearchResultsConverter.isNumeric(".5")).isFalse();
+        assertThat(ElasticsearchResultsConverter.isNumeric("1e5")).isFalse();
+        assertThat(ElasticsearchResultsConverter.isNumeric("1.2.3")).isFalse();
+        assertThat(ElasticsearchResultsConverter.isNumeric("Mon")).isFalse();
+    }
 }
@@ -0,0 +1,110 @@
+package com.ncc.neon.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.ncc.neon.models.queries.ClusterClause;
+import com.ncc.neon.models.results.ColumnarQueryResult;
+import com.ncc.neon.models.results.TabularQueryResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of clustering number and lat/lon results, stored either as row maps or as columns.
+ *
+ * Run with: ./gradlew :server:jmh
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClusterServiceBenchmark {
+
+    @Param({ "10000", "100000" })
+    private int rows;
+
+    private final ClusterService clusterService = new ClusterService();
+
+    private ClusterClause numberClause;
+    private TabularQueryResult numberResult;
+    private TabularQueryResult numberColumnarResult;
+
+    private ClusterClause latlonClause;
+    private TabularQueryResult latlonResult;
+    private TabularQueryResult latlonColumnarResult;
+    private ClusterClause geohashClause;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+
+        // The groups of a number aggregation, sorted by group like the results of an aggregation query.
+        List<Map<String, Object>> numberData = new ArrayList<>(this.rows);
+        for (int i = 0; i < this.rows; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("aggregation", random.nextInt(1000));
+            row.put("group_primary", i / 100.0);
+            numberData.add(row);
+        }
+        this.numberClause = new ClusterClause(50, "aggregation", null, "aggregation", "number",
+            Arrays.asList("group_primary"));
+        this.numberResult = new TabularQueryResult(numberData);
+        this.numberColumnarResult = ColumnarQueryResult.of(numberData);
+
+        List<Map<String, Object>> latlonData = new ArrayList<>(this.rows);
+        for (int i = 0; i < this.rows; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("latitude", random.nextDouble() * 180 - 90);
+            row.put("longitude", random.nextDouble() * 360 - 180);
+            latlonData.add(row);
+        }
+        this.latlonClause = new ClusterClause(12, "aggregation", null, "_count", "latlon",
+            Arrays.asList("latitude", "longitude"));
+        this.latlonResult = new TabularQueryResult(latlonData);
+        this.latlonColumnarResult = ColumnarQueryResult.of(latlonData);
+        this.geohashClause = new ClusterClause(4, ClusterService.GEOHASH_TYPE, null, "_count", "latlon",
+            Arrays.asList("latitude", "longitude"));
+    }
+
+    @Benchmark
+    public TabularQueryResult clusterNumbers() {
+        return this.clusterService.cluster(this.numberResult, this.numberClause);
+    }
+
+    @Benchmark
+    public TabularQueryResult clusterNumbersColumnar() {
+        return this.clusterService.cluster(this.numberColumnarResult, this.numberClause);
+    }
+
+    @Benchmark
+    public TabularQueryResult clusterLatLon() {
+        return this.clusterService.cluster(this.latlonResult, this.latlonClause);
+    }
+
+    @Benchmark
+    public TabularQueryResult clusterLatLonColumnar() {
+        return this.clusterService.cluster(this.latlonColumnarResult, this.latlonClause);
+    }
+
+    @Benchmark
+    public TabularQueryResult clusterGeohashColumnar() {
+        return this.clusterService.cluster(this.latlonColumnarResult, this.geohashClause);
+    }
+}
@@ -1,20 +1,33 @@
 package com.ncc.neon;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.codec.CodecCustomizer;
 import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
 import org.springframework.boot.web.server.WebServer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
 import org.springframework.http.server.reactive.ContextPathCompositeHandler;
 import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.util.MimeType;
 import org.springframework.web.reactive.config.WebFluxConfigurer;
 
 @Configuration
 public class WebConfig implements WebFluxConfigurer {
 
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+    public static final String TEXT_CSV_VALUE = "text/csv";
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType(TEXT_CSV_VALUE);
+
     @Bean
     public NettyReactiveWebServerFactory nettyReactiveWebServerFactory(
             @Value("${server.servlet.context-path:/}") String contextPath) {
@@ -30,4 +43,23 @@ public class WebConfig implements WebFluxConfigurer {
             }
         };
     }
+
+    /**
+     * Adds a JSON encoder for newline-delimited JSON only, so streamed results like the results of import batches are
+     * written (and flushed) one element at a time rather than collected into a single JSON array.  Boot's default
+     * encoder still writes every other JSON media type (and any body without a media type).
+     */
+    @Bean
+    public CodecCustomizer ndjsonCodecCustomizer(ObjectMapper objectMapper) {
+        return configurer -> {
+            Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper, APPLICATION_NDJSON) {
+                @Override
+                public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+                    return APPLICATION_NDJSON.equalsTypeAndSubtype(mimeType) && super.canEncode(elementType, mimeType);
+                }
+            };
+            encoder.setStreamingMediaTypes(Collections.singletonList(APPLICATION_NDJSON));
+            configurer.customCodecs().encoder(encoder);
+        };
+    }
 }
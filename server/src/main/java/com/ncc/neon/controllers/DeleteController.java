@@ -17,6 +17,7 @@ import reactor.core.publisher.Mono;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Predicate;
@@ -37,9 +38,38 @@ public class DeleteController {
     @PostMapping(path="/byid", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<Mono<ActionResult>> deleteDataById(@RequestBody MutateQuery mutateQuery) {
 
+        Triple[] labeledInput = getDeletionByIdInput(mutateQuery);
+
+        String deletionErrorString = "Deletion by ID Query Missing ";
+
+        return deleteData(labeledInput, mutateQuery, deletionErrorString, false);
+    }
+
+    /**
+     * Deletes the data of each of the given mutations by ID together, sending one data notification for each table.
+     *
+     * @return The result of each deletion, in the order of the deletions
+     */
+    @PostMapping(path="/byid/batch", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<Mono<List<ActionResult>>> deleteDataByIdBatch(@RequestBody List<MutateQuery> mutateQueries) {
+        String error = MutationBatches.validate(mutateQueries, this::getDeletionByIdInput,
+            "Deletion by ID Query Missing ");
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Mono.just(Collections.singletonList(new ActionResult(error))));
+        }
+
+        ConnectionInfo info = new ConnectionInfo(mutateQueries.get(0).getDatastoreType(),
+            mutateQueries.get(0).getDatastoreHost());
+
+        datasetService.notifyMutations(mutateQueries);
+
+        return ResponseEntity.ok().body(queryService.deleteDataBatch(info, mutateQueries));
+    }
+
+    private Triple[] getDeletionByIdInput(MutateQuery mutateQuery) {
         final Predicate<String> isBlank = StringUtils::isBlank;
 
-        Triple[] labeledInput = new Triple[]{
+        return new Triple[]{
             Triple.of("Datastore Host", mutateQuery.getDatastoreHost(), isBlank),
             Triple.of("Datastore Type", mutateQuery.getDatastoreType(), isBlank),
             Triple.of("Database Name", mutateQuery.getDatabaseName(), isBlank),
@@ -47,10 +77,6 @@ public class DeleteController {
             Triple.of("ID Field", mutateQuery.getIdFieldName(), isBlank),
             Triple.of("Data ID", mutateQuery.getDataId(), isBlank)
         };
-
-        String deletionErrorString = "Deletion by ID Query Missing ";
-
-        return deleteData(labeledInput, mutateQuery, deletionErrorString, false);
     }
 
     @PostMapping(path="/byfilter", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
@@ -1,32 +1,53 @@
 package com.ncc.neon.controllers;
 
+import com.ncc.neon.WebConfig;
 import com.ncc.neon.models.ConnectionInfo;
 import com.ncc.neon.models.queries.ExportQuery;
 import com.ncc.neon.models.queries.FieldNamePrettyNamePair;
+import com.ncc.neon.models.queries.SelectClause;
 import com.ncc.neon.models.results.ExportResult;
+import com.ncc.neon.models.results.FieldTypePair;
 import com.ncc.neon.models.results.TabularQueryResult;
+import com.ncc.neon.services.ArrowBatchWriter;
 import com.ncc.neon.services.QueryService;
 import com.ncc.neon.util.CoreUtil;
 import com.opencsv.CSVWriterBuilder;
 import com.opencsv.ICSVWriter;
 
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
+import javax.annotation.PreDestroy;
+
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @CrossOrigin(origins = "*")
@@ -34,12 +55,34 @@ import reactor.core.publisher.Mono;
 @RequestMapping("exportservice")
 @Slf4j
 public class ExportController {
+
+    // The number of CSV records encoded into each data buffer of a streamed export.
+    private static final int RECORDS_PER_BUFFER = 256;
+
+    public static final MediaType ARROW_STREAM = MediaType.parseMediaType(ArrowBatchWriter.ARROW_STREAM_VALUE);
+
+    // The number of rows in each record batch of an Arrow export.
+    private static final int RECORDS_PER_BATCH = 4096;
+
     private QueryService queryService;
+    private final BufferAllocator allocator = new RootAllocator();
     
     ExportController(QueryService queryService) {
         this.queryService = queryService;
     }
 
+    /**
+     * Closes the allocator of the Arrow exports, reporting the memory of any export that was never released.
+     */
+    @PreDestroy
+    void close() {
+        try {
+            allocator.close();
+        } catch (IllegalStateException e) {
+            log.error("Arrow export memory was not released", e);
+        }
+    }
+
     private String[] GetCSVHeader(List<FieldNamePrettyNamePair> fieldNamePrettyNamePairs)
     {
         List<String> fieldNamePrettyNameList = fieldNamePrettyNamePairs.stream().map(pair -> pair.getPretty()).collect(Collectors.toList());
@@ -54,8 +97,8 @@ public class ExportController {
         for(int index = 0; index < fieldNames.size(); index++)
         {
             String fieldName = fieldNames.get(index);
-            Object value = CoreUtil.deepFind(map, fieldName).toString();
-            csvRecord[index] = value.toString();
+            Object value = CoreUtil.deepFind(map, fieldName);
+            csvRecord[index] = value == null ? "" : value.toString();
         }
         return csvRecord;
     }
@@ -81,26 +124,158 @@ public class ExportController {
         ConnectionInfo ci = new ConnectionInfo(exportQuery.getDataStoreType(), exportQuery.getHostName());
         Mono<TabularQueryResult> monoResult = queryService.executeQuery(ci, exportQuery.getQuery());
 
-        Writer writer = new StringWriter();
-        
-        ICSVWriter csvWriter = new CSVWriterBuilder(writer).build();        
+        // Write the records once the results arrive rather than returning the writer before it has any records.
+        return monoResult.map(result -> {
+            Writer writer = new StringWriter();
+
+            ICSVWriter csvWriter = new CSVWriterBuilder(writer).build();
+
+            //add header
+            csvWriter.writeNext(GetCSVHeader(exportQuery.getFieldNamePrettyNamePairs()));
 
-        //add header
-        csvWriter.writeNext(GetCSVHeader(exportQuery.getFieldNamePrettyNamePairs()));
+            //add data records
+            result.getData().forEach(record -> csvWriter.writeNext(GetCSVRecord(record,
+                exportQuery.getFieldNamePrettyNamePairs())));
 
-        //add data records
-        monoResult
-        .map(result -> {
-            return result.getData();           
-        })
-        .subscribe(records -> {
-            records.forEach(record -> csvWriter.writeNext(GetCSVRecord(record, exportQuery.getFieldNamePrettyNamePairs())));
+            ExportResult exportResult = new ExportResult(String.format("%s.csv", exportQuery.getFileName()),
+                writer.toString());
+            return ResponseEntity.ok().body(exportResult);
         });
+    }
 
-        ExportResult exportResult = new ExportResult(String.format("%s.csv", exportQuery.getFileName()), writer.toString());
-        return Mono.just(ResponseEntity.ok()
-        .body(exportResult));       
+    /**
+     * Executes a query against the supplied connection and streams the result to the response body in CSV format as
+     * the rows arrive, so the export is never held in memory all at once.
+     *
+     * @param exportQuery  export parameters
+     * @param gzip  whether to gzip the response body (with a gzip content encoding)
+     * @return The export data in CSV format, as an attachment named by the export file name
+     */
+    @PostMapping(path = "csv/stream", produces = WebConfig.TEXT_CSV_VALUE, consumes = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public Mono<ResponseEntity<Flux<DataBuffer>>> exportToCSVStream(@RequestBody ExportQuery exportQuery,
+            @RequestParam(defaultValue = "false") boolean gzip, ServerHttpResponse response)
+    {
+        log.debug("Export parameters: " + exportQuery.toString());
 
-    }    
-}
+        if (exportQuery.getFieldNamePrettyNamePairs().isEmpty() || 
+            exportQuery.getDataStoreType().trim().isEmpty() || 
+            exportQuery.getHostName().trim().isEmpty())
+        {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        ConnectionInfo ci = new ConnectionInfo(exportQuery.getDataStoreType(), exportQuery.getHostName());
+        List<FieldNamePrettyNamePair> fieldNamePrettyNamePairs = exportQuery.getFieldNamePrettyNamePairs();
+
+        // Pull the rows in batches as the response is written so only one batch is held in memory at a time.
+        Flux<String[]> records = Flux.concat(Mono.just(GetCSVHeader(fieldNamePrettyNamePairs)),
+            queryService.executeStreamingQuery(ci, exportQuery.getQuery())
+                .map(record -> GetCSVRecord(record, fieldNamePrettyNamePairs)));
+
+        Flux<DataBuffer> body = Flux.using(() -> new CSVBufferWriter(response.bufferFactory(), gzip),
+            csvBufferWriter -> records.buffer(RECORDS_PER_BUFFER).map(csvBufferWriter::write)
+                .concatWith(Mono.fromCallable(csvBufferWriter::finish)),
+            CSVBufferWriter::close);
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+            .contentType(WebConfig.TEXT_CSV)
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment")
+                .filename(String.format("%s.csv", exportQuery.getFileName())).build().toString());
+        if (gzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return Mono.just(builder.body(body));
+    }
 
+    /**
+     * Executes a query against the supplied connection and streams the result to the response body in the Apache
+     * Arrow IPC stream format as the rows arrive, typing each column by the type of its field in the queried table.
+     *
+     * @param exportQuery  export parameters
+     * @return The export data in Arrow stream format, as an attachment named by the export file name
+     */
+    @PostMapping(path = "arrow", produces = ArrowBatchWriter.ARROW_STREAM_VALUE, consumes = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public Mono<ResponseEntity<Flux<DataBuffer>>> exportToArrow(@RequestBody ExportQuery exportQuery,
+            ServerHttpResponse response)
+    {
+        log.debug("Export parameters: " + exportQuery.toString());
+
+        if (exportQuery.getFieldNamePrettyNamePairs().isEmpty() || 
+            exportQuery.getDataStoreType().trim().isEmpty() || 
+            exportQuery.getHostName().trim().isEmpty())
+        {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        ConnectionInfo ci = new ConnectionInfo(exportQuery.getDataStoreType(), exportQuery.getHostName());
+        SelectClause selectClause = exportQuery.getQuery().getSelectClause();
+
+        return queryService.getFieldTypes(ci, selectClause.getDatabase(), selectClause.getTable())
+            .collectMap(FieldTypePair::getField, FieldTypePair::getType)
+            .map(fieldTypes -> {
+                // Pull the rows in batches as the response is written so only one batch is held in memory at a time.
+                Flux<DataBuffer> body = Flux.using(() -> new ArrowBatchWriter(
+                        allocator.newChildAllocator(exportQuery.getFileName(), 0, Long.MAX_VALUE),
+                        exportQuery.getFieldNamePrettyNamePairs(), fieldTypes),
+                    arrowBatchWriter -> queryService.executeStreamingQuery(ci, exportQuery.getQuery())
+                        .buffer(RECORDS_PER_BATCH).map(arrowBatchWriter::write)
+                        .concatWith(Mono.fromCallable(arrowBatchWriter::finish))
+                        .map(response.bufferFactory()::wrap),
+                    ArrowBatchWriter::close);
+
+                return ResponseEntity.ok()
+                    .contentType(ARROW_STREAM)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment")
+                        .filename(String.format("%s.arrows", exportQuery.getFileName())).build().toString())
+                    .body(body);
+            });
+    }
+
+    /**
+     * Encodes batches of CSV records into data buffers, optionally gzipped, reusing one byte stream between batches.
+     */
+    private static class CSVBufferWriter {
+        private final DataBufferFactory bufferFactory;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final ICSVWriter csvWriter;
+
+        CSVBufferWriter(DataBufferFactory bufferFactory, boolean gzip) throws IOException {
+            this.bufferFactory = bufferFactory;
+            // Sync flush makes the gzip stream write out each batch when the batch is flushed.
+            OutputStream output = gzip ? new GZIPOutputStream(this.bytes, true) : this.bytes;
+            this.csvWriter = new CSVWriterBuilder(new OutputStreamWriter(output, StandardCharsets.UTF_8)).build();
+        }
+
+        DataBuffer write(List<String[]> records) {
+            records.forEach(this.csvWriter::writeNext);
+            try {
+                this.csvWriter.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return takeBytes();
+        }
+
+        /**
+         * Returns the end of the gzip stream, or null if there is nothing left to write.
+         */
+        DataBuffer finish() throws IOException {
+            this.csvWriter.close();
+            return this.bytes.size() > 0 ? takeBytes() : null;
+        }
+
+        void close() {
+            try {
+                this.csvWriter.close();
+            } catch (IOException e) {
+                log.warn("Error closing CSV export", e);
+            }
+        }
+
+        private DataBuffer takeBytes() {
+            DataBuffer buffer = this.bufferFactory.wrap(this.bytes.toByteArray());
+            this.bytes.reset();
+            return buffer;
+        }
+    }
+}
@@ -1,21 +1,34 @@
 package com.ncc.neon.controllers;
 
+import com.ncc.neon.WebConfig;
 import com.ncc.neon.models.ConnectionInfo;
 import com.ncc.neon.models.queries.ImportQuery;
 import com.ncc.neon.models.results.ActionResult;
+import com.ncc.neon.models.results.ImportBatchResult;
+import com.ncc.neon.services.ImportService;
 import com.ncc.neon.services.QueryService;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @CrossOrigin(origins = "*")
@@ -23,10 +36,19 @@ import reactor.core.publisher.Mono;
 @RequestMapping("importservice")
 @Slf4j
 public class ImportController {
+    // Splits the request body into lines as it arrives.  Only splits on newlines (any carriage returns are stripped
+    // afterward) since the decoder can miss the second of two different delimiters in one buffer.
+    private final StringDecoder lineDecoder = StringDecoder.allMimeTypes(Collections.singletonList("\n"), true);
+
     private QueryService queryService;
+    private ImportService importService;
 
-    ImportController(QueryService queryService) {
+    ImportController(QueryService queryService, ImportService importService,
+            @Value("${import.batch-bytes:5242880}") long batchBytes) {
         this.queryService = queryService;
+        this.importService = importService;
+        // A line (one record) may be as long as a whole batch, rather than the decoder's default of 256 KB.
+        this.lineDecoder.setMaxInMemorySize((int) Math.min(batchBytes, Integer.MAX_VALUE));
     }
 
     /**
@@ -77,4 +99,44 @@ public class ImportController {
         
         return ResponseEntity.ok().body(response);    
     }    
+
+    /**
+     * imports newline-delimited JSON or CSV formatted data streamed in the request body to a data store, reading and
+     * importing the records in batches so the request body is never held in memory all at once
+     * 
+     * @param host         The host the database is running on
+     * @param databaseType the type of database
+     * @param database     the database (or index) to import into
+     * @param table        the table (or type) to import into
+     * @param isNew        whether the database must not exist yet (otherwise it must exist)
+     * @param request      the request with the data in its body
+     * @return the import result of each batch, streamed as each batch is imported
+     */
+    @PostMapping(path = "stream/{host}/{databaseType}/{database}/{table}", consumes = {
+        WebConfig.APPLICATION_NDJSON_VALUE, WebConfig.TEXT_CSV_VALUE }, produces = { WebConfig.APPLICATION_NDJSON_VALUE,
+        MediaType.APPLICATION_STREAM_JSON_VALUE })
+    public Mono<ResponseEntity<Flux<ImportBatchResult>>> importStreamingData(@PathVariable String host,
+            @PathVariable String databaseType, @PathVariable String database, @PathVariable String table,
+            @RequestParam(defaultValue = "false") boolean isNew, ServerHttpRequest request)
+    {
+        ConnectionInfo ci = new ConnectionInfo(databaseType, host);
+        MediaType contentType = request.getHeaders().getContentType();
+
+        return queryService.getDatabaseNames(ci).collectList().map(databases -> {
+            if (databases.contains(database) && isNew) {
+                return ResponseEntity.badRequest().body(Flux.just(new ImportBatchResult(0, 0, 0, new ActionResult(
+                    String.format("A database with the same name '%s' already exists.", database)))));
+            }
+            if (!databases.contains(database) && !isNew) {
+                return ResponseEntity.badRequest().body(Flux.just(new ImportBatchResult(0, 0, 0, new ActionResult(
+                    String.format("Database '%s' does not exist.", database)))));
+            }
+
+            Flux<String> lines = this.lineDecoder.decode(request.getBody(), ResolvableType.forClass(String.class),
+                contentType, null).map(line -> line.endsWith("\r") ? line.substring(0, line.length() - 1) : line);
+            Flux<String> records = WebConfig.TEXT_CSV.isCompatibleWith(contentType) ?
+                ImportService.readCsvLines(lines) : ImportService.readJsonLines(lines);
+            return ResponseEntity.ok().body(importService.importRecords(ci, database, table, records));
+        });
+    }
 }
@@ -16,6 +16,7 @@ import reactor.core.publisher.Mono;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -35,16 +36,7 @@ public class InsertController {
     @PostMapping(path="/insert", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<Mono<ActionResult>> insertData(@RequestBody MutateQuery mutateQuery) {
 
-        final Predicate<String> isBlank = StringUtils::isBlank;
-        final Predicate<Collection> isEmpty = CollectionUtils::isEmpty;
-
-        Triple[] labeledInput = new Triple[]{
-                Triple.of("Datastore Host", mutateQuery.getDatastoreHost(), isBlank),
-                Triple.of("Datastore Type", mutateQuery.getDatastoreType(), isBlank),
-                Triple.of("Database Name", mutateQuery.getDatabaseName(), isBlank),
-                Triple.of("Table Name", mutateQuery.getTableName(), isBlank),
-                Triple.of("Fields with Values", mutateQuery.getFieldsWithValues().entrySet(), isEmpty),
-        };
+        Triple[] labeledInput = getInsertionInput(mutateQuery);
 
         List<String> invalidInput = Arrays.asList(labeledInput).stream()
                 .filter(triple -> ((Predicate)triple.getRight()).test(triple.getMiddle()))
@@ -62,4 +54,38 @@ public class InsertController {
 
         return ResponseEntity.ok().body(queryService.insertData(info, mutateQuery));
     }
+
+    /**
+     * Inserts the data of each of the given mutations together, sending one data notification for each table.
+     *
+     * @return The result of each insertion, in the order of the insertions
+     */
+    @PostMapping(path="/insert/batch", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<Mono<List<ActionResult>>> insertDataBatch(@RequestBody List<MutateQuery> mutateQueries) {
+        String error = MutationBatches.validate(mutateQueries, this::getInsertionInput,
+            "Insertion by ID Query Missing ");
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Mono.just(Collections.singletonList(new ActionResult(error))));
+        }
+
+        ConnectionInfo info = new ConnectionInfo(mutateQueries.get(0).getDatastoreType(),
+            mutateQueries.get(0).getDatastoreHost());
+
+        datasetService.notifyMutations(mutateQueries);
+
+        return ResponseEntity.ok().body(queryService.insertDataBatch(info, mutateQueries));
+    }
+
+    private Triple[] getInsertionInput(MutateQuery mutateQuery) {
+        final Predicate<String> isBlank = StringUtils::isBlank;
+        final Predicate<Collection> isEmpty = CollectionUtils::isEmpty;
+
+        return new Triple[]{
+                Triple.of("Datastore Host", mutateQuery.getDatastoreHost(), isBlank),
+                Triple.of("Datastore Type", mutateQuery.getDatastoreType(), isBlank),
+                Triple.of("Database Name", mutateQuery.getDatabaseName(), isBlank),
+                Triple.of("Table Name", mutateQuery.getTableName(), isBlank),
+                Triple.of("Fields with Values", mutateQuery.getFieldsWithValues().entrySet(), isEmpty),
+        };
+    }
 }
@@ -16,6 +16,7 @@ import reactor.core.publisher.Mono;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Predicate;
@@ -35,10 +36,39 @@ public class MutateController {
 
     @PostMapping(path="/byid", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<Mono<ActionResult>> mutateDataById(@RequestBody MutateQuery mutateQuery) {
+        Triple[] labeledInput = getMutationByIdInput(mutateQuery);
+
+        String mutationErrorString = "Mutation by ID Query Missing ";
+
+        return mutateData(labeledInput, mutateQuery, mutationErrorString, false);
+    }
+
+    /**
+     * Mutates the data of each of the given mutations by ID together, sending one data notification for each table.
+     *
+     * @return The result of each mutation, in the order of the mutations
+     */
+    @PostMapping(path="/byid/batch", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<Mono<List<ActionResult>>> mutateDataByIdBatch(@RequestBody List<MutateQuery> mutateQueries) {
+        String error = MutationBatches.validate(mutateQueries, this::getMutationByIdInput,
+            "Mutation by ID Query Missing ");
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Mono.just(Collections.singletonList(new ActionResult(error))));
+        }
+
+        ConnectionInfo info = new ConnectionInfo(mutateQueries.get(0).getDatastoreType(),
+            mutateQueries.get(0).getDatastoreHost());
+
+        datasetService.notifyMutations(mutateQueries);
+
+        return ResponseEntity.ok().body(queryService.mutateDataBatch(info, mutateQueries));
+    }
+
+    private Triple[] getMutationByIdInput(MutateQuery mutateQuery) {
         final Predicate<String> isBlank = StringUtils::isBlank;
         final Predicate<Collection> isEmpty = CollectionUtils::isEmpty;
 
-        Triple[] labeledInput = new Triple[]{
+        return new Triple[]{
             Triple.of("Datastore Host", mutateQuery.getDatastoreHost(), isBlank),
             Triple.of("Datastore Type", mutateQuery.getDatastoreType(), isBlank),
             Triple.of("Database Name", mutateQuery.getDatabaseName(), isBlank),
@@ -47,10 +77,6 @@ public class MutateController {
             Triple.of("Data ID", mutateQuery.getDataId(), isBlank),
             Triple.of("Fields with Values", mutateQuery.getFieldsWithValues().entrySet(), isEmpty),
         };
-
-        String mutationErrorString = "Mutation by ID Query Missing ";
-
-        return mutateData(labeledInput, mutateQuery, mutationErrorString, false);
     }
 
     @PostMapping(path="/byfilter", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
@@ -0,0 +1,54 @@
+package com.ncc.neon.controllers;
+
+import com.ncc.neon.models.queries.MutateQuery;
+import org.apache.commons.lang3.tuple.Triple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Validates the batches of mutations given to the batch endpoints of the mutate, insert, and delete services.
+ */
+final class MutationBatches {
+
+    private MutationBatches() {
+    }
+
+    /**
+     * Returns the error describing the invalid input of the given batch, or null if the batch is valid.  Every
+     * mutation in a batch must be valid and use the same datastore.
+     *
+     * @param mutateQueries The batch
+     * @param labeler Returns the labeled input of a mutation, each with the predicate that is true if it is invalid
+     * @param errorString The start of the error, like "Mutation by ID Query Missing "
+     */
+    static String validate(List<MutateQuery> mutateQueries, Function<MutateQuery, Triple[]> labeler,
+            String errorString) {
+        if (mutateQueries == null || mutateQueries.isEmpty()) {
+            return errorString + "Queries";
+        }
+
+        List<String> invalidInput = new ArrayList<>();
+        for (int index = 0; index < mutateQueries.size(); index++) {
+            List<String> invalidQueryInput = Arrays.asList(labeler.apply(mutateQueries.get(index))).stream()
+                .filter(triple -> ((Predicate) triple.getRight()).test(triple.getMiddle()))
+                .map(triple -> (String) triple.getLeft()).collect(Collectors.toList());
+            if (invalidQueryInput.size() > 0) {
+                invalidInput.add("Query " + index + " " + String.join(", ", invalidQueryInput));
+            }
+        }
+        if (invalidInput.size() > 0) {
+            return errorString + String.join("; ", invalidInput);
+        }
+
+        MutateQuery first = mutateQueries.get(0);
+        boolean sameDatastore = mutateQueries.stream().allMatch(mutateQuery ->
+            first.getDatastoreHost().equals(mutateQuery.getDatastoreHost()) &&
+            first.getDatastoreType().equals(mutateQuery.getDatastoreType()));
+        return sameDatastore ? null : "Batch Queries Must Use One Datastore Host and Type";
+    }
+}
@@ -1,16 +1,23 @@
 package com.ncc.neon.controllers;
 
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ncc.neon.WebConfig;
 import com.ncc.neon.models.ConnectionInfo;
 import com.ncc.neon.models.queries.Query;
 import com.ncc.neon.models.results.TabularQueryResult;
 import com.ncc.neon.services.QueryService;
 
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -20,6 +27,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import lombok.extern.slf4j.Slf4j;
 
@@ -31,8 +39,11 @@ public class QueryController {
 
     private QueryService queryService;
 
-    QueryController(QueryService queryService) {
+    private ObjectMapper objectMapper;
+
+    QueryController(QueryService queryService, ObjectMapper objectMapper) {
         this.queryService = queryService;
+        this.objectMapper = objectMapper;
     }
 
     private static void logObject(String name, Object object) {
@@ -55,6 +66,41 @@ public class QueryController {
         return queryService.executeQuery(ci, query);
     }
 
+    /**
+     * Executes a query against the supplied connection like executeQuery, but streams each row of the result as
+     * newline-delimited JSON as soon as the datastore returns it instead of waiting for the complete result.  Rows the
+     * datastore's adapter can write as JSON itself (like the sources of Elasticsearch hits) are passed through
+     * without building their maps.
+     * 
+     * @param host             The host the database is running on
+     * @param databaseType     the type of database
+     * @param query            The query being executed
+     * @return The rows of the result of the query
+     */
+    @PostMapping(path = "query/stream/{host}/{databaseType}", produces = { WebConfig.APPLICATION_NDJSON_VALUE,
+        MediaType.APPLICATION_STREAM_JSON_VALUE }, consumes = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    Flux<DataBuffer> executeStreamingQuery(@PathVariable String host, @PathVariable String databaseType,
+            @RequestBody Query query, ServerHttpResponse response) {
+        ConnectionInfo ci = new ConnectionInfo(databaseType, host);
+        DataBufferFactory bufferFactory = response.bufferFactory();
+        if (queryService.canStreamJsonQuery(ci, query)) {
+            return queryService.executeStreamingJsonQuery(ci, query, bufferFactory, this.objectMapper);
+        }
+        return queryService.executeStreamingQuery(ci, query).map(row -> writeRow(row, bufferFactory));
+    }
+
+    private DataBuffer writeRow(Map<String, Object> row, DataBufferFactory bufferFactory) {
+        try {
+            byte[] json = this.objectMapper.writeValueAsBytes(row);
+            DataBuffer buffer = bufferFactory.allocateBuffer(json.length + 1);
+            buffer.write(json);
+            buffer.write((byte) '\n');
+            return buffer;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Gets a list of all the databases for the database type/host pair.
      * 
@@ -0,0 +1,244 @@
+package com.ncc.neon.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.ncc.neon.models.queries.FieldNamePrettyNamePair;
+import com.ncc.neon.models.results.FieldType;
+import com.ncc.neon.util.CoreUtil;
+import com.ncc.neon.util.DateUtil;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Encodes batches of query results in the Apache Arrow IPC stream format, with one column for each exported field
+ * named by its pretty name.  Integer, decimal, boolean, and date fields are written as 64-bit integer, double, boolean,
+ * and UTC millisecond timestamp columns, and all other fields as string columns.  Fields without a known type are
+ * typed by their first value, so the schema is written with the first batch.
+ */
+public class ArrowBatchWriter implements AutoCloseable {
+    public static final String ARROW_STREAM_VALUE = "application/vnd.apache.arrow.stream";
+
+    private static final String TIME_ZONE = "UTC";
+
+    private final BufferAllocator allocator;
+    private final List<FieldNamePrettyNamePair> fieldNamePrettyNamePairs;
+    private final Map<String, FieldType> fieldTypes;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    private VectorSchemaRoot root;
+    private ArrowStreamWriter writer;
+
+    /**
+     * @param allocator The allocator of the buffers of the batches, closed with this writer
+     * @param fieldNamePrettyNamePairs The exported fields and the names of their columns
+     * @param fieldTypes The types of the fields, by field name
+     */
+    public ArrowBatchWriter(BufferAllocator allocator, List<FieldNamePrettyNamePair> fieldNamePrettyNamePairs,
+            Map<String, FieldType> fieldTypes) {
+        this.allocator = allocator;
+        this.fieldNamePrettyNamePairs = fieldNamePrettyNamePairs;
+        this.fieldTypes = fieldTypes;
+    }
+
+    /**
+     * Returns the given records as one record batch, preceded by the schema if they are the first records.
+     */
+    public byte[] write(List<Map<String, Object>> records) {
+        try {
+            if (this.root == null) {
+                start(records);
+            }
+            this.root.allocateNew();
+            List<FieldVector> vectors = this.root.getFieldVectors();
+            for (int column = 0; column < vectors.size(); column++) {
+                String fieldName = this.fieldNamePrettyNamePairs.get(column).getQuery();
+                FieldVector vector = vectors.get(column);
+                for (int row = 0; row < records.size(); row++) {
+                    Object value = CoreUtil.deepFind(records.get(row), fieldName);
+                    if (value != null) {
+                        setValue(vector, row, value);
+                    }
+                }
+            }
+            this.root.setRowCount(records.size());
+            this.writer.writeBatch();
+            return takeBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the end of the stream, preceded by the schema if no records were written.
+     */
+    public byte[] finish() {
+        try {
+            if (this.root == null) {
+                start(new ArrayList<>());
+            }
+            this.writer.end();
+            return takeBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.writer != null) {
+            this.writer.close();
+        }
+        if (this.root != null) {
+            this.root.close();
+        }
+        this.allocator.close();
+    }
+
+    private void start(List<Map<String, Object>> records) throws IOException {
+        List<Field> fields = new ArrayList<>(this.fieldNamePrettyNamePairs.size());
+        for (FieldNamePrettyNamePair pair : this.fieldNamePrettyNamePairs) {
+            FieldType type = this.fieldTypes.containsKey(pair.getQuery()) ? this.fieldTypes.get(pair.getQuery()) :
+                findType(records, pair.getQuery());
+            fields.add(Field.nullable(pair.getPretty(), toArrowType(type)));
+        }
+        this.root = VectorSchemaRoot.create(new Schema(fields), this.allocator);
+        this.writer = new ArrowStreamWriter(this.root, null, Channels.newChannel(this.bytes));
+        this.writer.start();
+    }
+
+    private byte[] takeBytes() {
+        byte[] output = this.bytes.toByteArray();
+        this.bytes.reset();
+        return output;
+    }
+
+    private static FieldType findType(List<Map<String, Object>> records, String fieldName) {
+        for (Map<String, Object> record : records) {
+            Object value = CoreUtil.deepFind(record, fieldName);
+            if (value instanceof Long || value instanceof Integer || value instanceof Short) {
+                return FieldType.INTEGER;
+            }
+            if (value instanceof Number) {
+                return FieldType.DECIMAL;
+            }
+            if (value instanceof Boolean) {
+                return FieldType.BOOLEAN;
+            }
+            if (value != null) {
+                return FieldType.KEYWORD;
+            }
+        }
+        return FieldType.KEYWORD;
+    }
+
+    private static ArrowType toArrowType(FieldType type) {
+        switch (type) {
+            case INTEGER:
+                return new ArrowType.Int(64, true);
+            case DECIMAL:
+                return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+            case BOOLEAN:
+                return ArrowType.Bool.INSTANCE;
+            case DATETIME:
+                return new ArrowType.Timestamp(TimeUnit.MILLISECOND, TIME_ZONE);
+            default:
+                return ArrowType.Utf8.INSTANCE;
+        }
+    }
+
+    /**
+     * Sets the value at the given index of the given vector, leaving it null if the value cannot be converted.
+     */
+    private static void setValue(FieldVector vector, int index, Object value) {
+        if (vector instanceof BigIntVector) {
+            Long number = value instanceof Number ? ((Number) value).longValue() : parseLong(value.toString());
+            if (number != null) {
+                ((BigIntVector) vector).setSafe(index, number);
+            }
+        } else if (vector instanceof Float8Vector) {
+            Double number = value instanceof Number ? ((Number) value).doubleValue() : parseDouble(value.toString());
+            if (number != null) {
+                ((Float8Vector) vector).setSafe(index, number);
+            }
+        } else if (vector instanceof BitVector) {
+            boolean bool = value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString());
+            ((BitVector) vector).setSafe(index, bool ? 1 : 0);
+        } else if (vector instanceof TimeStampMilliTZVector) {
+            Long millis = toEpochMilli(value);
+            if (millis != null) {
+                ((TimeStampMilliTZVector) vector).setSafe(index, millis);
+            }
+        } else {
+            ((VarCharVector) vector).setSafe(index, value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Long parseLong(String string) {
+        try {
+            return Long.parseLong(string);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Double parseDouble(String string) {
+        try {
+            return Double.parseDouble(string);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Long toEpochMilli(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof Instant) {
+            return ((Instant) value).toEpochMilli();
+        }
+        if (value instanceof ZonedDateTime) {
+            return ((ZonedDateTime) value).toInstant().toEpochMilli();
+        }
+        if (value instanceof OffsetDateTime) {
+            return ((OffsetDateTime) value).toInstant().toEpochMilli();
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        if (value instanceof LocalDate) {
+            return ((LocalDate) value).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        }
+        ZonedDateTime date = DateUtil.transformStringToDate(value.toString());
+        return date == null ? null : date.toInstant().toEpochMilli();
+    }
+}
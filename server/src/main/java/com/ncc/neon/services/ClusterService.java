@@ -1,7 +1,19 @@
 package com.ncc.neon.services;
 
+import com.ncc.neon.adapters.QueryAdapter;
 import com.ncc.neon.models.ClusterType;
+import com.ncc.neon.models.queries.AggregateByFieldClause;
+import com.ncc.neon.models.queries.AggregateClause;
+import com.ncc.neon.models.queries.BinClause;
 import com.ncc.neon.models.queries.ClusterClause;
+import com.ncc.neon.models.queries.FieldClause;
+import com.ncc.neon.models.queries.GroupByFieldClause;
+import com.ncc.neon.models.queries.Order;
+import com.ncc.neon.models.queries.OrderByFieldClause;
+import com.ncc.neon.models.queries.Query;
+import com.ncc.neon.models.results.ColumnarQueryResult;
+import com.ncc.neon.models.results.FieldType;
+import com.ncc.neon.models.results.ResultColumn;
 import com.ncc.neon.models.results.TabularQueryResult;
 import com.ncc.neon.util.DateUtil;
 import org.springframework.stereotype.Component;
@@ -12,6 +24,9 @@ import java.math.RoundingMode;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.Collectors;
 
 /**
  * The service in charge of performing all the clustering for results being returned.
@@ -38,59 +53,57 @@ public class ClusterService {
     public static final int DEFAULT_LATLON_COUNT = 12;
     public static final String DEFAULT_LATLON_STEP = "0.000000000000001";
 
+    // geohash constants
+    public static final String GEOHASH_TYPE = "geohash";
+    public static final String GEOHASH_KEY = "geohash";
+    public static final int DEFAULT_GEOHASH_PRECISION = 3;
+
     // alphabet constants
     private static final int ALPHABET_LENGTH = 26;
     private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
 
-    private ClusterClause clusterClause;
-
     /**
      * Wraps the clustered results in a mono.
      *
      * @param tabularQueryResult the result of the unclustered query
+     * @param clusterClause the clusterclause to be clustered on
      * @return a mono containing the new clustered results
      */
-    public Mono<? extends TabularQueryResult> clusterIntoMono(TabularQueryResult tabularQueryResult) {
-        return Mono.just(this.cluster(tabularQueryResult));
+    public Mono<? extends TabularQueryResult> clusterIntoMono(TabularQueryResult tabularQueryResult,
+                                                              ClusterClause clusterClause) {
+        return Mono.just(this.cluster(tabularQueryResult, clusterClause));
     }
 
     /**
-     * Clusters the results from the query.
+     * Clusters the results from the query.  The service keeps no state between calls, so it may cluster the results
+     * of many queries at once.
      *
      * @param tabularQueryResult the result of the unclustered query
+     * @param clusterClause the clusterclause to be clustered on
      * @return the new clustered results
      */
-    public TabularQueryResult cluster(TabularQueryResult tabularQueryResult) {
-        ClusterType clusterType = retrieveClusterType(this.clusterClause.getFieldType());
+    public TabularQueryResult cluster(TabularQueryResult tabularQueryResult, ClusterClause clusterClause) {
+        ClusterType clusterType = retrieveClusterType(clusterClause.getFieldType());
 
-        List<List<Object>> clusters = this.clusterClause.getClusters();
+        List<List<Object>> clusters = clusterClause.getClusters();
 
         // establish keys
-        String fieldNameKey = this.clusterClause.getFieldNames().get(0);
-        String aggregationNameKey = this.clusterClause.getAggregationName();
+        String fieldNameKey = clusterClause.getFieldNames().get(0);
+        String aggregationNameKey = clusterClause.getAggregationName();
+
+        if (ClusterType.LAT_LON.equals(clusterType) && GEOHASH_TYPE.equals(clusterClause.getType())) {
+            int precision = clusterClause.getCount() == 0 ? DEFAULT_GEOHASH_PRECISION :
+                Math.max(1, Math.min(Geohash.MAX_PRECISION, clusterClause.getCount()));
+            return new TabularQueryResult(clusterGeohashes(clusterClause.getFieldNames(), aggregationNameKey,
+                tabularQueryResult, precision));
+        }
 
         List<Map<String, Object>> data = tabularQueryResult.getData();
 
         // determine count
-        // default counts
-        BigDecimal count = new BigDecimal(this.clusterClause.getCount());
-        if (count.compareTo(new BigDecimal(0)) == 0) {
-            switch (clusterType) {
-                case LAT_LON:
-                    count = new BigDecimal(DEFAULT_LATLON_COUNT);
-                    break;
-                case STRING:
-                    count = new BigDecimal(DEFAULT_TEXT_COUNT);
-                    break;
-                case DATE:
-                    count = new BigDecimal(DEFAULT_DATETIME_COUNT);
-                    break;
-                case NUMBER:
-                    count = new BigDecimal(DEFAULT_NUMBER_COUNT);
-                    break;
-                default:
-                    return tabularQueryResult;
-            }
+        BigDecimal count = getCount(clusterClause, clusterType);
+        if (count == null) {
+            return tabularQueryResult;
         }
 
         // data is small enough
@@ -99,16 +112,17 @@ public class ClusterService {
         }
 
         // determine ordering
-        Map<String, Object> first = data.get(0);
-        Map<String, Object> last = data.get(data.size() - 1);
+        IntFunction<Object> fieldValues = getFieldValues(tabularQueryResult, fieldNameKey);
+        Object first = fieldValues.apply(0);
+        Object last = fieldValues.apply(data.size() - 1);
         BigDecimal firstGroup = null;
         BigDecimal lastGroup = null;
         if (!clusterType.equals(ClusterType.STRING)) {
-            firstGroup = new BigDecimal(first.get(fieldNameKey).toString());
-            lastGroup = new BigDecimal(last.get(fieldNameKey).toString());
+            firstGroup = new BigDecimal(first.toString());
+            lastGroup = new BigDecimal(last.toString());
         } else {
-            firstGroup = convertTextBinToNumber(first.get(fieldNameKey).toString());
-            lastGroup = convertTextBinToNumber(last.get(fieldNameKey).toString());
+            firstGroup = convertTextBinToNumber(first.toString());
+            lastGroup = convertTextBinToNumber(last.toString());
         }
         int order = firstGroup.compareTo(lastGroup) == 1 ? -1 : 1;
 
@@ -121,22 +135,220 @@ public class ClusterService {
             Map<String, Object> extraKeySets = getExtraKeySetsMap(fieldNameKey, aggregationNameKey, data);
 
             // aggregate data into the new clusters
-            aggregateNumbersInNewData(fieldNameKey, clusterType, aggregationNameKey, data, newData, extraKeySets, order);
+            aggregateNumbersInNewData(fieldNameKey, clusterType, aggregationNameKey, tabularQueryResult, newData,
+                extraKeySets, order);
         } else {
-            newData = getNewLatLonDataBins(this.clusterClause.getFieldNames(), count, clusters);
+            newData = getNewLatLonDataBins(clusterClause.getFieldNames(), count, clusters);
 
-            Map<String, Object> extraKeySets = getExtraLatLonKeySetsMap(this.clusterClause.getFieldNames(), aggregationNameKey, data);
+            Map<String, Object> extraKeySets = getExtraLatLonKeySetsMap(clusterClause.getFieldNames(), aggregationNameKey, data);
 
-            aggregateLatLonNumbersInNewData(this.clusterClause.getFieldNames(), aggregationNameKey, data, newData, extraKeySets);
+            aggregateLatLonNumbersInNewData(clusterClause.getFieldNames(), aggregationNameKey, tabularQueryResult,
+                newData, extraKeySets);
         }
 
-        // reset clusterclause
-        this.clusterClause = null;
-
         // return new clustered results
         return new TabularQueryResult(newData);
     }
 
+    /**
+     * Clusters the results of the given query in its datastore if the adapter can, so the datastore returns only the
+     * clusters instead of every group or point of the query.  The clusters are those that
+     * {@link #cluster(TabularQueryResult, ClusterClause)} would make from the results of the query, except that the
+     * datastore does not collect the values of any other keys in the results, so only queries whose results have no
+     * other keys are clustered in the datastore.  Geohash and text clusters are always made by the server.
+     *
+     * @param adapter the adapter of the datastore of the query
+     * @param query the query with the clusterclause to be clustered on
+     * @return a mono containing the clustered results, or an empty mono if the results must be clustered by
+     * {@link #cluster(TabularQueryResult, ClusterClause)}
+     */
+    public Mono<TabularQueryResult> clusterInDatastore(QueryAdapter adapter, Query query) {
+        ClusterClause clusterClause = query.getClusterClause();
+        ClusterType clusterType = retrieveClusterType(clusterClause.getFieldType());
+        boolean offset = query.getOffsetClause() != null && query.getOffsetClause().getOffset() > 0;
+        boolean joined = query.getJoinClauses() != null && !query.getJoinClauses().isEmpty();
+        if (clusterType == null || offset || joined || query.isDistinct()) {
+            return Mono.empty();
+        }
+        switch (clusterType) {
+            case NUMBER:
+            case DATE:
+                return clusterGroupsInDatastore(adapter, query, clusterType);
+            case LAT_LON:
+                return GEOHASH_TYPE.equals(clusterClause.getType()) ? Mono.empty() :
+                    clusterLatLonInDatastore(adapter, query);
+            default:
+                return Mono.empty();
+        }
+    }
+
+    /**
+     * Clusters the groups of a number or date field in the datastore.  The query must group by only the field, order by
+     * the field first, and count or sum one field.
+     */
+    private Mono<TabularQueryResult> clusterGroupsInDatastore(QueryAdapter adapter, Query query,
+                                                              ClusterType clusterType) {
+        ClusterClause clusterClause = query.getClusterClause();
+        String fieldNameKey = clusterClause.getFieldNames().get(0);
+        String aggregationNameKey = clusterClause.getAggregationName();
+        boolean groupedByField = query.getGroupByClauses().size() == 1 &&
+            query.getGroupByClauses().get(0) instanceof GroupByFieldClause &&
+            query.getGroupByClauses().get(0).getField().equals(fieldNameKey);
+        boolean orderedByField = !query.getOrderByClauses().isEmpty() &&
+            query.getOrderByClauses().get(0) instanceof OrderByFieldClause &&
+            query.getOrderByClauses().get(0).getFieldOrOperation().equals(fieldNameKey);
+        if (!groupedByField || !orderedByField || query.getAggregateClauses().size() != 1 ||
+            !isSummable(query.getAggregateClauses().get(0), aggregationNameKey) ||
+            !selectsOnly(query, clusterClause.getFieldNames())) {
+            return Mono.empty();
+        }
+
+        FieldClause fieldClause = ((GroupByFieldClause) query.getGroupByClauses().get(0)).getFieldClause();
+        int order = query.getOrderByClauses().get(0).getOrder() == Order.ASCENDING ? 1 : -1;
+        BigDecimal count = getCount(clusterClause, clusterType);
+
+        if (clusterClause.getClusters() != null) {
+            return sumBinsInDatastore(adapter, query, fieldClause, getNewDataBins(fieldNameKey, clusterType, null, null,
+                count, clusterClause.getClusters(), order));
+        }
+
+        return adapter.getFieldRange(query, fieldClause).flatMap(range -> {
+            // Like clustering in the server, leave fewer groups than clusters unclustered.  Only every group of the
+            // query can be clustered in the datastore.
+            boolean limited = query.getLimitClause() != null &&
+                range.getDistinctCount() > query.getLimitClause().getLimit();
+            if (range.getMin() == null || count.compareTo(BigDecimal.valueOf(range.getDistinctCount())) > 0 ||
+                limited) {
+                return Mono.empty();
+            }
+            BigDecimal firstGroup = new BigDecimal((order == 1 ? range.getMin() : range.getMax()).toString());
+            BigDecimal lastGroup = new BigDecimal((order == 1 ? range.getMax() : range.getMin()).toString());
+            return sumBinsInDatastore(adapter, query, fieldClause, getNewDataBins(fieldNameKey, clusterType,
+                firstGroup, lastGroup, count, null, order));
+        });
+    }
+
+    /**
+     * Has the datastore sum the aggregation of the query in each of the given bins of the given field.
+     */
+    private Mono<TabularQueryResult> sumBinsInDatastore(QueryAdapter adapter, Query query, FieldClause fieldClause,
+                                                        List<Map<String, Object>> newData) {
+        String aggregationNameKey = query.getClusterClause().getAggregationName();
+        List<double[]> ranges = newData.stream().map(bin -> {
+            double[] range = LatLonGrid.toRange(bin.get(fieldClause.getField()));
+            // Descending bins start with their largest value.
+            return new double[] { Math.min(range[0], range[1]), Math.max(range[0], range[1]) };
+        }).collect(Collectors.toList());
+
+        return adapter.executeBinned(query, Collections.singletonList(new BinClause(fieldClause, ranges)))
+            .map(binned -> {
+                IntFunction<Object> indexes = getFieldValues(binned, fieldClause.getField());
+                IntFunction<Object> values = getFieldValues(binned, aggregationNameKey);
+                Number[] sums = new Number[newData.size()];
+                for (int row = 0; row < binned.getData().size(); row++) {
+                    Object index = indexes.apply(row);
+                    if (index != null) {
+                        sums[((Number) index).intValue()] = toSum(values.apply(row));
+                    }
+                }
+                for (int bin = 0; bin < newData.size(); bin++) {
+                    newData.get(bin).put(aggregationNameKey, sums[bin] == null ? (Number) 0L : sums[bin]);
+                }
+                return new TabularQueryResult(newData);
+            });
+    }
+
+    /**
+     * Counts the points of a pair of latitude and longitude fields in each cell of a grid in the datastore.  The query
+     * must select only the two fields, without any aggregations or groups.
+     */
+    private Mono<TabularQueryResult> clusterLatLonInDatastore(QueryAdapter adapter, Query query) {
+        ClusterClause clusterClause = query.getClusterClause();
+        List<String> fieldNameKeys = clusterClause.getFieldNames();
+        List<FieldClause> fieldClauses = query.getSelectClause().getFieldClauses();
+        if (clusterClause.getClusters() != null || !query.getAggregateClauses().isEmpty() ||
+            !query.getGroupByClauses().isEmpty() || fieldClauses.size() != 2 || !selectsOnly(query, fieldNameKeys)) {
+            return Mono.empty();
+        }
+
+        String aggregationNameKey = clusterClause.getAggregationName();
+        BigDecimal count = getCount(clusterClause, ClusterType.LAT_LON);
+        List<Map<String, Object>> newData = getNewLatLonDataBins(fieldNameKeys, count, null);
+        LatLonGrid grid = LatLonGrid.fromBins(newData, fieldNameKeys.get(0), fieldNameKeys.get(1));
+        FieldClause latClause = fieldClauses.get(fieldClauses.get(0).getField().equals(fieldNameKeys.get(0)) ? 0 : 1);
+        FieldClause longClause = fieldClauses.get(latClause == fieldClauses.get(0) ? 1 : 0);
+
+        return adapter.executeBinned(query, Arrays.asList(new BinClause(latClause, grid.getLatRanges()),
+            new BinClause(longClause, grid.getLongRanges()))).flatMap(binned -> {
+                IntFunction<Object> latIndexes = getFieldValues(binned, latClause.getField());
+                IntFunction<Object> longIndexes = getFieldValues(binned, longClause.getField());
+                IntFunction<Object> binCounts = getFieldValues(binned, BinClause.COUNT_KEY);
+                long[] counts = new long[grid.size()];
+                long points = 0;
+                for (int row = 0; row < binned.getData().size(); row++) {
+                    long binCount = ((Number) binCounts.apply(row)).longValue();
+                    Object latIndex = latIndexes.apply(row);
+                    Object longIndex = longIndexes.apply(row);
+                    if (latIndex != null && longIndex != null) {
+                        counts[((Number) latIndex).intValue() * grid.getLongRanges().size() +
+                            ((Number) longIndex).intValue()] += binCount;
+                    }
+                    points += binCount;
+                }
+
+                // Like clustering in the server, leave fewer points than clusters unclustered.  Only every point of
+                // the query can be clustered in the datastore.
+                boolean limited = query.getLimitClause() != null && points > query.getLimitClause().getLimit();
+                if (count.compareTo(BigDecimal.valueOf(points)) > 0 || limited) {
+                    return Mono.empty();
+                }
+                for (int bin = 0; bin < grid.size(); bin++) {
+                    putBinValues(newData.get(bin), Collections.emptyMap(), null, aggregationNameKey, counts[bin]);
+                }
+                return Mono.just(new TabularQueryResult(newData));
+            });
+    }
+
+    /**
+     * Returns whether the sums of the given aggregation over the groups in each cluster are the aggregation over the
+     * rows in each cluster, so the datastore can aggregate the clusters directly.
+     */
+    private static boolean isSummable(AggregateClause aggregateClause, String aggregationNameKey) {
+        return aggregateClause instanceof AggregateByFieldClause &&
+            aggregateClause.getLabel().equals(aggregationNameKey) &&
+            Arrays.asList("count", "sum").contains(aggregateClause.getOperation());
+    }
+
+    /**
+     * Returns whether the query selects no fields other than the given fields, so its results have no extra keys.
+     */
+    private static boolean selectsOnly(Query query, List<String> fieldNameKeys) {
+        return query.getSelectClause().getFieldClauses().stream().allMatch(fieldClause ->
+            fieldNameKeys.contains(fieldClause.getField()));
+    }
+
+    /**
+     * Returns the number of clusters in the given clause, or the default number for the clustertype if the clause has
+     * none, or null if the clustertype is not clustered.
+     */
+    private static BigDecimal getCount(ClusterClause clusterClause, ClusterType clusterType) {
+        if (clusterClause.getCount() != 0) {
+            return new BigDecimal(clusterClause.getCount());
+        }
+        switch (clusterType) {
+            case LAT_LON:
+                return new BigDecimal(DEFAULT_LATLON_COUNT);
+            case STRING:
+                return new BigDecimal(DEFAULT_TEXT_COUNT);
+            case DATE:
+                return new BigDecimal(DEFAULT_DATETIME_COUNT);
+            case NUMBER:
+                return new BigDecimal(DEFAULT_NUMBER_COUNT);
+            default:
+                return null;
+        }
+    }
+
     /**
      * Calculates the spacing between the different bins in the new data set results.
      *
@@ -324,14 +536,18 @@ public class ClusterService {
      * @param fieldNameKey the key that corresponds with the field name
      * @param clusterType the clustertype of the aggregation
      * @param aggregationNameKey the key that corresponds with the overall counts of each bin
-     * @param data the original result data
+     * @param result the original result
      * @param newData the newly clustered data
      * @param extraKeySets the extra key sets map for storing additional keys
      * @param order 1 for ascending, -1 for descending
      */
     private void aggregateNumbersInNewData(String fieldNameKey, ClusterType clusterType, String aggregationNameKey,
-                                           List<Map<String, Object>> data, List<Map<String, Object>> newData,
+                                           TabularQueryResult result, List<Map<String, Object>> newData,
                                            Map<String, Object> extraKeySets, int order) {
+        int dataSize = result.getData().size();
+        IntToDoubleFunction binValues = getBinValues(result, fieldNameKey, clusterType);
+        AggregationSum currAgg = new AggregationSum(result, aggregationNameKey);
+        Map<String, IntFunction<Object>> extraKeyValues = getExtraKeyValues(result, extraKeySets);
         Iterator<Map<String, Object>> newDataIter = newData.iterator();
         int oldDataIndex = 0;
         while (newDataIter.hasNext()) {
@@ -341,56 +557,52 @@ public class ClusterService {
             }
 
             // determine the boundaries and aggregated count for this bin
-            BigDecimal currAgg = new BigDecimal("0");
+            currAgg.reset();
             Map currNewBin = newDataIter.next();
             ArrayList newRange = (ArrayList) currNewBin.get(fieldNameKey);
-            BigDecimal start = null;
-            BigDecimal end = null;
+            double start;
+            double end;
             switch (clusterType) {
                 case STRING:
-                    start = convertTextBinToNumber(newRange.get(0).toString());
-                    end = convertTextBinToNumber(newRange.get(1).toString());
+                    start = textBinToNumber(newRange.get(0).toString());
+                    end = textBinToNumber(newRange.get(1).toString());
                     break;
                 case DATE:
                 case NUMBER:
                 default:
-                    start = (BigDecimal) newRange.get(0);
-                    end = (BigDecimal) newRange.get(1);
+                    start = ((BigDecimal) newRange.get(0)).doubleValue();
+                    end = ((BigDecimal) newRange.get(1)).doubleValue();
                     break;
             }
 
             // traverse the old data a total of one time
-            while (oldDataIndex < data.size()) {
+            while (oldDataIndex < dataSize) {
                 // retrieve the old data's field name
-                BigDecimal oldBinValue = null;
-                if (!clusterType.equals(ClusterType.STRING)) { // not text
-                    oldBinValue = new BigDecimal(data.get(oldDataIndex).get(fieldNameKey).toString());
-                } else if (clusterType.equals(ClusterType.STRING)) { // is text
-                    oldBinValue = convertTextBinToNumber(data.get(oldDataIndex).get(fieldNameKey).toString());
-                }
+                double oldBinValue = binValues.applyAsDouble(oldDataIndex);
 
                 // if old >= new start && old <= new end (for ascending)
-                if (oldBinValue.compareTo(start) != (-1 * order)
-                        && oldBinValue.compareTo(end) != (1 * order)) {
+                if (Double.compare(oldBinValue, start) != (-1 * order)
+                        && Double.compare(oldBinValue, end) != (1 * order)) {
 
                     // check extra keys
                     for (String key : extraKeySets.keySet()) {
-                        ((Set) extraKeySets.get(key)).add(data.get(oldDataIndex).get(key));
+                        ((Set) extraKeySets.get(key)).add(extraKeyValues.get(key).apply(oldDataIndex));
                     }
 
                     // accumulate aggregate numbers
-                    BigDecimal oldAgg = new BigDecimal(data.get(oldDataIndex).get(aggregationNameKey).toString());
-                    currAgg = currAgg.add(oldAgg);
+                    currAgg.add(oldDataIndex);
 
                     // move to the next data in the old results
                     oldDataIndex++;
-                } else if (oldBinValue.compareTo(end) == (1 * order)) { // old > new end i.e. old bin moved past this curr new bin (for ascending)
+                } else if (Double.compare(oldBinValue, end) == (1 * order)) { // old > new end i.e. old bin moved past this curr new bin (for ascending)
                     break;
+                } else { // old < new start i.e. old bin is before every remaining new bin (for ascending)
+                    oldDataIndex++;
                 }
             }
 
             // update the aggregated count
-            currNewBin.put(aggregationNameKey, currAgg);
+            currNewBin.put(aggregationNameKey, currAgg.getValue());
 
             // update the extra key sets
             for (String key : extraKeySets.keySet()) {
@@ -400,74 +612,201 @@ public class ClusterService {
     }
 
     /**
-     * Traverses the original data and puts it in the correct bins in the new data for the latlon clusterType.
+     * Puts the original data in the correct bins in the new data for the latlon clusterType, finding the bin of each
+     * point directly from its coordinates in a single pass over the data.
      * @param fieldNameKeys the keys that correspond with the field names
      * @param aggregationNameKey aggregation name key given by the cluster clause
-     * @param data the original result data
+     * @param result the original result, which is not changed
      * @param newData the newly clustered data
      * @param extraKeySets the extra key sets map for storing additional keys
      */
-    private void aggregateLatLonNumbersInNewData(List<String> fieldNameKeys, String aggregationNameKey, List<Map<String, Object>> data,
+    private void aggregateLatLonNumbersInNewData(List<String> fieldNameKeys, String aggregationNameKey, TabularQueryResult result,
                                                  List<Map<String, Object>> newData, Map<String, Object> extraKeySets) {
-        Iterator<Map<String, Object>> newDataIter = newData.iterator();
-        while (newDataIter.hasNext()) {
-
-            // reset the extra keys for each new bin
-            for (String key : extraKeySets.keySet()) {
-                extraKeySets.put(key, new HashSet<>());
+        LatLonGrid grid = LatLonGrid.fromBins(newData, fieldNameKeys.get(0), fieldNameKeys.get(1));
+        double[] latValues = readDoubles(result, fieldNameKeys.get(0));
+        double[] longValues = readDoubles(result, fieldNameKeys.get(1));
+        Map<String, IntFunction<Object>> extraKeyValues = getExtraKeyValues(result, extraKeySets);
+
+        long[] counts = new long[grid.size()];
+        List<Map<String, Set<Object>>> binExtraKeySets = new ArrayList<>(Collections.nCopies(grid.size(), null));
+        for (int dataIndex = 0; dataIndex < latValues.length; dataIndex++) {
+            int bin = grid.indexOf(latValues[dataIndex], longValues[dataIndex]);
+            if (bin < 0) {
+                continue;
             }
+            counts[bin]++;
+            addExtraKeys(binExtraKeySets, bin, extraKeyValues, dataIndex);
+        }
 
-            // determine the boundaries and aggregated count for this bin
-            Map currNewBin = newDataIter.next();
-            BigDecimal currAgg = new BigDecimal("0");
+        for (int bin = 0; bin < grid.size(); bin++) {
+            putBinValues(newData.get(bin), extraKeySets, binExtraKeySets.get(bin), aggregationNameKey, counts[bin]);
+        }
+    }
 
-            // get new lat range
-            String latFieldKey = fieldNameKeys.get(0);
-            ArrayList newLatRange = (ArrayList) currNewBin.get(latFieldKey);
-            BigDecimal startLat = (BigDecimal) newLatRange.get(0);
-            BigDecimal endLat = (BigDecimal) newLatRange.get(1);
+    /**
+     * Clusters the given lat/lon data into the geohash cells of the given precision containing any data.
+     *
+     * @param fieldNameKeys the keys that correspond with the latitude and longitude field names
+     * @param aggregationNameKey aggregation name key given by the cluster clause
+     * @param result the original result, which is not changed
+     * @param precision the number of characters in each geohash, from 1 to 12
+     * @return the cells containing any data, ordered by geohash
+     */
+    private List<Map<String, Object>> clusterGeohashes(List<String> fieldNameKeys, String aggregationNameKey,
+                                                       TabularQueryResult result, int precision) {
+        String latKey = fieldNameKeys.get(0);
+        String longKey = fieldNameKeys.get(1);
+        List<Map<String, Object>> data = result.getData();
+        Map<String, Object> extraKeySets = data.isEmpty() ? Collections.emptyMap() :
+            getExtraLatLonKeySetsMap(fieldNameKeys, aggregationNameKey, data);
+        double[] latValues = readDoubles(result, latKey);
+        double[] longValues = readDoubles(result, longKey);
+        Map<String, IntFunction<Object>> extraKeyValues = getExtraKeyValues(result, extraKeySets);
+
+        // Find the index of each cell in the order it is first seen, then order the cells by geohash.
+        Map<Long, Integer> cellIndexes = new HashMap<>();
+        List<long[]> cells = new ArrayList<>();
+        List<Map<String, Set<Object>>> cellExtraKeySets = new ArrayList<>();
+        for (int dataIndex = 0; dataIndex < latValues.length; dataIndex++) {
+            long geohash = Geohash.encode(latValues[dataIndex], longValues[dataIndex], precision);
+            if (geohash < 0) {
+                continue;
+            }
+            Integer cell = cellIndexes.get(geohash);
+            if (cell == null) {
+                cell = cells.size();
+                cellIndexes.put(geohash, cell);
+                cells.add(new long[] { geohash, 0 });
+                cellExtraKeySets.add(null);
+            }
+            cells.get(cell)[1]++;
+            addExtraKeys(cellExtraKeySets, cell, extraKeyValues, dataIndex);
+        }
 
-            // get new long range
-            String longFieldKey = fieldNameKeys.get(1);
-            ArrayList newLongRange = (ArrayList) currNewBin.get(longFieldKey);
-            BigDecimal startLong = (BigDecimal) newLongRange.get(0);
-            BigDecimal endLong = (BigDecimal) newLongRange.get(1);
+        List<Integer> order = new ArrayList<>(cellIndexes.values());
+        order.sort(Comparator.comparingLong(cell -> cells.get(cell)[0]));
+        List<Map<String, Object>> newData = new ArrayList<>(order.size());
+        for (int cell : order) {
+            long geohash = cells.get(cell)[0];
+            double[] bounds = Geohash.decodeBounds(geohash, precision);
+            Map<String, Object> bin = new LinkedHashMap<>();
+            bin.put(GEOHASH_KEY, Geohash.toString(geohash, precision));
+            bin.put(latKey, Arrays.asList(BigDecimal.valueOf(bounds[0]), BigDecimal.valueOf(bounds[1])));
+            bin.put(longKey, Arrays.asList(BigDecimal.valueOf(bounds[2]), BigDecimal.valueOf(bounds[3])));
+            putBinValues(bin, extraKeySets, cellExtraKeySets.get(cell), aggregationNameKey, cells.get(cell)[1]);
+            newData.add(bin);
+        }
+        return newData;
+    }
 
-            Iterator<Map<String, Object>> dataIter = data.iterator();
-            while (dataIter.hasNext()) {
+    /**
+     * Adds the non-null values of the extra keys in the given row to the extra key sets of the given bin.
+     */
+    private static void addExtraKeys(List<Map<String, Set<Object>>> binExtraKeySets, int bin,
+                                     Map<String, IntFunction<Object>> extraKeyValues, int dataIndex) {
+        for (Map.Entry<String, IntFunction<Object>> extraKey : extraKeyValues.entrySet()) {
+            Object value = extraKey.getValue().apply(dataIndex);
+            if (value != null) {
+                if (binExtraKeySets.get(bin) == null) {
+                    binExtraKeySets.set(bin, new HashMap<>());
+                }
+                binExtraKeySets.get(bin).computeIfAbsent(extraKey.getKey(), key -> new HashSet<>()).add(value);
+            }
+        }
+    }
 
-                Map<String, Object> currData = dataIter.next();
-                BigDecimal oldLatValue = new BigDecimal(currData.get(latFieldKey).toString());
-                BigDecimal oldLongValue = new BigDecimal(currData.get(longFieldKey).toString());
+    /**
+     * Puts the extra key sets (empty if the bin has no values for a key) and then the aggregated count in the bin.
+     */
+    private static void putBinValues(Map<String, Object> bin, Map<String, Object> extraKeySets,
+                                     Map<String, Set<Object>> binExtraKeySets, String aggregationNameKey, long count) {
+        for (String key : extraKeySets.keySet()) {
+            Set<Object> values = binExtraKeySets == null ? null : binExtraKeySets.get(key);
+            bin.put(key, values == null ? new HashSet<>() : values);
+        }
+        bin.put(aggregationNameKey, count);
+    }
 
-                // if old >= new start && old <= new end (for lat and long)
-                if (oldLatValue.compareTo(startLat) != -1
-                        && oldLatValue.compareTo(endLat) != 1
-                        && oldLongValue.compareTo(startLong) != -1
-                        && oldLongValue.compareTo(endLong) != 1) {
+    /**
+     * Returns the values of the given field by row index, read straight from the field's column if the result is
+     * columnar.
+     *
+     * @param result the result being clustered
+     * @param fieldNameKey the key of the field
+     * @return a function from row index to the value of the field in that row
+     */
+    private static IntFunction<Object> getFieldValues(TabularQueryResult result, String fieldNameKey) {
+        if (result instanceof ColumnarQueryResult) {
+            ResultColumn column = ((ColumnarQueryResult) result).getColumn(fieldNameKey);
+            return column == null ? row -> null : column::get;
+        }
+        List<Map<String, Object>> data = result.getData();
+        return row -> data.get(row).get(fieldNameKey);
+    }
 
-                    // check extra keys
-                    for (String key : extraKeySets.keySet()) {
-                        // check extra keys
-                        if (currData.get(key) != null) {
-                            ((Set) extraKeySets.get(key)).add(currData.get(key));
-                        }
-                    }
+    private static Map<String, IntFunction<Object>> getExtraKeyValues(TabularQueryResult result,
+                                                                      Map<String, Object> extraKeySets) {
+        Map<String, IntFunction<Object>> extraKeyValues = new HashMap<>();
+        for (String key : extraKeySets.keySet()) {
+            extraKeyValues.put(key, getFieldValues(result, key));
+        }
+        return extraKeyValues;
+    }
 
-                    // accumulate aggregate numbers
-                    currAgg = currAgg.add(new BigDecimal(1));
-                    dataIter.remove();
-                }
-            }
+    /**
+     * Returns the values of the given field by row index as the numbers used to find their bins, read straight from
+     * the field's column if the result is columnar.
+     *
+     * @param result the result being clustered
+     * @param fieldNameKey the key of the field
+     * @param clusterType the clustertype of the aggregation
+     * @return a function from row index to the number of the field's value in that row
+     */
+    private static IntToDoubleFunction getBinValues(TabularQueryResult result, String fieldNameKey,
+                                                    ClusterType clusterType) {
+        if (clusterType.equals(ClusterType.STRING)) {
+            IntFunction<Object> values = getFieldValues(result, fieldNameKey);
+            return row -> textBinToNumber(values.apply(row).toString());
+        }
+        if (result instanceof ColumnarQueryResult && ((ColumnarQueryResult) result).getColumn(fieldNameKey) != null) {
+            return ((ColumnarQueryResult) result).getColumn(fieldNameKey)::getDouble;
+        }
+        IntFunction<Object> values = getFieldValues(result, fieldNameKey);
+        return row -> toDouble(values.apply(row));
+    }
 
-            // update the extra key sets
-            for (String key : extraKeySets.keySet()) {
-                currNewBin.put(key, extraKeySets.get(key));
-            }
+    /**
+     * Reads the values of the given field from every row of the result into an array.
+     *
+     * @param result the result being clustered
+     * @param fieldNameKey the key of the field
+     * @return the values of the field in row order
+     */
+    private static double[] readDoubles(TabularQueryResult result, String fieldNameKey) {
+        IntToDoubleFunction values = getBinValues(result, fieldNameKey, ClusterType.NUMBER);
+        double[] doubles = new double[result.getData().size()];
+        for (int row = 0; row < doubles.length; row++) {
+            doubles[row] = values.applyAsDouble(row);
+        }
+        return doubles;
+    }
 
-            // update the aggregated count
-            currNewBin.put(aggregationNameKey, currAgg);
+    /**
+     * Returns the given aggregation of one bin as {@link AggregationSum} would add it up: a long if it is an integer
+     * and a double otherwise.
+     */
+    private static Number toSum(Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
         }
+        return toDouble(value);
+    }
+
+    private static double toDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
     }
 
     /**
@@ -477,13 +816,23 @@ public class ClusterService {
      * @return a BigDecimal corresponding to the index of the bin
      */
     private BigDecimal convertTextBinToNumber(String text) {
+        return new BigDecimal(textBinToNumber(text));
+    }
+
+    /**
+     * Converts the incoming text bin e.g. "a", "bd" into a number without allocating.
+     *
+     * @param text the bin to be converted
+     * @return the index of the bin
+     */
+    private static int textBinToNumber(String text) {
         int total = 0;
         for (int i = text.length() - 1; i > -1; i--) {
             char c = text.charAt(i);
             total += (ALPHABET.indexOf(c) + 1) * Math.pow(ALPHABET_LENGTH, i);
         }
 
-        return new BigDecimal(total);
+        return total;
     }
 
     /**
@@ -525,16 +874,6 @@ public class ClusterService {
         return String.valueOf(text);
     }
 
-    /**
-     * Used to set the cluster clause for the service. Only to be called right before
-     * calling to cluster.
-     *
-     * @param clusterClause the clusterclause to be clustered on
-     */
-    public void setClusterClause(ClusterClause clusterClause) {
-        this.clusterClause = clusterClause;
-    }
-
     private ClusterType retrieveClusterType(String type) {
         switch(type) {
             case "number":
@@ -568,4 +907,48 @@ public class ClusterService {
         }
         bin.put(PRETTY_DATETIME_KEY, prettyDateRange);
     }
+
+    /**
+     * Adds up the aggregation values of one bin.  The sum is kept as a long while every value is an integer (like
+     * the counts of each group) and as a double otherwise, so no object is allocated per value.
+     */
+    private static final class AggregationSum {
+        private final ResultColumn integerColumn;
+        private final IntFunction<Object> values;
+        private long integerSum;
+        private double decimalSum;
+        private boolean integral;
+
+        AggregationSum(TabularQueryResult result, String aggregationNameKey) {
+            ResultColumn column = result instanceof ColumnarQueryResult ?
+                ((ColumnarQueryResult) result).getColumn(aggregationNameKey) : null;
+            this.integerColumn = column != null && column.getType() == FieldType.INTEGER ? column : null;
+            this.values = getFieldValues(result, aggregationNameKey);
+            reset();
+        }
+
+        void reset() {
+            this.integerSum = 0;
+            this.decimalSum = 0;
+            this.integral = true;
+        }
+
+        void add(int row) {
+            if (this.integerColumn != null) {
+                this.integerSum += this.integerColumn.getLong(row);
+                return;
+            }
+            Object value = this.values.apply(row);
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                this.integerSum += ((Number) value).longValue();
+            } else {
+                this.integral = false;
+                this.decimalSum += toDouble(value);
+            }
+        }
+
+        Number getValue() {
+            return this.integral ? (Number) this.integerSum : (Number) (this.integerSum + this.decimalSum);
+        }
+    }
 }
@@ -2,8 +2,14 @@ package com.ncc.neon.services;
 
 import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import com.ncc.neon.models.DataNotification;
+import com.ncc.neon.models.queries.MutateQuery;
 import com.ncc.neon.util.DateUtil;
 
 import org.springframework.http.codec.ServerSentEvent;
@@ -20,8 +26,10 @@ public class DatasetService {
 
     final private FluxProcessor<DataNotification, DataNotification> processor;
     final private FluxSink<DataNotification> sink;
+    final private QueryResultCache queryResultCache;
 
-    DatasetService() {
+    DatasetService(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
         processor = DirectProcessor.<DataNotification>create().serialize();
         sink = processor.sink();
     }
@@ -37,9 +45,12 @@ public class DatasetService {
     }
 
     /**
-     * Sends the given data notification object to all its listeners and returns the timestamp.
+     * Sends the given data notification object to all its listeners and returns the timestamp.  Also invalidates any
+     * cached query results for the changed table.
      */
     public Mono<String> notify(DataNotification notification) {
+        queryResultCache.invalidate(notification.getDatastoreType(), notification.getDatastoreHost(),
+            notification.getDatabaseName(), notification.getTableName());
         if (notification.getTimestamp() == null)  {
             notification.setTimestamp(DateUtil.transformDateToString(ZonedDateTime.now()));
         }
@@ -47,6 +58,18 @@ public class DatasetService {
         return Mono.just(notification.getTimestamp());
     }
 
+    /**
+     * Sends one data notification for each table changed by the given mutations, counting the mutations of the table,
+     * instead of one notification for each mutation.
+     */
+    public void notifyMutations(List<MutateQuery> mutateQueries) {
+        Map<List<String>, Long> counts = mutateQueries.stream().collect(Collectors.groupingBy(mutateQuery ->
+            Arrays.asList(mutateQuery.getDatastoreHost(), mutateQuery.getDatastoreType(),
+            mutateQuery.getDatabaseName(), mutateQuery.getTableName()), LinkedHashMap::new, Collectors.counting()));
+        counts.forEach((table, count) -> notify(new DataNotification(table.get(0), table.get(1), table.get(2),
+            table.get(3), count)));
+    }
+
     private Flux<ServerSentEvent<DataNotification>> createHeartbeatStream() {
         return Flux.interval(Duration.ofSeconds(30))
             .map(i -> ServerSentEvent.<DataNotification>builder().build());
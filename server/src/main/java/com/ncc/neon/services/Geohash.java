@@ -0,0 +1,78 @@
+package com.ncc.neon.services;
+
+/**
+ * Encodes points as geohashes: each character of a geohash splits the cell of its prefix into 32 smaller cells, so
+ * cells of every precision nest inside each other.  A geohash is held as a long of 5 bits per character.
+ */
+final class Geohash {
+    static final int MAX_PRECISION = 12;
+
+    private static final String BASE_32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private Geohash() {
+    }
+
+    /**
+     * Returns the geohash of the given precision containing the given point, or -1 if the point is not a valid
+     * latitude and longitude.
+     */
+    static long encode(double lat, double lon, int precision) {
+        if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180)) {
+            return -1;
+        }
+        double south = -90;
+        double north = 90;
+        double west = -180;
+        double east = 180;
+        long geohash = 0;
+        // The bits alternate between longitude and latitude, starting with longitude.
+        for (int bit = 0; bit < precision * 5; bit++) {
+            geohash <<= 1;
+            if (bit % 2 == 0) {
+                double middle = (west + east) / 2;
+                if (lon >= middle) {
+                    geohash |= 1;
+                    west = middle;
+                } else {
+                    east = middle;
+                }
+            } else {
+                double middle = (south + north) / 2;
+                if (lat >= middle) {
+                    geohash |= 1;
+                    south = middle;
+                } else {
+                    north = middle;
+                }
+            }
+        }
+        return geohash;
+    }
+
+    /**
+     * Returns the south, north, west, and east borders of the given geohash cell.
+     */
+    static double[] decodeBounds(long geohash, int precision) {
+        double[] latRange = { -90, 90 };
+        double[] longRange = { -180, 180 };
+        int bits = precision * 5;
+        for (int bit = 0; bit < bits; bit++) {
+            double[] range = bit % 2 == 0 ? longRange : latRange;
+            double middle = (range[0] + range[1]) / 2;
+            if (((geohash >>> (bits - bit - 1)) & 1) == 1) {
+                range[0] = middle;
+            } else {
+                range[1] = middle;
+            }
+        }
+        return new double[] { latRange[0], latRange[1], longRange[0], longRange[1] };
+    }
+
+    static String toString(long geohash, int precision) {
+        char[] text = new char[precision];
+        for (int i = 0; i < precision; i++) {
+            text[i] = BASE_32.charAt((int) (geohash >>> ((precision - i - 1) * 5)) & 31);
+        }
+        return String.valueOf(text);
+    }
+}
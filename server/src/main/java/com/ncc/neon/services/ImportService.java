@@ -0,0 +1,130 @@
+package com.ncc.neon.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ncc.neon.models.ConnectionInfo;
+import com.ncc.neon.models.queries.ImportQuery;
+import com.ncc.neon.models.results.ActionResult;
+import com.ncc.neon.models.results.ImportBatchResult;
+import com.opencsv.CSVParser;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Imports a stream of records in batches, so no more than a few batches of the records are held in memory at once
+ * however many records are imported.  Each batch is imported by the adapter's importData, so the datastore receives
+ * bulk requests of a bounded size.
+ */
+@Component
+@Slf4j
+public class ImportService {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final QueryService queryService;
+    private final int batchSize;
+    private final long batchBytes;
+    private final int concurrency;
+
+    ImportService(QueryService queryService, @Value("${import.batch-size:1000}") int batchSize,
+            @Value("${import.batch-bytes:5242880}") long batchBytes, @Value("${import.concurrency:2}") int concurrency) {
+        this.queryService = queryService;
+        this.batchSize = batchSize;
+        this.batchBytes = batchBytes;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Imports the given JSON records into the given table in batches of at most the configured number of records and
+     * (unless one record is bigger) the configured length of JSON, importing at most the configured number of batches
+     * at once.  Records are read from the stream only as fast as the batches are imported.
+     *
+     * @return The result of each batch in the order of the batches, including the error of any batch that failed
+     */
+    public Flux<ImportBatchResult> importRecords(ConnectionInfo ci, String database, String table,
+            Flux<String> records) {
+        return Flux.defer(() -> {
+            // The number and length of the records in the current batch.
+            long[] size = new long[2];
+            Flux<List<String>> batches = records.bufferUntil(record -> {
+                boolean full = size[0] > 0 && (size[0] >= this.batchSize || size[1] + record.length() > this.batchBytes);
+                if (full) {
+                    size[0] = 0;
+                    size[1] = 0;
+                }
+                size[0]++;
+                size[1] += record.length();
+                return full;
+            }, true);
+
+            long[] nextRecord = new long[1];
+            return batches.index().flatMapSequential(indexedBatch -> {
+                long batch = indexedBatch.getT1();
+                List<String> source = indexedBatch.getT2();
+                long firstRecord = nextRecord[0];
+                nextRecord[0] += source.size();
+                ImportQuery importQuery = new ImportQuery(ci.getHost(), ci.getDatabaseType(), database, table, source,
+                    false);
+                return this.queryService.importData(ci, importQuery)
+                    .onErrorResume(e -> {
+                        log.error("Import batch " + batch + " Error", e);
+                        return Mono.just(new ActionResult(e.getMessage()));
+                    })
+                    .map(result -> new ImportBatchResult(batch, firstRecord, source.size(), result));
+            }, this.concurrency);
+        });
+    }
+
+    /**
+     * Returns the JSON records of the given lines of newline-delimited JSON, skipping blank lines.
+     */
+    public static Flux<String> readJsonLines(Flux<String> lines) {
+        return lines.filter(line -> !line.trim().isEmpty());
+    }
+
+    /**
+     * Returns each row of the given lines of CSV as a JSON record of string values named by the header row.  Quoted
+     * values may span lines.
+     */
+    public static Flux<String> readCsvLines(Flux<String> lines) {
+        return Flux.defer(() -> {
+            CSVParser parser = new CSVParser();
+            List<String> values = new ArrayList<>();
+            String[][] header = new String[1][];
+            return lines.handle((line, sink) -> {
+                if (line.isEmpty() && !parser.isPending()) {
+                    return;
+                }
+                try {
+                    values.addAll(Arrays.asList(parser.parseLineMulti(line)));
+                } catch (IOException e) {
+                    sink.error(e);
+                    return;
+                }
+                if (parser.isPending()) {
+                    return;
+                }
+                if (header[0] == null) {
+                    header[0] = values.toArray(new String[values.size()]);
+                } else {
+                    ObjectNode record = MAPPER.createObjectNode();
+                    for (int index = 0; index < header[0].length && index < values.size(); index++) {
+                        record.put(header[0][index], values.get(index));
+                    }
+                    sink.next(record.toString());
+                }
+                values.clear();
+            });
+        });
+    }
+}
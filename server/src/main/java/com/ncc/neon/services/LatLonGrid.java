@@ -0,0 +1,101 @@
+package com.ncc.neon.services;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A grid of lat/lon bins that finds the bin of a point directly from its coordinates instead of comparing the point
+ * with every bin.  Like the bins themselves, the first bin on each axis includes its start and every bin includes its
+ * end, so a point on the border of two bins is in the first of them.
+ */
+class LatLonGrid {
+    private final Axis latAxis;
+    private final Axis longAxis;
+
+    private LatLonGrid(Axis latAxis, Axis longAxis) {
+        this.latAxis = latAxis;
+        this.longAxis = longAxis;
+    }
+
+    /**
+     * Returns the grid for the given bins, which are ordered by latitude and then by longitude, and whose ranges are
+     * lists of two BigDecimals.
+     */
+    static LatLonGrid fromBins(List<Map<String, Object>> bins, String latKey, String longKey) {
+        List<double[]> longRanges = new ArrayList<>();
+        Object firstLatRange = bins.isEmpty() ? null : bins.get(0).get(latKey);
+        for (int i = 0; i < bins.size() && bins.get(i).get(latKey).equals(firstLatRange); i++) {
+            longRanges.add(toRange(bins.get(i).get(longKey)));
+        }
+        List<double[]> latRanges = new ArrayList<>();
+        for (int i = 0; i < bins.size(); i += longRanges.size()) {
+            latRanges.add(toRange(bins.get(i).get(latKey)));
+        }
+        return new LatLonGrid(new Axis(latRanges), new Axis(longRanges));
+    }
+
+    static double[] toRange(Object range) {
+        List<?> list = (List<?>) range;
+        return new double[] { ((BigDecimal) list.get(0)).doubleValue(), ((BigDecimal) list.get(1)).doubleValue() };
+    }
+
+    /**
+     * Returns the index of the bin containing the given point, or -1 if no bin contains the point.
+     */
+    int indexOf(double lat, double lon) {
+        int latIndex = this.latAxis.indexOf(lat);
+        int longIndex = this.longAxis.indexOf(lon);
+        return latIndex < 0 || longIndex < 0 ? -1 : latIndex * this.longAxis.size() + longIndex;
+    }
+
+    int size() {
+        return this.latAxis.size() * this.longAxis.size();
+    }
+
+    List<double[]> getLatRanges() {
+        return this.latAxis.ranges;
+    }
+
+    List<double[]> getLongRanges() {
+        return this.longAxis.ranges;
+    }
+
+    /**
+     * The evenly spaced bins along one axis.
+     */
+    private static class Axis {
+        private final List<double[]> ranges;
+        private final double start;
+        private final double[] ends;
+        private final double gap;
+
+        Axis(List<double[]> ranges) {
+            this.ranges = ranges;
+            this.start = ranges.isEmpty() ? 0 : ranges.get(0)[0];
+            this.ends = ranges.stream().mapToDouble(range -> range[1]).toArray();
+            this.gap = ranges.isEmpty() ? 0 : (this.ends[this.ends.length - 1] - this.start) / this.ends.length;
+        }
+
+        int indexOf(double value) {
+            // Also excludes NaN.
+            if (this.ends.length == 0 || !(value >= this.start && value <= this.ends[this.ends.length - 1])) {
+                return -1;
+            }
+            // Estimate the bin from the spacing, then correct for any rounding against the exact bin ends.
+            int index = (int) Math.min(this.ends.length - 1, Math.max(0, Math.ceil((value - this.start) / this.gap) - 1));
+            while (index > 0 && value <= this.ends[index - 1]) {
+                index--;
+            }
+            while (value > this.ends[index]) {
+                index++;
+            }
+            return index;
+        }
+
+        int size() {
+            return this.ends.length;
+        }
+    }
+}
@@ -1,27 +1,47 @@
 package com.ncc.neon.services;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Comparator;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
 
 import com.ncc.neon.adapters.QueryAdapter;
 import com.ncc.neon.adapters.QueryAdapterFactory;
 import com.ncc.neon.models.ConnectionInfo;
 
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Component
 @Slf4j
 public class QueryAdapterLocator {
 
     private final Map<String, QueryAdapterFactory> initialContext = new HashMap<>();
-    private final Map<ConnectionInfo, QueryAdapter> cache = new HashMap<>();
-    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<ConnectionInfo, AdapterEntry> cache = new ConcurrentHashMap<>();
+    private final Set<AdapterEntry> closing = ConcurrentHashMap.newKeySet();
+    private final long idleTimeoutNanos;
+    private final int maxCount;
+    private final Duration closeDelay;
+    private final Disposable evictionTask;
 
-    QueryAdapterLocator(List<QueryAdapterFactory> queryAdapterFactories) throws Exception {
+    QueryAdapterLocator(List<QueryAdapterFactory> queryAdapterFactories,
+            @Value("${adapter.idle-timeout-seconds:1800}") long idleTimeoutSeconds,
+            @Value("${adapter.eviction-interval-seconds:60}") long evictionIntervalSeconds,
+            @Value("${adapter.max-count:100}") int maxCount,
+            @Value("${adapter.close-delay-seconds:60}") long closeDelaySeconds) throws Exception {
         if (queryAdapterFactories.size() == 0) {
             log.error("Must have at least one factory");
             throw new Exception("Must have at least one factory");
@@ -33,24 +53,231 @@ public class QueryAdapterLocator {
                 initialContext.put(name, queryAdapterFactory);
             }
         }
+
+        this.idleTimeoutNanos = Duration.ofSeconds(idleTimeoutSeconds).toNanos();
+        this.maxCount = maxCount;
+        this.closeDelay = Duration.ofSeconds(closeDelaySeconds);
+        // Closing an adapter may block (for example, while its connection pool shuts down), so run the sweep on a
+        // scheduler that allows blocking.
+        this.evictionTask = Flux.interval(Duration.ofSeconds(evictionIntervalSeconds))
+            .onBackpressureDrop()
+            .publishOn(Schedulers.boundedElastic())
+            .subscribe(tick -> evictIdleAdapters());
     }
 
+    /**
+     * Returns the adapter for the given connection, building it on first use.  Finding an existing adapter never
+     * blocks, and building an adapter only blocks other callers for the same connection.
+     */
     QueryAdapter getAdapter(ConnectionInfo ci) {
-        lock.lock();
-        try {
-            QueryAdapter adapter = cache.get(ci);
-
+        while (true) {
+            QueryAdapter adapter = findEntry(ci).getAdapter();
             if (adapter != null) {
                 return adapter;
             }
+            // The entry was evicted and closed after it was found, so find (or create) its replacement.
+        }
+    }
+
+    /**
+     * Returns the results of the given work on the adapter for the given connection.  The adapter is not closed while
+     * the results are in flight, even if it is evicted (see evict).
+     */
+    <T> Flux<T> useAdapter(ConnectionInfo ci, Function<QueryAdapter, Publisher<T>> work) {
+        return Flux.using(() -> acquire(ci), entry -> work.apply(entry.adapter), AdapterEntry::release);
+    }
+
+    /**
+     * Returns the result of the given work on the adapter for the given connection, like useAdapter.
+     */
+    <T> Mono<T> useAdapterMono(ConnectionInfo ci, Function<QueryAdapter, Mono<T>> work) {
+        return Mono.using(() -> acquire(ci), entry -> work.apply(entry.adapter), AdapterEntry::release);
+    }
+
+    /**
+     * Returns the entry for the given connection with one more use of its adapter, building the adapter if needed.
+     * Each acquire must be followed by one release.
+     */
+    private AdapterEntry acquire(ConnectionInfo ci) {
+        while (true) {
+            AdapterEntry entry = findEntry(ci);
+            if (entry.acquire()) {
+                return entry;
+            }
+            // The entry was evicted and closed after it was found, so find (or create) its replacement.
+        }
+    }
+
+    private AdapterEntry findEntry(ConnectionInfo ci) {
+        AdapterEntry entry = cache.get(ci);
+        if (entry == null) {
+            entry = cache.computeIfAbsent(ci, AdapterEntry::new);
+            if (cache.size() > maxCount) {
+                evictLeastRecentlyUsedAdapters();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Removes and closes every adapter that has not been used within the idle timeout.
+     */
+    void evictIdleAdapters() {
+        long now = System.nanoTime();
+        cache.forEach((ci, entry) -> {
+            if (now - entry.lastUsed > idleTimeoutNanos) {
+                evict(entry, "idle");
+            }
+        });
+    }
+
+    /**
+     * Removes the least recently used adapters until no more than the maximum count remain.
+     */
+    private void evictLeastRecentlyUsedAdapters() {
+        cache.values().stream()
+            .sorted(Comparator.comparingLong(entry -> entry.lastUsed))
+            .limit(Math.max(0, cache.size() - maxCount))
+            .forEach(entry -> evict(entry, "least recently used"));
+    }
+
+    /**
+     * Removes the given adapter so no new queries can use it, then closes it once the close delay has passed and the
+     * queries already using it have finished, whichever is later.
+     */
+    private void evict(AdapterEntry entry, String reason) {
+        if (cache.remove(entry.ci, entry)) {
+            log.debug("Evicting " + reason + " adapter for " + entry.ci);
+            closing.add(entry);
+            Mono.delay(closeDelay).publishOn(Schedulers.boundedElastic()).subscribe(tick -> entry.expire(),
+                error -> log.error("Cannot close adapter for " + entry.ci, error));
+        }
+    }
+
+    /**
+     * Closes the given evicted adapter unless it was already closed (by shutdown).
+     */
+    private void closeEvicted(AdapterEntry entry) {
+        if (closing.remove(entry)) {
+            entry.close();
+        }
+    }
+
+    /**
+     * Closes every adapter, including evicted adapters still waiting for their close delay or their queries.
+     */
+    @PreDestroy
+    void shutdown() {
+        evictionTask.dispose();
+        cache.values().forEach(closing::add);
+        cache.clear();
+        closing.forEach(entry -> {
+            if (closing.remove(entry)) {
+                entry.close();
+            }
+        });
+        log.debug("Closed all adapters");
+    }
+
+    int getAdapterCount() {
+        return cache.size();
+    }
+
+    /**
+     * Holds the adapter for one connection, which is built by the first caller to need it.
+     */
+    private class AdapterEntry {
+        private final ConnectionInfo ci;
+        private volatile QueryAdapter adapter;
+        private volatile long lastUsed = System.nanoTime();
+        private boolean closed = false;
+        // The number of acquires not yet released, and whether the close delay has passed since the entry was evicted.
+        private int uses = 0;
+        private boolean expired = false;
+
+        AdapterEntry(ConnectionInfo ci) {
+            this.ci = ci;
+        }
+
+        /**
+         * Returns the adapter, building it if needed, or null if this entry has been closed.
+         */
+        QueryAdapter getAdapter() {
+            lastUsed = System.nanoTime();
+            QueryAdapter current = adapter;
+            if (current == null) {
+                synchronized (this) {
+                    current = adapter;
+                    if (current == null && !closed) {
+                        QueryAdapterFactory adapterFactory = initialContext.get(ci.getDatabaseType());
+                        current = adapterFactory.initialize(ci);
+                        adapter = current;
+                    }
+                }
+            }
+            return current;
+        }
+
+        /**
+         * Adds a use of the adapter, building it if needed, or returns false if this entry has been closed.
+         */
+        boolean acquire() {
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                uses++;
+            }
+            if (getAdapter() == null) {
+                release();
+                return false;
+            }
+            return true;
+        }
 
-            QueryAdapterFactory adapterFactory = initialContext.get(ci.getDatabaseType());
-            adapter = adapterFactory.initialize(ci);
-            cache.put(ci, adapter);
-            return adapter;
+        void release() {
+            lastUsed = System.nanoTime();
+            boolean idle;
+            synchronized (this) {
+                uses--;
+                idle = expired && uses == 0;
+            }
+            if (idle) {
+                // The last query may finish on any thread, and closing an adapter may block, so close it on a
+                // scheduler that allows blocking.
+                Mono.fromRunnable(() -> closeEvicted(this)).subscribeOn(Schedulers.boundedElastic()).subscribe(null,
+                    error -> log.error("Cannot close adapter for " + ci, error));
+            }
         }
-        finally {
-            lock.unlock();
+
+        /**
+         * Marks that the close delay has passed since this entry was evicted, closing it if it is not in use.
+         */
+        void expire() {
+            boolean idle;
+            synchronized (this) {
+                expired = true;
+                idle = uses == 0;
+            }
+            if (idle) {
+                closeEvicted(this);
+            }
+        }
+
+        void close() {
+            QueryAdapter current;
+            synchronized (this) {
+                current = adapter;
+                adapter = null;
+                closed = true;
+            }
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (Exception e) {
+                    log.error("Cannot close adapter for " + ci, e);
+                }
+            }
         }
     }
 }
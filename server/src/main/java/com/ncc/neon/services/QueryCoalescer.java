@@ -0,0 +1,70 @@
+package com.ncc.neon.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.ncc.neon.models.results.TabularQueryResult;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Shares one in-flight execution among all concurrent callers of the same query (single-flight).  Unlike the
+ * QueryResultCache, nothing is kept once the execution finishes, so a caller only ever shares a result that was still
+ * being read when the caller asked for it.
+ */
+@Component
+public class QueryCoalescer {
+
+    static final String COALESCED_METRIC_NAME = "neon.query.coalesced";
+
+    private final boolean enabled;
+    private final Map<QueryKey, Mono<TabularQueryResult>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedCounter;
+
+    QueryCoalescer(@Value("${query.coalescing.enabled:true}") boolean enabled, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.coalescedCounter = Counter.builder(COALESCED_METRIC_NAME)
+            .description("Queries that joined an identical query already in flight")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns the in-flight execution of the query with the given key, or subscribes to the given loader and shares
+     * its result with every caller of the same query until it finishes.
+     */
+    public Mono<TabularQueryResult> execute(QueryKey key, Supplier<Mono<TabularQueryResult>> loader) {
+        if (!enabled || key == null) {
+            return loader.get();
+        }
+
+        return Mono.defer(() -> {
+            // Holds the execution created by this call, if any, so only that execution is ever removed.
+            Object[] created = new Object[1];
+            Mono<TabularQueryResult> shared = inFlight.computeIfAbsent(key, k -> {
+                Mono<TabularQueryResult> execution = loader.get()
+                    .doFinally(signal -> inFlight.remove(k, created[0]))
+                    .cache();
+                created[0] = execution;
+                return execution;
+            });
+            if (created[0] == null) {
+                coalescedCounter.increment();
+            }
+            return shared;
+        });
+    }
+
+    long getCoalescedCount() {
+        return (long) coalescedCounter.count();
+    }
+
+    int getInFlightCount() {
+        return inFlight.size();
+    }
+}
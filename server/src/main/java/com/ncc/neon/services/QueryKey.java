@@ -0,0 +1,84 @@
+package com.ncc.neon.services;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ncc.neon.models.ConnectionInfo;
+import com.ncc.neon.models.queries.JoinClause;
+import com.ncc.neon.models.queries.Query;
+
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Identifies a query on a connection by the canonical JSON of both, so equal queries built by different clients (with
+ * properties or map entries in a different order) have equal keys.  Also records the tables the query reads from.
+ */
+@EqualsAndHashCode(of = "canonicalJson")
+@Slf4j
+class QueryKey {
+
+    private static final ObjectMapper KEY_MAPPER = new ObjectMapper()
+        .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+        .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final String canonicalJson;
+    private final Set<String> tables;
+
+    private QueryKey(String canonicalJson, Set<String> tables) {
+        this.canonicalJson = canonicalJson;
+        this.tables = tables;
+    }
+
+    /**
+     * Returns the key for the given query on the given connection, or null if the query cannot be serialized.
+     */
+    static QueryKey of(ConnectionInfo ci, Query query) {
+        try {
+            Set<String> tables = new HashSet<>();
+            if (query.getSelectClause() != null) {
+                tables.add(createTableName(ci.getDatabaseType(), ci.getHost(), query.getSelectClause().getDatabase(),
+                    query.getSelectClause().getTable()));
+            }
+            if (query.getJoinClauses() != null) {
+                for (JoinClause joinClause : query.getJoinClauses()) {
+                    tables.add(createTableName(ci.getDatabaseType(), ci.getHost(), joinClause.getDatabase(),
+                        joinClause.getTable()));
+                }
+            }
+            return new QueryKey(KEY_MAPPER.writeValueAsString(new Object[] { ci, query }), tables);
+        } catch (JsonProcessingException e) {
+            log.warn("Cannot create key for query that cannot be serialized: " + e.getMessage());
+            return null;
+        }
+    }
+
+    Set<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * Returns whether the query reads from any table starting with the given name from createTableName.
+     */
+    boolean readsFrom(String tableNamePrefix) {
+        return tables.stream().anyMatch(table -> table.startsWith(tableNamePrefix));
+    }
+
+    /**
+     * Returns the table name used to match keys, ending at the first null so it works as a prefix.
+     */
+    static String createTableName(String databaseType, String host, String databaseName, String tableName) {
+        StringBuilder builder = new StringBuilder().append(databaseType).append('/').append(host).append('/');
+        if (databaseName != null) {
+            builder.append(databaseName).append('/');
+            if (tableName != null) {
+                builder.append(tableName).append('/');
+            }
+        }
+        return builder.toString();
+    }
+}
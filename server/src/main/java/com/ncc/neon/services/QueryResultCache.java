@@ -0,0 +1,130 @@
+package com.ncc.neon.services;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ncc.neon.models.results.TabularQueryResult;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Caches query results keyed on the canonical form of the connection and the query.  Entries are weighed by row count,
+ * expire after a TTL, and are invalidated by table whenever that table is changed through this server.
+ */
+@Component
+@Slf4j
+public class QueryResultCache {
+
+    static final String CACHE_NAME = "neonQueryResults";
+
+    private final boolean enabled;
+    private final Cache<QueryKey, TabularQueryResult> cache;
+
+    // The number of invalidations of each table name prefix (see QueryKey.createTableName), so results from queries
+    // that were in flight across an invalidation of a table they read from (and so may be stale) are never cached.
+    private final Map<String, AtomicLong> epochs = new ConcurrentHashMap<>();
+
+    QueryResultCache(@Value("${query.cache.enabled:true}") boolean enabled,
+            @Value("${query.cache.max-rows:1000000}") long maxRows,
+            @Value("${query.cache.ttl-seconds:60}") long ttlSeconds, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxRows)
+            .weigher((QueryKey key, TabularQueryResult result) -> Math.max(1, result.getData().size()))
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the cached result of the given query, or subscribes to the given loader and caches its result.
+     */
+    public Mono<TabularQueryResult> get(QueryKey key, Supplier<Mono<TabularQueryResult>> loader) {
+        if (!enabled || key == null) {
+            return loader.get();
+        }
+
+        return find(key).switchIfEmpty(load(key, loader));
+    }
+
+    /**
+     * Returns the cached result of the given query, or an empty Mono if it is not cached.
+     */
+    public Mono<TabularQueryResult> find(QueryKey key) {
+        if (!enabled || key == null) {
+            return Mono.empty();
+        }
+
+        return Mono.fromSupplier(() -> cache.getIfPresent(key));
+    }
+
+    /**
+     * Subscribes to the given loader and caches its result unless a table the query reads from is invalidated while
+     * it runs.  Each execution of a query must be loaded once, so a caller sharing an execution that started before an
+     * invalidation can never cache its result (see QueryService.executeQuery).
+     */
+    public Mono<TabularQueryResult> load(QueryKey key, Supplier<Mono<TabularQueryResult>> loader) {
+        if (!enabled || key == null) {
+            return Mono.defer(loader);
+        }
+
+        return Mono.defer(() -> {
+            long start = findEpoch(key);
+            return loader.get().doOnNext(result -> {
+                cache.put(key, result);
+                // Checked after the put so an invalidation running concurrently can never leave a stale entry.
+                if (findEpoch(key) != start) {
+                    cache.invalidate(key);
+                }
+            });
+        });
+    }
+
+    /**
+     * Removes every cached result that reads from the given table.  A null table (or database) matches every table
+     * in the database (or datastore).
+     */
+    public void invalidate(String databaseType, String host, String databaseName, String tableName) {
+        String prefix = QueryKey.createTableName(databaseType, host, databaseName, tableName);
+        epochs.computeIfAbsent(prefix, name -> new AtomicLong()).incrementAndGet();
+        int before = cache.asMap().size();
+        cache.asMap().keySet().removeIf(key -> key.readsFrom(prefix));
+        log.debug("Invalidated " + (before - cache.asMap().size()) + " cached results for " + prefix);
+    }
+
+    /**
+     * Returns the number of invalidations of the tables the given query reads from, counting the invalidations of
+     * their databases and hosts.  The count only grows, so it changes whenever one of those tables is invalidated.
+     */
+    private long findEpoch(QueryKey key) {
+        long epoch = 0;
+        for (String table : key.getTables()) {
+            // Every prefix of the table name that ends with a separator is the name of the table, its database, or
+            // its host.
+            for (int end = table.indexOf('/'); end >= 0; end = table.indexOf('/', end + 1)) {
+                AtomicLong count = epochs.get(table.substring(0, end + 1));
+                if (count != null) {
+                    epoch += count.get();
+                }
+            }
+        }
+        return epoch;
+    }
+
+    long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+}
@@ -1,5 +1,6 @@
 package com.ncc.neon.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ncc.neon.adapters.QueryAdapter;
 import com.ncc.neon.models.ConnectionInfo;
 import com.ncc.neon.models.queries.ImportQuery;
@@ -11,11 +12,17 @@ import com.ncc.neon.models.results.TabularQueryResult;
 import com.ncc.neon.models.results.TableWithFields;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.stereotype.Component;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 @Component
 public class QueryService {
 
@@ -23,65 +30,135 @@ public class QueryService {
 
     private ClusterService clusterService;
 
+    private QueryResultCache queryResultCache;
+
+    private QueryCoalescer queryCoalescer;
+
     @Autowired
-    QueryService(QueryAdapterLocator queryExecutorLocator, ClusterService clusterService) {
+    QueryService(QueryAdapterLocator queryExecutorLocator, ClusterService clusterService,
+            QueryResultCache queryResultCache, QueryCoalescer queryCoalescer) {
         this.queryAdapterLocator = queryExecutorLocator;
         this.clusterService = clusterService;
+        this.queryResultCache = queryResultCache;
+        this.queryCoalescer = queryCoalescer;
     }
 
     public Mono<TabularQueryResult> executeQuery(ConnectionInfo ci, Query query) {
-        QueryAdapter adapter = this.queryAdapterLocator.getAdapter(ci);
+        QueryKey key = QueryKey.of(ci, query);
+        // The result is loaded into the cache inside the shared execution, so the invalidations it missed are those
+        // since the execution started, not since each caller joined it.
+        return this.queryResultCache.find(key).switchIfEmpty(Mono.defer(() ->
+            this.queryCoalescer.execute(key, () ->
+            this.queryResultCache.load(key, () -> executeUncachedQuery(ci, query)))));
+    }
 
+    private Mono<TabularQueryResult> executeUncachedQuery(ConnectionInfo ci, Query query) {
         if (query.getClusterClause() != null) {
-            this.clusterService.setClusterClause(query.getClusterClause());
-            return adapter.execute(query).flatMap(this.clusterService::clusterIntoMono);
+            // Only the clusters are returned by the datastore if it can make them itself.
+            return this.queryAdapterLocator.useAdapterMono(ci, adapter ->
+                this.clusterService.clusterInDatastore(adapter, query).switchIfEmpty(Mono.defer(() ->
+                adapter.execute(query).flatMap(result -> this.clusterService.clusterIntoMono(result,
+                query.getClusterClause())))));
         } else {
-            return adapter.execute(query);
+            return this.queryAdapterLocator.useAdapterMono(ci, adapter -> adapter.execute(query));
         }
     }
 
-    public Flux<String> getDatabaseNames(ConnectionInfo ci) {
+    public Flux<Map<String, Object>> executeStreamingQuery(ConnectionInfo ci, Query query) {
+        // Clustering needs every row of the results, so clustered queries cannot be streamed from the adapter.
+        if (query.getClusterClause() != null) {
+            return executeQuery(ci, query).flatMapIterable(TabularQueryResult::getData);
+        }
+        return this.queryAdapterLocator.useAdapter(ci, adapter -> adapter.executeStreaming(query));
+    }
+
+    /**
+     * Returns whether the adapter of the given query can write the JSON of its rows (see
+     * QueryAdapter.canStreamJson).  If not, the rows of executeStreamingQuery must be serialized instead.
+     */
+    public boolean canStreamJsonQuery(ConnectionInfo ci, Query query) {
+        // Clustered queries are clustered by the server from the rows of the adapter.
+        if (query.getClusterClause() != null) {
+            return false;
+        }
         QueryAdapter adapter = this.queryAdapterLocator.getAdapter(ci);
-        return adapter.showDatabases();
+        return adapter.canStreamJson(query);
+    }
+
+    /**
+     * Returns the newline-delimited JSON of the rows of the given query written by its adapter (see
+     * QueryAdapter.executeStreamingJson).  The query must satisfy canStreamJsonQuery.
+     */
+    public Flux<DataBuffer> executeStreamingJsonQuery(ConnectionInfo ci, Query query,
+            DataBufferFactory bufferFactory, ObjectMapper mapper) {
+        return this.queryAdapterLocator.useAdapter(ci, adapter ->
+            adapter.executeStreamingJson(query, bufferFactory, mapper));
+    }
+
+    public Flux<String> getDatabaseNames(ConnectionInfo ci) {
+        return this.queryAdapterLocator.useAdapter(ci, QueryAdapter::showDatabases);
     }
 
     public Flux<String> getTableNames(ConnectionInfo ci, String databaseName) {
-        QueryAdapter adapter = this.queryAdapterLocator.getAdapter(ci);
-        return adapter.showTables(databaseName);
+        return this.queryAdapterLocator.useAdapter(ci, adapter -> adapter.showTables(databaseName));
     }
 
     public Flux<FieldTypePair> getFieldTypes(ConnectionInfo ci, String databaseName, String tableName) {
-        QueryAdapter adapter = this.queryAdapterLocator.getAdapter(ci);
-        return adapter.getFieldTypes(databaseName, tableName);
+        return this.queryAdapterLocator.useAdapter(ci, adapter -> adapter.getFieldTypes(databaseName, tableName));
     }
 
     public Flux<String> getFields(ConnectionInfo ci, String databaseName, String tableName) {
-        QueryAdapter adapter = this.queryAdapterLocator.getAdapter(ci);
-        return adapter.getFieldNames(databaseName, tableName);
+        return this.queryAdapterLocator.useAdapter(ci, adapter -> adapter.getFieldNames(databaseName, tableName));
     }
 
     public Flux<TableWithFields> getTablesAndFields(ConnectionInfo ci, String databaseName) {
-        QueryAdapter adapter = this.queryAdapterLocator.getAdapter(ci);
-        return adapter.getTableAndFieldNames(databaseName);
+        return this.queryAdapterLocator.useAdapter(ci, adapter -> adapter.getTableAndFieldNames(databaseName));
     }
 
     public Mono<ActionResult> importData(ConnectionInfo ci, ImportQuery importQuery){
-        QueryAdapter adapter = this.queryAdapterLocator.getAdapter(ci);
-        return adapter.importData(importQuery);
+        return this.queryAdapterLocator.useAdapterMono(ci, adapter -> adapter.importData(importQuery))
+            .doOnSuccess(result -> this.queryResultCache.invalidate(ci.getDatabaseType(),
+            ci.getHost(), importQuery.getDatabase(), importQuery.getTable()));
     }
 
     public Mono<ActionResult> mutateData(ConnectionInfo ci, MutateQuery mutateQuery){
-        QueryAdapter adapter = this.queryAdapterLocator.getAdapter(ci);
-        return adapter.mutateData(mutateQuery);
+        return this.queryAdapterLocator.useAdapterMono(ci, adapter -> adapter.mutateData(mutateQuery))
+            .doOnSuccess(result -> invalidate(ci, mutateQuery));
     }
 
     public Mono<ActionResult> insertData(ConnectionInfo ci, MutateQuery mutateQuery) {
-        QueryAdapter adapter = this.queryAdapterLocator.getAdapter(ci);
-        return adapter.insertData(mutateQuery);
+        return this.queryAdapterLocator.useAdapterMono(ci, adapter -> adapter.insertData(mutateQuery))
+            .doOnSuccess(result -> invalidate(ci, mutateQuery));
     }
 
     public Mono<ActionResult> deleteData(ConnectionInfo ci, MutateQuery mutateQuery) {
-        QueryAdapter adapter = this.queryAdapterLocator.getAdapter(ci);
-        return adapter.deleteData(mutateQuery);
+        return this.queryAdapterLocator.useAdapterMono(ci, adapter -> adapter.deleteData(mutateQuery))
+            .doOnSuccess(result -> invalidate(ci, mutateQuery));
+    }
+
+    public Mono<List<ActionResult>> mutateDataBatch(ConnectionInfo ci, List<MutateQuery> mutateQueries) {
+        return this.queryAdapterLocator.useAdapterMono(ci, adapter -> adapter.mutateDataBatch(mutateQueries))
+            .doOnSuccess(results -> invalidate(ci, mutateQueries));
+    }
+
+    public Mono<List<ActionResult>> insertDataBatch(ConnectionInfo ci, List<MutateQuery> mutateQueries) {
+        return this.queryAdapterLocator.useAdapterMono(ci, adapter -> adapter.insertDataBatch(mutateQueries))
+            .doOnSuccess(results -> invalidate(ci, mutateQueries));
+    }
+
+    public Mono<List<ActionResult>> deleteDataBatch(ConnectionInfo ci, List<MutateQuery> mutateQueries) {
+        return this.queryAdapterLocator.useAdapterMono(ci, adapter -> adapter.deleteDataBatch(mutateQueries))
+            .doOnSuccess(results -> invalidate(ci, mutateQueries));
+    }
+
+    private void invalidate(ConnectionInfo ci, List<MutateQuery> mutateQueries) {
+        mutateQueries.stream().map(mutateQuery -> Arrays.asList(mutateQuery.getDatabaseName(),
+            mutateQuery.getTableName())).distinct().forEach(table -> this.queryResultCache.invalidate(
+            ci.getDatabaseType(), ci.getHost(), table.get(0), table.get(1)));
+    }
+
+    private void invalidate(ConnectionInfo ci, MutateQuery mutateQuery) {
+        this.queryResultCache.invalidate(ci.getDatabaseType(), ci.getHost(), mutateQuery.getDatabaseName(),
+            mutateQuery.getTableName());
     }
 }
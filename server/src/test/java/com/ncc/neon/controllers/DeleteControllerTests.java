@@ -13,13 +13,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.when;
@@ -100,4 +103,47 @@ public class DeleteControllerTests {
                     assertEquals(mutateResult, result);
                 });
     }
+
+    @Test
+    public void testDeleteBatchWithDifferentDatastores() {
+        List<MutateQuery> mutateQueries = Arrays.asList(createBatchQuery("testHost", "1"),
+            createBatchQuery("otherHost", "2"));
+        webTestClient.post()
+                .uri("/deleteservice/byid/batch")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(Mono.just(mutateQueries), new ParameterizedTypeReference<List<MutateQuery>>() {})
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testDeleteBatchWithValidInput() {
+        List<MutateQuery> mutateQueries = Arrays.asList(createBatchQuery("testHost", "1"),
+            createBatchQuery("testHost", "2"));
+
+        List<ActionResult> batchResults = Arrays.asList(new ActionResult("1 row deleted in testDatabase.testTable", null),
+            new ActionResult("Failed"));
+
+        ConnectionInfo info = new ConnectionInfo("testType", "testHost");
+
+        when(queryService.deleteDataBatch(info, mutateQueries)).thenReturn(Mono.just(batchResults));
+
+        webTestClient.post()
+                .uri("/deleteservice/byid/batch")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(Mono.just(mutateQueries), new ParameterizedTypeReference<List<MutateQuery>>() {})
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ActionResult.class)
+                .value(results -> {
+                    assertEquals(batchResults, results);
+                });
+    }
+
+    private static MutateQuery createBatchQuery(String host, String id) {
+        return new MutateQuery(host, "testType", "testDatabase", "testTable", "testIdField", id,
+            new LinkedHashMap<String, Object>(){{
+                put("testStringField", "testStringValue");
+            }}, null);
+    }
 }
@@ -4,31 +4,50 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
 import com.ncc.neon.NeonServerApplication;
+import com.ncc.neon.WebConfig;
 import com.ncc.neon.models.ConnectionInfo;
 import com.ncc.neon.models.queries.ExportQuery;
 import com.ncc.neon.models.queries.FieldNamePrettyNamePair;
 import com.ncc.neon.models.queries.Query;
+import com.ncc.neon.models.queries.SelectClause;
 import com.ncc.neon.models.results.ExportResult;
+import com.ncc.neon.models.results.FieldType;
+import com.ncc.neon.models.results.FieldTypePair;
 import com.ncc.neon.models.results.TabularQueryResult;
 import com.ncc.neon.services.QueryService;
 
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.types.pojo.ArrowType.ArrowTypeID;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import org.assertj.core.api.Assertions;
@@ -226,4 +245,166 @@ public class ExportControllerTests {
                     }
                 );        
     }        
-}
\ No newline at end of file
+
+    @Test
+    public void exportToCSVStream_shouldReturnBadRequestForInvalidInput() {
+        ExportQuery exportQuery = new ExportQuery("test", "elasticsearch", "loaclhost", new Query(), new ArrayList<FieldNamePrettyNamePair>());
+        webTestClient.post()
+                .uri("/exportservice/csv/stream")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(Mono.just(exportQuery), ExportQuery.class)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void exportToCSVStream_shouldWriteHeaderAndDataRows()
+    {
+        List<FieldNamePrettyNamePair> fieldNamePrettyNamePairs = 
+        List.of(new FieldNamePrettyNamePair("firstName", "first name"), new FieldNamePrettyNamePair("lastName", "last name"),
+                new FieldNamePrettyNamePair("geoLocation.lat", "latitude"));
+
+        ExportQuery exportQuery = new ExportQuery("test", "elasticsearch", "loaclhost", new Query(), fieldNamePrettyNamePairs);
+
+        List<Map<String, Object>> data = List.of(
+            Map.of("firstName", "John", "lastName", "Doe", "geoLocation", Map.of("lat", 2.5)),
+            Map.of("firstName", "Jane", "lastName", "Doe"));
+
+        ConnectionInfo ci = new ConnectionInfo(exportQuery.getDataStoreType(), exportQuery.getHostName());
+        when(queryService.executeStreamingQuery(ci, exportQuery.getQuery())).thenReturn(Flux.fromIterable(data));
+
+        webTestClient.post()
+                .uri("/exportservice/csv/stream")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(Mono.just(exportQuery), ExportQuery.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(WebConfig.TEXT_CSV)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"test.csv\"")
+                .expectBody(String.class)
+                .value(csv -> assertEquals(
+                    "\"first name\",\"last name\",\"latitude\"\n" +
+                    "\"John\",\"Doe\",\"2.5\"\n" +
+                    "\"Jane\",\"Doe\",\"\"\n", csv));
+    }
+
+    @Test
+    public void exportToCSVStream_shouldGzipDataRowsWhenRequested() throws IOException
+    {
+        List<FieldNamePrettyNamePair> fieldNamePrettyNamePairs = 
+        List.of(new FieldNamePrettyNamePair("id", "id"));
+
+        ExportQuery exportQuery = new ExportQuery("test", "elasticsearch", "loaclhost", new Query(), fieldNamePrettyNamePairs);
+
+        // More rows than fit in one buffer.
+        List<Map<String, Object>> data = IntStream.range(0, 1000).mapToObj(id -> Map.<String, Object>of("id", id))
+            .collect(Collectors.toList());
+
+        ConnectionInfo ci = new ConnectionInfo(exportQuery.getDataStoreType(), exportQuery.getHostName());
+        when(queryService.executeStreamingQuery(ci, exportQuery.getQuery())).thenReturn(Flux.fromIterable(data));
+
+        byte[] body = webTestClient.post()
+                .uri("/exportservice/csv/stream?gzip=true")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(Mono.just(exportQuery), ExportQuery.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            String[] csvRecords = new String(input.readAllBytes(), StandardCharsets.UTF_8).split("\n");
+            Assertions.assertThat(csvRecords.length).isEqualTo(1001);
+            assertEquals("\"id\"", csvRecords[0]);
+            assertEquals("\"0\"", csvRecords[1]);
+            assertEquals("\"999\"", csvRecords[1000]);
+        }
+    }
+
+    @Test
+    public void exportToArrow_shouldWriteTypedColumns() throws IOException
+    {
+        List<FieldNamePrettyNamePair> fieldNamePrettyNamePairs = 
+        List.of(new FieldNamePrettyNamePair("name", "name"), new FieldNamePrettyNamePair("age", "age"),
+                new FieldNamePrettyNamePair("birthday", "birthday"), new FieldNamePrettyNamePair("_count", "count"));
+
+        Query query = new Query();
+        query.setSelectClause(new SelectClause("testDatabase", "testTable"));
+        ExportQuery exportQuery = new ExportQuery("test", "elasticsearch", "loaclhost", query, fieldNamePrettyNamePairs);
+
+        List<Map<String, Object>> data = List.of(
+            Map.of("name", "John", "age", 30, "birthday", "1990-01-02T00:00:00Z", "_count", 2.5),
+            Map.of("name", "Jane", "birthday", "not a date"));
+
+        ConnectionInfo ci = new ConnectionInfo(exportQuery.getDataStoreType(), exportQuery.getHostName());
+        when(queryService.getFieldTypes(ci, "testDatabase", "testTable")).thenReturn(Flux.just(
+            new FieldTypePair("name", FieldType.KEYWORD), new FieldTypePair("age", FieldType.INTEGER),
+            new FieldTypePair("birthday", FieldType.DATETIME)));
+        when(queryService.executeStreamingQuery(ci, exportQuery.getQuery())).thenReturn(Flux.fromIterable(data));
+
+        byte[] body = webTestClient.post()
+                .uri("/exportservice/arrow")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(Mono.just(exportQuery), ExportQuery.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(ExportController.ARROW_STREAM)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"test.arrows\"")
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+
+        try (BufferAllocator allocator = new RootAllocator();
+                ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(body), allocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            Assertions.assertThat(root.getSchema().getFields()).extracting(field -> field.getType().getTypeID())
+                .containsExactly(ArrowTypeID.Utf8, ArrowTypeID.Int, ArrowTypeID.Timestamp, ArrowTypeID.FloatingPoint);
+            Assertions.assertThat(root.getSchema().getFields()).extracting(field -> field.getName())
+                .containsExactly("name", "age", "birthday", "count");
+
+            assertTrue(reader.loadNextBatch());
+            assertEquals(2, root.getRowCount());
+            assertEquals("John", root.getVector("name").getObject(0).toString());
+            assertEquals("Jane", root.getVector("name").getObject(1).toString());
+            assertEquals(30L, root.getVector("age").getObject(0));
+            assertTrue(root.getVector("age").isNull(1));
+            assertEquals(631238400000L, ((TimeStampMilliTZVector) root.getVector("birthday")).get(0));
+            assertTrue(root.getVector("birthday").isNull(1));
+            assertEquals(2.5, root.getVector("count").getObject(0));
+            assertTrue(root.getVector("count").isNull(1));
+            Assertions.assertThat(reader.loadNextBatch()).isFalse();
+        }
+    }
+
+    @Test
+    public void exportToArrow_shouldWriteSchemaWhenNoData() throws IOException
+    {
+        List<FieldNamePrettyNamePair> fieldNamePrettyNamePairs = 
+        List.of(new FieldNamePrettyNamePair("age", "age"));
+
+        Query query = new Query();
+        query.setSelectClause(new SelectClause("testDatabase", "testTable"));
+        ExportQuery exportQuery = new ExportQuery("test", "elasticsearch", "loaclhost", query, fieldNamePrettyNamePairs);
+
+        ConnectionInfo ci = new ConnectionInfo(exportQuery.getDataStoreType(), exportQuery.getHostName());
+        when(queryService.getFieldTypes(ci, "testDatabase", "testTable")).thenReturn(Flux.just(
+            new FieldTypePair("age", FieldType.INTEGER)));
+        when(queryService.executeStreamingQuery(ci, exportQuery.getQuery())).thenReturn(Flux.empty());
+
+        byte[] body = webTestClient.post()
+                .uri("/exportservice/arrow")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(Mono.just(exportQuery), ExportQuery.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+
+        try (BufferAllocator allocator = new RootAllocator();
+                ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(body), allocator)) {
+            Assertions.assertThat(reader.getVectorSchemaRoot().getSchema().getFields()).extracting(field -> field.getName())
+                .containsExactly("age");
+            Assertions.assertThat(reader.loadNextBatch()).isFalse();
+        }
+    }
+}
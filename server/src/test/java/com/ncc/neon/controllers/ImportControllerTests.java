@@ -1,13 +1,17 @@
 package com.ncc.neon.controllers;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import java.util.List;
 
 import com.ncc.neon.NeonServerApplication;
+import com.ncc.neon.WebConfig;
 import com.ncc.neon.models.ConnectionInfo;
 import com.ncc.neon.models.queries.ImportQuery;
 import com.ncc.neon.models.results.ActionResult;
+import com.ncc.neon.models.results.ImportBatchResult;
 import com.ncc.neon.services.QueryService;
 
 import org.junit.Test;
@@ -73,4 +77,98 @@ public class ImportControllerTests {
                     assertEquals(importResult.getError(), result.getError());
                 });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void importStreaming_shouldImportCSVRecords()
+    {
+        ConnectionInfo ci = new ConnectionInfo("testDataStoreType", "testHost");
+        when(queryService.getDatabaseNames(ci)).thenReturn(Flux.just("testDatabase"));
+        when(queryService.importData(eq(ci), any(ImportQuery.class))).thenAnswer(invocation -> {
+            ImportQuery importQuery = invocation.getArgument(1);
+            return Mono.just(new ActionResult(String.join(";", importQuery.getSource()), List.of()));
+        });
+
+        webTestClient.post()
+                .uri("/importservice/stream/testHost/testDataStoreType/testDatabase/testTable")
+                .contentType(WebConfig.TEXT_CSV)
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .syncBody("name,age\nJohn,30\r\nJane,40\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ImportBatchResult.class)
+                .value(results -> {
+                    assertEquals(1, results.size());
+                    assertEquals(2, results.get(0).getRecordCount());
+                    assertEquals("{\"name\":\"John\",\"age\":\"30\"};{\"name\":\"Jane\",\"age\":\"40\"}",
+                        results.get(0).getResult().getSuccess());
+                });
+    }
+
+    @Test
+    public void importStreaming_shouldImportJSONRecords()
+    {
+        ConnectionInfo ci = new ConnectionInfo("testDataStoreType", "testHost");
+        when(queryService.getDatabaseNames(ci)).thenReturn(Flux.empty());
+        when(queryService.importData(eq(ci), any(ImportQuery.class))).thenAnswer(invocation -> {
+            ImportQuery importQuery = invocation.getArgument(1);
+            return Mono.just(new ActionResult(String.join(";", importQuery.getSource()), List.of()));
+        });
+
+        webTestClient.post()
+                .uri("/importservice/stream/testHost/testDataStoreType/testDatabase/testTable?isNew=true")
+                .contentType(WebConfig.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .syncBody("{\"name\":\"John\"}\n\n{\"name\":\"Jane\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ImportBatchResult.class)
+                .value(results -> {
+                    assertEquals(1, results.size());
+                    assertEquals("{\"name\":\"John\"};{\"name\":\"Jane\"}", results.get(0).getResult().getSuccess());
+                });
+    }
+
+    @Test
+    public void importStreaming_shouldImportLongJSONRecords()
+    {
+        ConnectionInfo ci = new ConnectionInfo("testDataStoreType", "testHost");
+        when(queryService.getDatabaseNames(ci)).thenReturn(Flux.just("testDatabase"));
+        when(queryService.importData(eq(ci), any(ImportQuery.class))).thenAnswer(invocation -> {
+            ImportQuery importQuery = invocation.getArgument(1);
+            return Mono.just(new ActionResult(String.valueOf(importQuery.getSource().get(0).length()), List.of()));
+        });
+
+        // Longer than the 256 KB a decoder buffers by default.
+        String longRecord = "{\"name\":\"" + "a".repeat(1024 * 1024) + "\"}";
+        webTestClient.post()
+                .uri("/importservice/stream/testHost/testDataStoreType/testDatabase/testTable")
+                .contentType(WebConfig.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .syncBody(longRecord + "\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ImportBatchResult.class)
+                .value(results -> {
+                    assertEquals(1, results.size());
+                    assertEquals(String.valueOf(longRecord.length()), results.get(0).getResult().getSuccess());
+                });
+    }
+
+    @Test
+    public void importStreaming_shouldReturnBadRequestForMissingDatabase()
+    {
+        ConnectionInfo ci = new ConnectionInfo("testDataStoreType", "testHost");
+        when(queryService.getDatabaseNames(ci)).thenReturn(Flux.just("otherDatabase"));
+
+        webTestClient.post()
+                .uri("/importservice/stream/testHost/testDataStoreType/testDatabase/testTable")
+                .contentType(WebConfig.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_STREAM_JSON)
+                .syncBody("{\"name\":\"John\"}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBodyList(ImportBatchResult.class)
+                .value(results -> assertEquals("Database 'testDatabase' does not exist.",
+                    results.get(0).getResult().getError()));
+    }
+}
@@ -1,9 +1,11 @@
 package com.ncc.neon.controllers;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ncc.neon.NeonServerApplication;
 import com.ncc.neon.models.queries.*;
 import com.ncc.neon.models.results.TabularQueryResult;
@@ -131,4 +133,39 @@ public class QueryControllerTests {
                     ));
                 });
     }
+
+    @Test
+    public void executeStreamingQueryTest() {
+        Query query = new Query();
+        query.setSelectClause(new SelectClause("testDatabase", "testTable"));
+
+        this.webClient.post()
+                .uri("/queryservice/query/stream/localhost/dummy")
+                .accept(MediaType.parseMediaType("application/x-ndjson"))
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(Mono.just(query), Query.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .expectBody(String.class)
+                .consumeWith(result -> {
+                    String[] lines = result.getResponseBody().trim().split("\n");
+                    Assertions.assertThat(lines).hasSize(2);
+                    try {
+                        ObjectMapper mapper = new ObjectMapper();
+                        Assertions.assertThat(mapper.readValue(lines[0], Map.class)).isEqualTo(Map.ofEntries(
+                            Map.entry("testGroupField", "value1"),
+                            Map.entry("testAggregateLabel", 1)
+                        ));
+                        Assertions.assertThat(mapper.readValue(lines[1], Map.class)).isEqualTo(Map.ofEntries(
+                            Map.entry("testGroupField", "value2"),
+                            Map.entry("testAggregateLabel", 2)
+                        ));
+                    } catch (IOException e) {
+                        Assertions.fail(e.getMessage());
+                    }
+                });
+    }
 }
@@ -40,6 +40,18 @@ public class QueryJsonTest {
         assertThat(this.json.read("/json/queryPost.json")).isEqualTo(getQuery());
     }
 
+    @Test
+    public void testPaginationType() throws Exception {
+        Query query = new Query();
+        query.setSelectClause(new SelectClause("testDatabase", "testTable"));
+        query.setPaginationType(PaginationType.SEARCH_AFTER);
+        assertThat(this.json.write(query)).extractingJsonPathStringValue("@.paginationType").isEqualTo("searchAfter");
+        assertThat(this.json.parseObject("{\"paginationType\":\"searchAfter\"}").getPaginationType())
+            .isEqualTo(PaginationType.SEARCH_AFTER);
+        assertThat(this.json.parseObject("{\"paginationType\":\"scroll\"}").getPaginationType())
+            .isEqualTo(PaginationType.SCROLL);
+    }
+
     @Test
     public void testDeserializeNegativeDoubleQuery() throws Exception {
         SelectClause selectClause = new SelectClause("testDatabase", "testTable");
@@ -0,0 +1,101 @@
+package com.ncc.neon.models.results;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Test;
+
+public class ColumnarQueryResultTest {
+
+    private static Map<String, Object> createRow(Object... keysAndValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            row.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return row;
+    }
+
+    private static List<Map<String, Object>> createRows() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        rows.add(createRow("name", "a", "count", 1, "size", 1L, "score", 0.5, "flag", true, "date",
+            LocalDateTime.of(2019, 1, 2, 3, 4, 5, 6), "tags", Arrays.asList("x", "y")));
+        rows.add(createRow("name", "b", "count", 2, "size", 2L, "score", null, "flag", false, "date",
+            LocalDateTime.of(1960, 1, 1, 0, 0)));
+        rows.add(createRow("name", "a", "score", 1.5, "extra", "z"));
+        return rows;
+    }
+
+    @Test
+    public void testRowsMatchSourceMaps() {
+        List<Map<String, Object>> rows = createRows();
+        ColumnarQueryResult result = ColumnarQueryResult.of(rows);
+        assertThat(result.getData()).isEqualTo(rows);
+        assertThat(result).isEqualTo(new TabularQueryResult(rows));
+        assertThat(result.getRowCount()).isEqualTo(3);
+
+        Map<String, Object> row = result.getData().get(1);
+        assertThat(row.get("count")).isEqualTo(2);
+        assertThat(row.containsKey("score")).isTrue();
+        assertThat(row.get("score")).isNull();
+        assertThat(row.containsKey("extra")).isFalse();
+        assertThat(row.keySet()).containsExactly("name", "count", "size", "score", "flag", "date");
+    }
+
+    @Test
+    public void testColumnsAreSpecializedByType() {
+        ColumnarQueryResult result = ColumnarQueryResult.of(createRows());
+        assertThat(result.getSchema().getFieldNames()).containsExactly("name", "count", "size", "score", "flag",
+            "date", "tags", "extra");
+        assertThat(result.getSchema().getFieldTypes()).containsExactly(FieldType.KEYWORD, FieldType.INTEGER,
+            FieldType.INTEGER, FieldType.DECIMAL, FieldType.BOOLEAN, FieldType.DATETIME, FieldType.OBJECT,
+            FieldType.KEYWORD);
+        assertThat(result.getColumn("name")).isInstanceOf(ResultColumn.StringColumn.class);
+        assertThat(((ResultColumn.StringColumn) result.getColumn("name")).getDictionarySize()).isEqualTo(2);
+        assertThat(result.getColumn("score").getDouble(2)).isEqualTo(1.5);
+        assertThat(result.getColumn("missing")).isNull();
+    }
+
+    @Test
+    public void testMixedTypesFallBackToObjects() {
+        ColumnarQueryResult result = ColumnarQueryResult.builder()
+            .addRow().set("value", null)
+            .addRow().set("value", 1)
+            .addRow().set("value", "one")
+            .build();
+        assertThat(result.getColumn("value")).isInstanceOf(ResultColumn.ObjectColumn.class);
+        assertThat(result.getData()).extracting(row -> row.get("value")).containsExactly(null, 1, "one");
+
+        ColumnarQueryResult nullsFirst = ColumnarQueryResult.builder()
+            .addRow().set("value", null)
+            .addRow().set("value", 1)
+            .build();
+        assertThat(nullsFirst.getSchema().getFieldTypes()).containsExactly(FieldType.INTEGER);
+        assertThat(nullsFirst.getData()).extracting(row -> row.get("value")).containsExactly(null, 1);
+    }
+
+    @Test
+    public void testCaseInsensitiveFieldNames() {
+        ColumnarQueryResult result = ColumnarQueryResult.builder().caseInsensitive()
+            .addRow().set("Name", "a")
+            .build();
+        assertThat(result.getData().get(0).get("name")).isEqualTo("a");
+        assertThat(ColumnarQueryResult.of(result.getData()).getData().get(0).get("name")).isNull();
+    }
+
+    @Test
+    public void testSerializesLikeTabularResult() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        List<Map<String, Object>> rows = createRows();
+        assertThat(mapper.writeValueAsString(ColumnarQueryResult.of(rows)))
+            .isEqualTo(mapper.writeValueAsString(new TabularQueryResult(rows)));
+        assertThat(mapper.writeValueAsString(ColumnarQueryResult.builder().build())).isEqualTo("{\"data\":[]}");
+    }
+}
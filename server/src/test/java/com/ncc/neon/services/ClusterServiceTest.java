@@ -1,24 +1,52 @@
 package com.ncc.neon.services;
 
 import com.ncc.neon.NeonServerApplication;
+import com.ncc.neon.adapters.QueryAdapter;
+import com.ncc.neon.models.queries.AggregateByFieldClause;
+import com.ncc.neon.models.queries.BinClause;
 import com.ncc.neon.models.queries.ClusterClause;
+import com.ncc.neon.models.queries.FieldClause;
+import com.ncc.neon.models.queries.GroupByFieldClause;
+import com.ncc.neon.models.queries.Order;
+import com.ncc.neon.models.queries.OrderByFieldClause;
+import com.ncc.neon.models.queries.Query;
+import com.ncc.neon.models.queries.SelectClause;
+import com.ncc.neon.models.results.ColumnarQueryResult;
+import com.ncc.neon.models.results.FieldRange;
 import com.ncc.neon.models.results.TabularQueryResult;
 import org.json.JSONException;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.json.JsonTest;
 import org.springframework.boot.test.json.JacksonTester;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
 @ContextConfiguration(classes = NeonServerApplication.class)
@@ -42,10 +70,9 @@ public class ClusterServiceTest {
     public void numberAggregationTest1() {
         try {
             ClusterClause clusterClause = this.json.read("/json/numberAggregationClusterClause1.json").getObject();
-            clusterService.setClusterClause(clusterClause);
             TabularQueryResult input = new TabularQueryResult(this.inputJson
                     .read("/json/numberAggregationInput1.json").getObject());
-            TabularQueryResult output = clusterService.cluster(input);
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
             String expectedOutputJson = this.inputJson.write(this.inputJson
                     .read("/json/numberAggregationOutput1.json").getObject()).getJson();
             String outputJson = this.inputJson.write(output.getData()).getJson();
@@ -60,10 +87,9 @@ public class ClusterServiceTest {
     public void numberAggregationTest2() {
         try {
             ClusterClause clusterClause = this.json.read("/json/numberAggregationClusterClause1.json").getObject();
-            clusterService.setClusterClause(clusterClause);
             TabularQueryResult input = new TabularQueryResult(this.inputJson
                     .read("/json/numberAggregationInput2.json").getObject());
-            TabularQueryResult output = clusterService.cluster(input);
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
             String expectedOutputJson = this.inputJson.write(this.inputJson
                     .read("/json/numberAggregationOutput2.json").getObject()).getJson();
             String outputJson = this.inputJson.write(output.getData()).getJson();
@@ -78,10 +104,9 @@ public class ClusterServiceTest {
     public void numberAggregationTest3() {
         try {
             ClusterClause clusterClause = this.json.read("/json/numberAggregationClusterClause2.json").getObject();
-            clusterService.setClusterClause(clusterClause);
             TabularQueryResult input = new TabularQueryResult(this.inputJson
                     .read("/json/numberAggregationInput1.json").getObject());
-            TabularQueryResult output = clusterService.cluster(input);
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
             String expectedOutputJson = this.inputJson.write(this.inputJson
                     .read("/json/numberAggregationOutput3.json").getObject()).getJson();
             String outputJson = this.inputJson.write(output.getData()).getJson();
@@ -96,10 +121,9 @@ public class ClusterServiceTest {
     public void numberAggregationTest4() {
         try {
             ClusterClause clusterClause = this.json.read("/json/numberAggregationClusterClause1.json").getObject();
-            clusterService.setClusterClause(clusterClause);
             TabularQueryResult input = new TabularQueryResult(this.inputJson
                     .read("/json/numberAggregationInput3.json").getObject());
-            TabularQueryResult output = clusterService.cluster(input);
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
             String expectedOutputJson = this.inputJson.write(this.inputJson
                     .read("/json/numberAggregationOutput4.json").getObject()).getJson();
             String outputJson = this.inputJson.write(output.getData()).getJson();
@@ -114,10 +138,9 @@ public class ClusterServiceTest {
     public void textAggregationTest1() {
         try {
             ClusterClause clusterClause = this.json.read("/json/textAggregationClusterClause1.json").getObject();
-            clusterService.setClusterClause(clusterClause);
             TabularQueryResult input = new TabularQueryResult(this.inputJson
                     .read("/json/textAggregationInput1.json").getObject());
-            TabularQueryResult output = clusterService.cluster(input);
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
             String expectedOutputJson = this.inputJson.write(this.inputJson
                     .read("/json/textAggregationOutput1.json").getObject()).getJson();
             String outputJson = this.inputJson.write(output.getData()).getJson();
@@ -132,10 +155,9 @@ public class ClusterServiceTest {
     public void textAggregationTest2() {
         try {
             ClusterClause clusterClause = this.json.read("/json/textAggregationClusterClause1.json").getObject();
-            clusterService.setClusterClause(clusterClause);
             TabularQueryResult input = new TabularQueryResult(this.inputJson
                     .read("/json/textAggregationInput2.json").getObject());
-            TabularQueryResult output = clusterService.cluster(input);
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
             String expectedOutputJson = this.inputJson.write(this.inputJson
                     .read("/json/textAggregationOutput2.json").getObject()).getJson();
             String outputJson = this.inputJson.write(output.getData()).getJson();
@@ -150,10 +172,9 @@ public class ClusterServiceTest {
     public void textAggregationTest3() {
         try {
             ClusterClause clusterClause = this.json.read("/json/textAggregationClusterClause2.json").getObject();
-            clusterService.setClusterClause(clusterClause);
             TabularQueryResult input = new TabularQueryResult(this.inputJson
                     .read("/json/textAggregationInput1.json").getObject());
-            TabularQueryResult output = clusterService.cluster(input);
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
             String expectedOutputJson = this.inputJson.write(this.inputJson
                     .read("/json/textAggregationOutput3.json").getObject()).getJson();
             String outputJson = this.inputJson.write(output.getData()).getJson();
@@ -168,10 +189,9 @@ public class ClusterServiceTest {
     public void dateAggregationTest1() {
         try {
             ClusterClause clusterClause = this.json.read("/json/dateAggregationClusterClause.json").getObject();
-            clusterService.setClusterClause(clusterClause);
             TabularQueryResult input = new TabularQueryResult(this.inputJson
                     .read("/json/dateAggregationInput1.json").getObject());
-            TabularQueryResult output = clusterService.cluster(input);
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
             String expectedOutputJson = this.inputJson.write(this.inputJson
                     .read("/json/dateAggregationOutput1.json").getObject()).getJson();
             String outputJson = this.inputJson.write(output.getData()).getJson();
@@ -186,10 +206,9 @@ public class ClusterServiceTest {
     public void dateAggregationTest2() {
         try {
             ClusterClause clusterClause = this.json.read("/json/dateAggregationClusterClause.json").getObject();
-            clusterService.setClusterClause(clusterClause);
             TabularQueryResult input = new TabularQueryResult(this.inputJson
                     .read("/json/dateAggregationInput2.json").getObject());
-            TabularQueryResult output = clusterService.cluster(input);
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
             String expectedOutputJson = this.inputJson.write(this.inputJson
                     .read("/json/dateAggregationOutput2.json").getObject()).getJson();
             String outputJson = this.inputJson.write(output.getData()).getJson();
@@ -204,10 +223,9 @@ public class ClusterServiceTest {
     public void latlonAggregationTest1() {
         try {
             ClusterClause clusterClause = this.json.read("/json/latlonAggregationClusterClause.json").getObject();
-            clusterService.setClusterClause(clusterClause);
             TabularQueryResult input = new TabularQueryResult(this.inputJson
                     .read("/json/latlonAggregationInput1.json").getObject());
-            TabularQueryResult output = clusterService.cluster(input);
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
             String expectedOutputJson = this.inputJson.write(this.inputJson
                     .read("/json/latlonAggregationOutput1.json").getObject()).getJson();
             String outputJson = this.inputJson.write(output.getData()).getJson();
@@ -222,10 +240,9 @@ public class ClusterServiceTest {
     public void latlonAggregationTest2() {
         try {
             ClusterClause clusterClause = this.json.read("/json/latlonAggregationClusterClause.json").getObject();
-            clusterService.setClusterClause(clusterClause);
             TabularQueryResult input = new TabularQueryResult(this.inputJson
                     .read("/json/latlonAggregationInput2.json").getObject());
-            TabularQueryResult output = clusterService.cluster(input);
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
             String expectedOutputJson = this.inputJson.write(this.inputJson
                     .read("/json/latlonAggregationOutput2.json").getObject()).getJson();
             String outputJson = this.inputJson.write(output.getData()).getJson();
@@ -235,4 +252,183 @@ public class ClusterServiceTest {
             fail();
         }
     }
+
+    @Test
+    public void numberAggregationColumnarTest() {
+        try {
+            ClusterClause clusterClause = this.json.read("/json/numberAggregationClusterClause1.json").getObject();
+            TabularQueryResult input = ColumnarQueryResult.of(this.inputJson
+                    .read("/json/numberAggregationInput1.json").getObject());
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
+            String expectedOutputJson = this.inputJson.write(this.inputJson
+                    .read("/json/numberAggregationOutput1.json").getObject()).getJson();
+            String outputJson = this.inputJson.write(output.getData()).getJson();
+            JSONAssert.assertEquals(expectedOutputJson, outputJson, true);
+        } catch (IOException | JSONException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void latlonAggregationColumnarTest() {
+        try {
+            ClusterClause clusterClause = this.json.read("/json/latlonAggregationClusterClause.json").getObject();
+            List<Map<String, Object>> inputData = this.inputJson.read("/json/latlonAggregationInput1.json").getObject();
+            TabularQueryResult input = ColumnarQueryResult.of(inputData);
+            TabularQueryResult output = clusterService.cluster(input, clusterClause);
+            String expectedOutputJson = this.inputJson.write(this.inputJson
+                    .read("/json/latlonAggregationOutput1.json").getObject()).getJson();
+            String outputJson = this.inputJson.write(output.getData()).getJson();
+            JSONAssert.assertEquals(expectedOutputJson, outputJson, true);
+            // The clustered result must not be changed since it may be shared.
+            assertEquals(inputData.size(), input.getData().size());
+        } catch (IOException | JSONException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void concurrentClusteringTest() throws Exception {
+        ClusterClause numberClause = this.json.read("/json/numberAggregationClusterClause1.json").getObject();
+        ClusterClause latlonClause = this.json.read("/json/latlonAggregationClusterClause.json").getObject();
+        List<Map<String, Object>> numberInput = this.inputJson.read("/json/numberAggregationInput1.json").getObject();
+        List<Map<String, Object>> latlonInput = this.inputJson.read("/json/latlonAggregationInput1.json").getObject();
+        String numberOutputJson = this.inputJson.write(this.inputJson
+                .read("/json/numberAggregationOutput1.json").getObject()).getJson();
+        String latlonOutputJson = this.inputJson.write(this.inputJson
+                .read("/json/latlonAggregationOutput1.json").getObject()).getJson();
+
+        // Alternate between clauses on many threads to make sure one clustering never sees another's clause.
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> numberOutputs = new ArrayList<>();
+            List<Future<String>> latlonOutputs = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                numberOutputs.add(executor.submit(() -> this.inputJson.write(clusterService.cluster(
+                        new TabularQueryResult(numberInput), numberClause).getData()).getJson()));
+                latlonOutputs.add(executor.submit(() -> this.inputJson.write(clusterService.cluster(
+                        ColumnarQueryResult.of(latlonInput), latlonClause).getData()).getJson()));
+            }
+            for (Future<String> output : numberOutputs) {
+                JSONAssert.assertEquals(numberOutputJson, output.get(), true);
+            }
+            for (Future<String> output : latlonOutputs) {
+                JSONAssert.assertEquals(latlonOutputJson, output.get(), true);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void latlonGeohashTest() {
+        List<Map<String, Object>> inputData = new ArrayList<>();
+        inputData.add(Map.of("latitude", 57.64911, "longitude", 10.40744, "name", "a"));
+        inputData.add(Map.of("latitude", 57.649, "longitude", 10.407, "name", "b"));
+        inputData.add(Map.of("latitude", -33.8688, "longitude", 151.2093, "name", "c"));
+        inputData.add(Map.of("latitude", 100, "longitude", 0, "name", "invalid"));
+        ClusterClause clusterClause = new ClusterClause(5, ClusterService.GEOHASH_TYPE, null, "_count", "latlon",
+                List.of("latitude", "longitude"));
+
+        TabularQueryResult input = ColumnarQueryResult.of(inputData);
+        List<Map<String, Object>> output = clusterService.cluster(input, clusterClause).getData();
+
+        assertEquals(2, output.size());
+        assertEquals("r3gx2", output.get(0).get(ClusterService.GEOHASH_KEY));
+        assertEquals(1L, output.get(0).get("_count"));
+        assertEquals(Set.of("c"), output.get(0).get("name"));
+        assertEquals("u4pru", output.get(1).get(ClusterService.GEOHASH_KEY));
+        assertEquals(2L, output.get(1).get("_count"));
+        assertEquals(Set.of("a", "b"), output.get(1).get("name"));
+        List<?> latRange = (List<?>) output.get(1).get("latitude");
+        assertTrue(((BigDecimal) latRange.get(0)).doubleValue() <= 57.64911);
+        assertTrue(((BigDecimal) latRange.get(1)).doubleValue() >= 57.64911);
+        assertEquals(4, input.getData().size());
+    }
+
+    private static Query createClusteredQuery(ClusterClause clusterClause, List<String> fieldNames) {
+        Query query = new Query();
+        List<FieldClause> fieldClauses = new ArrayList<>();
+        fieldNames.forEach(fieldName -> fieldClauses.add(new FieldClause("testDatabase", "testTable", fieldName)));
+        query.setSelectClause(new SelectClause("testDatabase", "testTable", fieldClauses));
+        query.setClusterClause(clusterClause);
+        return query;
+    }
+
+    private static Query createClusteredGroupQuery(ClusterClause clusterClause, List<String> fieldNames) {
+        Query query = createClusteredQuery(clusterClause, fieldNames);
+        FieldClause groupField = query.getSelectClause().getFieldClauses().get(0);
+        query.setAggregateClauses(List.of(new AggregateByFieldClause(groupField, "aggregation", "count")));
+        query.setGroupByClauses(List.of(new GroupByFieldClause(groupField)));
+        query.setOrderByClauses(List.of(new OrderByFieldClause(groupField, Order.ASCENDING)));
+        return query;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void numberClusterInDatastoreTest() {
+        ClusterClause clusterClause = new ClusterClause(2, "aggregation", null, "aggregation", "number",
+                List.of("group"));
+        List<Map<String, Object>> groups = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            groups.add(Map.of("group", i, "aggregation", 1));
+        }
+        QueryAdapter adapter = mock(QueryAdapter.class);
+        when(adapter.getFieldRange(any(), any())).thenReturn(Mono.just(new FieldRange(0, 10, 11)));
+        when(adapter.executeBinned(any(), any())).thenReturn(Mono.just(new TabularQueryResult(List.of(
+                Map.of("group", 0, BinClause.COUNT_KEY, 6L, "aggregation", 6L),
+                Map.of("group", 1, BinClause.COUNT_KEY, 5L, "aggregation", 5L)))));
+
+        TabularQueryResult output = clusterService.clusterInDatastore(adapter,
+                createClusteredGroupQuery(clusterClause, List.of("group"))).block();
+
+        assertEquals(clusterService.cluster(new TabularQueryResult(groups), clusterClause), output);
+        ArgumentCaptor<List<BinClause>> binClauses = ArgumentCaptor.forClass(List.class);
+        verify(adapter).executeBinned(any(), binClauses.capture());
+        assertEquals("group", binClauses.getValue().get(0).getField());
+        assertArrayEquals(new double[] { 0, 5 }, binClauses.getValue().get(0).getRanges().get(0));
+        assertArrayEquals(new double[] { 5.0001, 10 }, binClauses.getValue().get(0).getRanges().get(1));
+    }
+
+    @Test
+    public void latlonClusterInDatastoreTest() {
+        ClusterClause clusterClause = new ClusterClause(2, "aggregation", null, "_count", "latlon",
+                List.of("latitude", "longitude"));
+        List<Map<String, Object>> points = List.of(
+                Map.of("latitude", 0.0, "longitude", -10.0),
+                Map.of("latitude", 0.0, "longitude", 10.0),
+                Map.of("latitude", 0.0, "longitude", 20.0));
+        QueryAdapter adapter = mock(QueryAdapter.class);
+        when(adapter.executeBinned(any(), any())).thenReturn(Mono.just(new TabularQueryResult(List.of(
+                Map.of("latitude", 0, "longitude", 0, BinClause.COUNT_KEY, 1L),
+                Map.of("latitude", 0, "longitude", 1, BinClause.COUNT_KEY, 2L)))));
+
+        TabularQueryResult output = clusterService.clusterInDatastore(adapter,
+                createClusteredQuery(clusterClause, List.of("latitude", "longitude"))).block();
+
+        assertEquals(clusterService.cluster(new TabularQueryResult(points), clusterClause), output);
+    }
+
+    @Test
+    public void clusterInDatastoreFallbackTest() {
+        QueryAdapter adapter = mock(QueryAdapter.class);
+        when(adapter.getFieldRange(any(), any())).thenReturn(Mono.just(new FieldRange(0, 0, 1)));
+        ClusterClause geohashClause = new ClusterClause(3, ClusterService.GEOHASH_TYPE, null, "_count", "latlon",
+                List.of("latitude", "longitude"));
+        ClusterClause numberClause = new ClusterClause(2, "aggregation", null, "aggregation", "number",
+                List.of("group"));
+
+        // Geohash cells are made by the server.
+        assertNull(clusterService.clusterInDatastore(adapter, createClusteredQuery(geohashClause,
+                List.of("latitude", "longitude"))).block());
+        // The sets of the values of other keys are made by the server.
+        assertNull(clusterService.clusterInDatastore(adapter, createClusteredGroupQuery(numberClause,
+                List.of("group", "name"))).block());
+        // Fewer groups than clusters are left unclustered.
+        assertNull(clusterService.clusterInDatastore(adapter, createClusteredGroupQuery(numberClause,
+                List.of("group"))).block());
+        verify(adapter, never()).executeBinned(any(), any());
+    }
 }
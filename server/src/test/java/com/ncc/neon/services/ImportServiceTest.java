@@ -0,0 +1,112 @@
+package com.ncc.neon.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ncc.neon.models.ConnectionInfo;
+import com.ncc.neon.models.queries.ImportQuery;
+import com.ncc.neon.models.results.ActionResult;
+import com.ncc.neon.models.results.ImportBatchResult;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ImportServiceTest {
+
+    private static final ConnectionInfo CONNECTION = new ConnectionInfo("dummy", "localhost");
+
+    private QueryService queryService;
+    private List<List<String>> imported;
+
+    @Before
+    public void setup() {
+        queryService = mock(QueryService.class);
+        imported = new ArrayList<>();
+        when(queryService.importData(eq(CONNECTION), any(ImportQuery.class))).thenAnswer(invocation -> {
+            ImportQuery importQuery = invocation.getArgument(1);
+            assertThat(importQuery.getDatabase()).isEqualTo("db");
+            assertThat(importQuery.getTable()).isEqualTo("table");
+            imported.add(importQuery.getSource());
+            if (importQuery.getSource().contains("bad")) {
+                return Mono.error(new RuntimeException("rejected"));
+            }
+            return Mono.just(new ActionResult("Imported " + importQuery.getSource().size() + " items successfully.",
+                new ArrayList<>()));
+        });
+    }
+
+    @Test
+    public void testImportRecordsInBatchesOfSize() {
+        ImportService importService = new ImportService(queryService, 2, 1000, 2);
+        List<ImportBatchResult> results = importService.importRecords(CONNECTION, "db", "table",
+            Flux.just("a", "b", "c", "d", "e")).collectList().block();
+
+        assertThat(imported).containsExactly(List.of("a", "b"), List.of("c", "d"), List.of("e"));
+        assertThat(results).extracting(ImportBatchResult::getBatch).containsExactly(0L, 1L, 2L);
+        assertThat(results).extracting(ImportBatchResult::getFirstRecord).containsExactly(0L, 2L, 4L);
+        assertThat(results).extracting(ImportBatchResult::getRecordCount).containsExactly(2, 2, 1);
+        assertThat(results.get(0).getResult().getSuccess()).isEqualTo("Imported 2 items successfully.");
+    }
+
+    @Test
+    public void testImportRecordsInBatchesOfBytes() {
+        ImportService importService = new ImportService(queryService, 100, 5, 1);
+        importService.importRecords(CONNECTION, "db", "table", Flux.just("aa", "bb", "cc", "dddddddd", "e"))
+            .collectList().block();
+
+        // A record bigger than the limit is imported in its own batch.
+        assertThat(imported).containsExactly(List.of("aa", "bb"), List.of("cc"), List.of("dddddddd"), List.of("e"));
+    }
+
+    @Test
+    public void testImportRecordsReportsFailedBatchAndContinues() {
+        ImportService importService = new ImportService(queryService, 1, 1000, 2);
+        List<ImportBatchResult> results = importService.importRecords(CONNECTION, "db", "table",
+            Flux.just("a", "bad", "c")).collectList().block();
+
+        assertThat(results).extracting(ImportBatchResult::getBatch).containsExactly(0L, 1L, 2L);
+        assertThat(results.get(0).getResult().getError()).isNull();
+        assertThat(results.get(1).getResult().getError()).isEqualTo("rejected");
+        assertThat(results.get(2).getResult().getError()).isNull();
+    }
+
+    @Test
+    public void testImportRecordsRequestsRecordsAsBatchesAreImported() {
+        AtomicInteger requested = new AtomicInteger();
+        ImportService importService = new ImportService(queryService, 10, 1000, 1);
+        Flux<String> records = Flux.range(0, 1000).map(String::valueOf)
+            .doOnRequest(count -> requested.addAndGet((int) Math.min(count, Integer.MAX_VALUE)));
+
+        importService.importRecords(CONNECTION, "db", "table", records).take(1).blockLast();
+
+        assertThat(imported.get(0)).hasSize(10);
+        assertThat(requested.get()).isLessThan(1000);
+    }
+
+    @Test
+    public void testReadJsonLinesSkipsBlankLines() {
+        List<String> records = ImportService.readJsonLines(Flux.just("{\"a\":1}", "", "  ", "{\"a\":2}"))
+            .collectList().block();
+        assertThat(records).containsExactly("{\"a\":1}", "{\"a\":2}");
+    }
+
+    @Test
+    public void testReadCsvLines() {
+        List<String> records = ImportService.readCsvLines(Flux.just("name,age,note", "John,30,\"one, two\"", "",
+            "Jane,40,\"multi", "line\"", "Jim")).collectList().block();
+        assertThat(records).containsExactly(
+            "{\"name\":\"John\",\"age\":\"30\",\"note\":\"one, two\"}",
+            "{\"name\":\"Jane\",\"age\":\"40\",\"note\":\"multi\\nline\"}",
+            "{\"name\":\"Jim\"}");
+    }
+}
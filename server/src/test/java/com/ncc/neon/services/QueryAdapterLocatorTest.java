@@ -0,0 +1,179 @@
+package com.ncc.neon.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.ncc.neon.adapters.QueryAdapter;
+import com.ncc.neon.adapters.QueryAdapterFactory;
+import com.ncc.neon.models.ConnectionInfo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class QueryAdapterLocatorTest {
+
+    private static final ConnectionInfo CONNECTION = new ConnectionInfo("test", "localhost");
+
+    private QueryAdapterFactory factory;
+
+    private final List<QueryAdapterLocator> locators = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        factory = mock(QueryAdapterFactory.class);
+        when(factory.getNames()).thenReturn(new String[] { "test" });
+        when(factory.initialize(any())).thenAnswer(invocation -> mock(QueryAdapter.class));
+    }
+
+    @After
+    public void teardown() {
+        // Each locator holds a worker of the shared scheduler for its eviction sweep until it is shut down.
+        locators.forEach(QueryAdapterLocator::shutdown);
+    }
+
+    private QueryAdapterLocator createLocator(long idleTimeoutSeconds, long evictionIntervalSeconds, int maxCount,
+            long closeDelaySeconds) throws Exception {
+        QueryAdapterLocator locator = new QueryAdapterLocator(List.of(factory), idleTimeoutSeconds,
+            evictionIntervalSeconds, maxCount, closeDelaySeconds);
+        locators.add(locator);
+        return locator;
+    }
+
+    @Test
+    public void testAdapterIsBuiltOnce() throws Exception {
+        QueryAdapterLocator locator = createLocator(60, 60, 10, 0);
+        QueryAdapter adapter = locator.getAdapter(CONNECTION);
+        assertThat(locator.getAdapter(new ConnectionInfo("test", "localhost"))).isSameAs(adapter);
+        assertThat(locator.getAdapter(new ConnectionInfo("test", "otherhost"))).isNotSameAs(adapter);
+        verify(factory, times(1)).initialize(eq(CONNECTION));
+        assertThat(locator.getAdapterCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSlowAdapterDoesNotBlockOtherConnections() throws Exception {
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ConnectionInfo slowConnection = new ConnectionInfo("test", "slowhost");
+        when(factory.initialize(eq(slowConnection))).thenAnswer(invocation -> {
+            building.countDown();
+            release.await();
+            return mock(QueryAdapter.class);
+        });
+        QueryAdapterLocator locator = createLocator(60, 60, 10, 0);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<QueryAdapter> slowAdapter = executor.submit(() -> locator.getAdapter(slowConnection));
+            assertThat(building.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(locator.getAdapter(CONNECTION)).isNotNull();
+            release.countDown();
+            assertThat(slowAdapter.get(5, TimeUnit.SECONDS)).isNotNull();
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testIdleAdaptersAreEvictedAndClosed() throws Exception {
+        QueryAdapterLocator locator = createLocator(0, 60, 10, 0);
+        QueryAdapter adapter = locator.getAdapter(CONNECTION);
+        Thread.sleep(1);
+        locator.evictIdleAdapters();
+        verify(adapter, timeout(5000)).close();
+        assertThat(locator.getAdapterCount()).isEqualTo(0);
+        assertThat(locator.getAdapter(CONNECTION)).isNotSameAs(adapter);
+    }
+
+    @Test
+    public void testActiveAdaptersAreNotEvicted() throws Exception {
+        QueryAdapterLocator locator = createLocator(60, 60, 10, 0);
+        QueryAdapter adapter = locator.getAdapter(CONNECTION);
+        locator.evictIdleAdapters();
+        verify(adapter, times(0)).close();
+        assertThat(locator.getAdapter(CONNECTION)).isSameAs(adapter);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedAdaptersAreEvictedOverMaxCount() throws Exception {
+        QueryAdapterLocator locator = createLocator(60, 60, 2, 0);
+        QueryAdapter first = locator.getAdapter(new ConnectionInfo("test", "host1"));
+        Thread.sleep(1);
+        QueryAdapter second = locator.getAdapter(new ConnectionInfo("test", "host2"));
+        Thread.sleep(1);
+        locator.getAdapter(new ConnectionInfo("test", "host1"));
+        Thread.sleep(1);
+        locator.getAdapter(new ConnectionInfo("test", "host3"));
+        assertThat(locator.getAdapterCount()).isEqualTo(2);
+        verify(second, timeout(5000)).close();
+        verify(first, times(0)).close();
+    }
+
+    @Test
+    public void testEvictedAdaptersCloseAfterDelayOrShutdown() throws Exception {
+        QueryAdapterLocator locator = createLocator(0, 60, 10, 60);
+        QueryAdapter evicted = locator.getAdapter(CONNECTION);
+        Thread.sleep(1);
+        locator.evictIdleAdapters();
+        QueryAdapter active = locator.getAdapter(CONNECTION);
+        assertThat(active).isNotSameAs(evicted);
+        verify(evicted, times(0)).close();
+
+        locator.shutdown();
+        verify(evicted).close();
+        verify(active).close();
+        assertThat(locator.getAdapterCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testEvictedAdaptersInUseCloseWhenTheirQueriesFinish() throws Exception {
+        QueryAdapterLocator locator = createLocator(0, 60, 10, 0);
+        DirectProcessor<String> results = DirectProcessor.create();
+        AtomicReference<QueryAdapter> used = new AtomicReference<>();
+        Disposable query = locator.useAdapter(CONNECTION, adapter -> {
+            used.set(adapter);
+            return results;
+        }).subscribe();
+        Thread.sleep(1);
+        locator.evictIdleAdapters();
+        assertThat(locator.getAdapterCount()).isEqualTo(0);
+        Thread.sleep(100);
+        verify(used.get(), times(0)).close();
+
+        results.onNext("result");
+        verify(used.get(), times(0)).close();
+        results.onComplete();
+        verify(used.get(), timeout(5000)).close();
+        assertThat(query.isDisposed()).isTrue();
+    }
+
+    @Test
+    public void testEvictedAdaptersNotInUseCloseAfterDelay() throws Exception {
+        QueryAdapterLocator locator = createLocator(0, 60, 10, 0);
+        QueryAdapter adapter = locator.useAdapterMono(CONNECTION, Mono::just).block();
+        Thread.sleep(1);
+        locator.evictIdleAdapters();
+        verify(adapter, timeout(5000)).close();
+        assertThat(locator.useAdapterMono(CONNECTION, Mono::just).block()).isNotSameAs(adapter);
+    }
+}
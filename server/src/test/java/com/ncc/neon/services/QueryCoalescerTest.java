@@ -0,0 +1,107 @@
+package com.ncc.neon.services;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ncc.neon.models.ConnectionInfo;
+import com.ncc.neon.models.queries.Query;
+import com.ncc.neon.models.queries.SelectClause;
+import com.ncc.neon.models.results.TabularQueryResult;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryCoalescerTest {
+
+    private static final ConnectionInfo CONNECTION = new ConnectionInfo("dummy", "localhost");
+
+    private SimpleMeterRegistry meterRegistry;
+    private QueryCoalescer coalescer;
+    private AtomicInteger loads;
+
+    @Before
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new QueryCoalescer(true, meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    private QueryKey createKey(String table) {
+        Query query = new Query();
+        query.setSelectClause(new SelectClause("db", table));
+        return QueryKey.of(CONNECTION, query);
+    }
+
+    private Mono<TabularQueryResult> load(Mono<TabularQueryResult> result) {
+        return Mono.defer(() -> {
+            loads.incrementAndGet();
+            return result;
+        });
+    }
+
+    @Test
+    public void testConcurrentEqualQueriesShareExecution() {
+        MonoProcessor<TabularQueryResult> pending = MonoProcessor.create();
+        TabularQueryResult expected = new TabularQueryResult(Collections.singletonList(Map.of("field", "value")));
+
+        Mono<TabularQueryResult> first = coalescer.execute(createKey("table"), () -> load(pending));
+        Mono<TabularQueryResult> second = coalescer.execute(createKey("table"), () -> load(pending));
+        MonoProcessor<TabularQueryResult> firstResult = first.toProcessor();
+        MonoProcessor<TabularQueryResult> secondResult = second.toProcessor();
+        assertThat(coalescer.getInFlightCount()).isEqualTo(1);
+
+        pending.onNext(expected);
+        assertThat(firstResult.block()).isSameAs(expected);
+        assertThat(secondResult.block()).isSameAs(expected);
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(coalescer.getCoalescedCount()).isEqualTo(1);
+        assertThat(meterRegistry.get(QueryCoalescer.COALESCED_METRIC_NAME).counter().count()).isEqualTo(1);
+        assertThat(coalescer.getInFlightCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDifferentQueriesDoNotShareExecution() {
+        MonoProcessor<TabularQueryResult> pending = MonoProcessor.create();
+        coalescer.execute(createKey("table"), () -> load(pending)).subscribe();
+        coalescer.execute(createKey("other"), () -> load(pending)).subscribe();
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(coalescer.getCoalescedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFinishedQueriesAreNotShared() {
+        coalescer.execute(createKey("table"), () -> load(Mono.just(new TabularQueryResult()))).block();
+        coalescer.execute(createKey("table"), () -> load(Mono.just(new TabularQueryResult()))).block();
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(coalescer.getCoalescedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testErrorsAreSharedThenCleared() {
+        MonoProcessor<TabularQueryResult> pending = MonoProcessor.create();
+        MonoProcessor<TabularQueryResult> first = coalescer.execute(createKey("table"), () -> load(pending))
+            .toProcessor();
+        MonoProcessor<TabularQueryResult> second = coalescer.execute(createKey("table"), () -> load(pending))
+            .toProcessor();
+        pending.onError(new IllegalStateException("failed"));
+        assertThat(first.getError()).hasMessage("failed");
+        assertThat(second.getError()).hasMessage("failed");
+        assertThat(coalescer.getInFlightCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDisabled() {
+        QueryCoalescer disabled = new QueryCoalescer(false, meterRegistry);
+        MonoProcessor<TabularQueryResult> pending = MonoProcessor.create();
+        disabled.execute(createKey("table"), () -> load(pending)).subscribe();
+        disabled.execute(createKey("table"), () -> load(pending)).subscribe();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,128 @@
+package com.ncc.neon.services;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ncc.neon.models.ConnectionInfo;
+import com.ncc.neon.models.queries.Query;
+import com.ncc.neon.models.queries.SelectClause;
+import com.ncc.neon.models.results.TabularQueryResult;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryResultCacheTest {
+
+    private static final ConnectionInfo CONNECTION = new ConnectionInfo("dummy", "localhost");
+
+    private SimpleMeterRegistry meterRegistry;
+    private QueryResultCache cache;
+    private AtomicInteger loads;
+
+    @Before
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new QueryResultCache(true, 100, 60, meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    private Mono<TabularQueryResult> load(int rows) {
+        return Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return new TabularQueryResult(Collections.nCopies(rows, Map.of("field", "value")));
+        });
+    }
+
+    private QueryKey createKey(ConnectionInfo ci, String database, String table) {
+        Query query = new Query();
+        query.setSelectClause(new SelectClause(database, table));
+        return QueryKey.of(ci, query);
+    }
+
+    private QueryKey createKey(String database, String table) {
+        return createKey(CONNECTION, database, table);
+    }
+
+    @Test
+    public void testEqualQueriesShareEntry() {
+        TabularQueryResult first = cache.get(createKey("db", "table"), () -> load(1)).block();
+        TabularQueryResult second = cache.get(createKey("db", "table"), () -> load(1)).block();
+        assertThat(second).isSameAs(first);
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", QueryResultCache.CACHE_NAME)
+            .tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDifferentConnectionsDoNotShareEntry() {
+        cache.get(createKey("db", "table"), () -> load(1)).block();
+        cache.get(createKey(new ConnectionInfo("dummy", "otherhost"), "db", "table"), () -> load(1)).block();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testInvalidateTable() {
+        cache.get(createKey("db", "table"), () -> load(1)).block();
+        cache.get(createKey("db", "other"), () -> load(1)).block();
+        cache.invalidate("dummy", "localhost", "db", "table");
+        assertThat(cache.size()).isEqualTo(1);
+        cache.get(createKey("db", "table"), () -> load(1)).block();
+        cache.get(createKey("db", "other"), () -> load(1)).block();
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testInvalidateDatabase() {
+        cache.get(createKey("db", "table"), () -> load(1)).block();
+        cache.get(createKey("db", "other"), () -> load(1)).block();
+        cache.invalidate("dummy", "localhost", "db", null);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testInvalidationDuringQueryIsNotCached() {
+        QueryKey key = createKey("db", "table");
+        cache.get(key, () -> load(1).doOnNext(result ->
+            cache.invalidate("dummy", "localhost", "db", "table"))).block();
+        cache.get(key, () -> load(1)).block();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testInvalidationOfOtherTableDuringQueryIsCached() {
+        QueryKey key = createKey("db", "table");
+        cache.get(key, () -> load(1).doOnNext(result -> {
+            cache.invalidate("dummy", "localhost", "db", "other");
+            cache.invalidate("dummy", "localhost", "otherdb", null);
+            cache.invalidate("dummy", "otherhost", null, null);
+        })).block();
+        cache.get(key, () -> load(1)).block();
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testInvalidationOfDatabaseOrHostDuringQueryIsNotCached() {
+        QueryKey key = createKey("db", "table");
+        cache.get(key, () -> load(1).doOnNext(result ->
+            cache.invalidate("dummy", "localhost", "db", null))).block();
+        cache.get(key, () -> load(1).doOnNext(result ->
+            cache.invalidate("dummy", "localhost", null, null))).block();
+        cache.get(key, () -> load(1)).block();
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testEvictsByRowCount() {
+        for (int i = 0; i < 5; ++i) {
+            cache.get(createKey("db", "table" + i), () -> load(40)).block();
+        }
+        // Each result weighs 40 rows against a maximum weight of 100 rows.
+        assertThat(cache.size()).isLessThanOrEqualTo(2);
+    }
+}
@@ -0,0 +1,92 @@
+package com.ncc.neon.services;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.ncc.neon.adapters.QueryAdapter;
+import com.ncc.neon.adapters.QueryAdapterFactory;
+import com.ncc.neon.models.ConnectionInfo;
+import com.ncc.neon.models.queries.Query;
+import com.ncc.neon.models.queries.SelectClause;
+import com.ncc.neon.models.results.TabularQueryResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class QueryServiceTest {
+
+    private static final ConnectionInfo CONNECTION = new ConnectionInfo("dummy", "localhost");
+
+    private QueryAdapter adapter;
+    private QueryAdapterLocator locator;
+    private QueryResultCache cache;
+    private QueryService service;
+
+    @Before
+    public void setup() throws Exception {
+        adapter = mock(QueryAdapter.class);
+        QueryAdapterFactory factory = mock(QueryAdapterFactory.class);
+        when(factory.getNames()).thenReturn(new String[] { "dummy" });
+        when(factory.initialize(any())).thenReturn(adapter);
+        locator = new QueryAdapterLocator(List.of(factory), 60, 60, 10, 0);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        cache = new QueryResultCache(true, 100, 60, meterRegistry);
+        service = new QueryService(locator, new ClusterService(), cache, new QueryCoalescer(true, meterRegistry));
+    }
+
+    @After
+    public void teardown() {
+        locator.shutdown();
+    }
+
+    private static Query createQuery() {
+        Query query = new Query();
+        query.setSelectClause(new SelectClause("db", "table"));
+        return query;
+    }
+
+    private static TabularQueryResult createResult(String value) {
+        return new TabularQueryResult(Collections.singletonList(Map.of("field", value)));
+    }
+
+    @Test
+    public void testQueryIsCached() {
+        when(adapter.execute(any())).thenReturn(Mono.just(createResult("value")));
+        service.executeQuery(CONNECTION, createQuery()).block();
+        assertThat(service.executeQuery(CONNECTION, createQuery()).block().getData().get(0).get("field"))
+            .isEqualTo("value");
+        verify(adapter, times(1)).execute(any());
+    }
+
+    @Test
+    public void testCallerJoiningQueryAfterInvalidationDoesNotCacheIt() {
+        MonoProcessor<TabularQueryResult> pending = MonoProcessor.create();
+        when(adapter.execute(any())).thenReturn(pending, Mono.just(createResult("new")));
+
+        MonoProcessor<TabularQueryResult> first = service.executeQuery(CONNECTION, createQuery()).toProcessor();
+        // A mutation of the table commits while the first query is in flight, then an equal query joins it.
+        cache.invalidate("dummy", "localhost", "db", "table");
+        MonoProcessor<TabularQueryResult> second = service.executeQuery(CONNECTION, createQuery()).toProcessor();
+        pending.onNext(createResult("old"));
+        assertThat(first.block().getData().get(0).get("field")).isEqualTo("old");
+        assertThat(second.block().getData().get(0).get("field")).isEqualTo("old");
+        verify(adapter, times(1)).execute(any());
+
+        assertThat(service.executeQuery(CONNECTION, createQuery()).block().getData().get(0).get("field"))
+            .isEqualTo("new");
+        verify(adapter, times(2)).execute(any());
+    }
+}
@@ -6,10 +6,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Component
 @PropertySource(value="classpath:server.properties",ignoreResourceNotFound=true)
 public class MySqlAdapterFactory extends SqlAdapterFactory {
-    public MySqlAdapterFactory(final @Value("#{${mysql.auth:{}}}") Map<String, String> authCollection) {
-        super(SqlType.MYSQL, authCollection);
+    public MySqlAdapterFactory(final @Value("#{${mysql.auth:{}}}") Map<String, String> authCollection,
+            final @Value("#{${mysql.settings:{}}}") Map<String, String> settingsCollection, final MeterRegistry meterRegistry) {
+        super(SqlType.MYSQL, authCollection, settingsCollection, meterRegistry);
     }
 }
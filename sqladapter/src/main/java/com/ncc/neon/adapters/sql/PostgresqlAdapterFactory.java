@@ -6,10 +6,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Component
 @PropertySource(value="classpath:server.properties",ignoreResourceNotFound=true)
 public class PostgresqlAdapterFactory extends SqlAdapterFactory {
-    public PostgresqlAdapterFactory(final @Value("#{${postgresql.auth:{}}}") Map<String, String> authCollection) {
-        super(SqlType.POSTGRESQL, authCollection);
+    public PostgresqlAdapterFactory(final @Value("#{${postgresql.auth:{}}}") Map<String, String> authCollection,
+            final @Value("#{${postgresql.settings:{}}}") Map<String, String> settingsCollection, final MeterRegistry meterRegistry) {
+        super(SqlType.POSTGRESQL, authCollection, settingsCollection, meterRegistry);
     }
 }
@@ -1,28 +1,85 @@
 package com.ncc.neon.adapters.sql;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.ncc.neon.adapters.QueryAdapter;
+import com.ncc.neon.models.queries.BinClause;
+import com.ncc.neon.models.queries.FieldClause;
 import com.ncc.neon.models.queries.ImportQuery;
 import com.ncc.neon.models.queries.MutateQuery;
 import com.ncc.neon.models.queries.Query;
+import com.ncc.neon.models.queries.SelectClause;
 import com.ncc.neon.models.results.*;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import io.r2dbc.pool.ConnectionPool;
 import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.pool.PoolMetrics;
 import io.r2dbc.spi.Clob;
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.Connection;
 import io.r2dbc.spi.ConnectionFactories;
 import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.PooledDataBuffer;
 import org.springframework.data.r2dbc.core.DatabaseClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.Duration;
+import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
 
 public class SqlAdapter extends QueryAdapter {
+    static final String POOL_METRIC_PREFIX = "neon.sql.pool";
+
+    // Tags the meters of each pool, so the meters of an adapter replacing another adapter of the same host are not
+    // shared with (and removed along with) the meters of the adapter it replaced.
+    private static final AtomicLong POOL_IDS = new AtomicLong();
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // How long the types of the columns of a PostgreSQL table are cached, so a changed table is found again.
+    private static final long COLUMN_TYPES_EXPIRY_MINUTES = 5;
+
     ConnectionPool pool;
+    // Times every connection acquired from the pool.
+    ConnectionFactory timedPool;
     SqlType type;
+    SqlHostSettings hostSettings;
+    SqlPlanCache planCache;
+    // The type of each column keyed on its PostgreSQL table (see findColumnTypes).
+    Cache<String, Map<String, String>> columnTypes = Caffeine.newBuilder()
+        .expireAfterWrite(COLUMN_TYPES_EXPIRY_MINUTES, TimeUnit.MINUTES).build();
+    MeterRegistry meterRegistry;
+    List<Meter> meters = new ArrayList<>();
 
     class SingleStringSubscriber implements Subscriber<CharSequence> {
         private Subscription subscription;
@@ -47,9 +104,13 @@ public class SqlAdapter extends QueryAdapter {
         }
     }
 
-    public SqlAdapter(SqlType type, String host, String usernameFromConfig, String passwordFromConfig) {
+    public SqlAdapter(SqlType type, String host, String usernameFromConfig, String passwordFromConfig,
+            SqlHostSettings hostSettings, MeterRegistry meterRegistry) {
         super(type.prettyName, host, usernameFromConfig, passwordFromConfig);
         this.type = type;
+        this.hostSettings = hostSettings;
+        this.planCache = new SqlPlanCache(type, hostSettings.planCacheSize);
+        this.meterRegistry = meterRegistry;
 
         // Expect host to be "host", "username@host", or "username:password@host" (ending with optional ":port")
         String[] hostAndAuthData = host.split("@");
@@ -64,29 +125,222 @@ public class SqlAdapter extends QueryAdapter {
 
         ConnectionFactory connectionFactory = ConnectionFactories.get(this.type.driverName + "://" + auth +
             hostAndPort);
-        ConnectionPoolConfiguration config = ConnectionPoolConfiguration.builder(connectionFactory)
-            .maxIdleTime(Duration.ofSeconds(2)).initialSize(2).maxSize(20).build();
+        ConnectionPoolConfiguration config = hostSettings.applyTo(ConnectionPoolConfiguration.builder(
+            connectionFactory)).build();
         this.pool = new ConnectionPool(config);
+        registerPoolMetrics(Tags.of("type", type.configName, "host", hostAndPort, "pool",
+            String.valueOf(POOL_IDS.incrementAndGet())));
+    }
+
+    private void registerPoolMetrics(Tags tags) {
+        registerPoolGauge("acquired", "Connections in use", tags, PoolMetrics::acquiredSize);
+        registerPoolGauge("allocated", "Connections open", tags, PoolMetrics::allocatedSize);
+        registerPoolGauge("idle", "Connections open but not in use", tags, PoolMetrics::idleSize);
+        registerPoolGauge("pending", "Requests waiting for a connection", tags, PoolMetrics::pendingAcquireSize);
+        registerPoolGauge("max.allocated", "Maximum connections", tags, PoolMetrics::getMaxAllocatedSize);
+
+        Timer acquireTimer = Timer.builder(POOL_METRIC_PREFIX + ".acquire")
+            .description("Time to acquire a connection from the pool").tags(tags).register(this.meterRegistry);
+        this.meters.add(acquireTimer);
+        this.timedPool = new ConnectionFactory() {
+            @Override
+            public Publisher<? extends Connection> create() {
+                return Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return pool.create().doOnSuccess(connection -> acquireTimer.record(System.nanoTime() - start,
+                        TimeUnit.NANOSECONDS));
+                });
+            }
+
+            @Override
+            public ConnectionFactoryMetadata getMetadata() {
+                return pool.getMetadata();
+            }
+        };
+    }
+
+    private void registerPoolGauge(String name, String description, Tags tags, ToIntFunction<PoolMetrics> value) {
+        this.meters.add(Gauge.builder(POOL_METRIC_PREFIX + "." + name, this.pool, connectionPool -> connectionPool.getMetrics()
+            .map(metrics -> (double) value.applyAsInt(metrics)).orElse(Double.NaN))
+            .description(description).tags(tags).register(this.meterRegistry));
     }
 
     @Override
     public Mono<TabularQueryResult> execute(Query query) {
         verifyQueryTablesExist(query);
 
-        String sqlQueryString = SqlQueryConverter.convertQuery(query, this.type);
-        logQuery(query, sqlQueryString);
+        return findColumnTypes(query).flatMap(columnTypes -> {
+            SqlStatement statement = this.planCache.convertQuery(query, columnTypes);
+            logQuery(query, statement);
+
+            if (statement == null) {
+                return Mono.just(null);
+            }
+
+            return runSqlQueryAndReturnTable(statement);
+        });
+    }
+
+    @Override
+    public Flux<Map<String, Object>> executeStreaming(Query query) {
+        verifyQueryTablesExist(query);
+
+        return findColumnTypes(query).flatMapMany(columnTypes -> {
+            SqlStatement statement = this.planCache.convertQuery(query, columnTypes);
+            logQuery(query, statement);
+
+            if (statement == null) {
+                return Flux.empty();
+            }
+
+            return runSqlQueryAndReturnMaps(statement);
+        });
+    }
+
+    @Override
+    public boolean canStreamJson(Query query) {
+        return true;
+    }
+
+    @Override
+    public Flux<DataBuffer> executeStreamingJson(Query query, DataBufferFactory bufferFactory, ObjectMapper mapper) {
+        verifyQueryTablesExist(query);
+
+        return findColumnTypes(query).flatMapMany(columnTypes -> {
+            SqlStatement statement = this.planCache.convertQuery(query, columnTypes);
+            logQuery(query, statement);
+
+            if (statement == null) {
+                return Flux.<DataBuffer>empty();
+            }
+
+            // Each row is written into its own buffer, released if it is discarded before it is written.
+            return Flux.using(() -> new SqlRowJsonWriter(mapper, bufferFactory),
+                writer -> executeStatement(statement).map(writer::write).all(), SqlRowJsonWriter::close);
+        }).doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release);
+    }
+
+    @Override
+    public Mono<FieldRange> getFieldRange(Query query, FieldClause fieldClause) {
+        verifyQueryTablesExist(query);
+
+        return findColumnTypes(query).flatMap(columnTypes -> {
+            SqlStatement statement = SqlQueryConverter.convertFieldRangeQueryIntoStatement(query, fieldClause,
+                this.type, columnTypes);
+            logQuery(query, statement);
 
-        if (sqlQueryString == null) {
-            return Mono.just(null);
+            return runSqlQueryAndReturnMaps(statement).next().map(row -> new FieldRange(
+                row.get(SqlQueryConverter.MIN_LABEL), row.get(SqlQueryConverter.MAX_LABEL),
+                ((Number) row.get(SqlQueryConverter.DISTINCT_COUNT_LABEL)).longValue()));
+        });
+    }
+
+    @Override
+    public Mono<TabularQueryResult> executeBinned(Query query, List<BinClause> binClauses) {
+        verifyQueryTablesExist(query);
+
+        return findColumnTypes(query).flatMap(columnTypes -> {
+            SqlStatement statement = SqlQueryConverter.convertBinnedQueryIntoStatement(query, binClauses, this.type,
+                columnTypes);
+            logQuery(query, statement);
+
+            return runSqlQueryAndReturnTable(statement);
+        });
+    }
+
+    @Override
+    public void close() {
+        this.meters.forEach(this.meterRegistry::remove);
+        this.pool.dispose();
+    }
+
+    private Mono<SqlColumnTypes> findColumnTypes(Query query) {
+        List<SelectClause> tables = new ArrayList<>();
+        tables.add(query.getSelectClause());
+        if (query.getJoinClauses() != null) {
+            query.getJoinClauses().forEach(joinClause -> tables.add(new SelectClause(joinClause.getDatabase(),
+                joinClause.getTable())));
         }
+        return findColumnTypes(tables);
+    }
 
-        return runSqlQueryAndReturnMaps(sqlQueryString).collectList().map(list -> new TabularQueryResult(list));
+    private Mono<SqlColumnTypes> findColumnTypes(MutateQuery mutateQuery) {
+        return findColumnTypes(Collections.singletonList(new SelectClause(mutateQuery.getDatabaseName(),
+            mutateQuery.getTableName())));
+    }
+
+    /**
+     * Returns the types of the columns of the given tables, to cast the PostgreSQL strings bound in a statement on the
+     * tables (see SqlQueryConverter.bindString).  MySQL converts a bound string like a literal, so needs no types.
+     */
+    private Mono<SqlColumnTypes> findColumnTypes(List<SelectClause> tables) {
+        if (this.type != SqlType.POSTGRESQL) {
+            return Mono.just(SqlColumnTypes.NONE);
+        }
+        return Flux.fromIterable(tables).concatMap(table -> findTableColumnTypes(table.getDatabase(),
+            table.getTable()).map(columns -> new AbstractMap.SimpleEntry<>(SqlColumnTypes.findTableKey(
+            table.getDatabase(), table.getTable()), columns)))
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue).map(SqlColumnTypes::new);
+    }
+
+    private Mono<Map<String, String>> findTableColumnTypes(String databaseName, String tableName) {
+        String key = SqlColumnTypes.findTableKey(databaseName, tableName);
+        Map<String, String> cached = this.columnTypes.getIfPresent(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        // The names are unquoted in the SQL of the queries, so PostgreSQL folds them to lower case.
+        SqlStatement statement = new SqlStatement("SELECT column_name, udt_schema, udt_name FROM " +
+            "information_schema.columns WHERE table_schema = $1 AND table_name = $2", Arrays.asList(
+            databaseName.toLowerCase(Locale.ROOT), tableName.toLowerCase(Locale.ROOT)));
+        return runSqlQueryAndReturnMaps(statement)
+            .collectMap(row -> row.get("column_name").toString(), row -> SqlColumnTypes.quoteType(
+                row.get("udt_schema").toString(), row.get("udt_name").toString()))
+            .doOnNext(columns -> this.columnTypes.put(key, columns))
+            .onErrorResume(Exception.class, e -> {
+                // Without the types, the strings are written into the SQL (see SqlQueryConverter.bindString).
+                logError("Column Types", e);
+                return Mono.just(Collections.emptyMap());
+            });
     }
 
     private Flux<Map<String, Object>> runSqlQueryAndReturnMaps(String sqlQueryString) {
+        return runSqlQueryAndReturnMaps(new SqlStatement(sqlQueryString, Collections.emptyList()));
+    }
+
+    private Flux<Map<String, Object>> runSqlQueryAndReturnMaps(SqlStatement statement) {
+        return executeStatement(statement).fetch().all();
+    }
+
+    /**
+     * Reads every row of the given query straight into the columns of one result without creating a map per row.
+     */
+    private Mono<TabularQueryResult> runSqlQueryAndReturnTable(SqlStatement statement) {
+        return Mono.defer(() -> {
+            // Rows of a SQL database are found ignoring the case of their column names.
+            ColumnarQueryResult.Builder builder = ColumnarQueryResult.builder().caseInsensitive();
+            return executeStatement(statement).map((row, metadata) -> {
+                builder.addRow();
+                int index = 0;
+                for (ColumnMetadata column : metadata.getColumnMetadatas()) {
+                    builder.set(column.getName(), row.get(index++));
+                }
+                return builder.getRowCount();
+            }).all().then(Mono.fromCallable(builder::build));
+        });
+    }
+
+    /**
+     * Returns the execution of the given statement with its values bound to its bind markers.  The drivers prepare a
+     * statement with bind markers on the database, so the database parses and plans each distinct SQL once.
+     */
+    private DatabaseClient.GenericExecuteSpec executeStatement(SqlStatement statement) {
         // Create a new DatabaseClient for every query so the connection is released back to the pool upon completion.
-        DatabaseClient database = DatabaseClient.create(this.pool);
-        return database.execute(sqlQueryString).fetch().all();
+        DatabaseClient.GenericExecuteSpec spec = DatabaseClient.create(this.timedPool).execute(statement.getSql());
+        for (int index = 0; index < statement.getValues().size(); index++) {
+            spec = spec.bind(index, statement.getValues().get(index));
+        }
+        return spec;
     }
 
     private Flux<String> runSqlQueryAndReturnStrings(String sqlQueryString, String columnName) {
@@ -149,36 +403,210 @@ public class SqlAdapter extends QueryAdapter {
         });
     }
 
+    /**
+     * Imports the JSON records into the table with multi-row INSERT statements of at most the importBatchSize rows,
+     * committing at most the importTransactionSize rows in each transaction.  The fields of the records are the union of
+     * the fields of every record (any missing field is NULL).  If a transaction fails, none of its records are imported
+     * and the range of its records is reported with the error.
+     */
     @Override
     public Mono<ActionResult> importData(ImportQuery importQuery) {
-        // TODO THOR-1500 THOR-1501
-        return Mono.just(new ActionResult("Import not yet supported for SQL"));
+        return Mono.defer(() -> {
+            List<String> recordErrors = new ArrayList<>();
+            List<Integer> indexes = new ArrayList<>();
+            List<ObjectNode> records = new ArrayList<>();
+            Set<String> fields = new LinkedHashSet<>();
+            for (int index = 0; index < importQuery.getSource().size(); index++) {
+                try {
+                    JsonNode record = MAPPER.readTree(importQuery.getSource().get(index));
+                    if (!(record instanceof ObjectNode)) {
+                        throw new IOException("Record is not a JSON object");
+                    }
+                    indexes.add(index);
+                    records.add((ObjectNode) record);
+                    record.fieldNames().forEachRemaining(fields::add);
+                } catch (IOException e) {
+                    recordErrors.add(String.format("%d,%s", index, e.getMessage()));
+                }
+            }
+
+            List<String> fieldList = new ArrayList<>(fields);
+            try {
+                // Validate the names once for every statement.
+                SqlQueryConverter.convertImportQuery(importQuery.getDatabase(), importQuery.getTable(), fieldList, 1,
+                    this.type);
+            } catch (IllegalArgumentException e) {
+                return Mono.just(new ActionResult(e.getMessage()));
+            }
+
+            // Keep each MySQL statement under its limit on bind markers.
+            int batchSize = this.type == SqlType.POSTGRESQL || fieldList.isEmpty() ? this.hostSettings.importBatchSize :
+                Math.max(1, Math.min(this.hostSettings.importBatchSize, SqlQueryConverter.MAX_BIND_MARKERS /
+                fieldList.size()));
+            int transactionSize = this.hostSettings.importTransactionSize;
+
+            return Flux.range(0, (records.size() + transactionSize - 1) / transactionSize).concatMap(transaction -> {
+                int from = transaction * transactionSize;
+                int to = Math.min(from + transactionSize, records.size());
+                return importTransaction(importQuery, fieldList, records.subList(from, to), batchSize)
+                    .onErrorResume(Exception.class, e -> {
+                        logError("Import", e);
+                        recordErrors.add(String.format("%d-%d,%s", indexes.get(from), indexes.get(to - 1),
+                            e.getMessage()));
+                        return Mono.just(0);
+                    });
+            }).reduce(0, Integer::sum).map(rowCount -> new ActionResult("Imported " + rowCount +
+                " items successfully.", recordErrors));
+        });
+    }
+
+    /**
+     * Inserts the given records in one transaction, rolling it back if any statement fails.
+     *
+     * @return The number of rows inserted
+     */
+    private Mono<Integer> importTransaction(ImportQuery importQuery, List<String> fields, List<ObjectNode> records,
+            int batchSize) {
+        return inTransaction(connection -> Flux.range(0, (records.size() + batchSize - 1) / batchSize)
+            .concatMap(batch -> {
+                List<ObjectNode> rows = records.subList(batch * batchSize, Math.min((batch + 1) * batchSize,
+                    records.size()));
+                return Flux.from(createImportStatement(connection, importQuery, fields, rows).execute())
+                    .concatMap(Result::getRowsUpdated);
+            }).reduce(0, Integer::sum));
+    }
+
+    /**
+     * Runs the given work on one connection in one transaction, committing it if the work succeeds and rolling it back
+     * if the work fails or is cancelled.
+     */
+    private <T> Mono<T> inTransaction(Function<Connection, Mono<T>> work) {
+        return Mono.usingWhen(this.timedPool.create(),
+            connection -> Mono.from(connection.beginTransaction()).then(work.apply(connection)),
+            connection -> Mono.from(connection.commitTransaction()).then(Mono.from(connection.close())),
+            (connection, error) -> rollbackAndClose(connection),
+            connection -> rollbackAndClose(connection));
+    }
+
+    private Mono<Void> rollbackAndClose(Connection connection) {
+        return Mono.from(connection.rollbackTransaction()).onErrorResume(e -> Mono.empty())
+            .then(Mono.from(connection.close()));
+    }
+
+    private static Statement createStatement(Connection connection, SqlStatement sqlStatement) {
+        Statement statement = connection.createStatement(sqlStatement.getSql());
+        for (int index = 0; index < sqlStatement.getValues().size(); index++) {
+            statement.bind(index, sqlStatement.getValues().get(index));
+        }
+        return statement;
+    }
+
+    private Statement createImportStatement(Connection connection, ImportQuery importQuery, List<String> fields,
+            List<ObjectNode> rows) {
+        Statement statement = connection.createStatement(SqlQueryConverter.convertImportQuery(
+            importQuery.getDatabase(), importQuery.getTable(), fields, rows.size(), this.type));
+        if (this.type == SqlType.POSTGRESQL) {
+            // The database converts the JSON of the rows to the types of the table's columns.
+            return statement.bind(0, MAPPER.createArrayNode().addAll(rows).toString());
+        }
+        int index = 0;
+        for (ObjectNode row : rows) {
+            for (String field : fields) {
+                bindImportValue(statement, index++, row.get(field));
+            }
+        }
+        return statement;
+    }
+
+    private static void bindImportValue(Statement statement, int index, JsonNode value) {
+        if (value == null || value.isNull()) {
+            statement.bindNull(index, String.class);
+        } else if (value.isTextual()) {
+            statement.bind(index, value.textValue());
+        } else if (value.isBoolean()) {
+            statement.bind(index, value.booleanValue());
+        } else if (value.isIntegralNumber() && value.canConvertToLong()) {
+            statement.bind(index, value.longValue());
+        } else if (value.isDouble() || value.isFloat()) {
+            statement.bind(index, value.doubleValue());
+        } else if (value.isNumber()) {
+            statement.bind(index, value.decimalValue());
+        } else {
+            // Nested objects and arrays are imported as JSON.
+            statement.bind(index, value.toString());
+        }
     }
 
     @Override
     public Mono<ActionResult> mutateData(MutateQuery mutateQuery) {
-        DatabaseClient database = DatabaseClient.create(this.pool);
-        return database.execute(SqlQueryConverter.convertMutationIntoUpdateQuery(mutateQuery)).fetch().rowsUpdated()
+        return findColumnTypes(mutateQuery).flatMap(columnTypes -> executeStatement(
+            SqlQueryConverter.convertMutationIntoUpdateStatement(mutateQuery, this.type, columnTypes)).fetch()
+            .rowsUpdated())
             .map(rowCount -> new ActionResult(rowCount + " rows updated in " + mutateQuery.getDatabaseName() + "." +
                 mutateQuery.getTableName(), new ArrayList<String>()));
     }
 
     @Override
     public Mono<ActionResult> insertData(MutateQuery mutateQuery) {
-        DatabaseClient database = DatabaseClient.create(this.pool);
-        return database.execute(SqlQueryConverter.convertMutationIntoInsertQuery(mutateQuery)).fetch().rowsUpdated()
+        return findColumnTypes(mutateQuery).flatMap(columnTypes -> executeStatement(
+            SqlQueryConverter.convertMutationIntoInsertStatement(mutateQuery, this.type, columnTypes)).fetch()
+                .rowsUpdated())
                 .map(rowCount -> new ActionResult(rowCount + " rows updated in " + mutateQuery.getDatabaseName() + "." +
                         mutateQuery.getTableName(), new ArrayList<String>()));
     }
 
     @Override
     public Mono<ActionResult> deleteData(MutateQuery mutateQuery) {
-        DatabaseClient database = DatabaseClient.create(this.pool);
-        return database.execute(SqlQueryConverter.convertMutationQueryIntoDeleteQuery(mutateQuery)).fetch().rowsUpdated()
+        return findColumnTypes(mutateQuery).flatMap(columnTypes -> executeStatement(
+            SqlQueryConverter.convertMutationIntoDeleteStatement(mutateQuery, this.type, columnTypes)).fetch()
+                .rowsUpdated())
                 .map(rowCount -> new ActionResult(rowCount + " rows deleted in " + mutateQuery.getDatabaseName() + "." +
                         mutateQuery.getTableName(), new ArrayList<String>()));
     }
 
+    @Override
+    public Mono<List<ActionResult>> mutateDataBatch(List<MutateQuery> mutateQueries) {
+        return executeBatch(mutateQueries, (mutateQuery, columnTypes) ->
+            SqlQueryConverter.convertMutationIntoUpdateStatement(mutateQuery, this.type, columnTypes),
+            " rows updated in ");
+    }
+
+    @Override
+    public Mono<List<ActionResult>> insertDataBatch(List<MutateQuery> mutateQueries) {
+        return executeBatch(mutateQueries, (mutateQuery, columnTypes) ->
+            SqlQueryConverter.convertMutationIntoInsertStatement(mutateQuery, this.type, columnTypes),
+            " rows updated in ");
+    }
+
+    @Override
+    public Mono<List<ActionResult>> deleteDataBatch(List<MutateQuery> mutateQueries) {
+        return executeBatch(mutateQueries, (mutateQuery, columnTypes) ->
+            SqlQueryConverter.convertMutationIntoDeleteStatement(mutateQuery, this.type, columnTypes),
+            " rows deleted in ");
+    }
+
+    /**
+     * Runs the statement of each of the given mutations in one transaction.  If any statement fails, no mutation is
+     * made and the result of every mutation is the error.  The types of the columns of the tables are found before
+     * the transaction begins.
+     */
+    private Mono<List<ActionResult>> executeBatch(List<MutateQuery> mutateQueries,
+            BiFunction<MutateQuery, SqlColumnTypes, SqlStatement> converter, String resultText) {
+        List<SelectClause> tables = mutateQueries.stream().map(mutateQuery -> new SelectClause(
+            mutateQuery.getDatabaseName(), mutateQuery.getTableName())).collect(Collectors.toList());
+        return findColumnTypes(tables).flatMap(columnTypes -> inTransaction(connection ->
+            Flux.fromIterable(mutateQueries).concatMap(mutateQuery ->
+                Flux.from(createStatement(connection, converter.apply(mutateQuery, columnTypes)).execute())
+                    .concatMap(Result::getRowsUpdated).reduce(0, Integer::sum)
+                    .map(rowCount -> new ActionResult(rowCount + resultText + mutateQuery.getDatabaseName() + "." +
+                        mutateQuery.getTableName(), new ArrayList<String>()))).collectList()))
+            .onErrorResume(Exception.class, e -> {
+                logError("Batch", e);
+                return Mono.just(mutateQueries.stream().map(mutateQuery -> new ActionResult(e.getMessage()))
+                    .collect(Collectors.toList()));
+            });
+    }
+
     private FieldType retrieveFieldType(String type) {
         String dataType = type.toLowerCase();
         if (dataType.contains(" ")) {
@@ -1,25 +1,52 @@
 package com.ncc.neon.adapters.sql;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.ncc.neon.adapters.QueryAdapter;
 import com.ncc.neon.adapters.QueryAdapterFactory;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 public abstract class SqlAdapterFactory extends QueryAdapterFactory {
+    // The key of the settings used for every host without its own settings.
+    static final String DEFAULT_HOST_KEY = "*";
+
     protected SqlType type;
+    protected Map<String, SqlHostSettings> settingsCollection = new LinkedHashMap<>();
+    protected SqlHostSettings defaultHostSettings;
+    protected MeterRegistry meterRegistry;
 
-    public SqlAdapterFactory(SqlType type, Map<String, String> authCollection) {
+    public SqlAdapterFactory(SqlType type, Map<String, String> authCollection, Map<String, String> settingsCollection,
+            MeterRegistry meterRegistry) {
         super(type.prettyName, authCollection);
         this.type = type;
+        this.meterRegistry = meterRegistry;
+        this.defaultHostSettings = SqlHostSettings.parse(new SqlHostSettings(), settingsCollection == null ? null :
+            settingsCollection.get(DEFAULT_HOST_KEY));
+        if (settingsCollection != null) {
+            settingsCollection.forEach((host, definition) -> {
+                if (!DEFAULT_HOST_KEY.equals(host)) {
+                    this.settingsCollection.put(host, SqlHostSettings.parse(this.defaultHostSettings, definition));
+                }
+            });
+        }
     }
 
     @Override
     public QueryAdapter buildAdapter(String host, String username, String password) {
-        return new SqlAdapter(this.type, host, username, password);
+        return new SqlAdapter(this.type, host, username, password, getHostSettings(host), this.meterRegistry);
     }
 
     @Override
     public String[] getNames() {
         return new String[] { type.configName };
     }
+
+    /**
+     * Returns the settings for the given host, or the default settings.
+     */
+    public SqlHostSettings getHostSettings(String host) {
+        return this.settingsCollection.getOrDefault(host, this.defaultHostSettings);
+    }
 }
@@ -0,0 +1,47 @@
+package com.ncc.neon.adapters.sql;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import com.ncc.neon.models.queries.FieldClause;
+
+/**
+ * The types of the columns of some PostgreSQL tables, so a string bound to a bind marker can be cast to the type of
+ * the column it is compared with or assigned to (see SqlQueryConverter.bindString).  The names are unquoted in the
+ * SQL, so PostgreSQL folds them (and so this class finds them) in lower case.
+ */
+class SqlColumnTypes {
+    static final SqlColumnTypes NONE = new SqlColumnTypes(Collections.emptyMap());
+
+    // The type of each column keyed on its table (see findTableKey) and then on its name.
+    private final Map<String, Map<String, String>> tables;
+
+    SqlColumnTypes(Map<String, Map<String, String>> tables) {
+        this.tables = tables;
+    }
+
+    static String findTableKey(String database, String table) {
+        return (database + "." + table).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the name of the given type from the catalog (like "pg_catalog"."int4") to write in a cast.  The name has
+     * no length or precision, so the cast never truncates a value.
+     */
+    static String quoteType(String schema, String name) {
+        return "\"" + schema.replace("\"", "\"\"") + "\".\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Returns the type of the given column to write in a cast, or null if the type is unknown.
+     */
+    String findType(String database, String table, String column) {
+        Map<String, String> columns = this.tables.get(findTableKey(database, table));
+        return columns == null || column == null ? null : columns.get(column.toLowerCase(Locale.ROOT));
+    }
+
+    String findType(FieldClause fieldClause) {
+        return findType(fieldClause.getDatabase(), fieldClause.getTable(), fieldClause.getField());
+    }
+}
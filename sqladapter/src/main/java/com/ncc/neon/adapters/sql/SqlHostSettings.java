@@ -0,0 +1,121 @@
+package com.ncc.neon.adapters.sql;
+
+import java.time.Duration;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The settings for one SQL host (its connection pool, bulk imports, and query plan cache), parsed from a definition
+ * like "maxSize=40,maxIdleTime=10m".  Durations may be simple ("30s", "10m") or ISO-8601 ("PT10M").
+ */
+@Data
+@NoArgsConstructor
+public class SqlHostSettings {
+    int initialSize = 2;
+    int maxSize = 20;
+    Duration maxIdleTime = Duration.ofMinutes(30);
+    Duration maxLifeTime;
+    Duration maxAcquireTime;
+    String validationQuery;
+    // The most rows imported by one INSERT statement and by one transaction.
+    int importBatchSize = 1000;
+    int importTransactionSize = 10000;
+    // The most query shapes whose SQL is cached (see SqlPlanCache).
+    int planCacheSize = 1000;
+
+    public SqlHostSettings(SqlHostSettings other) {
+        this.initialSize = other.initialSize;
+        this.maxSize = other.maxSize;
+        this.maxIdleTime = other.maxIdleTime;
+        this.maxLifeTime = other.maxLifeTime;
+        this.maxAcquireTime = other.maxAcquireTime;
+        this.validationQuery = other.validationQuery;
+        this.importBatchSize = other.importBatchSize;
+        this.importTransactionSize = other.importTransactionSize;
+        this.planCacheSize = other.planCacheSize;
+    }
+
+    /**
+     * Returns a copy of the given settings overridden by the settings in the given definition.
+     */
+    public static SqlHostSettings parse(SqlHostSettings defaults, String definition) {
+        SqlHostSettings settings = new SqlHostSettings(defaults);
+
+        if (definition == null || definition.trim().isEmpty()) {
+            return settings;
+        }
+
+        for (String setting : definition.split(",")) {
+            String[] keyAndValue = setting.split("=", 2);
+            if (keyAndValue.length != 2) {
+                throw new IllegalArgumentException("Invalid SQL host setting '" + setting + "'");
+            }
+            String key = keyAndValue[0].trim();
+            String value = keyAndValue[1].trim();
+            switch (key) {
+                case "initialSize":
+                    settings.initialSize = Integer.parseInt(value);
+                    break;
+                case "maxSize":
+                    settings.maxSize = Integer.parseInt(value);
+                    break;
+                case "maxIdleTime":
+                    settings.maxIdleTime = DurationStyle.detectAndParse(value);
+                    break;
+                case "maxLifeTime":
+                    settings.maxLifeTime = DurationStyle.detectAndParse(value);
+                    break;
+                case "maxAcquireTime":
+                    settings.maxAcquireTime = DurationStyle.detectAndParse(value);
+                    break;
+                case "validationQuery":
+                    settings.validationQuery = value;
+                    break;
+                case "importBatchSize":
+                    settings.importBatchSize = Integer.parseInt(value);
+                    break;
+                case "importTransactionSize":
+                    settings.importTransactionSize = Integer.parseInt(value);
+                    break;
+                case "planCacheSize":
+                    settings.planCacheSize = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown SQL host setting '" + key + "'");
+            }
+        }
+
+        if (settings.initialSize > settings.maxSize) {
+            throw new IllegalArgumentException("SQL pool initialSize " + settings.initialSize +
+                " is greater than maxSize " + settings.maxSize);
+        }
+        if (settings.importBatchSize < 1 || settings.importTransactionSize < 1) {
+            throw new IllegalArgumentException("SQL importBatchSize and importTransactionSize must be positive");
+        }
+        if (settings.planCacheSize < 0) {
+            throw new IllegalArgumentException("SQL planCacheSize must not be negative");
+        }
+        return settings;
+    }
+
+    /**
+     * Applies these settings to the given pool configuration builder.
+     */
+    ConnectionPoolConfiguration.Builder applyTo(ConnectionPoolConfiguration.Builder builder) {
+        builder.initialSize(initialSize).maxSize(maxSize).maxIdleTime(maxIdleTime);
+        if (maxLifeTime != null) {
+            builder.maxLifeTime(maxLifeTime);
+        }
+        if (maxAcquireTime != null) {
+            builder.maxAcquireTime(maxAcquireTime);
+        }
+        if (validationQuery != null) {
+            builder.validationQuery(validationQuery);
+        }
+        return builder;
+    }
+}
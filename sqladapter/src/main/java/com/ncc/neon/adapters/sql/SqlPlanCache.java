@@ -0,0 +1,72 @@
+package com.ncc.neon.adapters.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ncc.neon.models.queries.Query;
+
+import lombok.Value;
+
+/**
+ * Caches the SQL of the queries converted for one adapter keyed on their shapes (see
+ * SqlQueryConverter.convertQueryIntoShape).  A query with the shape of an earlier query, like a dashboard query whose
+ * filter values changed, is not converted again:  only its values are found and bound to the cached SQL.
+ */
+class SqlPlanCache {
+    /**
+     * The shape of a query and the casts of its PostgreSQL strings (see SqlQueryConverter.bindString), which together
+     * determine its SQL.
+     */
+    @Value
+    private static class PlanKey {
+        Query shape;
+        List<String> casts;
+    }
+
+    private final SqlType type;
+    private final Cache<PlanKey, String> cache;
+
+    /**
+     * @param maximumSize The most shapes cached, or zero to convert every query
+     */
+    SqlPlanCache(SqlType type, int maximumSize) {
+        this.type = type;
+        this.cache = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+    }
+
+    /**
+     * Returns the statement of the given query (see SqlQueryConverter.convertQueryIntoStatement), or null if the query
+     * cannot be converted.
+     */
+    SqlStatement convertQuery(Query query) {
+        return convertQuery(query, SqlColumnTypes.NONE);
+    }
+
+    /**
+     * Returns the statement of the given query, casting its PostgreSQL strings to the types of their columns from the
+     * given types (see SqlQueryConverter.bindString), or null if the query cannot be converted.
+     */
+    SqlStatement convertQuery(Query query, SqlColumnTypes columnTypes) {
+        List<String> casts = new ArrayList<>();
+        PlanKey key = new PlanKey(SqlQueryConverter.convertQueryIntoShape(query, this.type, columnTypes, casts),
+            casts);
+        String sql = this.cache.getIfPresent(key);
+        if (sql != null) {
+            List<Object> values = SqlQueryConverter.convertQueryIntoValues(query, this.type, columnTypes);
+            if (values != null) {
+                return new SqlStatement(sql, values);
+            }
+        }
+        SqlStatement statement = SqlQueryConverter.convertQueryIntoStatement(query, this.type, columnTypes);
+        if (statement != null) {
+            this.cache.put(key, statement.getSql());
+        }
+        return statement;
+    }
+
+    long getHitCount() {
+        return this.cache.stats().hitCount();
+    }
+}
@@ -4,18 +4,61 @@ import com.ncc.neon.models.queries.*;
 import com.ncc.neon.util.DateUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Slf4j
 public class SqlQueryConverter {
+    static final String MIN_LABEL = "_min";
+    static final String MAX_LABEL = "_max";
+    static final String DISTINCT_COUNT_LABEL = "_distinctCount";
+
+    // The most bind markers in one MySQL statement.
+    static final int MAX_BIND_MARKERS = 65535;
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private static final List<String> CONTAINS_OPERATORS = Arrays.asList("contains", "not contains", "notcontains");
+    private static final List<String> EQUALITY_OPERATORS = Arrays.asList("=", "!=");
+
+    // Replaces the bound date of a filter in the shape of a query.
+    private static final ZonedDateTime SHAPE_DATE = ZonedDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC);
+
     public SqlQueryConverter() {
     }
 
     public static String convertQuery(Query query, SqlType type) {
+        return convertQuery(query, type, null, SqlColumnTypes.NONE);
+    }
+
+    /**
+     * Returns the statement of the given query with bind markers for its values (see bind).
+     */
+    public static SqlStatement convertQueryIntoStatement(Query query, SqlType type) {
+        return convertQueryIntoStatement(query, type, SqlColumnTypes.NONE);
+    }
+
+    /**
+     * Returns the statement of the given query with bind markers for its values, casting each PostgreSQL string to
+     * the type of its column from the given types (see bindString).
+     */
+    static SqlStatement convertQueryIntoStatement(Query query, SqlType type, SqlColumnTypes columnTypes) {
+        List<Object> values = new ArrayList<>();
+        String sql = convertQuery(query, type, values, columnTypes);
+        return sql == null ? null : new SqlStatement(sql, values);
+    }
+
+    private static String convertQuery(Query query, SqlType type, List<Object> values, SqlColumnTypes columnTypes) {
         try {
             return appendLimitAndOffset(
                 appendOrderBy(
@@ -24,16 +67,22 @@ public class SqlQueryConverter {
                             appendJoin(
                                 appendSelect(new StringBuilder(), query, type),
                                 query,
-                                type
+                                type,
+                                values,
+                                columnTypes
                             ),
                             query,
-                            type
+                            type,
+                            values,
+                            columnTypes
                         ),
                         query
                     ),
                     query
                 ),
-                query
+                query,
+                type,
+                values
             ).toString();
         } catch (Exception e) {
             System.err.println(e);
@@ -41,6 +90,222 @@ public class SqlQueryConverter {
         }
     }
 
+    /**
+     * Returns the shape of the given query:  a copy of the query with placeholders in place of the values that
+     * convertQueryIntoStatement binds to bind markers, so queries with equal shapes are converted into the same SQL
+     * (with different values).  The shape copies the clauses it keeps, so a later change to the query does not
+     * change its shape (a key of SqlPlanCache), and drops the clauses that are not converted into SQL.
+     */
+    public static Query convertQueryIntoShape(Query query, SqlType type) {
+        return convertQueryIntoShape(query, type, SqlColumnTypes.NONE, new ArrayList<>());
+    }
+
+    /**
+     * Returns the shape of the given query like convertQueryIntoShape, and adds the cast of each of its PostgreSQL
+     * strings from the given types (or null if its type is unknown) to the given casts, in order.  The SQL of the
+     * query depends on both its shape and its casts.
+     */
+    static Query convertQueryIntoShape(Query query, SqlType type, SqlColumnTypes columnTypes, List<String> casts) {
+        List<JoinClause> joinClauses = query.getJoinClauses() == null ? null : query.getJoinClauses().stream()
+            .map(joinClause -> new JoinClause(joinClause.getType(), joinClause.getDatabase(), joinClause.getTable(),
+                convertWhereIntoShape(joinClause.getOnClause(), type, columnTypes, casts)))
+            .collect(Collectors.toList());
+        LimitClause limitClause = query.getLimitClause() == null ? null : new LimitClause(0);
+        // Only an offset greater than zero is written.
+        OffsetClause offsetClause = query.getOffsetClause() == null ? null :
+            new OffsetClause(query.getOffsetClause().getOffset() <= 0 ? 0 : 1);
+        SelectClause selectClause = query.getSelectClause() == null ? null : new SelectClause(
+            query.getSelectClause().getDatabase(), query.getSelectClause().getTable(),
+            copyList(query.getSelectClause().getFieldClauses(), SqlQueryConverter::copyField));
+        // The cluster clause and pagination type are not converted into SQL.
+        return new Query(selectClause, convertWhereIntoShape(query.getWhereClause(), type, columnTypes, casts), null,
+            copyList(query.getAggregateClauses(), SqlQueryConverter::copyAggregate),
+            copyList(query.getGroupByClauses(), SqlQueryConverter::copyGroup),
+            copyList(query.getOrderByClauses(), SqlQueryConverter::copyOrder), limitClause, offsetClause,
+            joinClauses, query.isDistinct(), null);
+    }
+
+    private static <T> List<T> copyList(List<T> list, Function<T, T> copy) {
+        return list == null ? null : list.stream().map(copy).collect(Collectors.toList());
+    }
+
+    private static FieldClause copyField(FieldClause field) {
+        return field == null ? null : new FieldClause(field.getDatabase(), field.getTable(), field.getField());
+    }
+
+    private static AggregateClause copyAggregate(AggregateClause aggregate) {
+        if (aggregate instanceof AggregateByFieldClause) {
+            AggregateByFieldClause fieldAggregate = (AggregateByFieldClause) aggregate;
+            return new AggregateByFieldClause(copyField(fieldAggregate.getFieldClause()), fieldAggregate.getLabel(),
+                fieldAggregate.getOperation());
+        }
+        if (aggregate instanceof AggregateByGroupCountClause) {
+            return new AggregateByGroupCountClause(((AggregateByGroupCountClause) aggregate).getGroup(),
+                aggregate.getLabel());
+        }
+        if (aggregate instanceof AggregateByTotalCountClause) {
+            return new AggregateByTotalCountClause(aggregate.getLabel());
+        }
+        return aggregate;
+    }
+
+    private static GroupByClause copyGroup(GroupByClause group) {
+        if (group instanceof GroupByFieldClause) {
+            return new GroupByFieldClause(copyField(((GroupByFieldClause) group).getFieldClause()));
+        }
+        if (group instanceof GroupByOperationClause) {
+            GroupByOperationClause operationGroup = (GroupByOperationClause) group;
+            return new GroupByOperationClause(copyField(operationGroup.getFieldClause()), operationGroup.getLabel(),
+                operationGroup.getOperation());
+        }
+        return group;
+    }
+
+    private static OrderByClause copyOrder(OrderByClause order) {
+        if (order instanceof OrderByFieldClause) {
+            return new OrderByFieldClause(copyField(((OrderByFieldClause) order).getFieldClause()), order.getOrder());
+        }
+        if (order instanceof OrderByOperationClause) {
+            return new OrderByOperationClause(((OrderByOperationClause) order).getOperation(), order.getOrder());
+        }
+        return order;
+    }
+
+    /**
+     * Returns the values that convertQueryIntoStatement binds to the bind markers of the given query, in order, or null
+     * if the query cannot be converted.  Only the clauses with values are converted.
+     */
+    public static List<Object> convertQueryIntoValues(Query query, SqlType type) {
+        return convertQueryIntoValues(query, type, SqlColumnTypes.NONE);
+    }
+
+    static List<Object> convertQueryIntoValues(Query query, SqlType type, SqlColumnTypes columnTypes) {
+        List<Object> values = new ArrayList<>();
+        try {
+            appendLimitAndOffset(appendWhere(appendJoin(new StringBuilder(), query, type, values, columnTypes), query,
+                type, values, columnTypes), query, type, values);
+            return values;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the query for the smallest value, largest value, and number of distinct values of the given field in the
+     * rows of the given query.
+     */
+    public static String convertFieldRangeQuery(Query query, FieldClause fieldClause, SqlType type) {
+        return convertFieldRangeQuery(query, fieldClause, type, null, SqlColumnTypes.NONE);
+    }
+
+    /**
+     * Returns the statement of the field range query (see convertFieldRangeQuery) with bind markers for its values.
+     */
+    public static SqlStatement convertFieldRangeQueryIntoStatement(Query query, FieldClause fieldClause, SqlType type) {
+        return convertFieldRangeQueryIntoStatement(query, fieldClause, type, SqlColumnTypes.NONE);
+    }
+
+    static SqlStatement convertFieldRangeQueryIntoStatement(Query query, FieldClause fieldClause, SqlType type,
+            SqlColumnTypes columnTypes) {
+        List<Object> values = new ArrayList<>();
+        return new SqlStatement(convertFieldRangeQuery(query, fieldClause, type, values, columnTypes), values);
+    }
+
+    private static String convertFieldRangeQuery(Query query, FieldClause fieldClause, SqlType type,
+            List<Object> values, SqlColumnTypes columnTypes) {
+        String field = fieldClause.getComplete();
+        StringBuilder builder = new StringBuilder("SELECT MIN(").append(field).append(") AS ").append(MIN_LABEL)
+            .append(", MAX(").append(field).append(") AS ").append(MAX_LABEL)
+            .append(", COUNT(DISTINCT ").append(field).append(") AS ").append(DISTINCT_COUNT_LABEL);
+        return appendWhere(appendJoin(appendFrom(builder, query), query, type, values, columnTypes), query, type,
+            values, columnTypes).toString();
+    }
+
+    /**
+     * Returns the query for the rows of the given query aggregated into the given bins, each labeled with the name of
+     * its field, instead of grouped by the bins' fields.
+     */
+    public static String convertBinnedQuery(Query query, List<BinClause> binClauses, SqlType type) {
+        return convertBinnedQuery(query, binClauses, type, null, SqlColumnTypes.NONE);
+    }
+
+    /**
+     * Returns the statement of the binned query (see convertBinnedQuery) with bind markers for the values of its
+     * filters.  The bins' ranges are written into the statement.
+     */
+    public static SqlStatement convertBinnedQueryIntoStatement(Query query, List<BinClause> binClauses,
+            SqlType type) {
+        return convertBinnedQueryIntoStatement(query, binClauses, type, SqlColumnTypes.NONE);
+    }
+
+    static SqlStatement convertBinnedQueryIntoStatement(Query query, List<BinClause> binClauses, SqlType type,
+            SqlColumnTypes columnTypes) {
+        List<Object> values = new ArrayList<>();
+        return new SqlStatement(convertBinnedQuery(query, binClauses, type, values, columnTypes), values);
+    }
+
+    private static String convertBinnedQuery(Query query, List<BinClause> binClauses, SqlType type,
+            List<Object> values, SqlColumnTypes columnTypes) {
+        List<String> fields = binClauses.stream().map(binClause -> convertBinClause(binClause) + " AS " +
+            binClause.getField()).collect(Collectors.toCollection(ArrayList::new));
+        fields.add("COUNT(*) AS " + BinClause.COUNT_KEY);
+        convertAggregateClauses(query).forEach(fields::add);
+
+        // Group by position because a bin labeled with the name of its field would be mistaken for the field itself.
+        String groups = Stream.iterate(1, position -> position + 1).limit(binClauses.size()).map(String::valueOf)
+            .collect(Collectors.joining(", "));
+
+        StringBuilder builder = new StringBuilder("SELECT ").append(String.join(", ", fields));
+        return appendWhere(appendJoin(appendFrom(builder, query), query, type, values, columnTypes), query, type,
+            values, columnTypes).append(" GROUP BY ").append(groups).toString();
+    }
+
+    /**
+     * Returns the statement inserting rows of the given fields into the given table, with bind markers for the values.
+     * The MySQL statement has one bind marker for each field of each of the given number of rows, in row order.  The
+     * PostgreSQL statement has one bind marker for a JSON array of all the rows as objects, each converted to the types
+     * of the table's columns (so the row count is ignored).
+     *
+     * @throws IllegalArgumentException if a field name is not a plain SQL identifier
+     */
+    public static String convertImportQuery(String database, String table, List<String> fields, int rowCount,
+            SqlType type) {
+        Stream.concat(Stream.of(database, table), fields.stream()).forEach(name -> {
+            if (name == null || !IDENTIFIER.matcher(name).matches()) {
+                throw new IllegalArgumentException("Invalid field name '" + name + "'");
+            }
+        });
+        String names = String.join(", ", fields);
+        StringBuilder builder = new StringBuilder("INSERT INTO ").append(database).append(".").append(table)
+            .append(" (").append(names).append(")");
+        if (type == SqlType.POSTGRESQL) {
+            return builder.append(" SELECT ").append(names).append(" FROM json_populate_recordset(NULL::")
+                .append(database).append(".").append(table).append(", $1::json)").toString();
+        }
+        String row = Stream.generate(() -> "?").limit(fields.size()).collect(Collectors.joining(", ", "(", ")"));
+        return builder.append(" VALUES ").append(Stream.generate(() -> row).limit(rowCount)
+            .collect(Collectors.joining(", "))).toString();
+    }
+
+    /**
+     * Returns the index of the first bin containing the value of the bin clause's field, or NULL if no bin contains it.
+     */
+    private static String convertBinClause(BinClause binClause) {
+        StringBuilder builder = new StringBuilder("CASE");
+        for (int index = 0; index < binClause.getRanges().size(); index++) {
+            double[] range = binClause.getRanges().get(index);
+            builder.append(" WHEN ").append(binClause.getFieldClause().getComplete()).append(" BETWEEN ")
+                .append(BigDecimal.valueOf(range[0]).toPlainString()).append(" AND ")
+                .append(BigDecimal.valueOf(range[1]).toPlainString()).append(" THEN ").append(index);
+        }
+        return builder.append(" END").toString();
+    }
+
+    private static StringBuilder appendFrom(StringBuilder builder, Query query) {
+        return builder.append(" FROM ").append(query.getSelectClause().getDatabase()).append(".")
+            .append(query.getSelectClause().getTable());
+    }
+
     private static StringBuilder appendGroupBy(StringBuilder builder, Query query) {
         if (query.getGroupByClauses().size() > 0) {
             List<String> groups = query.getGroupByClauses().stream().map(groupBy -> {
@@ -54,7 +319,8 @@ public class SqlQueryConverter {
         return builder;
     }
 
-    private static StringBuilder appendJoin(StringBuilder builder, Query query, SqlType type) {
+    private static StringBuilder appendJoin(StringBuilder builder, Query query, SqlType type, List<Object> values,
+            SqlColumnTypes columnTypes) {
         System.out.println("number of joins " + query.getJoinClauses().size());
         for (JoinClause joinClause : query.getJoinClauses()) {
             String joinType = retrieveJoinType(joinClause);
@@ -66,7 +332,7 @@ public class SqlQueryConverter {
             else {
                 builder.append(" ").append(joinType).append(" ").append(joinClause.getDatabase()).append(".")
                     .append(joinClause.getTable()).append(" ON ")
-                    .append(transformWhere(joinClause.getOnClause(), type));
+                    .append(transformWhere(joinClause.getOnClause(), type, values, columnTypes));
             }
         }
         return builder;
@@ -91,20 +357,23 @@ public class SqlQueryConverter {
         return "JOIN";
     }
 
-    private static StringBuilder appendLimitAndOffset(StringBuilder builder, Query query) throws Exception {
+    private static StringBuilder appendLimitAndOffset(StringBuilder builder, Query query, SqlType type,
+            List<Object> values) throws Exception {
         if (query.getLimitClause() != null) {
-            builder.append(" LIMIT ").append(query.getLimitClause().getLimit());
+            int limit = query.getLimitClause().getLimit();
+            builder.append(" LIMIT ").append(bind(limit, String.valueOf(limit), type, values));
         }
         if (query.getOffsetClause() != null && query.getOffsetClause().getOffset() > 0) {
             if (query.getLimitClause() == null) {
                 throw new Exception();
             }
-            builder.append(" OFFSET ").append(query.getOffsetClause().getOffset());
+            int offset = query.getOffsetClause().getOffset();
+            builder.append(" OFFSET ").append(bind(offset, String.valueOf(offset), type, values));
         }
         return builder;
     }
 
-    private static StringBuilder appendSelect(StringBuilder builder, Query query, SqlType type) {
+    private static Stream<String> convertAggregateClauses(Query query) {
         Stream<String> aggregateOnTotalStream = query.getAggregateClauses().stream()
             .filter(aggregate -> aggregate instanceof AggregateByTotalCountClause).map(aggregate ->
                 aggregate.getOperation().toUpperCase() + "(*) AS " + aggregate.getLabel());
@@ -115,7 +384,11 @@ public class SqlQueryConverter {
                     ((AggregateByFieldClause) aggregate).getCompleteField() + ") AS " + aggregate.getLabel());
 
         // TODO Do we need to support the AggregateOnGroupClause?
-        Stream<String> aggregateStream = Stream.concat(aggregateOnTotalStream, aggregateByFieldStream);
+        return Stream.concat(aggregateOnTotalStream, aggregateByFieldStream);
+    }
+
+    private static StringBuilder appendSelect(StringBuilder builder, Query query, SqlType type) {
+        Stream<String> aggregateStream = convertAggregateClauses(query);
 
         Stream<String> groupByStream = query.getGroupByClauses().stream().map(groupBy -> {
             if (groupBy instanceof GroupByOperationClause) {
@@ -144,10 +417,8 @@ public class SqlQueryConverter {
                 .filter(field -> !groupByFunctionFields.contains(field)), aggregateAndGroupStream)).distinct()
                 .collect(Collectors.toList());
 
-        return builder.append("SELECT ").append(query.isDistinct() ? "DISTINCT " : "")
-            .append((fields.size() == 0 ? "*" : fields.stream().collect(Collectors.joining(", "))))
-            .append(" FROM ").append(query.getSelectClause().getDatabase()).append(".")
-            .append(query.getSelectClause().getTable());
+        return appendFrom(builder.append("SELECT ").append(query.isDistinct() ? "DISTINCT " : "")
+            .append((fields.size() == 0 ? "*" : fields.stream().collect(Collectors.joining(", ")))), query);
     }
 
     private static StringBuilder appendOrderBy(StringBuilder builder, Query query) {
@@ -160,9 +431,10 @@ public class SqlQueryConverter {
         return builder;
     }
 
-    private static StringBuilder appendWhere(StringBuilder builder, Query query, SqlType type) {
+    private static StringBuilder appendWhere(StringBuilder builder, Query query, SqlType type, List<Object> values,
+            SqlColumnTypes columnTypes) {
         if (query.getWhereClause() != null) {
-            String whereString = transformWhere(query.getWhereClause(), type);
+            String whereString = transformWhere(query.getWhereClause(), type, values, columnTypes);
             if (whereString != null) {
                 return builder.append(" WHERE ").append(whereString);
             }
@@ -174,15 +446,55 @@ public class SqlQueryConverter {
         log.debug(name + ":  " + object.toString());
     }
 
-    private static String preventInjection(String fromUser) {
-        return fromUser.replaceAll("'", "\\\\'");
+    /**
+     * Returns the given string escaped to write inside a string literal.  A backslash is an escape character in
+     * MySQL, so backslashes and quotes are escaped with backslashes.  A backslash is an ordinary character in
+     * PostgreSQL (since standard_conforming_strings is on by default), so a quote is escaped by doubling it.
+     */
+    private static String escapeString(String value, SqlType type) {
+        return type == SqlType.POSTGRESQL ? value.replace("'", "''") :
+            value.replace("\\", "\\\\").replace("'", "\\'");
+    }
+
+    /**
+     * Returns the given string as a string literal (see escapeString).
+     */
+    static String quoteString(String value, SqlType type) {
+        return "'" + escapeString(value, type) + "'";
+    }
+
+    /**
+     * Returns the given literal if the values are null, or else adds the given value to the values and returns its
+     * bind marker.
+     */
+    private static String bind(Object value, String literal, SqlType type, List<Object> values) {
+        if (values == null) {
+            return literal;
+        }
+        values.add(value);
+        return type == SqlType.POSTGRESQL ? ("$" + values.size()) : "?";
     }
 
-    private static String transformCompoundWhere(CompoundWhereClause where, SqlType type) {
+    /**
+     * Like bind, but in PostgreSQL casts the bind marker to the given type of the column the string is compared with
+     * or assigned to:  its driver binds a string as a VARCHAR, which (unlike a string literal) cannot be compared with
+     * or assigned to a column of another type like an integer or UUID.  If the type is unknown (null), the PostgreSQL
+     * string is written into the SQL as the given literal instead.
+     */
+    private static String bindString(String value, String literal, String castType, SqlType type,
+            List<Object> values) {
+        if (type == SqlType.POSTGRESQL && (values == null || castType == null)) {
+            return literal;
+        }
+        return bind(value, literal, type, values) + (type == SqlType.POSTGRESQL ? "::" + castType : "");
+    }
+
+    private static String transformCompoundWhere(CompoundWhereClause where, SqlType type, List<Object> values,
+            SqlColumnTypes columnTypes) {
         String joinType = where instanceof AndWhereClause ? " AND " : " OR ";
         List<WhereClause> innerWheres = where instanceof AndWhereClause ? ((AndWhereClause) where).getWhereClauses() :
             ((OrWhereClause) where).getWhereClauses();
-        return "(" + innerWheres.stream().map(innerWhere -> transformWhere(innerWhere, type)).filter(innerWhereString ->
+        return "(" + innerWheres.stream().map(innerWhere -> transformWhere(innerWhere, type, values, columnTypes)).filter(innerWhereString ->
             innerWhereString != null).collect(Collectors.joining(joinType)) + ")";
     }
 
@@ -190,7 +502,7 @@ public class SqlQueryConverter {
         String field1 = where.getLhs().getComplete();
         String field2 = where.getRhs().getComplete();
 
-        if (Arrays.asList("contains", "not contains", "notcontains").contains(where.getOperator())) {
+        if (CONTAINS_OPERATORS.contains(where.getOperator())) {
             boolean not = !where.getOperator().equals("contains");
             String operator = (type == SqlType.POSTGRESQL ? (not ? "!~" : "~") : ((not ? "NOT " : "") + "REGEXP"));
             return field1 + " " + operator + " " + field2;
@@ -201,20 +513,22 @@ public class SqlQueryConverter {
         return field1 + " " + operator + " " + field2;
     }
 
-    private static String transformSingularWhere(SingularWhereClause where, SqlType type) {
+    private static String transformSingularWhere(SingularWhereClause where, SqlType type, List<Object> values,
+            SqlColumnTypes columnTypes) {
         String field = where.getLhs().getComplete();
 
-        if (Arrays.asList("contains", "not contains", "notcontains").contains(where.getOperator())) {
+        if (CONTAINS_OPERATORS.contains(where.getOperator())) {
             boolean not = !where.getOperator().equals("contains");
             String operator = (type == SqlType.POSTGRESQL ? (not ? "!~" : "~") : ((not ? "NOT " : "") + "REGEXP"));
-            return field + " " + operator + " '.*" + preventInjection(where.getRhsString()) + ".*'";
+            return field + " " + operator + " " + bind(".*" + where.getRhsString() + ".*", "'.*" +
+                escapeString(where.getRhsString(), type) + ".*'", type, values);
         }
 
-        if (where.isNull() && Arrays.asList("=", "!=").contains(where.getOperator())) {
+        if (where.isNull() && EQUALITY_OPERATORS.contains(where.getOperator())) {
             return field + " IS" + (where.getOperator().equals("=") ? "" : " NOT") + " NULL";
         }
 
-        if (where.isBoolean() && Arrays.asList("=", "!=").contains(where.getOperator())) {
+        if (where.isBoolean() && EQUALITY_OPERATORS.contains(where.getOperator())) {
             return (!(where.getOperator().equals("=") ^ where.getRhsBoolean()) ? "" : "NOT ") + field;
         }
 
@@ -224,20 +538,71 @@ public class SqlQueryConverter {
             String dateFunction = type == SqlType.POSTGRESQL ? "TO_TIMESTAMP" : "STR_TO_DATE";
             String dateString = DateUtil.transformDateToString(where.getRhsDate());
             String dateFormat = type == SqlType.POSTGRESQL ? "YYYY-MM-DD\"T\"HH24:MI:SS\"Z\"" : "%Y-%m-%dT%TZ";
-            return field + " " + operator + " " + dateFunction + "('" + dateString + "','" + dateFormat + "')";
+            return field + " " + operator + " " + dateFunction + "(" + bind(dateString, "'" + dateString + "'", type,
+                values) + ",'" + dateFormat + "')";
         }
 
-        Object value = (where.isString() ? ("'" + preventInjection(where.getRhsString()) + "'") : where.getRhs());
+        String value = (where.isString() ? bindString(where.getRhsString(), quoteString(where.getRhsString(), type),
+            columnTypes.findType(where.getLhs()), type, values) : bind(where.getRhs(), String.valueOf(where.getRhs()),
+            type, values));
 
         return field + " " + operator + " " + value;
     }
 
-    private static String transformWhere(WhereClause where, SqlType type) {
+    /**
+     * Returns a copy of the given filter with placeholders in place of the values that transformWhere binds (see
+     * transformSingularWhere).
+     */
+    private static WhereClause convertWhereIntoShape(WhereClause where, SqlType type, SqlColumnTypes columnTypes,
+            List<String> casts) {
+        if (where instanceof AndWhereClause) {
+            return new AndWhereClause(((AndWhereClause) where).getWhereClauses().stream().map(innerWhere ->
+                convertWhereIntoShape(innerWhere, type, columnTypes, casts)).collect(Collectors.toList()));
+        }
+        if (where instanceof OrWhereClause) {
+            return new OrWhereClause(((OrWhereClause) where).getWhereClauses().stream().map(innerWhere ->
+                convertWhereIntoShape(innerWhere, type, columnTypes, casts)).collect(Collectors.toList()));
+        }
+        if (where instanceof FieldsWhereClause) {
+            FieldsWhereClause fields = (FieldsWhereClause) where;
+            return new FieldsWhereClause(copyField(fields.getLhs()), fields.getOperator(), copyField(fields.getRhs()));
+        }
+        if (!(where instanceof SingularWhereClause)) {
+            return where;
+        }
+
+        SingularWhereClause singular = (SingularWhereClause) where;
+        SingularWhereClause shape = SingularWhereClause.fromNull(copyField(singular.getLhs()), singular.getOperator());
+        shape.setRhsBoolean(singular.getRhsBoolean());
+        shape.setRhsDate(singular.getRhsDate());
+        shape.setRhsDouble(singular.getRhsDouble());
+        shape.setRhsString(singular.getRhsString());
+        if (CONTAINS_OPERATORS.contains(singular.getOperator())) {
+            shape.setRhsString(singular.isString() ? "" : null);
+        } else if ((singular.isNull() || singular.isBoolean()) && EQUALITY_OPERATORS.contains(singular.getOperator())) {
+            return shape;
+        } else if (singular.isDate()) {
+            shape.setRhsDate(SHAPE_DATE);
+        } else if (singular.isString()) {
+            // A PostgreSQL string is bound only if the type of its column is known (see bindString).
+            String cast = type == SqlType.POSTGRESQL ? columnTypes.findType(singular.getLhs()) : null;
+            shape.setRhsString(type == SqlType.POSTGRESQL && cast == null ? singular.getRhsString() : "");
+            if (type == SqlType.POSTGRESQL) {
+                casts.add(cast);
+            }
+        } else if (singular.isDouble()) {
+            shape.setRhsDouble(0.0);
+        }
+        return shape;
+    }
+
+    private static String transformWhere(WhereClause where, SqlType type, List<Object> values,
+            SqlColumnTypes columnTypes) {
         if (where instanceof SingularWhereClause) {
-            return transformSingularWhere((SingularWhereClause) where, type);
+            return transformSingularWhere((SingularWhereClause) where, type, values, columnTypes);
         }
         if (where instanceof CompoundWhereClause) {
-            return transformCompoundWhere((CompoundWhereClause) where, type);
+            return transformCompoundWhere((CompoundWhereClause) where, type, values, columnTypes);
         }
         if (where instanceof FieldsWhereClause) {
             return transformFieldsWhere((FieldsWhereClause) where, type);
@@ -246,11 +611,29 @@ public class SqlQueryConverter {
     }
 
     public static String convertMutationIntoUpdateQuery(MutateQuery mutateQuery) {
+        return convertMutationIntoUpdateQuery(mutateQuery, getType(mutateQuery), null, SqlColumnTypes.NONE);
+    }
+
+    /**
+     * Returns the UPDATE statement of the given mutation with bind markers for its values (see bind).
+     */
+    public static SqlStatement convertMutationIntoUpdateStatement(MutateQuery mutateQuery, SqlType type) {
+        return convertMutationIntoUpdateStatement(mutateQuery, type, SqlColumnTypes.NONE);
+    }
+
+    static SqlStatement convertMutationIntoUpdateStatement(MutateQuery mutateQuery, SqlType type, SqlColumnTypes columnTypes) {
+        List<Object> values = new ArrayList<>();
+        return new SqlStatement(convertMutationIntoUpdateQuery(mutateQuery, type, values, columnTypes), values);
+    }
+
+    private static String convertMutationIntoUpdateQuery(MutateQuery mutateQuery, SqlType type,
+            List<Object> values, SqlColumnTypes columnTypes) {
         List<String> fieldAndValueStrings = mutateQuery.getFieldsWithValues().entrySet().stream()
-            .map(entry -> entry.getKey() + " = " + SqlQueryConverter.transformObjectToString(entry.getValue(), false))
+            .map(entry -> entry.getKey() + " = " + bindMutationValue(entry.getValue(), columnTypes.findType(
+                mutateQuery.getDatabaseName(), mutateQuery.getTableName(), entry.getKey()), type, values))
             .collect(Collectors.toList());
 
-        String whereClause = getWhereClauseFromMutateQuery(mutateQuery);
+        String whereClause = getWhereClauseFromMutateQuery(mutateQuery, type, values, columnTypes);
 
         String sqlQueryString = "UPDATE " + mutateQuery.getDatabaseName() + "." + mutateQuery.getTableName() +
             " SET " + String.join(", ", fieldAndValueStrings) + " WHERE " + whereClause;
@@ -259,30 +642,94 @@ public class SqlQueryConverter {
     }
 
     public static String convertMutationIntoInsertQuery(MutateQuery mutateQuery) {
+        return convertMutationIntoInsertQuery(mutateQuery, getType(mutateQuery), null, SqlColumnTypes.NONE);
+    }
+
+    /**
+     * Returns the INSERT statement of the given mutation with bind markers for its values (see bind).
+     */
+    public static SqlStatement convertMutationIntoInsertStatement(MutateQuery mutateQuery, SqlType type) {
+        return convertMutationIntoInsertStatement(mutateQuery, type, SqlColumnTypes.NONE);
+    }
+
+    static SqlStatement convertMutationIntoInsertStatement(MutateQuery mutateQuery, SqlType type, SqlColumnTypes columnTypes) {
+        List<Object> values = new ArrayList<>();
+        return new SqlStatement(convertMutationIntoInsertQuery(mutateQuery, type, values, columnTypes), values);
+    }
+
+    private static String convertMutationIntoInsertQuery(MutateQuery mutateQuery, SqlType type,
+            List<Object> values, SqlColumnTypes columnTypes) {
         String separator = mutateQuery.getFieldsWithValues().isEmpty() ? "" : ", ";
+        String id = mutateQuery.getDataId() == null ? "" : bindString(mutateQuery.getDataId(),
+            quoteString(mutateQuery.getDataId(), type), columnTypes.findType(mutateQuery.getDatabaseName(),
+            mutateQuery.getTableName(), "id"), type, values) + separator;
         String sqlQueryString = "INSERT INTO " + mutateQuery.getDatabaseName() + "." + mutateQuery.getTableName() +
                 " (" + (mutateQuery.getDataId() == null ? "" : "id" + separator) + String.join(", ", mutateQuery.getFieldsWithValues().keySet()) + ") VALUES (" +
-                (mutateQuery.getDataId() == null ? "" : "'" + mutateQuery.getDataId() + "'" + separator) + mutateQuery.getFieldsWithValues().values().stream().map(value -> SqlQueryConverter
-                        .transformObjectToString(value, false)).collect(Collectors.joining(", ")) + ")";
+                id + mutateQuery.getFieldsWithValues().entrySet().stream().map(entry ->
+                        bindMutationValue(entry.getValue(), columnTypes.findType(mutateQuery.getDatabaseName(),
+                        mutateQuery.getTableName(), entry.getKey()), type, values))
+                        .collect(Collectors.joining(", ")) + ")";
 
         return sqlQueryString;
     }
 
     public static String convertMutationQueryIntoDeleteQuery(MutateQuery mutateQuery) {
-        String whereClause = getWhereClauseFromMutateQuery(mutateQuery);
+        return convertMutationQueryIntoDeleteQuery(mutateQuery, getType(mutateQuery), null, SqlColumnTypes.NONE);
+    }
+
+    /**
+     * Returns the DELETE statement of the given mutation with bind markers for its values (see bind).
+     */
+    public static SqlStatement convertMutationIntoDeleteStatement(MutateQuery mutateQuery, SqlType type) {
+        return convertMutationIntoDeleteStatement(mutateQuery, type, SqlColumnTypes.NONE);
+    }
+
+    static SqlStatement convertMutationIntoDeleteStatement(MutateQuery mutateQuery, SqlType type, SqlColumnTypes columnTypes) {
+        List<Object> values = new ArrayList<>();
+        return new SqlStatement(convertMutationQueryIntoDeleteQuery(mutateQuery, type, values, columnTypes), values);
+    }
+
+    private static String convertMutationQueryIntoDeleteQuery(MutateQuery mutateQuery, SqlType type,
+            List<Object> values, SqlColumnTypes columnTypes) {
+        String whereClause = getWhereClauseFromMutateQuery(mutateQuery, type, values, columnTypes);
         String sqlQueryString = "DELETE FROM " + mutateQuery.getDatabaseName() + "." +
                 mutateQuery.getTableName() + " WHERE " + whereClause;
 
         return sqlQueryString;
     }
 
-    private static String getWhereClauseFromMutateQuery(MutateQuery mutateQuery) {
+    private static SqlType getType(MutateQuery mutateQuery) {
         SqlType type = SqlType.MYSQL;
         if (mutateQuery.getDatastoreType().equals("postgresql")) {
             type = SqlType.POSTGRESQL;
         }
-        return mutateQuery.getWhereClause() != null ? transformWhere(mutateQuery.getWhereClause(), type)
-                : mutateQuery.getIdFieldName() + " = '" + mutateQuery.getDataId() + "'";
+        return type;
+    }
+
+    private static String getWhereClauseFromMutateQuery(MutateQuery mutateQuery, SqlType type, List<Object> values,
+            SqlColumnTypes columnTypes) {
+        return mutateQuery.getWhereClause() != null ? transformWhere(mutateQuery.getWhereClause(), type, values,
+                columnTypes) : mutateQuery.getIdFieldName() + " = " + bindString(mutateQuery.getDataId(),
+                quoteString(mutateQuery.getDataId(), type), columnTypes.findType(mutateQuery.getDatabaseName(),
+                mutateQuery.getTableName(), mutateQuery.getIdFieldName()), type, values);
+    }
+
+    /**
+     * Returns the literal or bind marker of the given value of a mutation, assigned to a column of the given type
+     * (see bindString).  Arrays and objects are bound as JSON.
+     */
+    private static String bindMutationValue(Object value, String castType, SqlType type, List<Object> values) {
+        if (value instanceof Number || value instanceof Boolean) {
+            return bind(value, value.toString(), type, values);
+        }
+        if (value instanceof String) {
+            return bindString((String) value, quoteString((String) value, type), castType, type, values);
+        }
+        if (value instanceof List || value instanceof Map) {
+            String json = SqlQueryConverter.transformObjectToString(value, true);
+            return bindString(json, quoteString(json, type), castType, type, values);
+        }
+        return SqlQueryConverter.transformObjectToString(value, false);
     }
 
     private static String transformObjectToString(Object object, boolean insideJson) {
@@ -0,0 +1,124 @@
+package com.ncc.neon.adapters.sql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+
+/**
+ * Writes the rows of one SQL result as lines of JSON with one generator, without copying a row into a map first.  The
+ * plan of the columns (their indexes and encoded names) is built from the metadata of the first row, so each row is
+ * written as the JSON of the map the database client would read from it.
+ */
+class SqlRowJsonWriter implements Closeable {
+    private final DataBufferFactory bufferFactory;
+    private final RowOutputStream output = new RowOutputStream();
+    private final JsonGenerator generator;
+    private int[] indexes;
+    private SerializedString[] names;
+
+    /**
+     * @param mapper The mapper of the values other than strings, numbers, and booleans
+     */
+    SqlRowJsonWriter(ObjectMapper mapper, DataBufferFactory bufferFactory) throws IOException {
+        this.bufferFactory = bufferFactory;
+        this.generator = mapper.getFactory().createGenerator(this.output);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    /**
+     * Returns a buffer from the factory with the JSON of the given row, followed by a newline.
+     */
+    DataBuffer write(Row row, RowMetadata metadata) {
+        if (this.indexes == null) {
+            plan(metadata);
+        }
+        try {
+            this.generator.writeStartObject();
+            for (int index = 0; index < this.indexes.length; index++) {
+                this.generator.writeFieldName(this.names[index]);
+                writeValue(row.get(this.indexes[index]));
+            }
+            this.generator.writeEndObject();
+            this.generator.writeRaw('\n');
+            this.generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        DataBuffer buffer = this.bufferFactory.allocateBuffer(this.output.size());
+        buffer.write(this.output.getBuffer(), 0, this.output.size());
+        this.output.reset();
+        return buffer;
+    }
+
+    private void plan(RowMetadata metadata) {
+        // Like the case-insensitive map of the database client, a column replaces an earlier column of the same name.
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        Map<String, String> names = new HashMap<>();
+        int index = 0;
+        for (ColumnMetadata column : metadata.getColumnMetadatas()) {
+            String name = column.getName();
+            String previousName = names.put(name.toLowerCase(Locale.ROOT), name);
+            if (previousName != null && !previousName.equals(name)) {
+                columns.remove(previousName);
+            }
+            columns.put(name, index++);
+        }
+        this.indexes = columns.values().stream().mapToInt(Integer::intValue).toArray();
+        this.names = columns.keySet().stream().map(SerializedString::new).toArray(SerializedString[]::new);
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            this.generator.writeNull();
+        } else if (value instanceof String) {
+            this.generator.writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+            this.generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            this.generator.writeNumber((Double) value);
+        } else if (value instanceof Float) {
+            this.generator.writeNumber((Float) value);
+        } else if (value instanceof BigDecimal) {
+            this.generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof Boolean) {
+            this.generator.writeBoolean((Boolean) value);
+        } else {
+            this.generator.writeObject(value);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.generator.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Holds the JSON of one row until it is copied into its buffer.
+     */
+    private static class RowOutputStream extends ByteArrayOutputStream {
+        byte[] getBuffer() {
+            return this.buf;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.ncc.neon.adapters.sql;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * A SQL statement with bind markers ("$1" in PostgreSQL and "?" in MySQL) and the values to bind to its markers, in
+ * order.  Statements that differ only in their values have the same SQL, so the database can reuse their plans.
+ */
+@Value
+public class SqlStatement {
+    String sql;
+    List<Object> values;
+}
@@ -7,7 +7,10 @@ import org.junit.runner.RunWith;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.Arrays;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes=SqlQueryConverter.class)
@@ -631,6 +634,16 @@ public class MySqlQueryConverterTest extends QueryBuilder {
         assertThat(actual).isEqualTo(expected);
     }
 
+    @Test
+    public void convertQueryFilterEqualsBackslashTest() {
+        Query query = new Query();
+        query.setSelectClause(new SelectClause("testDatabase", "testTable"));
+        query.setWhereClause(SingularWhereClause.fromString(new FieldClause("testDatabase", "testTable", "testFilterField"), "=", "\\'; SQL INJECTION; \\'"));
+        String actual = SqlQueryConverter.convertQuery(query, SqlType.MYSQL);
+        String expected = "SELECT * FROM testDatabase.testTable WHERE testDatabase.testTable.testFilterField = '\\\\\\'; SQL INJECTION; \\\\\\''";
+        assertThat(actual).isEqualTo(expected);
+    }
+
     @Test
     public void convertQueryJoinTest() {
         Query query = buildQueryJoin();
@@ -776,4 +789,135 @@ public class MySqlQueryConverterTest extends QueryBuilder {
         String expected = "DELETE FROM testDatabase.testTable WHERE testDatabase.testTable.testFilterField1 = 'testFilterValue1'";
         assertThat(actual).isEqualTo(expected);
     }
+
+    @Test
+    public void convertFieldRangeQueryTest() {
+        Query query = buildQueryAggregateCountFieldAndFilter();
+        String actual = SqlQueryConverter.convertFieldRangeQuery(query, new FieldClause("testDatabase", "testTable",
+            "testAggField"), SqlType.MYSQL);
+        String expected = "SELECT MIN(testDatabase.testTable.testAggField) AS _min, " +
+            "MAX(testDatabase.testTable.testAggField) AS _max, " +
+            "COUNT(DISTINCT testDatabase.testTable.testAggField) AS _distinctCount FROM testDatabase.testTable " +
+            "WHERE testDatabase.testTable.testFilterField = 'testFilterValue'";
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void convertBinnedQueryTest() {
+        Query query = buildQueryAggregateAndGroup();
+        BinClause binClause = new BinClause(new FieldClause("testDatabase", "testTable", "testGroupField"),
+            Arrays.asList(new double[] { 0, 5 }, new double[] { 5.0001, 10 }));
+        String actual = SqlQueryConverter.convertBinnedQuery(query, Arrays.asList(binClause), SqlType.MYSQL);
+        String expected = "SELECT CASE WHEN testDatabase.testTable.testGroupField BETWEEN 0.0 AND 5.0 THEN 0 " +
+            "WHEN testDatabase.testTable.testGroupField BETWEEN 5.0001 AND 10.0 THEN 1 END AS testGroupField, " +
+            "COUNT(*) AS _binCount, SUM(testDatabase.testTable.testAggField) AS testAggLabel " +
+            "FROM testDatabase.testTable GROUP BY 1";
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void convertBinnedQueryGridTest() {
+        Query query = buildQueryFields();
+        BinClause binClause1 = new BinClause(new FieldClause("testDatabase", "testTable", "testField1"),
+            Arrays.asList(new double[] { -90, 90 }));
+        BinClause binClause2 = new BinClause(new FieldClause("testDatabase", "testTable", "testField2"),
+            Arrays.asList(new double[] { -180, 0 }, new double[] { 1.0E-15, 180 }));
+        String actual = SqlQueryConverter.convertBinnedQuery(query, Arrays.asList(binClause1, binClause2),
+            SqlType.MYSQL);
+        String expected = "SELECT CASE WHEN testDatabase.testTable.testField1 BETWEEN -90.0 AND 90.0 THEN 0 END " +
+            "AS testField1, CASE WHEN testDatabase.testTable.testField2 BETWEEN -180.0 AND 0.0 THEN 0 " +
+            "WHEN testDatabase.testTable.testField2 BETWEEN 0.0000000000000010 AND 180.0 THEN 1 END AS testField2, " +
+            "COUNT(*) AS _binCount FROM testDatabase.testTable GROUP BY 1, 2";
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void convertImportQueryTest() {
+        String actual = SqlQueryConverter.convertImportQuery("testDatabase", "testTable", Arrays.asList("name", "age"), 2,
+            SqlType.MYSQL);
+        String expected = "INSERT INTO testDatabase.testTable (name, age) VALUES (?, ?), (?, ?)";
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void convertImportQueryInvalidFieldTest() {
+        assertThatThrownBy(() -> SqlQueryConverter.convertImportQuery("testDatabase", "testTable",
+            Arrays.asList("name", "age) VALUES (1); DROP TABLE testTable; --"), 1, SqlType.MYSQL))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void convertQueryIntoStatementTest() {
+        Query query = buildQueryAdvanced();
+        SqlStatement actual = SqlQueryConverter.convertQueryIntoStatement(query, SqlType.MYSQL);
+        String expected = "SELECT testDatabase.testTable.testField1, testDatabase.testTable.testField2, SUM(testDatabase.testTable.testAggField) AS testAggLabel, testDatabase.testTable.testGroupField FROM " +
+            "testDatabase.testTable WHERE testDatabase.testTable.testFilterField = ? GROUP BY testDatabase.testTable.testGroupField ORDER BY " +
+            "testDatabase.testTable.testSortField ASC LIMIT ? OFFSET ?";
+        assertThat(actual.getSql()).isEqualTo(expected);
+        assertThat(actual.getValues()).containsExactly("testFilterValue", 12, 34);
+    }
+
+    @Test
+    public void convertQueryIntoStatementFilterTest() {
+        SqlStatement dates = SqlQueryConverter.convertQueryIntoStatement(buildQueryFilterDateRange(), SqlType.MYSQL);
+        assertThat(dates.getSql()).isEqualTo("SELECT * FROM testDatabase.testTable WHERE " +
+            "(testDatabase.testTable.testFilterField >= STR_TO_DATE(?,'%Y-%m-%dT%TZ') AND " +
+            "testDatabase.testTable.testFilterField <= STR_TO_DATE(?,'%Y-%m-%dT%TZ'))");
+        assertThat(dates.getValues()).containsExactly("2018-01-01T00:00:00Z", "2019-01-01T00:00:00Z");
+
+        SqlStatement numbers = SqlQueryConverter.convertQueryIntoStatement(buildQueryFilterNumberRange(),
+            SqlType.MYSQL);
+        assertThat(numbers.getSql()).isEqualTo("SELECT * FROM testDatabase.testTable WHERE " +
+            "(testDatabase.testTable.testFilterField >= ? AND testDatabase.testTable.testFilterField <= ?)");
+        assertThat(numbers.getValues()).containsExactly(12.34, 56.78);
+
+        SqlStatement contains = SqlQueryConverter.convertQueryIntoStatement(buildQueryFilterContains(),
+            SqlType.MYSQL);
+        assertThat(contains.getSql()).isEqualTo("SELECT * FROM testDatabase.testTable WHERE " +
+            "testDatabase.testTable.testFilterField REGEXP ?");
+        assertThat(contains.getValues()).containsExactly(".*testFilterValue.*");
+    }
+
+    @Test
+    public void convertQueryIntoStatementWithSameShapeTest() {
+        Query query1 = buildQueryFilterEqualsString();
+        Query query2 = buildQueryFilterEqualsString();
+        ((SingularWhereClause) query2.getWhereClause()).setRhsString("it's different");
+        SqlStatement statement1 = SqlQueryConverter.convertQueryIntoStatement(query1, SqlType.MYSQL);
+        SqlStatement statement2 = SqlQueryConverter.convertQueryIntoStatement(query2, SqlType.MYSQL);
+        assertThat(statement2.getSql()).isEqualTo(statement1.getSql());
+        assertThat(statement2.getValues()).containsExactly("it's different");
+    }
+
+    @Test
+    public void convertMutationIntoUpdateStatementTest() {
+        MutateQuery mutateQuery = buildMutationByIdQuery();
+        SqlStatement actual = SqlQueryConverter.convertMutationIntoUpdateStatement(mutateQuery, SqlType.MYSQL);
+        String expected = "UPDATE testDatabase.testTable SET testString = ?, testZero = ?, testInteger = ?, " +
+            "testDecimal = ?, testNegativeInteger = ?, testNegativeDecimal = ?, testTrue = ?, testFalse = ? " +
+            "WHERE testIdField = ?";
+        assertThat(actual.getSql()).isEqualTo(expected);
+        assertThat(actual.getValues()).containsExactly("a", 0, 1, 0.5, -1, -0.5, true, false, "testId");
+    }
+
+    @Test
+    public void convertMutationIntoInsertStatementTest() {
+        MutateQuery mutateQuery = buildArrayAndObjectMutationByIdQuery();
+        SqlStatement actual = SqlQueryConverter.convertMutationIntoInsertStatement(mutateQuery, SqlType.MYSQL);
+        String expected = "INSERT INTO testDatabase.testTable (id, testEmptyArray, testEmptyObject, testArray, " +
+            "testObject) VALUES (?, ?, ?, ?, ?)";
+        assertThat(actual.getSql()).isEqualTo(expected);
+        assertThat(actual.getValues()).containsExactly("testId", "[]", "{}", "[\"b\",2,true," +
+            "{\"testArrayObjectString\":\"c\",\"testArrayObjectInteger\":3}]", "{\"testObjectString\":\"d\"," +
+            "\"testObjectInteger\":4,\"testObjectBoolean\":true,\"testObjectArray\":[\"e\",5]}");
+    }
+
+    @Test
+    public void convertMutationIntoDeleteStatementTest() {
+        MutateQuery mutateQuery = buildMutationByFilterQuery();
+        SqlStatement actual = SqlQueryConverter.convertMutationIntoDeleteStatement(mutateQuery, SqlType.MYSQL);
+        assertThat(actual.getSql()).isEqualTo("DELETE FROM testDatabase.testTable WHERE " +
+            "testDatabase.testTable.testFilterField1 = ?");
+        assertThat(actual.getValues()).containsExactly("testFilterValue1");
+    }
 }
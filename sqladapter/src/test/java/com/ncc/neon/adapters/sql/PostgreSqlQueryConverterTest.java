@@ -7,7 +7,13 @@ import org.junit.runner.RunWith;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes=SqlQueryConverter.class)
@@ -617,7 +623,7 @@ public class PostgreSqlQueryConverterTest extends QueryBuilder {
         query.setSelectClause(new SelectClause("testDatabase", "testTable"));
         query.setWhereClause(SingularWhereClause.fromString(new FieldClause("testDatabase", "testTable", "testFilterField"), "contains", "'; SQL INJECTION; '"));
         String actual = SqlQueryConverter.convertQuery(query, SqlType.POSTGRESQL);
-        String expected = "SELECT * FROM testDatabase.testTable WHERE testDatabase.testTable.testFilterField ~ '.*\\'; SQL INJECTION; \\'.*'";
+        String expected = "SELECT * FROM testDatabase.testTable WHERE testDatabase.testTable.testFilterField ~ '.*''; SQL INJECTION; ''.*'";
         assertThat(actual).isEqualTo(expected);
     }
 
@@ -627,7 +633,7 @@ public class PostgreSqlQueryConverterTest extends QueryBuilder {
         query.setSelectClause(new SelectClause("testDatabase", "testTable"));
         query.setWhereClause(SingularWhereClause.fromString(new FieldClause("testDatabase", "testTable", "testFilterField"), "=", "'; SQL INJECTION; '"));
         String actual = SqlQueryConverter.convertQuery(query, SqlType.POSTGRESQL);
-        String expected = "SELECT * FROM testDatabase.testTable WHERE testDatabase.testTable.testFilterField = '\\'; SQL INJECTION; \\''";
+        String expected = "SELECT * FROM testDatabase.testTable WHERE testDatabase.testTable.testFilterField = '''; SQL INJECTION; '''";
         assertThat(actual).isEqualTo(expected);
     }
 
@@ -777,4 +783,163 @@ public class PostgreSqlQueryConverterTest extends QueryBuilder {
         String expected = "DELETE FROM testDatabase.testTable WHERE testDatabase.testTable.testFilterField1 = 'testFilterValue1'";
         assertThat(actual).isEqualTo(expected);
     }
+
+    @Test
+    public void convertFieldRangeQueryTest() {
+        Query query = buildQueryAggregateCountFieldAndFilter();
+        String actual = SqlQueryConverter.convertFieldRangeQuery(query, new FieldClause("testDatabase", "testTable",
+            "testAggField"), SqlType.POSTGRESQL);
+        String expected = "SELECT MIN(testDatabase.testTable.testAggField) AS _min, " +
+            "MAX(testDatabase.testTable.testAggField) AS _max, " +
+            "COUNT(DISTINCT testDatabase.testTable.testAggField) AS _distinctCount FROM testDatabase.testTable " +
+            "WHERE testDatabase.testTable.testFilterField = 'testFilterValue'";
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void convertBinnedQueryTest() {
+        Query query = buildQueryAggregateAndGroup();
+        BinClause binClause = new BinClause(new FieldClause("testDatabase", "testTable", "testGroupField"),
+            Arrays.asList(new double[] { 0, 5 }, new double[] { 5.0001, 10 }));
+        String actual = SqlQueryConverter.convertBinnedQuery(query, Arrays.asList(binClause), SqlType.POSTGRESQL);
+        String expected = "SELECT CASE WHEN testDatabase.testTable.testGroupField BETWEEN 0.0 AND 5.0 THEN 0 " +
+            "WHEN testDatabase.testTable.testGroupField BETWEEN 5.0001 AND 10.0 THEN 1 END AS testGroupField, " +
+            "COUNT(*) AS _binCount, SUM(testDatabase.testTable.testAggField) AS testAggLabel " +
+            "FROM testDatabase.testTable GROUP BY 1";
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void convertBinnedQueryGridTest() {
+        Query query = buildQueryFields();
+        BinClause binClause1 = new BinClause(new FieldClause("testDatabase", "testTable", "testField1"),
+            Arrays.asList(new double[] { -90, 90 }));
+        BinClause binClause2 = new BinClause(new FieldClause("testDatabase", "testTable", "testField2"),
+            Arrays.asList(new double[] { -180, 0 }, new double[] { 1.0E-15, 180 }));
+        String actual = SqlQueryConverter.convertBinnedQuery(query, Arrays.asList(binClause1, binClause2),
+            SqlType.POSTGRESQL);
+        String expected = "SELECT CASE WHEN testDatabase.testTable.testField1 BETWEEN -90.0 AND 90.0 THEN 0 END " +
+            "AS testField1, CASE WHEN testDatabase.testTable.testField2 BETWEEN -180.0 AND 0.0 THEN 0 " +
+            "WHEN testDatabase.testTable.testField2 BETWEEN 0.0000000000000010 AND 180.0 THEN 1 END AS testField2, " +
+            "COUNT(*) AS _binCount FROM testDatabase.testTable GROUP BY 1, 2";
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void convertImportQueryTest() {
+        String actual = SqlQueryConverter.convertImportQuery("testDatabase", "testTable", Arrays.asList("name", "age"), 2,
+            SqlType.POSTGRESQL);
+        String expected = "INSERT INTO testDatabase.testTable (name, age) SELECT name, age " +
+            "FROM json_populate_recordset(NULL::testDatabase.testTable, $1::json)";
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void convertImportQueryInvalidFieldTest() {
+        assertThatThrownBy(() -> SqlQueryConverter.convertImportQuery("testDatabase", "testTable",
+            Arrays.asList("name", "age) VALUES (1); DROP TABLE testTable; --"), 1, SqlType.POSTGRESQL))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void convertQueryIntoStatementTest() {
+        Query query = buildQueryAdvanced();
+        SqlStatement actual = SqlQueryConverter.convertQueryIntoStatement(query, SqlType.POSTGRESQL);
+        // Without the types of the columns to cast them to, strings are written.
+        String expected = "SELECT testDatabase.testTable.testField1, testDatabase.testTable.testField2, SUM(testDatabase.testTable.testAggField) AS testAggLabel, testDatabase.testTable.testGroupField FROM " +
+            "testDatabase.testTable WHERE testDatabase.testTable.testFilterField = 'testFilterValue' GROUP BY testDatabase.testTable.testGroupField ORDER BY " +
+            "testDatabase.testTable.testSortField ASC LIMIT $1 OFFSET $2";
+        assertThat(actual.getSql()).isEqualTo(expected);
+        assertThat(actual.getValues()).containsExactly(12, 34);
+    }
+
+    @Test
+    public void convertQueryIntoStatementFilterTest() {
+        SqlStatement dates = SqlQueryConverter.convertQueryIntoStatement(buildQueryFilterDateRange(),
+            SqlType.POSTGRESQL);
+        assertThat(dates.getSql()).isEqualTo("SELECT * FROM testDatabase.testTable WHERE " +
+            "(testDatabase.testTable.testFilterField >= TO_TIMESTAMP($1,'YYYY-MM-DD\"T\"HH24:MI:SS\"Z\"') AND " +
+            "testDatabase.testTable.testFilterField <= TO_TIMESTAMP($2,'YYYY-MM-DD\"T\"HH24:MI:SS\"Z\"'))");
+        assertThat(dates.getValues()).containsExactly("2018-01-01T00:00:00Z", "2019-01-01T00:00:00Z");
+
+        SqlStatement numbers = SqlQueryConverter.convertQueryIntoStatement(buildQueryFilterNumberRange(),
+            SqlType.POSTGRESQL);
+        assertThat(numbers.getSql()).isEqualTo("SELECT * FROM testDatabase.testTable WHERE " +
+            "(testDatabase.testTable.testFilterField >= $1 AND testDatabase.testTable.testFilterField <= $2)");
+        assertThat(numbers.getValues()).containsExactly(12.34, 56.78);
+
+        SqlStatement contains = SqlQueryConverter.convertQueryIntoStatement(buildQueryFilterContains(),
+            SqlType.POSTGRESQL);
+        assertThat(contains.getSql()).isEqualTo("SELECT * FROM testDatabase.testTable WHERE " +
+            "testDatabase.testTable.testFilterField ~ $1");
+        assertThat(contains.getValues()).containsExactly(".*testFilterValue.*");
+    }
+
+    @Test
+    public void convertMutationIntoUpdateStatementTest() {
+        MutateQuery mutateQuery = buildMutationByIdQuery();
+        SqlStatement actual = SqlQueryConverter.convertMutationIntoUpdateStatement(mutateQuery, SqlType.POSTGRESQL);
+        String expected = "UPDATE testDatabase.testTable SET testString = 'a', testZero = $1, testInteger = $2, " +
+            "testDecimal = $3, testNegativeInteger = $4, testNegativeDecimal = $5, testTrue = $6, testFalse = $7 " +
+            "WHERE testIdField = 'testId'";
+        assertThat(actual.getSql()).isEqualTo(expected);
+        assertThat(actual.getValues()).containsExactly(0, 1, 0.5, -1, -0.5, true, false);
+    }
+
+    @Test
+    public void convertQueryIntoStatementCastTest() {
+        Map<String, Map<String, String>> tables = new HashMap<>();
+        tables.put("testdatabase.testtable", Map.of("testfilterfield", "\"pg_catalog\".\"uuid\""));
+        Query query = buildQueryAdvanced();
+        SqlStatement actual = SqlQueryConverter.convertQueryIntoStatement(query, SqlType.POSTGRESQL,
+            new SqlColumnTypes(tables));
+        String expected = "SELECT testDatabase.testTable.testField1, testDatabase.testTable.testField2, SUM(testDatabase.testTable.testAggField) AS testAggLabel, testDatabase.testTable.testGroupField FROM " +
+            "testDatabase.testTable WHERE testDatabase.testTable.testFilterField = $1::\"pg_catalog\".\"uuid\" GROUP BY testDatabase.testTable.testGroupField ORDER BY " +
+            "testDatabase.testTable.testSortField ASC LIMIT $2 OFFSET $3";
+        assertThat(actual.getSql()).isEqualTo(expected);
+        assertThat(actual.getValues()).containsExactly("testFilterValue", 12, 34);
+    }
+
+    @Test
+    public void convertMutationIntoStatementCastTest() {
+        Map<String, Map<String, String>> tables = new HashMap<>();
+        tables.put("testdatabase.testtable", Map.of("id", "\"pg_catalog\".\"int4\"", "testidfield",
+            "\"pg_catalog\".\"int4\"", "teststring", "\"pg_catalog\".\"text\""));
+        SqlColumnTypes columnTypes = new SqlColumnTypes(tables);
+        MutateQuery mutateQuery = new MutateQuery("testHost", "testType", "testDatabase", "testTable", "testIdField",
+            "1", new LinkedHashMap<String, Object>(){{
+                put("testString", "a");
+                put("testUnknown", "b");
+            }}, null);
+
+        SqlStatement update = SqlQueryConverter.convertMutationIntoUpdateStatement(mutateQuery, SqlType.POSTGRESQL,
+            columnTypes);
+        assertThat(update.getSql()).isEqualTo("UPDATE testDatabase.testTable SET testString = " +
+            "$1::\"pg_catalog\".\"text\", testUnknown = 'b' WHERE testIdField = $2::\"pg_catalog\".\"int4\"");
+        assertThat(update.getValues()).containsExactly("a", "1");
+
+        SqlStatement insert = SqlQueryConverter.convertMutationIntoInsertStatement(mutateQuery, SqlType.POSTGRESQL,
+            columnTypes);
+        assertThat(insert.getSql()).isEqualTo("INSERT INTO testDatabase.testTable (id, testString, testUnknown) " +
+            "VALUES ($1::\"pg_catalog\".\"int4\", $2::\"pg_catalog\".\"text\", 'b')");
+        assertThat(insert.getValues()).containsExactly("1", "a");
+
+        SqlStatement delete = SqlQueryConverter.convertMutationIntoDeleteStatement(mutateQuery, SqlType.POSTGRESQL,
+            columnTypes);
+        assertThat(delete.getSql()).isEqualTo("DELETE FROM testDatabase.testTable WHERE testIdField = " +
+            "$1::\"pg_catalog\".\"int4\"");
+        assertThat(delete.getValues()).containsExactly("1");
+    }
+
+    @Test
+    public void convertMutationIdContainsQuotesTest() {
+        MutateQuery mutateQuery = new MutateQuery("testHost", "testType", "testDatabase", "testTable", "testIdField",
+            "'; SQL INJECTION; '", new LinkedHashMap<String, Object>(){{
+                put("testString", "'a'");
+            }}, null);
+        SqlStatement actual = SqlQueryConverter.convertMutationIntoUpdateStatement(mutateQuery, SqlType.POSTGRESQL);
+        assertThat(actual.getSql()).isEqualTo("UPDATE testDatabase.testTable SET testString = '''a''' WHERE " +
+            "testIdField = '''; SQL INJECTION; '''");
+        assertThat(actual.getValues()).isEmpty();
+    }
 }
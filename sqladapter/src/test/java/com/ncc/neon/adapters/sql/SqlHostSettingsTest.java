@@ -0,0 +1,107 @@
+package com.ncc.neon.adapters.sql;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SqlHostSettingsTest {
+
+    @Test
+    public void testDefaults() {
+        SqlHostSettings settings = SqlHostSettings.parse(new SqlHostSettings(), null);
+        assertThat(settings.getInitialSize()).isEqualTo(2);
+        assertThat(settings.getMaxSize()).isEqualTo(20);
+        assertThat(settings.getMaxIdleTime()).isEqualTo(Duration.ofMinutes(30));
+        assertThat(settings.getMaxLifeTime()).isNull();
+        assertThat(settings.getMaxAcquireTime()).isNull();
+        assertThat(settings.getValidationQuery()).isNull();
+        assertThat(settings.getImportBatchSize()).isEqualTo(1000);
+        assertThat(settings.getImportTransactionSize()).isEqualTo(10000);
+        assertThat(settings.getPlanCacheSize()).isEqualTo(1000);
+    }
+
+    @Test
+    public void testParse() {
+        SqlHostSettings settings = SqlHostSettings.parse(new SqlHostSettings(),
+            "initialSize=5, maxSize=40, maxIdleTime=10m, maxLifeTime=PT1H, maxAcquireTime=5s, validationQuery=SELECT 1, " +
+            "importBatchSize=500, importTransactionSize=2000, planCacheSize=0");
+        assertThat(settings.getInitialSize()).isEqualTo(5);
+        assertThat(settings.getMaxSize()).isEqualTo(40);
+        assertThat(settings.getMaxIdleTime()).isEqualTo(Duration.ofMinutes(10));
+        assertThat(settings.getMaxLifeTime()).isEqualTo(Duration.ofHours(1));
+        assertThat(settings.getMaxAcquireTime()).isEqualTo(Duration.ofSeconds(5));
+        assertThat(settings.getValidationQuery()).isEqualTo("SELECT 1");
+        assertThat(settings.getImportBatchSize()).isEqualTo(500);
+        assertThat(settings.getImportTransactionSize()).isEqualTo(2000);
+        assertThat(settings.getPlanCacheSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void testParseCopiesDefaults() {
+        SqlHostSettings defaults = SqlHostSettings.parse(new SqlHostSettings(), "maxSize=40, maxLifeTime=1h, " +
+            "validationQuery=SELECT 1, importBatchSize=500, planCacheSize=0");
+        SqlHostSettings settings = SqlHostSettings.parse(defaults, "maxSize=50");
+        assertThat(settings.getMaxSize()).isEqualTo(50);
+        assertThat(defaults.getMaxSize()).isEqualTo(40);
+        settings.setMaxSize(40);
+        assertThat(settings).isEqualTo(defaults);
+    }
+
+    @Test
+    public void testParseInvalid() {
+        assertThatThrownBy(() -> SqlHostSettings.parse(new SqlHostSettings(), "maxPoolSize=5"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SqlHostSettings.parse(new SqlHostSettings(), "maxSize"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SqlHostSettings.parse(new SqlHostSettings(), "initialSize=30"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SqlHostSettings.parse(new SqlHostSettings(), "importBatchSize=0"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SqlHostSettings.parse(new SqlHostSettings(), "planCacheSize=-1"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testFactoryUsesHostThenDefaultSettings() {
+        SqlAdapterFactory factory = new MySqlAdapterFactory(Map.of(), Map.of(
+            "*", "maxSize=30,maxIdleTime=5m",
+            "bighost:3306", "maxSize=100"
+        ), new SimpleMeterRegistry());
+        assertThat(factory.getHostSettings("bighost:3306").getMaxSize()).isEqualTo(100);
+        assertThat(factory.getHostSettings("bighost:3306").getMaxIdleTime()).isEqualTo(Duration.ofMinutes(5));
+        assertThat(factory.getHostSettings("otherhost").getMaxSize()).isEqualTo(30);
+    }
+
+    @Test
+    public void testAdapterRegistersAndRemovesPoolMetrics() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SqlAdapterFactory factory = new MySqlAdapterFactory(Map.of(), Map.of(), meterRegistry);
+        SqlAdapter adapter = (SqlAdapter) factory.buildAdapter("user:pass@localhost:3306", null, null);
+        assertThat(meterRegistry.get(SqlAdapter.POOL_METRIC_PREFIX + ".max.allocated").tag("type", "mysql")
+            .tag("host", "localhost:3306").gauge().value()).isEqualTo(20);
+        assertThat(meterRegistry.get(SqlAdapter.POOL_METRIC_PREFIX + ".acquire").timer().count()).isEqualTo(0);
+        adapter.close();
+        assertThat(meterRegistry.getMeters()).isEmpty();
+    }
+
+    @Test
+    public void testReplacementAdapterKeepsPoolMetrics() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SqlAdapterFactory factory = new MySqlAdapterFactory(Map.of(), Map.of(), meterRegistry);
+        SqlAdapter evicted = (SqlAdapter) factory.buildAdapter("user:pass@localhost:3306", null, null);
+        SqlAdapter replacement = (SqlAdapter) factory.buildAdapter("user:pass@localhost:3306", null, null);
+        assertThat(meterRegistry.find(SqlAdapter.POOL_METRIC_PREFIX + ".acquire").timers()).hasSize(2);
+        evicted.close();
+        assertThat(meterRegistry.getMeters()).containsExactlyInAnyOrderElementsOf(replacement.meters);
+        assertThat(meterRegistry.get(SqlAdapter.POOL_METRIC_PREFIX + ".max.allocated").tag("host", "localhost:3306")
+            .gauge().value()).isEqualTo(20);
+        replacement.close();
+        assertThat(meterRegistry.getMeters()).isEmpty();
+    }
+}
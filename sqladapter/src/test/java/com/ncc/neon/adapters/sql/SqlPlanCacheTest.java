@@ -0,0 +1,128 @@
+package com.ncc.neon.adapters.sql;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.ncc.neon.adapters.QueryBuilder;
+import com.ncc.neon.models.queries.AndWhereClause;
+import com.ncc.neon.models.queries.FieldClause;
+import com.ncc.neon.models.queries.LimitClause;
+import com.ncc.neon.models.queries.OffsetClause;
+import com.ncc.neon.models.queries.Query;
+import com.ncc.neon.models.queries.SingularWhereClause;
+import com.ncc.neon.util.DateUtil;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SqlPlanCacheTest extends QueryBuilder {
+
+    private List<Query> buildQueries() {
+        return Arrays.asList(buildQueryBase(), buildQueryFields(), buildQueryFilterEqualsBoolean(),
+            buildQueryFilterEqualsDate(), buildQueryFilterEqualsNull(), buildQueryFilterEqualsNumber(),
+            buildQueryFilterEqualsString(), buildQueryFilterNotEqualsFalse(), buildQueryFilterContains(),
+            buildQueryFilterNotContains(), buildQueryFilterAnd(), buildQueryFilterOr(), buildQueryAdvanced(),
+            buildQueryFilterDateRange(), buildQueryFilterNumberRange(), buildQueryFilterNestedAnd(),
+            buildQueryFilterNestedOr(), buildQueryAggregateCountFieldAndFilter(), buildQueryLimitAndOffset(),
+            buildQueryJoinWithCompoundOn(), buildQueryMultipleJoin());
+    }
+
+    private Query buildQueryWithFilters(String string, double number, String date, int offset) {
+        Query query = buildQueryBase();
+        query.setWhereClause(new AndWhereClause(Arrays.asList(
+            SingularWhereClause.fromString(new FieldClause("testDatabase", "testTable", "testField1"), "=", string),
+            SingularWhereClause.fromString(new FieldClause("testDatabase", "testTable", "testField1"), "contains",
+                string),
+            SingularWhereClause.fromDouble(new FieldClause("testDatabase", "testTable", "testField2"), ">", number),
+            SingularWhereClause.fromDate(new FieldClause("testDatabase", "testTable", "testField3"), "<",
+                DateUtil.transformStringToDate(date))
+        )));
+        query.setLimitClause(new LimitClause(10));
+        query.setOffsetClause(new OffsetClause(offset));
+        return query;
+    }
+
+    @Test
+    public void testCachedStatementsEqualConvertedStatements() {
+        for (SqlType type : SqlType.values()) {
+            SqlPlanCache cache = new SqlPlanCache(type, 100);
+            for (int pass = 0; pass < 2; pass++) {
+                for (Query query : buildQueries()) {
+                    assertThat(cache.convertQuery(query))
+                        .isEqualTo(SqlQueryConverter.convertQueryIntoStatement(query, type));
+                }
+            }
+            assertThat(cache.getHitCount()).isEqualTo(buildQueries().size());
+        }
+    }
+
+    @Test
+    public void testQueriesWithDifferentValuesShareShape() {
+        Query query1 = buildQueryWithFilters("a", 1, "2019-01-01T00:00Z", 20);
+        Query query2 = buildQueryWithFilters("b", 2, "2020-01-01T00:00Z", 40);
+
+        SqlPlanCache mySqlCache = new SqlPlanCache(SqlType.MYSQL, 100);
+        mySqlCache.convertQuery(query1);
+        assertThat(mySqlCache.convertQuery(query2))
+            .isEqualTo(SqlQueryConverter.convertQueryIntoStatement(query2, SqlType.MYSQL));
+        assertThat(mySqlCache.getHitCount()).isEqualTo(1);
+
+        // PostgreSQL strings are bound cast to the types of their columns.
+        SqlColumnTypes columnTypes = new SqlColumnTypes(Map.of("testdatabase.testtable", Map.of("testfield1",
+            "\"pg_catalog\".\"text\"")));
+        SqlPlanCache postgreSqlCache = new SqlPlanCache(SqlType.POSTGRESQL, 100);
+        postgreSqlCache.convertQuery(query1, columnTypes);
+        assertThat(postgreSqlCache.convertQuery(query2, columnTypes))
+            .isEqualTo(SqlQueryConverter.convertQueryIntoStatement(query2, SqlType.POSTGRESQL, columnTypes));
+        assertThat(postgreSqlCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPostgreSqlStringsWithoutColumnTypesDoNotShareShape() {
+        Query query1 = buildQueryWithFilters("a", 1, "2019-01-01T00:00Z", 20);
+        Query query2 = buildQueryWithFilters("b", 2, "2020-01-01T00:00Z", 40);
+
+        // Without the types of their columns, PostgreSQL strings are written into the SQL.
+        SqlPlanCache postgreSqlCache = new SqlPlanCache(SqlType.POSTGRESQL, 100);
+        postgreSqlCache.convertQuery(query1);
+        assertThat(postgreSqlCache.convertQuery(query2))
+            .isEqualTo(SqlQueryConverter.convertQueryIntoStatement(query2, SqlType.POSTGRESQL));
+        assertThat(postgreSqlCache.getHitCount()).isEqualTo(0);
+        assertThat(postgreSqlCache.convertQuery(buildQueryWithFilters("a", 3, "2021-01-01T00:00Z", 60)))
+            .isEqualTo(SqlQueryConverter.convertQueryIntoStatement(buildQueryWithFilters("a", 3,
+                "2021-01-01T00:00Z", 60), SqlType.POSTGRESQL));
+        assertThat(postgreSqlCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testQueriesWithDifferentStructureDoNotShareShape() {
+        SqlPlanCache cache = new SqlPlanCache(SqlType.MYSQL, 100);
+        Query withOffset = buildQueryWithFilters("a", 1, "2019-01-01T00:00Z", 20);
+        Query withoutOffset = buildQueryWithFilters("a", 1, "2019-01-01T00:00Z", 0);
+        Query withNull = buildQueryFilterEqualsNull();
+        Query withString = buildQueryFilterEqualsString();
+
+        cache.convertQuery(withOffset);
+        cache.convertQuery(withNull);
+        assertThat(cache.convertQuery(withoutOffset).getSql()).doesNotContain("OFFSET");
+        assertThat(cache.convertQuery(withString).getSql()).endsWith("= ?");
+        assertThat(cache.getHitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testChangedQueryDoesNotChangeCachedShape() {
+        SqlPlanCache cache = new SqlPlanCache(SqlType.MYSQL, 100);
+        Query query = buildQueryAdvanced();
+        SqlStatement expected = SqlQueryConverter.convertQueryIntoStatement(buildQueryAdvanced(), SqlType.MYSQL);
+        cache.convertQuery(query);
+
+        // Changing the clauses of the converted query must not change the key it was cached under.
+        query.getSelectClause().getFieldClauses().get(0).setField("testChangedField");
+        ((SingularWhereClause) query.getWhereClause()).getLhs().setField("testChangedFilterField");
+        assertThat(cache.convertQuery(query).getSql()).contains("testChangedField", "testChangedFilterField");
+        assertThat(cache.convertQuery(buildQueryAdvanced())).isEqualTo(expected);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,71 @@
+package com.ncc.neon.adapters.sql;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SqlRowJsonWriterTest {
+
+    private RowMetadata buildMetadata(String... names) {
+        RowMetadata metadata = mock(RowMetadata.class);
+        List<ColumnMetadata> columns = Arrays.stream(names).map(name -> {
+            ColumnMetadata column = mock(ColumnMetadata.class);
+            when(column.getName()).thenReturn(name);
+            return column;
+        }).collect(Collectors.toList());
+        when(metadata.getColumnMetadatas()).thenReturn((List) columns);
+        return metadata;
+    }
+
+    private Row buildRow(Object... values) {
+        Row row = mock(Row.class);
+        for (int index = 0; index < values.length; index++) {
+            when(row.get(index)).thenReturn(values[index]);
+        }
+        return row;
+    }
+
+    private String write(SqlRowJsonWriter writer, Row row, RowMetadata metadata) {
+        return writer.write(row, metadata).toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void writeTest() throws IOException {
+        RowMetadata metadata = buildMetadata("testString", "testInt", "testDouble", "testDecimal", "testBoolean",
+            "testNull", "testList");
+        try (SqlRowJsonWriter writer = new SqlRowJsonWriter(new ObjectMapper(), new DefaultDataBufferFactory())) {
+            assertThat(write(writer, buildRow("a\"b", 1, 2.5, new BigDecimal("3.50"), true, null,
+                Arrays.asList("x", "y")), metadata)).isEqualTo("{\"testString\":\"a\\\"b\",\"testInt\":1," +
+                "\"testDouble\":2.5,\"testDecimal\":3.50,\"testBoolean\":true,\"testNull\":null," +
+                "\"testList\":[\"x\",\"y\"]}\n");
+            assertThat(write(writer, buildRow("c", 4L, 5.0, BigDecimal.ONE, false, null, Arrays.asList()), metadata))
+                .isEqualTo("{\"testString\":\"c\",\"testInt\":4,\"testDouble\":5.0,\"testDecimal\":1," +
+                "\"testBoolean\":false,\"testNull\":null,\"testList\":[]}\n");
+        }
+    }
+
+    @Test
+    public void writeColumnsWithSameNameTest() throws IOException {
+        RowMetadata metadata = buildMetadata("id", "testField", "id", "TESTFIELD", "otherField");
+        try (SqlRowJsonWriter writer = new SqlRowJsonWriter(new ObjectMapper(), new DefaultDataBufferFactory())) {
+            assertThat(write(writer, buildRow(1, "a", 2, "b", "c"), metadata)).isEqualTo(
+                "{\"id\":2,\"TESTFIELD\":\"b\",\"otherField\":\"c\"}\n");
+        }
+    }
+}